@@ -0,0 +1,126 @@
+package io.seansullivan.algorithms;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * A SortListener which aggregates the statistics of the sort calls for
+ * each algorithm: the number of calls, and the total and maximum of each
+ * statistic. The aggregates can be exported as a flat map of metrics,
+ * for example to publish to a monitoring system. Thread-safe.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public class AggregatingSortListener implements SortListener {
+
+  // Sorted by algorithm name, so the metrics are in a stable order.
+  private final Map<String, Aggregate> aggregates = new TreeMap<String, Aggregate>();
+
+  @Override
+  public synchronized void sortCompleted(SortStats stats) {
+    Aggregate aggregate = aggregates.get(stats.getAlgorithm());
+    if (aggregate == null) {
+      aggregate = new Aggregate();
+      aggregates.put(stats.getAlgorithm(), aggregate);
+    }
+    aggregate.add(stats);
+  }
+
+  /**
+   * Returns the number of calls reported for "algorithm".
+   */
+  public synchronized long getCalls(String algorithm) {
+    Aggregate aggregate = aggregates.get(algorithm);
+    return (aggregate == null) ? 0 : aggregate.calls;
+  }
+
+  /**
+   * Clears all of the aggregates.
+   */
+  public synchronized void reset() {
+    aggregates.clear();
+  }
+
+  /**
+   * Returns a snapshot of the aggregates as metrics, named
+   * "algorithm.statistic" for the totals (e.g. "quickSort.comparisons"),
+   * and "algorithm.statistic.max" for the maximum of one call. The
+   * statistics are calls, size, comparisons, swaps, moves, depth (maximum
+   * only), allocatedBytes and nanos. allocatedBytes is omitted if the JVM
+   * can not count allocations.
+   */
+  public synchronized Map<String, Long> toMetrics() {
+    Map<String, Long> metrics = new TreeMap<String, Long>();
+    for (Map.Entry<String, Aggregate> entry : aggregates.entrySet()) {
+      String prefix = entry.getKey() + ".";
+      Aggregate aggregate = entry.getValue();
+      metrics.put(prefix + "calls", aggregate.calls);
+      metrics.put(prefix + "size", aggregate.size);
+      metrics.put(prefix + "size.max", aggregate.maxSize);
+      metrics.put(prefix + "comparisons", aggregate.comparisons);
+      metrics.put(prefix + "comparisons.max", aggregate.maxComparisons);
+      metrics.put(prefix + "swaps", aggregate.swaps);
+      metrics.put(prefix + "swaps.max", aggregate.maxSwaps);
+      metrics.put(prefix + "moves", aggregate.moves);
+      metrics.put(prefix + "moves.max", aggregate.maxMoves);
+      metrics.put(prefix + "depth.max", (long) aggregate.maxDepth);
+      if (aggregate.allocatedBytes >= 0) {
+	metrics.put(prefix + "allocatedBytes", aggregate.allocatedBytes);
+	metrics.put(prefix + "allocatedBytes.max", aggregate.maxAllocatedBytes);
+      }
+      metrics.put(prefix + "nanos", aggregate.nanos);
+      metrics.put(prefix + "nanos.max", aggregate.maxNanos);
+    }
+    return metrics;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return toMetrics().toString();
+  }
+
+  /**
+   * The totals and maximums for one algorithm.
+   */
+  private static class Aggregate {
+    long calls;
+    long size;
+    long maxSize;
+    long comparisons;
+    long maxComparisons;
+    long swaps;
+    long maxSwaps;
+    long moves;
+    long maxMoves;
+    int maxDepth;
+    long allocatedBytes;  // -1 once any call could not count them.
+    long maxAllocatedBytes;
+    long nanos;
+    long maxNanos;
+
+    void add(SortStats stats) {
+      calls++;
+      size += stats.getSize();
+      maxSize = Math.max(maxSize, stats.getSize());
+      comparisons += stats.getComparisons();
+      maxComparisons = Math.max(maxComparisons, stats.getComparisons());
+      swaps += stats.getSwaps();
+      maxSwaps = Math.max(maxSwaps, stats.getSwaps());
+      moves += stats.getMoves();
+      maxMoves = Math.max(maxMoves, stats.getMoves());
+      maxDepth = Math.max(maxDepth, stats.getMaxDepth());
+      if ((allocatedBytes < 0) || (stats.getAllocatedBytes() < 0)) {
+	allocatedBytes = -1;
+      } else {
+	allocatedBytes += stats.getAllocatedBytes();
+	maxAllocatedBytes = Math.max(maxAllocatedBytes, stats.getAllocatedBytes());
+      }
+      nanos += stats.getNanos();
+      maxNanos = Math.max(maxNanos, stats.getNanos());
+    }
+  }
+
+}
@@ -0,0 +1,346 @@
+package io.seansullivan.algorithms;
+
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * Counting sort for int keys in a bounded range. The public entry points
+ * are the countingSort(), parallelCountingSort() and countRuns() methods
+ * in Sorts.
+ *
+ * One read of the input counts how many times each value in [min, max]
+ * occurs; the sorted output is then written as a run of each value in
+ * turn, without comparing or moving a single element. When the range is
+ * much smaller than the input, the counts stay in cache, and the sort
+ * runs at the speed of reading and writing the array once each.
+ *
+ * When the range is not given it is found with an extra read of the
+ * input. If it turns out to be larger than the input (or MIN_RANGE, for
+ * short inputs), the counts would cost more than the elements, so the
+ * input is radix sorted instead.
+ *
+ * The parallel sort counts each block of the input into a histogram of
+ * its own, so the threads never share a counter. The histograms are
+ * summed, slice by slice of the range, and then each block of the output
+ * is written by its own task, starting from the value found by binary
+ * search of the running totals.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+final class CountingSort {
+
+  /**
+   * Range of values which is always counted, however short the input:
+   * the same number of counts as one pass of an 8-bit radix sort.
+   */
+  private static final int MIN_RANGE = 1 << 8;
+
+  private CountingSort() {}
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive), finding the
+   * range of its values first.
+   */
+  static void sort(int[] a, int low, int high) {
+    if (high - low < 2) {
+      return;
+    }
+    int[] bounds = bounds(a, low, high);
+    if (!isCountable(bounds[0], bounds[1], high - low)) {
+      Sorts.radixSort(a, low, high);
+      return;
+    }
+    sort(a, low, high, bounds[0], bounds[1]);
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive), every value of
+   * which must be in [min, max]. Otherwise throws IllegalArgumentException
+   * without modifying "a".
+   */
+  static void sort(int[] a, int low, int high, int min, int max) {
+    int[] counts = count(a, low, high, min, max);
+    int index = low;
+    for (int offset = 0; offset < counts.length; offset++) {
+      int value = min + offset;
+      for (int end = index + counts[offset]; index < end; index++) {
+	a[index] = value;
+      }
+    }
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) using the
+   * threads of "pool", finding the range of its values first.
+   */
+  static void sort(final int[] a, int low, int high, ForkJoinPool pool,
+		   int threshold) {
+    final Blocks blocks = new Blocks(low, high - low, pool.getParallelism(), threshold);
+    if (blocks.count < 2) {
+      sort(a, low, high);
+      return;
+    }
+    final int[][] blockBounds = new int[blocks.count][];
+    pool.invoke(new SampleSort.ForEachTask(0, blocks.count, new SampleSort.Body() {
+      void apply(int block) {
+	blockBounds[block] = bounds(a, blocks.start(block), blocks.end(block));
+      }
+    }));
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    for (int[] bounds : blockBounds) {
+      min = Math.min(min, bounds[0]);
+      max = Math.max(max, bounds[1]);
+    }
+    if (!isCountable(min, max, high - low)) {
+      SampleSort.sort(a, low, high, pool, threshold);
+      return;
+    }
+    sort(a, low, high, min, max, pool, threshold);
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) using the
+   * threads of "pool". Every value must be in [min, max].
+   */
+  static void sort(final int[] a, int low, int high, final int min, final int max,
+		   ForkJoinPool pool, int threshold) {
+    final Blocks blocks = new Blocks(low, high - low, pool.getParallelism(), threshold);
+    if (blocks.count < 2) {
+      sort(a, low, high, min, max);
+      return;
+    }
+
+    // Each block counts its values into a histogram of its own.
+    final int[][] histograms = new int[blocks.count][];
+    pool.invoke(new SampleSort.ForEachTask(0, blocks.count, new SampleSort.Body() {
+      void apply(int block) {
+	histograms[block] = count(a, blocks.start(block), blocks.end(block), min, max);
+      }
+    }));
+
+    // Sum the histograms into the first, each task taking a slice of the
+    // range so that no two tasks write the same count.
+    final int[] counts = histograms[0];
+    final int slices = blocks.count;
+    pool.invoke(new SampleSort.ForEachTask(0, slices, new SampleSort.Body() {
+      void apply(int slice) {
+	int start = (int) (((long) counts.length * slice) / slices);
+	int end = (int) (((long) counts.length * (slice + 1)) / slices);
+	for (int block = 1; block < histograms.length; block++) {
+	  int[] histogram = histograms[block];
+	  for (int offset = start; offset < end; offset++) {
+	    counts[offset] += histogram[offset];
+	  }
+	}
+      }
+    }));
+
+    // totals[v] is the number of elements less than min + v.
+    final int[] totals = new int[counts.length + 1];
+    for (int offset = 0; offset < counts.length; offset++) {
+      totals[offset + 1] = totals[offset] + counts[offset];
+    }
+    pool.invoke(new SampleSort.ForEachTask(0, blocks.count, new SampleSort.Body() {
+      void apply(int block) {
+	int start = blocks.start(block);
+	int end = blocks.end(block);
+	int offset = lastAtMost(totals, start - blocks.low);
+	int index = start;
+	while (index < end) {
+	  int runEnd = Math.min(end, blocks.low + totals[offset + 1]);
+	  int value = min + offset;
+	  for (; index < runEnd; index++) {
+	    a[index] = value;
+	  }
+	  offset++;
+	}
+      }
+    }));
+  }
+
+  /**
+   * Returns the permutation which stably sorts "keys", finding the range of
+   * the keys first. "keys" is not modified.
+   */
+  static int[] argsort(int[] keys) {
+    if (keys.length == 0) {
+      return new int[0];
+    }
+    int[] bounds = bounds(keys, 0, keys.length);
+    if (!isCountable(bounds[0], bounds[1], keys.length)) {
+      long[] longKeys = new long[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+	longKeys[i] = keys[i];
+      }
+      return Sorts.argsort(longKeys);
+    }
+    return argsort(keys, bounds[0], bounds[1]);
+  }
+
+  /**
+   * Returns the permutation which stably sorts "keys", every one of which
+   * must be in [min, max]. "keys" is not modified.
+   */
+  static int[] argsort(int[] keys, int min, int max) {
+    int[] next = count(keys, 0, keys.length, min, max);
+    // Convert the counts into the index of the next key with each value.
+    int sum = 0;
+    for (int offset = 0; offset < next.length; offset++) {
+      int count = next[offset];
+      next[offset] = sum;
+      sum += count;
+    }
+    int[] perm = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      perm[next[keys[i] - min]++] = i;
+    }
+    return perm;
+  }
+
+  /**
+   * Returns the runs of equal values which sorting a[low..high) would
+   * produce, finding the range of the values first. "a" is not modified.
+   */
+  static RunLengths runs(int[] a, int low, int high) {
+    if (high == low) {
+      return new RunLengths(new int[0], new int[0], 0);
+    }
+    int[] bounds = bounds(a, low, high);
+    if (isCountable(bounds[0], bounds[1], high - low)) {
+      return runs(a, low, high, bounds[0], bounds[1]);
+    }
+
+    // Too many distinct values to count: sort a copy and scan it for runs.
+    int size = high - low;
+    int[] sorted = new int[size];
+    System.arraycopy(a, low, sorted, 0, size);
+    Sorts.radixSort(sorted);
+    int[] values = new int[size];
+    int[] counts = new int[size];
+    int numRuns = 0;
+    for (int i = 0; i < size; i++) {
+      if ((i == 0) || (sorted[i] != sorted[i - 1])) {
+	values[numRuns++] = sorted[i];
+      }
+      counts[numRuns - 1]++;
+    }
+    return new RunLengths(values, counts, numRuns);
+  }
+
+  /**
+   * Returns the runs of equal values which sorting a[low..high) would
+   * produce. Every value must be in [min, max]. "a" is not modified.
+   */
+  static RunLengths runs(int[] a, int low, int high, int min, int max) {
+    int[] counts = count(a, low, high, min, max);
+    int numRuns = 0;
+    for (int count : counts) {
+      if (count > 0) {
+	numRuns++;
+      }
+    }
+    int[] values = new int[numRuns];
+    int[] runCounts = new int[numRuns];
+    int run = 0;
+    for (int offset = 0; offset < counts.length; offset++) {
+      if (counts[offset] > 0) {
+	values[run] = min + offset;
+	runCounts[run++] = counts[offset];
+      }
+    }
+    return new RunLengths(values, runCounts, numRuns);
+  }
+
+  /**
+   * Returns the number of times each value in [min, max] occurs in
+   * a[low..high): counts[v] for the value min + v. Throws
+   * IllegalArgumentException if a value is outside the range.
+   */
+  private static int[] count(int[] a, int low, int high, int min, int max) {
+    int[] counts = new int[max - min + 1];
+    try {
+      for (int i = low; i < high; i++) {
+	// If a[i] is outside [min, max], a[i] - min is outside the counts,
+	// even when the subtraction overflows, so the array bounds check
+	// catches it without a test of our own.
+	counts[a[i] - min]++;
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      for (int i = low; i < high; i++) {
+	if ((a[i] < min) || (a[i] > max)) {
+	  throw new IllegalArgumentException("Value " + a[i] + " at index " + i
+					     + " is outside [" + min + ", " + max + "]");
+	}
+      }
+      throw e;
+    }
+    return counts;
+  }
+
+  /**
+   * Returns {min, max} of the values in a[low..high), which is not empty.
+   */
+  private static int[] bounds(int[] a, int low, int high) {
+    int min = a[low];
+    int max = a[low];
+    for (int i = low + 1; i < high; i++) {
+      min = Math.min(min, a[i]);
+      max = Math.max(max, a[i]);
+    }
+    return new int[] {min, max};
+  }
+
+  /**
+   * Returns true if a range of values from "min" to "max" is small enough
+   * to count, for an input of "size" elements.
+   */
+  private static boolean isCountable(int min, int max, int size) {
+    return ((long) max - min) < Math.max(size, MIN_RANGE);
+  }
+
+  /**
+   * Returns the largest index "i" with totals[i] <= "position", among the
+   * ascending "totals" (the last of any equal ones, so that values with a
+   * count of zero are skipped).
+   */
+  private static int lastAtMost(int[] totals, int position) {
+    int low = 0;
+    int high = totals.length - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (totals[middle] <= position) {
+	low = middle;
+      } else {
+	high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Divides the input into blocks, one per task.
+   */
+  private static final class Blocks {
+    final int low;
+    final int size;
+    final int count;
+
+    Blocks(int low, int size, int parallelism, int threshold) {
+      this.low = low;
+      this.size = size;
+      this.count = Math.max(1, Math.min(parallelism, size / threshold));
+    }
+
+    int start(int block) {
+      return low + (int) (((long) size * block) / count);
+    }
+
+    int end(int block) {
+      return start(block + 1);
+    }
+  }
+
+}
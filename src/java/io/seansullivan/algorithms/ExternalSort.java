@@ -0,0 +1,532 @@
+package io.seansullivan.algorithms;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * Sorts files which are too large to fit in memory, using an external
+ * merge sort. Two record formats are supported: fixed-width binary
+ * records, and newline-delimited lines of text.
+ *
+ * The sort has two phases:
+ *
+ * 1) Run formation: records are read until the memory budget is used up,
+ *    sorted in memory with Sorts.iterativeMergeSort(), and written to a
+ *    temporary "run" file. This repeats until the input is exhausted. If
+ *    the whole input fits in one run, it is written straight to the output.
+ *
+ * 2) Merging: up to "fanIn" runs at a time are merged through the loser
+ *    tree of a MergingIterator, each run read through its own buffer. If
+ *    there are more runs than "fanIn", groups of runs are merged into longer
+ *    runs until one final merge can write the output.
+ *
+ * The sort is stable: records which compare as equal are written in the
+ * order they were read.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public class ExternalSort {
+
+  public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+  public static final int DEFAULT_FAN_IN = 64;
+
+  // Smallest read or write buffer used for a run during merging.
+  private static final int MIN_BUFFER_SIZE = 8 * 1024;
+
+  // Estimated heap cost of a record beyond its data: the object header,
+  // the array length or String fields, and the reference to the record.
+  private static final int RECORD_OVERHEAD = 48;
+
+  private final long memoryBudget;
+  private final int fanIn;
+  private final File tempDir;
+
+  /**
+   * Creates an external sort with the default memory budget and fan-in,
+   * which keeps its temporary files in the default temporary directory.
+   */
+  public ExternalSort() {
+    this(DEFAULT_MEMORY_BUDGET, DEFAULT_FAN_IN, null);
+  }
+
+  /**
+   * @param memoryBudget approximate number of bytes of heap to use for
+   *    the records of one run, and for the buffers when merging.
+   * @param fanIn maximum number of runs merged at the same time.
+   * @param tempDir directory for the run files, or null for the default
+   *    temporary directory.
+   */
+  public ExternalSort(long memoryBudget, int fanIn, File tempDir) {
+    Preconditions.checkArgument(memoryBudget > 0);
+    Preconditions.checkArgument(fanIn >= 2);
+
+    this.memoryBudget = memoryBudget;
+    this.fanIn = fanIn;
+    this.tempDir = tempDir;
+  }
+
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  public int getFanIn() {
+    return fanIn;
+  }
+
+  /**
+   * Sorts the fixed-width binary records of the "input" file into the
+   * "output" file, ordering them by the "keyLength" bytes starting at
+   * "keyOffset" within each record, compared as unsigned bytes.
+   *
+   * @throws IOException if the files can not be read or written, or if the
+   *    input size is not a multiple of the record size.
+   */
+  public void sortRecords(File input, File output, int recordSize,
+			  int keyOffset, int keyLength) throws IOException {
+    Preconditions.checkArgument(keyOffset >= 0);
+    Preconditions.checkArgument(keyLength > 0);
+    Preconditions.checkArgument(keyOffset + keyLength <= recordSize);
+
+    sortRecords(input, output, recordSize, new KeyComparator(keyOffset, keyLength));
+  }
+
+  /**
+   * Sorts the fixed-width binary records of the "input" file into the
+   * "output" file, in the order defined by the passed comparator. Each
+   * record is passed to the comparator as a byte array of "recordSize".
+   *
+   * @throws IOException if the files can not be read or written, or if the
+   *    input size is not a multiple of the record size.
+   */
+  public void sortRecords(File input, File output, int recordSize,
+			  Comparator<byte[]> comparator) throws IOException {
+    Preconditions.checkArgument(recordSize > 0);
+    Preconditions.checkNotNull(comparator);
+
+    sort(input, output, new BinaryFormat(recordSize, bufferSize(recordSize)),
+	 comparator);
+  }
+
+  /**
+   * Sorts the lines of the UTF-8 text file "input" into "output", in the
+   * natural order of Strings.
+   *
+   * @throws IOException if the files can not be read or written.
+   */
+  public void sortLines(File input, File output) throws IOException {
+    sortLines(input, output, StandardCharsets.UTF_8, null);
+  }
+
+  /**
+   * Sorts the lines of the text file "input" into "output", in the order
+   * defined by the passed comparator. Every output line ends with '\n'.
+   *
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @throws IOException if the files can not be read or written.
+   */
+  public void sortLines(File input, File output, Charset charset,
+			Comparator<String> comparator) throws IOException {
+    Preconditions.checkNotNull(charset);
+
+    if (comparator == null) {
+      comparator = new Comparator<String>() {
+	public int compare(String s1, String s2) {
+	  return s1.compareTo(s2);
+	}
+      };
+    }
+    sort(input, output, new TextFormat(charset, bufferSize(1)), comparator);
+  }
+
+  /**
+   * Size of each run's buffer while merging, so that "fanIn" input buffers
+   * plus one output buffer fit in the memory budget. Rounded down to a
+   * whole number of records.
+   */
+  private int bufferSize(int recordSize) {
+    long size = Math.max(MIN_BUFFER_SIZE, memoryBudget / (fanIn + 1));
+    size = Math.min(size, Integer.MAX_VALUE / 2);
+    return (int) Math.max(recordSize, size - (size % recordSize));
+  }
+
+  private <T> void sort(File input, File output, Format<T> format,
+			Comparator<? super T> comparator) throws IOException {
+    Preconditions.checkNotNull(input);
+    Preconditions.checkNotNull(output);
+
+    List<File> runs = new ArrayList<File>();
+    try {
+      if (createRuns(input, output, format, comparator, runs)) {
+	return;  // The input fit in one run, which is already the output.
+      }
+      // Merge groups of runs until one merge can produce the output.
+      while (runs.size() > fanIn) {
+	List<File> merged = new ArrayList<File>();
+	for (int start = 0; start < runs.size(); start += fanIn) {
+	  List<File> group = runs.subList(start, Math.min(start + fanIn, runs.size()));
+	  if (group.size() == 1) {
+	    merged.add(group.get(0));
+	  } else {
+	    File run = createTempFile();
+	    merged.add(run);
+	    merge(group, run, format, comparator);
+	    deleteAll(group);
+	  }
+	}
+	runs = merged;
+      }
+      merge(runs, output, format, comparator);
+    } finally {
+      deleteAll(runs);
+    }
+  }
+
+  /**
+   * Reads the input in memory-sized chunks, sorts each chunk and writes
+   * it to a new run file, adding the run files to "runs". Returns true
+   * if the whole input fit in one chunk, in which case it was written
+   * directly to "output" instead.
+   */
+  private <T> boolean createRuns(File input, File output, Format<T> format,
+				 Comparator<? super T> comparator,
+				 List<File> runs) throws IOException {
+    List<T> records = new ArrayList<T>();
+    Object[] buffer = new Object[0];
+    RecordReader<T> reader = format.openReader(input);
+    try {
+      T record = reader.read();
+      while (record != null) {
+	long used = 0;
+	records.clear();
+	while ((record != null) && (used < memoryBudget)) {
+	  records.add(record);
+	  used += format.sizeOf(record) + RECORD_OVERHEAD;
+	  record = reader.read();
+	}
+	// Reuse the merge sort working array from run to run.
+	if (buffer.length < records.size()) {
+	  buffer = new Object[records.size()];
+	}
+	Sorts.iterativeMergeSort(records, comparator, buffer);
+	if ((record == null) && runs.isEmpty()) {
+	  writeAll(records, output, format);
+	  return true;
+	}
+	File run = createTempFile();
+	runs.add(run);
+	writeAll(records, run, format);
+      }
+    } finally {
+      reader.close();
+    }
+    if (runs.isEmpty()) {
+      writeAll(records, output, format);  // Empty input.
+      return true;
+    }
+    return false;
+  }
+
+  private <T> void writeAll(List<T> records, File file, Format<T> format)
+      throws IOException {
+    RecordWriter<T> writer = format.openWriter(file);
+    try {
+      for (T record : records) {
+	writer.write(record);
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Merges the sorted "runs" into the file "output", through the loser tree
+   * of a MergingIterator. It takes ties from the earlier run in "runs",
+   * which keeps the merge stable.
+   */
+  private <T> void merge(List<File> runs, File output, Format<T> format,
+			 Comparator<? super T> comparator) throws IOException {
+    List<RecordReader<T>> readers = new ArrayList<RecordReader<T>>();
+    RecordWriter<T> writer = null;
+    try {
+      List<RunIterator<T>> iterators = new ArrayList<RunIterator<T>>();
+      for (File run : runs) {
+	RecordReader<T> reader = format.openReader(run);
+	readers.add(reader);
+	iterators.add(new RunIterator<T>(reader));
+      }
+      writer = format.openWriter(output);
+      MergingIterator<T> merged = Sorts.merge(iterators, comparator);
+      while (merged.hasNext()) {
+	writer.write(merged.next());
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();  // From a RunIterator.
+    } finally {
+      closeAll(readers);
+      if (writer != null) {
+	writer.close();
+      }
+    }
+  }
+
+  private File createTempFile() throws IOException {
+    File file = File.createTempFile("sort-run-", ".tmp", tempDir);
+    file.deleteOnExit();
+    return file;
+  }
+
+  private static void deleteAll(List<File> files) {
+    for (File file : files) {
+      file.delete();
+    }
+  }
+
+  private static void closeAll(List<? extends Closeable> closeables) throws IOException {
+    IOException first = null;
+    for (Closeable closeable : closeables) {
+      try {
+	closeable.close();
+      } catch (IOException e) {
+	if (first == null) {
+	  first = e;
+	}
+      }
+    }
+    if (first != null) {
+      throw first;
+    }
+  }
+
+  /**
+   * Iterates over the records of a run, for merging. Reads one record
+   * ahead, so that hasNext() knows whether the run is exhausted. Read
+   * errors are thrown as UncheckedIOException, since Iterator methods
+   * can not throw IOException.
+   */
+  private static final class RunIterator<T> implements Iterator<T> {
+    private final RecordReader<T> reader;
+    private T next;
+
+    RunIterator(RecordReader<T> reader) throws IOException {
+      this.reader = reader;
+      this.next = reader.read();
+    }
+
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    public T next() {
+      if (next == null) {
+	throw new NoSuchElementException();
+      }
+      T result = next;
+      try {
+	next = reader.read();
+      } catch (IOException e) {
+	throw new UncheckedIOException(e);
+      }
+      return result;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Reads records from, and writes records to, files of one format.
+   */
+  private interface Format<T> {
+    RecordReader<T> openReader(File file) throws IOException;
+    RecordWriter<T> openWriter(File file) throws IOException;
+    // Number of bytes of record data, used to fill the memory budget.
+    long sizeOf(T record);
+  }
+
+  private interface RecordReader<T> extends Closeable {
+    // Returns the next record, or null at the end of the file.
+    T read() throws IOException;
+  }
+
+  private interface RecordWriter<T> extends Closeable {
+    void write(T record) throws IOException;
+  }
+
+  /**
+   * Fixed-width binary records, read and written through a FileChannel
+   * and a direct ByteBuffer.
+   */
+  private static final class BinaryFormat implements Format<byte[]> {
+    private final int recordSize;
+    private final int bufferSize;
+
+    BinaryFormat(int recordSize, int bufferSize) {
+      this.recordSize = recordSize;
+      this.bufferSize = bufferSize;
+    }
+
+    public RecordReader<byte[]> openReader(File file) throws IOException {
+      final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+      buffer.flip();  // Start empty.
+      return new RecordReader<byte[]>() {
+	public byte[] read() throws IOException {
+	  if (buffer.remaining() < recordSize) {
+	    buffer.compact();
+	    while ((buffer.position() < recordSize) && (channel.read(buffer) >= 0)) {
+	      // Keep reading until a whole record is buffered, or end of file.
+	    }
+	    buffer.flip();
+	    if (!buffer.hasRemaining()) {
+	      return null;
+	    } else if (buffer.remaining() < recordSize) {
+	      throw new IOException("File size is not a multiple of the record size "
+				    + recordSize);
+	    }
+	  }
+	  byte[] record = new byte[recordSize];
+	  buffer.get(record);
+	  return record;
+	}
+
+	public void close() throws IOException {
+	  channel.close();
+	}
+      };
+    }
+
+    public RecordWriter<byte[]> openWriter(File file) throws IOException {
+      final FileChannel channel = FileChannel.open(file.toPath(),
+						   StandardOpenOption.WRITE,
+						   StandardOpenOption.CREATE,
+						   StandardOpenOption.TRUNCATE_EXISTING);
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+      return new RecordWriter<byte[]>() {
+	public void write(byte[] record) throws IOException {
+	  if (buffer.remaining() < record.length) {
+	    flush();
+	  }
+	  buffer.put(record);
+	}
+
+	private void flush() throws IOException {
+	  buffer.flip();
+	  while (buffer.hasRemaining()) {
+	    channel.write(buffer);
+	  }
+	  buffer.clear();
+	}
+
+	public void close() throws IOException {
+	  try {
+	    flush();
+	  } finally {
+	    channel.close();
+	  }
+	}
+      };
+    }
+
+    public long sizeOf(byte[] record) {
+      return record.length;
+    }
+  }
+
+  /**
+   * Newline-delimited lines of text, read and written through buffered
+   * readers and writers over FileChannels.
+   */
+  private static final class TextFormat implements Format<String> {
+    private final Charset charset;
+    private final int bufferSize;
+
+    TextFormat(Charset charset, int bufferSize) {
+      this.charset = charset;
+      this.bufferSize = bufferSize;
+    }
+
+    public RecordReader<String> openReader(File file) throws IOException {
+      FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      final BufferedReader reader = new BufferedReader(
+	  Channels.newReader(channel, charset.newDecoder(), -1), bufferSize);
+      return new RecordReader<String>() {
+	public String read() throws IOException {
+	  return reader.readLine();
+	}
+
+	public void close() throws IOException {
+	  reader.close();
+	}
+      };
+    }
+
+    public RecordWriter<String> openWriter(File file) throws IOException {
+      FileChannel channel = FileChannel.open(file.toPath(),
+					     StandardOpenOption.WRITE,
+					     StandardOpenOption.CREATE,
+					     StandardOpenOption.TRUNCATE_EXISTING);
+      final BufferedWriter writer = new BufferedWriter(
+	  Channels.newWriter(channel, charset.newEncoder(), -1), bufferSize);
+      return new RecordWriter<String>() {
+	public void write(String line) throws IOException {
+	  writer.write(line);
+	  writer.write('\n');
+	}
+
+	public void close() throws IOException {
+	  writer.close();
+	}
+      };
+    }
+
+    public long sizeOf(String line) {
+      return 2L * line.length();
+    }
+  }
+
+  /**
+   * Orders byte array records by a key at a fixed offset, comparing the
+   * key bytes as unsigned values.
+   */
+  private static final class KeyComparator implements Comparator<byte[]> {
+    private final int keyOffset;
+    private final int keyEnd;
+
+    KeyComparator(int keyOffset, int keyLength) {
+      this.keyOffset = keyOffset;
+      this.keyEnd = keyOffset + keyLength;
+    }
+
+    public int compare(byte[] r1, byte[] r2) {
+      for (int i = keyOffset; i < keyEnd; i++) {
+	int cmp = (r1[i] & 0xff) - (r2[i] & 0xff);
+	if (cmp != 0) {
+	  return cmp;
+	}
+      }
+      return 0;
+    }
+  }
+
+}
@@ -0,0 +1,314 @@
+package io.seansullivan.algorithms;
+
+import java.util.Comparator;
+
+
+/**
+ * Heap sort on a d-ary heap, using Floyd's bottom-up sift-down. The public
+ * entry points are the heapSort() methods in Sorts.
+ *
+ * The textbook sift-down compares the sifted value with the largest child
+ * at every level, although the value taken from the end of the heap
+ * nearly always belongs back near the bottom. The bottom-up version skips
+ * those comparisons: it walks the "hole" from the top of the heap down to
+ * a leaf, moving the largest child up at each level, and then sifts the
+ * value up from the leaf, which usually takes only a step or two. This
+ * cuts the comparisons of a binary heap sort from about 2n log n to about
+ * n log n.
+ *
+ * A heap with 4 or 8 children per node is half or a third as deep as a
+ * binary heap, so each sift-down touches fewer cache lines, and the
+ * children of a node are next to each other in memory. Finding the
+ * largest child costs more comparisons per level though, so wider heaps
+ * pay off for primitives, where a comparison is cheap and the memory
+ * traffic dominates, rather than for objects compared by a Comparator.
+ *
+ * The arity must be a power of two, so that the index arithmetic is
+ * shifts: heap index "i" has its children at (i << shift) + 1 up to
+ * (i << shift) + arity, and its parent at (i - 1) >> shift.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+final class HeapSort {
+
+  private HeapSort() {}
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) on a heap with
+   * "arity" children per node, rooted at a[low].
+   */
+  static void sort(Object[] a, int low, int high, int arity, Comparator<Object> c) {
+    int size = high - low;
+    int shift = Integer.numberOfTrailingZeros(arity);
+    // First, create the heap by sifting down every parent, from the bottom
+    // up, so that the sub-heaps below a parent are already heaps.
+    for (int i = (size - 2) >> shift; i >= 0; i--) {
+      siftDown(a, low, i, a[low + i], size, shift, c);
+    }
+    // Iteratively move the max element to the end of the heap, and sift
+    // the element it displaces down from the top.
+    for (int end = size - 1; end > 0; end--) {
+      Object value = a[low + end];
+      a[low + end] = a[low];
+      siftDown(a, low, 0, value, end, shift, c);
+    }
+  }
+
+  /**
+   * Sifts "value" down from index "hole" of the heap of "size" elements
+   * rooted at a[offset], whose slot it may overwrite. First walks the hole
+   * down to a leaf, moving the largest child up into it at each level,
+   * then sifts "value" back up from the leaf, but no higher than where the
+   * hole started.
+   */
+  private static void siftDown(Object[] a, int offset, int hole, Object value, int size,
+			       int shift, Comparator<Object> c) {
+    int top = hole;
+    int arity = 1 << shift;
+    int lastParent = (size - 2) >> shift;
+    int moves = 1;
+    while (hole <= lastParent) {
+      int child = (hole << shift) + 1;
+      int end = Math.min(child + arity, size);
+      int largest = child;
+      for (int k = child + 1; k < end; k++) {
+	if (c.compare(a[offset + k], a[offset + largest]) > 0) {
+	  largest = k;
+	}
+      }
+      a[offset + hole] = a[offset + largest];
+      hole = largest;
+      moves++;
+    }
+    while (hole > top) {
+      int parent = (hole - 1) >> shift;
+      if (c.compare(value, a[offset + parent]) <= 0) {
+	break;
+      }
+      a[offset + hole] = a[offset + parent];
+      hole = parent;
+      moves++;
+    }
+    a[offset + hole] = value;
+    if (SortProbe.ENABLED) {
+      SortProbe.moved(moves);
+    }
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) on a heap with
+   * "arity" children per node, rooted at a[low].
+   */
+  static void sort(int[] a, int low, int high, int arity) {
+    int size = high - low;
+    int shift = Integer.numberOfTrailingZeros(arity);
+    for (int i = (size - 2) >> shift; i >= 0; i--) {
+      siftDown(a, low, i, a[low + i], size, shift);
+    }
+    for (int end = size - 1; end > 0; end--) {
+      int value = a[low + end];
+      a[low + end] = a[low];
+      siftDown(a, low, 0, value, end, shift);
+    }
+  }
+
+  /**
+   * Sifts "value" down from index "hole" of the heap of "size" elements
+   * rooted at a[offset], as for Object arrays.
+   */
+  private static void siftDown(int[] a, int offset, int hole, int value, int size,
+			       int shift) {
+    int top = hole;
+    int arity = 1 << shift;
+    int lastParent = (size - 2) >> shift;
+    while (hole <= lastParent) {
+      int child = (hole << shift) + 1;
+      int end = Math.min(child + arity, size);
+      int largest = child;
+      int max = a[offset + child];
+      for (int k = child + 1; k < end; k++) {
+	int candidate = a[offset + k];
+	if (candidate > max) {
+	  largest = k;
+	  max = candidate;
+	}
+      }
+      a[offset + hole] = max;
+      hole = largest;
+    }
+    while (hole > top) {
+      int parent = (hole - 1) >> shift;
+      int parentValue = a[offset + parent];
+      if (value <= parentValue) {
+	break;
+      }
+      a[offset + hole] = parentValue;
+      hole = parent;
+    }
+    a[offset + hole] = value;
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) on a heap with
+   * "arity" children per node, rooted at a[low].
+   */
+  static void sort(long[] a, int low, int high, int arity) {
+    int size = high - low;
+    int shift = Integer.numberOfTrailingZeros(arity);
+    for (int i = (size - 2) >> shift; i >= 0; i--) {
+      siftDown(a, low, i, a[low + i], size, shift);
+    }
+    for (int end = size - 1; end > 0; end--) {
+      long value = a[low + end];
+      a[low + end] = a[low];
+      siftDown(a, low, 0, value, end, shift);
+    }
+  }
+
+  /**
+   * Sifts "value" down from index "hole" of the heap of "size" elements
+   * rooted at a[offset], as for Object arrays.
+   */
+  private static void siftDown(long[] a, int offset, int hole, long value, int size,
+			       int shift) {
+    int top = hole;
+    int arity = 1 << shift;
+    int lastParent = (size - 2) >> shift;
+    while (hole <= lastParent) {
+      int child = (hole << shift) + 1;
+      int end = Math.min(child + arity, size);
+      int largest = child;
+      long max = a[offset + child];
+      for (int k = child + 1; k < end; k++) {
+	long candidate = a[offset + k];
+	if (candidate > max) {
+	  largest = k;
+	  max = candidate;
+	}
+      }
+      a[offset + hole] = max;
+      hole = largest;
+    }
+    while (hole > top) {
+      int parent = (hole - 1) >> shift;
+      long parentValue = a[offset + parent];
+      if (value <= parentValue) {
+	break;
+      }
+      a[offset + hole] = parentValue;
+      hole = parent;
+    }
+    a[offset + hole] = value;
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) on a heap with
+   * "arity" children per node, rooted at a[low].
+   * Ordered as by Float.compare().
+   */
+  static void sort(float[] a, int low, int high, int arity) {
+    int size = high - low;
+    int shift = Integer.numberOfTrailingZeros(arity);
+    for (int i = (size - 2) >> shift; i >= 0; i--) {
+      siftDown(a, low, i, a[low + i], size, shift);
+    }
+    for (int end = size - 1; end > 0; end--) {
+      float value = a[low + end];
+      a[low + end] = a[low];
+      siftDown(a, low, 0, value, end, shift);
+    }
+  }
+
+  /**
+   * Sifts "value" down from index "hole" of the heap of "size" elements
+   * rooted at a[offset], as for Object arrays.
+   */
+  private static void siftDown(float[] a, int offset, int hole, float value, int size,
+			       int shift) {
+    int top = hole;
+    int arity = 1 << shift;
+    int lastParent = (size - 2) >> shift;
+    while (hole <= lastParent) {
+      int child = (hole << shift) + 1;
+      int end = Math.min(child + arity, size);
+      int largest = child;
+      float max = a[offset + child];
+      for (int k = child + 1; k < end; k++) {
+	float candidate = a[offset + k];
+	if (Float.compare(candidate, max) > 0) {
+	  largest = k;
+	  max = candidate;
+	}
+      }
+      a[offset + hole] = max;
+      hole = largest;
+    }
+    while (hole > top) {
+      int parent = (hole - 1) >> shift;
+      float parentValue = a[offset + parent];
+      if (Float.compare(value, parentValue) <= 0) {
+	break;
+      }
+      a[offset + hole] = parentValue;
+      hole = parent;
+    }
+    a[offset + hole] = value;
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) on a heap with
+   * "arity" children per node, rooted at a[low].
+   * Ordered as by Double.compare().
+   */
+  static void sort(double[] a, int low, int high, int arity) {
+    int size = high - low;
+    int shift = Integer.numberOfTrailingZeros(arity);
+    for (int i = (size - 2) >> shift; i >= 0; i--) {
+      siftDown(a, low, i, a[low + i], size, shift);
+    }
+    for (int end = size - 1; end > 0; end--) {
+      double value = a[low + end];
+      a[low + end] = a[low];
+      siftDown(a, low, 0, value, end, shift);
+    }
+  }
+
+  /**
+   * Sifts "value" down from index "hole" of the heap of "size" elements
+   * rooted at a[offset], as for Object arrays.
+   */
+  private static void siftDown(double[] a, int offset, int hole, double value, int size,
+			       int shift) {
+    int top = hole;
+    int arity = 1 << shift;
+    int lastParent = (size - 2) >> shift;
+    while (hole <= lastParent) {
+      int child = (hole << shift) + 1;
+      int end = Math.min(child + arity, size);
+      int largest = child;
+      double max = a[offset + child];
+      for (int k = child + 1; k < end; k++) {
+	double candidate = a[offset + k];
+	if (Double.compare(candidate, max) > 0) {
+	  largest = k;
+	  max = candidate;
+	}
+      }
+      a[offset + hole] = max;
+      hole = largest;
+    }
+    while (hole > top) {
+      int parent = (hole - 1) >> shift;
+      double parentValue = a[offset + parent];
+      if (Double.compare(value, parentValue) <= 0) {
+	break;
+      }
+      a[offset + hole] = parentValue;
+      hole = parent;
+    }
+    a[offset + hole] = value;
+  }
+
+}
@@ -0,0 +1,147 @@
+package io.seansullivan.algorithms;
+
+
+/**
+ * Sorts by primitive keys extracted from the elements once, rather than
+ * calling a comparator (and its getters) O(n log n) times. The public
+ * entry points are the argsort() methods in Sorts, and its
+ * sortByLongKey() and sortByDoubleKey() methods.
+ *
+ * The keys are sorted together with the index of their element, giving
+ * the permutation which sorts the elements. When the range of the keys
+ * leaves enough spare bits, each key is packed with its index into a
+ * single long: (key - min) in the high bits and the index in the low
+ * bits. Sorting the packed longs with radix sort then needs no second
+ * array, and since the indexes are distinct the sort is stable. Otherwise
+ * the keys are radix sorted directly, moving a parallel int[] of indexes
+ * along with them.
+ *
+ * Either way the sort works only on primitive arrays, reading them
+ * sequentially, so it is far friendlier to the cache than comparing
+ * objects scattered around the heap.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+final class KeySort {
+
+  private KeySort() {}
+
+  private static final int BITS = 8;
+  private static final int RADIX = 1 << BITS;
+  private static final int MASK = RADIX - 1;
+  private static final int PASSES = Long.SIZE / BITS;
+
+  /**
+   * Returns the permutation which stably sorts "keys": the index of the
+   * smallest key, then of the next smallest, and so on. "keys" is not
+   * modified.
+   *
+   * @param bits Digit size for sorting packed keys.
+   */
+  static int[] argsort(long[] keys, int bits) {
+    int size = keys.length;
+    int[] perm = new int[size];
+    if (size < 2) {
+      for (int i = 0; i < size; i++) {
+	perm[i] = i;
+      }
+      return perm;
+    }
+
+    long min = keys[0];
+    long max = keys[0];
+    for (long key : keys) {
+      min = Math.min(min, key);
+      max = Math.max(max, key);
+    }
+
+    // Number of bits to hold any index, and the key range they leave.
+    int indexBits = Integer.SIZE - Integer.numberOfLeadingZeros(size - 1);
+    long range = max - min;  // Negative if it overflows, so too large.
+    if ((range >= 0) && (range < (1L << (Long.SIZE - 1 - indexBits)))) {
+      long[] packed = new long[size];
+      for (int i = 0; i < size; i++) {
+	packed[i] = ((keys[i] - min) << indexBits) | i;
+      }
+      // Radix sort skips the passes over the unused high bits.
+      RadixSort.sort(packed, 0, size, new long[size], bits);
+      long indexMask = (1L << indexBits) - 1;
+      for (int i = 0; i < size; i++) {
+	perm[i] = (int) (packed[i] & indexMask);
+      }
+      return perm;
+    }
+
+    for (int i = 0; i < size; i++) {
+      perm[i] = i;
+    }
+    return sortWithPermutation(keys.clone(), perm);
+  }
+
+  /**
+   * LSD radix sorts "keys", moving the elements of "perm" along with
+   * them. Returns the sorted permutation, which is either "perm" or a new
+   * array. The contents of "keys" are unspecified on return.
+   */
+  private static int[] sortWithPermutation(long[] keys, int[] perm) {
+    int size = keys.length;
+
+    // Count the digits for every pass in one read of the keys.
+    int[] counts = new int[PASSES * RADIX];
+    for (long key : keys) {
+      long flipped = key ^ Long.MIN_VALUE;
+      for (int pass = 0; pass < PASSES; pass++) {
+	counts[(pass * RADIX) + (int) ((flipped >>> (pass * BITS)) & MASK)]++;
+      }
+    }
+
+    long[] srcKeys = keys;
+    int[] srcPerm = perm;
+    long[] dstKeys = new long[size];
+    int[] dstPerm = new int[size];
+    for (int pass = 0; pass < PASSES; pass++) {
+      int shift = pass * BITS;
+      int offset = pass * RADIX;
+      int firstDigit = (int) (((srcKeys[0] ^ Long.MIN_VALUE) >>> shift) & MASK);
+      if (counts[offset + firstDigit] == size) {
+	continue;  // Every key has the same digit.
+      }
+      int sum = 0;
+      for (int digit = offset; digit < offset + RADIX; digit++) {
+	int count = counts[digit];
+	counts[digit] = sum;
+	sum += count;
+      }
+      for (int i = 0; i < size; i++) {
+	long key = srcKeys[i];
+	int digit = (int) (((key ^ Long.MIN_VALUE) >>> shift) & MASK);
+	int index = counts[offset + digit]++;
+	dstKeys[index] = key;
+	dstPerm[index] = srcPerm[i];
+      }
+      // Swap the source and destination arrays for the next pass.
+      long[] tempKeys = srcKeys;
+      srcKeys = dstKeys;
+      dstKeys = tempKeys;
+      int[] tempPerm = srcPerm;
+      srcPerm = dstPerm;
+      dstPerm = tempPerm;
+    }
+    return srcPerm;
+  }
+
+  /**
+   * Returns the bits of "d" transformed so that comparing them as signed
+   * longs orders the doubles as Double.compare() does. The bits of a
+   * negative double, other than the sign bit, are flipped, which reverses
+   * their order. Double.doubleToLongBits() collapses every NaN into the
+   * single NaN which sorts after positive infinity.
+   */
+  static long sortableBits(double d) {
+    long bits = Double.doubleToLongBits(d);
+    return bits ^ ((bits >> (Long.SIZE - 1)) & Long.MAX_VALUE);
+  }
+
+}
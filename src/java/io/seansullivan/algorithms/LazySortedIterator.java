@@ -0,0 +1,319 @@
+package io.seansullivan.algorithms;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * Returns the elements of a collection in sorted order, sorting only as
+ * much as it must to find the next element. Created by Sorts.lazySorted().
+ *
+ * This is incremental quick sort (Paredes and Navarro). The elements are
+ * copied into an array, and a stack holds the "boundaries" found by the
+ * partitions so far: every element before a boundary is no greater than
+ * every element from it on. To find the next element, the range from it
+ * to the nearest boundary is partitioned around a pivot, pushing the new
+ * boundary, until the range is small enough to insertion sort. Later
+ * partitions only touch the front of the array, and the parts behind the
+ * boundaries are left unsorted until the caller gets that far.
+ *
+ * The first partition takes O(n) time, and each one after it about half
+ * as long as the one before, so returning the first "k" elements takes
+ * O(n + k log k) expected time: linear if only a page of the results is
+ * ever read, and no worse than quick sort if all of them are.
+ *
+ * Partitioning is three-way, so a run of elements equal to the pivot is
+ * finished in one pass; this keeps inputs with few distinct values from
+ * being partitioned over and over. The pivot is the median of three
+ * random elements, so no input order is consistently bad. The order is
+ * not stable.
+ *
+ * @param T generic type of element.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public class LazySortedIterator<T> implements Iterator<T> {
+
+  /**
+   * Size of a range below which it is insertion sorted, rather than
+   * partitioned.
+   */
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  private final Object[] a;
+  private final Comparator<? super T> comparator;
+  private final Comparator<Object> c;
+
+  // The next element to return is a[index]; the last is a[end - 1].
+  private int index;
+  private final int end;
+  // a[index..sortedEnd) are in their final, sorted, positions.
+  private int sortedEnd;
+  // Boundaries, ascending from the top of the stack (stack[top]) to "end"
+  // at the bottom (stack[0]). Entries at or below "index" are stale, and
+  // are popped when next found.
+  private int[] stack;
+  private int top;
+
+  /**
+   * @param elements The elements to return in sorted order.
+   * @param comparator Defines the order, or null for the natural ordering.
+   */
+  LazySortedIterator(Object[] elements, Comparator<? super T> comparator) {
+    this(elements, 0, elements.length, comparator, new int[] {elements.length}, 0);
+  }
+
+  /**
+   * Returns the elements of a[index..end). "stack" has "end" at the
+   * bottom, and boundaries within the range above it.
+   */
+  private LazySortedIterator(Object[] a, int index, int end,
+			     Comparator<? super T> comparator, int[] stack, int top) {
+    this.a = a;
+    this.index = index;
+    this.end = end;
+    this.sortedEnd = index;
+    this.comparator = comparator;
+    this.c = Sorts.order(comparator);
+    this.stack = stack;
+    this.top = top;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return index < end;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    if (index == sortedEnd) {
+      sortNext();
+    }
+    return (T) a[index++];
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Sorts at least the element at "index", partitioning the range up to
+   * the nearest boundary until the front of it is sorted.
+   */
+  private void sortNext() {
+    while (true) {
+      int bound = nearestBoundary();
+      if (bound - index <= INSERTION_SORT_THRESHOLD) {
+	insertionSort(index, bound);
+	sortedEnd = bound;
+	return;
+      }
+      partition(bound);
+      if (sortedEnd > index) {
+	return;
+      }
+    }
+  }
+
+  /**
+   * Returns the boundary nearest after "index", popping stale ones.
+   */
+  private int nearestBoundary() {
+    while (stack[top] <= index) {
+      top--;
+    }
+    return stack[top];
+  }
+
+  /**
+   * Partitions a[index..bound) three ways around a pivot, pushing the new
+   * boundaries. If nothing is less than the pivot, the elements equal to
+   * it are sorted, at the front of the range.
+   */
+  private void partition(int bound) {
+    Object pivot = pivot(index, bound);
+    // a[index..less) < pivot, a[less..i) == pivot, a[greater..bound) > pivot.
+    int less = index;
+    int greater = bound;
+    int i = index;
+    while (i < greater) {
+      int cmp = c.compare(a[i], pivot);
+      if (cmp < 0) {
+	swap(less++, i++);
+      } else if (cmp > 0) {
+	swap(i, --greater);
+      } else {
+	i++;
+      }
+    }
+    if (greater < bound) {
+      push(greater);
+    }
+    if (less > index) {
+      push(less);
+    } else {
+      sortedEnd = greater;
+    }
+  }
+
+  /**
+   * Returns the median of three random elements of a[low..high).
+   */
+  private Object pivot(int low, int high) {
+    // Not a field: the halves of a split may run on other threads.
+    Random rand = ThreadLocalRandom.current();
+    Object x = a[low + rand.nextInt(high - low)];
+    Object y = a[low + rand.nextInt(high - low)];
+    Object z = a[low + rand.nextInt(high - low)];
+    if (c.compare(x, y) > 0) {
+      Object temp = x;
+      x = y;
+      y = temp;
+    }
+    // Now x <= y; the median is y, unless z is less than it.
+    if (c.compare(y, z) <= 0) {
+      return y;
+    }
+    return (c.compare(x, z) > 0) ? x : z;
+  }
+
+  private void push(int boundary) {
+    if (++top == stack.length) {
+      stack = Arrays.copyOf(stack, 2 * stack.length);
+    }
+    stack[top] = boundary;
+  }
+
+  private void swap(int i, int j) {
+    Object temp = a[i];
+    a[i] = a[j];
+    a[j] = temp;
+  }
+
+  private void insertionSort(int low, int high) {
+    for (int i = low + 1; i < high; i++) {
+      Object value = a[i];
+      int j = i;
+      while ((j > low) && c.compare(a[j - 1], value) > 0) {
+	a[j] = a[j - 1];
+	j--;
+      }
+      a[j] = value;
+    }
+  }
+
+  /**
+   * Splits off the elements before a boundary as a new iterator, which
+   * returns them in order, and moves this iterator on to the boundary.
+   * Returns null if the remaining elements are too few to split.
+   */
+  private LazySortedIterator<T> splitPrefix() {
+    if (end - index <= INSERTION_SORT_THRESHOLD) {
+      return null;
+    }
+    int split = splitPoint();
+    // The boundaries before the split belong to the prefix, with the
+    // split at the bottom of its stack.
+    int prefixTop = 0;
+    int[] prefixStack = new int[top + 2];
+    prefixStack[0] = split;
+    for (int k = 0; k <= top; k++) {
+      if ((stack[k] > index) && (stack[k] < split)) {
+	prefixStack[++prefixTop] = stack[k];
+      }
+    }
+    LazySortedIterator<T> prefix = new LazySortedIterator<T>(a, index, split, comparator,
+							      prefixStack, prefixTop);
+    prefix.sortedEnd = Math.min(sortedEnd, split);
+    index = split;
+    sortedEnd = Math.max(sortedEnd, split);
+    return prefix;
+  }
+
+  /**
+   * Returns a position strictly between "index" and "end" which may be
+   * split at: one in the sorted run at the front, or the boundary nearest
+   * the middle, partitioning the remaining elements once if there is no
+   * boundary yet.
+   */
+  private int splitPoint() {
+    while (true) {
+      if (sortedEnd - index >= 2) {
+	return (index + sortedEnd) >>> 1;
+      }
+      int middle = (index + end) >>> 1;
+      int best = end;
+      for (int k = 0; k <= top; k++) {
+	int boundary = stack[k];
+	if ((boundary > index) && (boundary < end)
+	    && (Math.abs(boundary - middle) < Math.abs(best - middle))) {
+	  best = boundary;
+	}
+      }
+      if (best < end) {
+	return best;
+      }
+      partition(nearestBoundary());
+    }
+  }
+
+  /**
+   * Returns a Spliterator over the remaining elements, for use with
+   * streams. It reports the SORTED characteristic with this iterator's
+   * comparator, and is SIZED. Splitting hands the elements before a
+   * partition boundary to a new Spliterator, so both halves can be sorted
+   * lazily, in parallel, on disjoint parts of the array. This iterator
+   * must not be used directly once the Spliterator is in use.
+   */
+  public Spliterator<T> spliterator() {
+    return new Spliterator<T>() {
+      @Override
+      public boolean tryAdvance(Consumer<? super T> action) {
+	Preconditions.checkNotNull(action);
+	if (!hasNext()) {
+	  return false;
+	}
+	action.accept(next());
+	return true;
+      }
+
+      @Override
+      public Spliterator<T> trySplit() {
+	LazySortedIterator<T> prefix = splitPrefix();
+	return (prefix == null) ? null : prefix.spliterator();
+      }
+
+      @Override
+      public long estimateSize() {
+	return end - index;
+      }
+
+      @Override
+      public int characteristics() {
+	return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.SIZED
+	    | Spliterator.SUBSIZED;
+      }
+
+      @Override
+      public Comparator<? super T> getComparator() {
+	return comparator;  // Null for the natural ordering.
+      }
+    };
+  }
+
+}
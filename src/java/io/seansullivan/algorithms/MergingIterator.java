@@ -0,0 +1,202 @@
+package io.seansullivan.algorithms;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * Lazily merges several sorted sources into one sorted sequence. Each call
+ * to next() pulls at most one element from one source, so the sources may
+ * be arbitrarily long (or infinite), and only O(k) memory is used for "k"
+ * sources. Created by Sorts.merge().
+ *
+ * The sources are the leaves of a tournament "loser tree". Each internal
+ * node holds the source which lost the match played there, and the root
+ * holds the overall winner, whose head is the next element. After the
+ * winner advances, only the matches on the path from its leaf to the root
+ * are replayed: log2(k) comparisons per element, so merging "n" elements
+ * takes O(n log k) time. Unlike a binary heap, each replayed match needs
+ * one comparison rather than two.
+ *
+ * The merge is stable: equal elements are returned in the order of their
+ * sources in the list, and in their order within each source. Each source
+ * must already be sorted in the merge's order.
+ *
+ * @param T generic type of element.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public class MergingIterator<T> implements Iterator<T> {
+
+  // Wildcard typed, since a generic array can not be created; the elements
+  // are only held as Objects in "heads" until next() returns them.
+  private final Iterator<?>[] sources;
+  private final Comparator<? super T> comparator;
+  private final Comparator<Object> c;
+  private final int k;
+
+  // The current, not yet returned, element of each source.
+  private final Object[] heads;
+  // True once a source has no more elements; it then loses every match.
+  private final boolean[] exhausted;
+
+  // tree[0] is the winning source; tree[1..k) are the losers of the
+  // matches at each internal node. The leaf of source "i" is node "k + i",
+  // and the parent of node "n" is "n / 2".
+  private final int[] tree;
+
+  /**
+   * @param sources The sorted sources to merge.
+   * @param comparator Defines the order, or null for the natural ordering.
+   */
+  MergingIterator(List<? extends Iterator<? extends T>> sources,
+		  Comparator<? super T> comparator) {
+    Preconditions.checkNotNull(sources);
+
+    this.k = sources.size();
+    this.sources = sources.toArray(new Iterator<?>[k]);
+    this.comparator = comparator;
+    this.c = Sorts.order(comparator);
+    this.heads = new Object[k];
+    this.exhausted = new boolean[k];
+    this.tree = new int[Math.max(k, 1)];
+
+    for (int i = 0; i < k; i++) {
+      Preconditions.checkNotNull(this.sources[i]);
+      advance(i);
+    }
+    buildTree();
+  }
+
+  /**
+   * Plays every match from the leaves up, recording the losers in "tree".
+   */
+  private void buildTree() {
+    if (k == 0) {
+      return;
+    }
+    int[] winners = new int[2 * k];
+    for (int i = 0; i < k; i++) {
+      winners[k + i] = i;
+    }
+    for (int node = k - 1; node >= 1; node--) {
+      int left = winners[2 * node];
+      int right = winners[(2 * node) + 1];
+      if (beats(left, right)) {
+	winners[node] = left;
+	tree[node] = right;
+      } else {
+	winners[node] = right;
+	tree[node] = left;
+      }
+    }
+    tree[0] = (k == 1) ? 0 : winners[1];
+  }
+
+  /**
+   * Returns true if the head of source "i" comes before the head of
+   * source "j". Ties go to the earlier source, which keeps the merge stable.
+   */
+  private boolean beats(int i, int j) {
+    if (exhausted[i]) {
+      return false;
+    }
+    if (exhausted[j]) {
+      return true;
+    }
+    int cmp = c.compare(heads[i], heads[j]);
+    return (cmp != 0) ? (cmp < 0) : (i < j);
+  }
+
+  private void advance(int source) {
+    if (sources[source].hasNext()) {
+      heads[source] = sources[source].next();
+    } else {
+      heads[source] = null;  // Let the element be garbage collected.
+      exhausted[source] = true;
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return (k > 0) && !exhausted[tree[0]];
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    int winner = tree[0];
+    T result = (T) heads[winner];
+    advance(winner);
+
+    // Replay the matches from the winner's leaf up to the root.
+    for (int node = (k + winner) / 2; node >= 1; node /= 2) {
+      if (beats(tree[node], winner)) {
+	int loser = winner;
+	winner = tree[node];
+	tree[node] = loser;
+      }
+    }
+    tree[0] = winner;
+    return result;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns a Spliterator over the remaining elements, for use with
+   * streams. It reports the SORTED characteristic with this merge's
+   * comparator. It can not be split, since the merge is sequential, but a
+   * parallel stream can still process the merged elements in parallel
+   * further down the pipeline. This iterator must not be used directly
+   * once the Spliterator is in use.
+   */
+  public Spliterator<T> spliterator() {
+    return new Spliterator<T>() {
+      @Override
+      public boolean tryAdvance(Consumer<? super T> action) {
+	Preconditions.checkNotNull(action);
+	if (!hasNext()) {
+	  return false;
+	}
+	action.accept(next());
+	return true;
+      }
+
+      @Override
+      public Spliterator<T> trySplit() {
+	return null;
+      }
+
+      @Override
+      public long estimateSize() {
+	return Long.MAX_VALUE;  // Unknown.
+      }
+
+      @Override
+      public int characteristics() {
+	return Spliterator.ORDERED | Spliterator.SORTED;
+      }
+
+      @Override
+      public Comparator<? super T> getComparator() {
+	return comparator;  // Null for the natural ordering.
+      }
+    };
+  }
+
+}
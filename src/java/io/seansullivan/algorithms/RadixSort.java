@@ -0,0 +1,214 @@
+package io.seansullivan.algorithms;
+
+import java.lang.System;
+
+
+/**
+ * Least significant digit (LSD) radix sort for fixed-width primitive keys.
+ * The public entry points are the radixSort() methods in Sorts.
+ *
+ * Each key is split into digits of "bits" bits (8 or 11). The counts of
+ * every digit for every pass are gathered in a single read of the input,
+ * then one stable counting pass per digit scatters the keys from one array
+ * into the other, least significant digit first. A pass is skipped if every
+ * key has the same digit, since it would not change the order.
+ *
+ * Signed keys are sorted by flipping the sign bit, so that negative values
+ * come first. Floats are sorted through an order-preserving transform of
+ * their bits, which matches the ordering of Float.compare().
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+final class RadixSort {
+
+  private RadixSort() {}
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive), using "buffer"
+   * from index 0 as the working array.
+   */
+  static void sort(int[] a, int low, int high, int[] buffer, int bits) {
+    int size = high - low;
+    if (size < 2) {
+      return;
+    }
+    int radix = 1 << bits;
+    int mask = radix - 1;
+    int passes = (Integer.SIZE + bits - 1) / bits;
+
+    // Count the digits for every pass in one read of the input.
+    int[] counts = new int[passes * radix];
+    for (int i = low; i < high; i++) {
+      int key = a[i] ^ Integer.MIN_VALUE;
+      for (int pass = 0; pass < passes; pass++) {
+	counts[(pass * radix) + ((key >>> (pass * bits)) & mask)]++;
+      }
+    }
+
+    int[] src = a;
+    int srcLow = low;
+    int[] dst = buffer;
+    int dstLow = 0;
+    for (int pass = 0; pass < passes; pass++) {
+      int shift = pass * bits;
+      int offset = pass * radix;
+      int firstDigit = ((a[low] ^ Integer.MIN_VALUE) >>> shift) & mask;
+      if (counts[offset + firstDigit] == size) {
+	continue;  // Every key has the same digit.
+      }
+      toStartIndexes(counts, offset, radix, dstLow);
+      for (int i = srcLow; i < srcLow + size; i++) {
+	int value = src[i];
+	int digit = ((value ^ Integer.MIN_VALUE) >>> shift) & mask;
+	dst[counts[offset + digit]++] = value;
+      }
+      // Swap "src" and "dst" for the next pass.
+      int[] temp = src;
+      src = dst;
+      dst = temp;
+      int tempLow = srcLow;
+      srcLow = dstLow;
+      dstLow = tempLow;
+    }
+
+    if (src != a) {
+      System.arraycopy(src, srcLow, a, low, size);
+    }
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive), using "buffer"
+   * from index 0 as the working array.
+   */
+  static void sort(long[] a, int low, int high, long[] buffer, int bits) {
+    int size = high - low;
+    if (size < 2) {
+      return;
+    }
+    int radix = 1 << bits;
+    int mask = radix - 1;
+    int passes = (Long.SIZE + bits - 1) / bits;
+
+    // Count the digits for every pass in one read of the input.
+    int[] counts = new int[passes * radix];
+    for (int i = low; i < high; i++) {
+      long key = a[i] ^ Long.MIN_VALUE;
+      for (int pass = 0; pass < passes; pass++) {
+	counts[(pass * radix) + (int) ((key >>> (pass * bits)) & mask)]++;
+      }
+    }
+
+    long[] src = a;
+    int srcLow = low;
+    long[] dst = buffer;
+    int dstLow = 0;
+    for (int pass = 0; pass < passes; pass++) {
+      int shift = pass * bits;
+      int offset = pass * radix;
+      int firstDigit = (int) (((a[low] ^ Long.MIN_VALUE) >>> shift) & mask);
+      if (counts[offset + firstDigit] == size) {
+	continue;  // Every key has the same digit.
+      }
+      toStartIndexes(counts, offset, radix, dstLow);
+      for (int i = srcLow; i < srcLow + size; i++) {
+	long value = src[i];
+	int digit = (int) (((value ^ Long.MIN_VALUE) >>> shift) & mask);
+	dst[counts[offset + digit]++] = value;
+      }
+      // Swap "src" and "dst" for the next pass.
+      long[] temp = src;
+      src = dst;
+      dst = temp;
+      int tempLow = srcLow;
+      srcLow = dstLow;
+      dstLow = tempLow;
+    }
+
+    if (src != a) {
+      System.arraycopy(src, srcLow, a, low, size);
+    }
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive), using "buffer"
+   * from index 0 as the working array. The float values themselves are
+   * moved; only the digits are taken from the transformed bits.
+   */
+  static void sort(float[] a, int low, int high, float[] buffer, int bits) {
+    int size = high - low;
+    if (size < 2) {
+      return;
+    }
+    int radix = 1 << bits;
+    int mask = radix - 1;
+    int passes = (Integer.SIZE + bits - 1) / bits;
+
+    // Count the digits for every pass in one read of the input.
+    int[] counts = new int[passes * radix];
+    for (int i = low; i < high; i++) {
+      int key = sortableBits(a[i]);
+      for (int pass = 0; pass < passes; pass++) {
+	counts[(pass * radix) + ((key >>> (pass * bits)) & mask)]++;
+      }
+    }
+
+    float[] src = a;
+    int srcLow = low;
+    float[] dst = buffer;
+    int dstLow = 0;
+    for (int pass = 0; pass < passes; pass++) {
+      int shift = pass * bits;
+      int offset = pass * radix;
+      int firstDigit = (sortableBits(a[low]) >>> shift) & mask;
+      if (counts[offset + firstDigit] == size) {
+	continue;  // Every key has the same digit.
+      }
+      toStartIndexes(counts, offset, radix, dstLow);
+      for (int i = srcLow; i < srcLow + size; i++) {
+	float value = src[i];
+	int digit = (sortableBits(value) >>> shift) & mask;
+	dst[counts[offset + digit]++] = value;
+      }
+      // Swap "src" and "dst" for the next pass.
+      float[] temp = src;
+      src = dst;
+      dst = temp;
+      int tempLow = srcLow;
+      srcLow = dstLow;
+      dstLow = tempLow;
+    }
+
+    if (src != a) {
+      System.arraycopy(src, srcLow, a, low, size);
+    }
+  }
+
+  /**
+   * Returns the bits of "f" transformed so that comparing them as unsigned
+   * ints orders the floats as Float.compare() does. The sign bit of a
+   * positive float is set, and all the bits of a negative float are
+   * flipped, which reverses their order. Float.floatToIntBits() collapses
+   * every NaN into the single NaN which sorts after positive infinity.
+   */
+  static int sortableBits(float f) {
+    int bits = Float.floatToIntBits(f);
+    return bits ^ ((bits >> 31) | Integer.MIN_VALUE);
+  }
+
+  /**
+   * Converts the digit counts counts[offset..offset+radix) into the index
+   * in the destination array where the first key with each digit goes.
+   */
+  private static void toStartIndexes(int[] counts, int offset, int radix,
+				     int start) {
+    int sum = start;
+    for (int digit = offset; digit < offset + radix; digit++) {
+      int count = counts[digit];
+      counts[digit] = sum;
+      sum += count;
+    }
+  }
+
+}
@@ -0,0 +1,370 @@
+package io.seansullivan.algorithms;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * Sorts fixed-width binary records in place within a ByteBuffer, such as
+ * a direct buffer or a memory-mapped file, without deserializing them.
+ * No objects are created per record: records are compared and swapped
+ * directly in the buffer, eight bytes at a time, so sorting a mapped
+ * file puts no pressure on the heap.
+ *
+ * Each record is "recordSize" bytes, and is ordered by the "keyLength"
+ * bytes at "keyOffset" within it, compared as unsigned bytes in
+ * lexicographic order (as by ExternalSort.sortRecords()). Big-endian
+ * unsigned integers, and strings in most encodings, sort correctly as
+ * such keys. Record "i" of a buffer starts at index "i * recordSize";
+ * the buffer's position, limit and byte order are ignored and left
+ * unchanged.
+ *
+ * Two sorts are provided. radixSort() is an in-place MSD radix sort
+ * (American flag sort), which reads each key byte about once, and is the
+ * fastest for long keys with random bytes. quickSort() is an introsort,
+ * which does better when keys share long common prefixes, and never
+ * allocates. Neither sort is stable.
+ *
+ * A ByteBuffer holds at most 2GB, so larger files must be mapped and
+ * sorted in chunks, then merged, as ExternalSort does.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public class RecordSorter {
+
+  /**
+   * Number of records below which insertion sort is used.
+   */
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  /**
+   * Number of records below which radix sort switches to quick sort,
+   * since counting 256 digits costs more than it saves on so few records.
+   */
+  private static final int RADIX_THRESHOLD = 64;
+
+  private static final int RADIX = 256;
+
+  private final int recordSize;
+  private final int keyOffset;
+  private final int keyLength;
+
+  /**
+   * @param recordSize Number of bytes in each record.
+   * @param keyOffset Offset of the key within each record.
+   * @param keyLength Number of bytes in the key.
+   * @throws IllegalArgumentException if the key is not within the record.
+   */
+  public RecordSorter(int recordSize, int keyOffset, int keyLength) {
+    Preconditions.checkArgument(recordSize > 0);
+    Preconditions.checkArgument((keyOffset >= 0) && (keyLength >= 0)
+				&& (keyLength <= recordSize - keyOffset),
+				"Key is not within the record");
+    this.recordSize = recordSize;
+    this.keyOffset = keyOffset;
+    this.keyLength = keyLength;
+  }
+
+  public int getRecordSize() {
+    return recordSize;
+  }
+
+  public int getKeyOffset() {
+    return keyOffset;
+  }
+
+  public int getKeyLength() {
+    return keyLength;
+  }
+
+  /**
+   * Returns the number of whole records before the buffer's limit.
+   */
+  public int numRecords(ByteBuffer buffer) {
+    return buffer.limit() / recordSize;
+  }
+
+  /**
+   * Sorts every record before the buffer's limit, using in-place MSD radix
+   * sort.
+   *
+   * @param buffer The buffer holding the records.
+   * @throws ReadOnlyBufferException if the buffer is read-only.
+   */
+  public void radixSort(ByteBuffer buffer) {
+    radixSort(buffer, 0, numRecords(buffer));
+  }
+
+  /**
+   * Sorts the records from "fromRecord" (inclusive) to "toRecord"
+   * (exclusive), using in-place MSD radix sort.
+   *
+   * @param buffer The buffer holding the records.
+   * @param fromRecord index of the first record to be sorted.
+   * @param toRecord index after the last record to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the buffer.
+   * @throws ReadOnlyBufferException if the buffer is read-only.
+   */
+  public void radixSort(ByteBuffer buffer, int fromRecord, int toRecord) {
+    Preconditions.checkPositionIndexes(fromRecord, toRecord, numRecords(buffer));
+    radixSort(bigEndian(buffer), fromRecord, toRecord, 0);
+  }
+
+  /**
+   * Sorts every record before the buffer's limit, using O(n log n)
+   * quick sort (introsort).
+   *
+   * @param buffer The buffer holding the records.
+   * @throws ReadOnlyBufferException if the buffer is read-only.
+   */
+  public void quickSort(ByteBuffer buffer) {
+    quickSort(buffer, 0, numRecords(buffer));
+  }
+
+  /**
+   * Sorts the records from "fromRecord" (inclusive) to "toRecord"
+   * (exclusive), using O(n log n) quick sort (introsort).
+   *
+   * @param buffer The buffer holding the records.
+   * @param fromRecord index of the first record to be sorted.
+   * @param toRecord index after the last record to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the buffer.
+   * @throws ReadOnlyBufferException if the buffer is read-only.
+   */
+  public void quickSort(ByteBuffer buffer, int fromRecord, int toRecord) {
+    Preconditions.checkPositionIndexes(fromRecord, toRecord, numRecords(buffer));
+    quickSort(bigEndian(buffer), fromRecord, toRecord,
+	      depthLimit(toRecord - fromRecord), 0);
+  }
+
+  /**
+   * Returns a view of "buffer" which reads longs as big-endian, so that
+   * comparing them as unsigned longs compares their bytes in order.
+   */
+  private static ByteBuffer bigEndian(ByteBuffer buffer) {
+    if (buffer.isReadOnly()) {
+      throw new ReadOnlyBufferException();
+    }
+    return buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * American flag sort: counts the records with each value of key byte
+   * "keyStart", permutes them into their buckets in place by following
+   * cycles of swaps, then sorts each bucket on the next key byte. All of
+   * the key bytes before "keyStart" are equal for records low..high.
+   */
+  private void radixSort(ByteBuffer b, int low, int high, int keyStart) {
+    int[] counts = null;
+    int[] next = null;
+    while (keyStart < keyLength) {
+      if (high - low < RADIX_THRESHOLD) {
+	quickSort(b, low, high, depthLimit(high - low), keyStart);
+	return;
+      }
+      if (counts == null) {
+	counts = new int[RADIX];
+	next = new int[RADIX];
+      } else {
+	Arrays.fill(counts, 0);
+      }
+      for (int i = low; i < high; i++) {
+	counts[digit(b, i, keyStart)]++;
+      }
+      if (counts[digit(b, low, keyStart)] == high - low) {
+	keyStart++;  // Every record has the same byte, so go on to the next.
+	continue;
+      }
+
+      // next[d] is where the next record with digit "d" goes; each bucket
+      // ends where the following one starts.
+      int start = low;
+      for (int d = 0; d < RADIX; d++) {
+	next[d] = start;
+	start += counts[d];
+      }
+      int end = low;
+      for (int d = 0; d < RADIX; d++) {
+	end += counts[d];
+	while (next[d] < end) {
+	  int digit = digit(b, next[d], keyStart);
+	  if (digit == d) {
+	    next[d]++;
+	  } else {
+	    swap(b, next[d], next[digit]++);
+	  }
+	}
+      }
+
+      // Sort each bucket on the next byte. The counts are needed again
+      // after the recursive calls, so they use their own arrays.
+      start = low;
+      for (int d = 0; d < RADIX; d++) {
+	if (counts[d] > 1) {
+	  radixSort(b, start, start + counts[d], keyStart + 1);
+	}
+	start += counts[d];
+      }
+      return;
+    }
+  }
+
+  /**
+   * Sorts records low..high, whose key bytes before "keyStart" are known
+   * to be equal. Partitions into three groups around a median of three
+   * pivot, recursing on the smaller group and looping on the larger.
+   * Heap sorts if "depthLimit" levels of partitioning are not enough.
+   */
+  private void quickSort(ByteBuffer b, int low, int high, int depthLimit,
+			 int keyStart) {
+    while (high - low > INSERTION_SORT_THRESHOLD) {
+      if (depthLimit == 0) {
+	heapSort(b, low, high, keyStart);
+	return;
+      }
+      depthLimit--;
+
+      // Move the pivot to "low". While partitioning, records
+      // lessEnd..current are equal to the pivot, so record "lessEnd" is
+      // always one to compare with, and the pivot need not be copied.
+      int middle = (low + high) >>> 1;
+      swap(b, low, median(b, low, middle, high - 1, keyStart));
+      int lessEnd = low;
+      int current = low + 1;
+      int greaterStart = high;
+      while (current < greaterStart) {
+	int cmp = compare(b, current, lessEnd, keyStart);
+	if (cmp < 0) {
+	  swap(b, lessEnd++, current++);
+	} else if (cmp > 0) {
+	  swap(b, current, --greaterStart);
+	} else {
+	  current++;
+	}
+      }
+
+      if (lessEnd - low < high - greaterStart) {
+	quickSort(b, low, lessEnd, depthLimit, keyStart);
+	low = greaterStart;
+      } else {
+	quickSort(b, greaterStart, high, depthLimit, keyStart);
+	high = lessEnd;
+      }
+    }
+    insertionSort(b, low, high, keyStart);
+  }
+
+  private int median(ByteBuffer b, int i, int j, int k, int keyStart) {
+    if (compare(b, i, j, keyStart) < 0) {
+      return (compare(b, j, k, keyStart) < 0) ? j :
+	  ((compare(b, i, k, keyStart) < 0) ? k : i);
+    } else {
+      return (compare(b, k, j, keyStart) < 0) ? j :
+	  ((compare(b, k, i, keyStart) < 0) ? k : i);
+    }
+  }
+
+  private void insertionSort(ByteBuffer b, int low, int high, int keyStart) {
+    for (int i = low + 1; i < high; i++) {
+      for (int j = i; (j > low) && (compare(b, j - 1, j, keyStart) > 0); j--) {
+	swap(b, j - 1, j);
+      }
+    }
+  }
+
+  private void heapSort(ByteBuffer b, int low, int high, int keyStart) {
+    int size = high - low;
+    for (int parent = (size / 2) - 1; parent >= 0; parent--) {
+      siftDown(b, low, parent, size, keyStart);
+    }
+    for (int last = size - 1; last > 0; last--) {
+      swap(b, low, low + last);
+      siftDown(b, low, 0, last, keyStart);
+    }
+  }
+
+  /**
+   * Restores the max-heap property of the heap of "size" records
+   * starting at record "offset", below the node "parent".
+   */
+  private void siftDown(ByteBuffer b, int offset, int parent, int size, int keyStart) {
+    int child;
+    while ((child = (2 * parent) + 1) < size) {
+      if ((child + 1 < size)
+	  && (compare(b, offset + child, offset + child + 1, keyStart) < 0)) {
+	child++;
+      }
+      if (compare(b, offset + parent, offset + child, keyStart) >= 0) {
+	return;
+      }
+      swap(b, offset + parent, offset + child);
+      parent = child;
+    }
+  }
+
+  private static int depthLimit(int size) {
+    return 2 * (31 - Integer.numberOfLeadingZeros(Math.max(size, 1)));
+  }
+
+  private int digit(ByteBuffer b, int record, int keyStart) {
+    return b.get((record * recordSize) + keyOffset + keyStart) & 0xff;
+  }
+
+  /**
+   * Compares the keys of records "i" and "j" from key byte "keyStart" on,
+   * as unsigned bytes. Compares eight bytes at a time as unsigned longs,
+   * which works since the buffer is big-endian.
+   */
+  private int compare(ByteBuffer b, int i, int j, int keyStart) {
+    int p = (i * recordSize) + keyOffset + keyStart;
+    int q = (j * recordSize) + keyOffset + keyStart;
+    int remaining = keyLength - keyStart;
+    for (; remaining >= Long.BYTES; remaining -= Long.BYTES) {
+      long x = b.getLong(p);
+      long y = b.getLong(q);
+      if (x != y) {
+	return Long.compareUnsigned(x, y);
+      }
+      p += Long.BYTES;
+      q += Long.BYTES;
+    }
+    for (; remaining > 0; remaining--) {
+      int cmp = (b.get(p++) & 0xff) - (b.get(q++) & 0xff);
+      if (cmp != 0) {
+	return cmp;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Exchanges records "i" and "j", eight bytes at a time.
+   */
+  private void swap(ByteBuffer b, int i, int j) {
+    if (i == j) {
+      return;
+    }
+    int p = i * recordSize;
+    int q = j * recordSize;
+    int remaining = recordSize;
+    for (; remaining >= Long.BYTES; remaining -= Long.BYTES) {
+      long temp = b.getLong(p);
+      b.putLong(p, b.getLong(q));
+      b.putLong(q, temp);
+      p += Long.BYTES;
+      q += Long.BYTES;
+    }
+    for (; remaining > 0; remaining--) {
+      byte temp = b.get(p);
+      b.put(p++, b.get(q));
+      b.put(q++, temp);
+    }
+  }
+
+}
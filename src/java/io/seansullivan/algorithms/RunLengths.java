@@ -0,0 +1,99 @@
+package io.seansullivan.algorithms;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * The sorted form of an int array as runs of equal values: each distinct
+ * value in ascending order, with the number of times it occurs. Returned
+ * by Sorts.countRuns(), for callers which only need the distinct values
+ * and their counts, and would rather not write out every duplicate.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public final class RunLengths {
+
+  private final int[] values;
+  private final int[] counts;
+  private final int numRuns;
+  private final int size;
+
+  /**
+   * The first "numRuns" elements of "values" and "counts" are the runs.
+   */
+  RunLengths(int[] values, int[] counts, int numRuns) {
+    this.values = values;
+    this.counts = counts;
+    this.numRuns = numRuns;
+    int sum = 0;
+    for (int run = 0; run < numRuns; run++) {
+      sum += counts[run];
+    }
+    this.size = sum;
+  }
+
+  /**
+   * Returns the number of runs, which is the number of distinct values.
+   */
+  public int getNumRuns() {
+    return numRuns;
+  }
+
+  /**
+   * Returns the value of run "run". The values of the runs are ascending.
+   *
+   * @throws IndexOutOfBoundsException if run is not in [0, getNumRuns()).
+   */
+  public int getValue(int run) {
+    Preconditions.checkElementIndex(run, numRuns);
+    return values[run];
+  }
+
+  /**
+   * Returns the number of elements in run "run", which is at least one.
+   *
+   * @throws IndexOutOfBoundsException if run is not in [0, getNumRuns()).
+   */
+  public int getCount(int run) {
+    Preconditions.checkElementIndex(run, numRuns);
+    return counts[run];
+  }
+
+  /**
+   * Returns the total number of elements in all of the runs.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Writes the sorted values, getSize() of them, to "a" from "fromIndex".
+   *
+   * @throws IndexOutOfBoundsException if the values do not fit in "a".
+   */
+  public void writeTo(int[] a, int fromIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, fromIndex + size, a.length);
+    int index = fromIndex;
+    for (int run = 0; run < numRuns; run++) {
+      int value = values[run];
+      for (int end = index + counts[run]; index < end; index++) {
+	a[index] = value;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int run = 0; run < numRuns; run++) {
+      if (run > 0) {
+	sb.append(", ");
+      }
+      sb.append(values[run]).append('x').append(counts[run]);
+    }
+    return sb.append(']').toString();
+  }
+
+}
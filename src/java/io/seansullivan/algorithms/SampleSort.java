@@ -0,0 +1,392 @@
+package io.seansullivan.algorithms;
+
+import java.lang.System;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Parallel sample sort. The public entry points are the parallelSampleSort()
+ * methods in Sorts.
+ *
+ * A random sample of the input, "OVERSAMPLING" times larger than the
+ * number of buckets, is sorted, and evenly spaced elements of it become
+ * the "splitters" between buckets. Then, in parallel over blocks of the
+ * input:
+ *
+ * 1) Each element's bucket is found by binary search of the splitters,
+ *    and each block counts the elements it has for each bucket.
+ * 2) The counts give every block its own region of every bucket in the
+ *    working array, so the blocks scatter their elements without locking.
+ * 3) Every bucket is copied back and sorted by its own task, using the
+ *    existing sequential sorts.
+ *
+ * Each element is moved twice, however many threads there are, rather
+ * than once per level of merging as in a parallel merge sort.
+ *
+ * Elements equal to a splitter go into an "equality bucket" of their own,
+ * which needs no sorting. This keeps inputs with many duplicate values
+ * from piling into one large bucket. The scatter keeps the input order
+ * within each bucket, and the generic buckets are sorted with a stable
+ * merge sort, so the generic sort is stable.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+final class SampleSort {
+
+  // Number of sample elements taken for each bucket.
+  private static final int OVERSAMPLING = 32;
+
+  // Buckets per thread, so that uneven buckets still balance the load.
+  private static final int BUCKETS_PER_THREAD = 4;
+
+  // With the equality buckets, bucket ids fit in a byte.
+  private static final int MAX_BUCKETS = 128;
+
+  private SampleSort() {}
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) using the
+   * threads of "pool". Falls back to a sequential sort if the range has
+   * fewer than two buckets' worth of "threshold" elements.
+   */
+  static void sort(final Object[] a, final int low, int high,
+		   final Comparator<Object> c, ForkJoinPool pool, int threshold) {
+    int size = high - low;
+    int buckets = numBuckets(size, pool.getParallelism(), threshold);
+    if (buckets < 2) {
+      Sorts.iterativeMergeSort(a, low, high, new Object[size], 0, c);
+      return;
+    }
+
+    // Choose the splitters from a sorted random sample.
+    Object[] sample = new Object[buckets * OVERSAMPLING];
+    Random rand = ThreadLocalRandom.current();
+    for (int i = 0; i < sample.length; i++) {
+      sample[i] = a[low + rand.nextInt(size)];
+    }
+    Sorts.iterativeMergeSort(sample, 0, sample.length, new Object[sample.length], 0, c);
+    final Object[] splitters = new Object[buckets - 1];
+    for (int i = 0; i < splitters.length; i++) {
+      splitters[i] = sample[(i + 1) * OVERSAMPLING];
+    }
+
+    final Object[] work = new Object[size];
+    final byte[] bucketIds = new byte[size];
+    final Blocks blocks = new Blocks(low, size, pool.getParallelism(), threshold,
+				     buckets);
+    pool.invoke(new ForEachTask(0, blocks.count, new Body() {
+      void apply(int block) {
+	int base = block * blocks.buckets;
+	for (int i = blocks.start(block); i < blocks.end(block); i++) {
+	  int bucket = bucketOf(a[i], splitters, c);
+	  bucketIds[i - low] = (byte) bucket;
+	  blocks.counts[base + bucket]++;
+	}
+      }
+    }));
+    blocks.toOffsets();
+    pool.invoke(new ForEachTask(0, blocks.count, new Body() {
+      void apply(int block) {
+	int base = block * blocks.buckets;
+	for (int i = blocks.start(block); i < blocks.end(block); i++) {
+	  work[blocks.counts[base + (bucketIds[i - low] & 0xff)]++] = a[i];
+	}
+      }
+    }));
+    pool.invoke(new ForEachTask(0, blocks.buckets, new Body() {
+      void apply(int bucket) {
+	int start = blocks.bucketStart[bucket];
+	int end = blocks.bucketStart[bucket + 1];
+	System.arraycopy(work, start, a, low + start, end - start);
+	if (!isEqualityBucket(bucket)) {
+	  // This bucket's part of "work" is free to be the working array.
+	  Sorts.iterativeMergeSort(a, low + start, low + end, work, start, c);
+	}
+      }
+    }));
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) using the
+   * threads of "pool".
+   */
+  static void sort(final int[] a, final int low, int high, ForkJoinPool pool,
+		   int threshold) {
+    int size = high - low;
+    int buckets = numBuckets(size, pool.getParallelism(), threshold);
+    if (buckets < 2) {
+      Sorts.quickSort(a, low, high);
+      return;
+    }
+
+    int[] sample = new int[buckets * OVERSAMPLING];
+    Random rand = ThreadLocalRandom.current();
+    for (int i = 0; i < sample.length; i++) {
+      sample[i] = a[low + rand.nextInt(size)];
+    }
+    Sorts.quickSort(sample);
+    final int[] splitters = new int[buckets - 1];
+    for (int i = 0; i < splitters.length; i++) {
+      splitters[i] = sample[(i + 1) * OVERSAMPLING];
+    }
+
+    final int[] work = new int[size];
+    final byte[] bucketIds = new byte[size];
+    final Blocks blocks = new Blocks(low, size, pool.getParallelism(), threshold,
+				     buckets);
+    pool.invoke(new ForEachTask(0, blocks.count, new Body() {
+      void apply(int block) {
+	int base = block * blocks.buckets;
+	for (int i = blocks.start(block); i < blocks.end(block); i++) {
+	  int bucket = bucketOf(a[i], splitters);
+	  bucketIds[i - low] = (byte) bucket;
+	  blocks.counts[base + bucket]++;
+	}
+      }
+    }));
+    blocks.toOffsets();
+    pool.invoke(new ForEachTask(0, blocks.count, new Body() {
+      void apply(int block) {
+	int base = block * blocks.buckets;
+	for (int i = blocks.start(block); i < blocks.end(block); i++) {
+	  work[blocks.counts[base + (bucketIds[i - low] & 0xff)]++] = a[i];
+	}
+      }
+    }));
+    pool.invoke(new ForEachTask(0, blocks.buckets, new Body() {
+      void apply(int bucket) {
+	int start = blocks.bucketStart[bucket];
+	int end = blocks.bucketStart[bucket + 1];
+	System.arraycopy(work, start, a, low + start, end - start);
+	if (!isEqualityBucket(bucket)) {
+	  Sorts.quickSort(a, low + start, low + end);
+	}
+      }
+    }));
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) using the
+   * threads of "pool".
+   */
+  static void sort(final long[] a, final int low, int high, ForkJoinPool pool,
+		   int threshold) {
+    int size = high - low;
+    int buckets = numBuckets(size, pool.getParallelism(), threshold);
+    if (buckets < 2) {
+      Sorts.quickSort(a, low, high);
+      return;
+    }
+
+    long[] sample = new long[buckets * OVERSAMPLING];
+    Random rand = ThreadLocalRandom.current();
+    for (int i = 0; i < sample.length; i++) {
+      sample[i] = a[low + rand.nextInt(size)];
+    }
+    Sorts.quickSort(sample);
+    final long[] splitters = new long[buckets - 1];
+    for (int i = 0; i < splitters.length; i++) {
+      splitters[i] = sample[(i + 1) * OVERSAMPLING];
+    }
+
+    final long[] work = new long[size];
+    final byte[] bucketIds = new byte[size];
+    final Blocks blocks = new Blocks(low, size, pool.getParallelism(), threshold,
+				     buckets);
+    pool.invoke(new ForEachTask(0, blocks.count, new Body() {
+      void apply(int block) {
+	int base = block * blocks.buckets;
+	for (int i = blocks.start(block); i < blocks.end(block); i++) {
+	  int bucket = bucketOf(a[i], splitters);
+	  bucketIds[i - low] = (byte) bucket;
+	  blocks.counts[base + bucket]++;
+	}
+      }
+    }));
+    blocks.toOffsets();
+    pool.invoke(new ForEachTask(0, blocks.count, new Body() {
+      void apply(int block) {
+	int base = block * blocks.buckets;
+	for (int i = blocks.start(block); i < blocks.end(block); i++) {
+	  work[blocks.counts[base + (bucketIds[i - low] & 0xff)]++] = a[i];
+	}
+      }
+    }));
+    pool.invoke(new ForEachTask(0, blocks.buckets, new Body() {
+      void apply(int bucket) {
+	int start = blocks.bucketStart[bucket];
+	int end = blocks.bucketStart[bucket + 1];
+	System.arraycopy(work, start, a, low + start, end - start);
+	if (!isEqualityBucket(bucket)) {
+	  Sorts.quickSort(a, low + start, low + end);
+	}
+      }
+    }));
+  }
+
+  /**
+   * Returns the number of splitter buckets for "size" elements: enough to
+   * balance the load across "parallelism" threads, but each expected to
+   * hold at least "threshold" elements.
+   */
+  private static int numBuckets(int size, int parallelism, int threshold) {
+    int buckets = Math.min(MAX_BUCKETS, parallelism * BUCKETS_PER_THREAD);
+    return Math.min(buckets, size / threshold);
+  }
+
+  /**
+   * Bucket 2i holds the elements between splitters i - 1 and i, and
+   * bucket 2i + 1 the elements equal to splitter i.
+   */
+  private static boolean isEqualityBucket(int bucket) {
+    return (bucket & 1) == 1;
+  }
+
+  private static int bucketOf(Object value, Object[] splitters, Comparator<Object> c) {
+    int low = 0;
+    int high = splitters.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (c.compare(splitters[middle], value) < 0) {
+	low = middle + 1;
+      } else {
+	high = middle;
+      }
+    }
+    // "low" is the first splitter not less than "value".
+    if ((low < splitters.length) && (c.compare(splitters[low], value) == 0)) {
+      return (2 * low) + 1;
+    }
+    return 2 * low;
+  }
+
+  private static int bucketOf(int value, int[] splitters) {
+    int low = 0;
+    int high = splitters.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (splitters[middle] < value) {
+	low = middle + 1;
+      } else {
+	high = middle;
+      }
+    }
+    if ((low < splitters.length) && (splitters[low] == value)) {
+      return (2 * low) + 1;
+    }
+    return 2 * low;
+  }
+
+  private static int bucketOf(long value, long[] splitters) {
+    int low = 0;
+    int high = splitters.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (splitters[middle] < value) {
+	low = middle + 1;
+      } else {
+	high = middle;
+      }
+    }
+    if ((low < splitters.length) && (splitters[low] == value)) {
+      return (2 * low) + 1;
+    }
+    return 2 * low;
+  }
+
+  /**
+   * Divides the input into blocks, one per task, and holds each block's
+   * count of elements for each bucket. After toOffsets(), the counts
+   * become the index in the working array where each block writes its
+   * next element for each bucket.
+   */
+  private static final class Blocks {
+    final int low;
+    final int size;
+    final int count;
+    final int buckets;
+    // counts[(block * buckets) + bucket]
+    final int[] counts;
+    // Bucket "b" is work[bucketStart[b]..bucketStart[b + 1]).
+    final int[] bucketStart;
+
+    Blocks(int low, int size, int parallelism, int threshold, int splitterBuckets) {
+      this.low = low;
+      this.size = size;
+      this.count = Math.max(1, Math.min(parallelism, size / threshold));
+      this.buckets = (2 * splitterBuckets) - 1;
+      this.counts = new int[count * buckets];
+      this.bucketStart = new int[buckets + 1];
+    }
+
+    int start(int block) {
+      return low + (int) (((long) size * block) / count);
+    }
+
+    int end(int block) {
+      return start(block + 1);
+    }
+
+    /**
+     * Converts the counts into offsets: bucket by bucket, and within each
+     * bucket block by block, so the scatter keeps the input order.
+     */
+    void toOffsets() {
+      int sum = 0;
+      for (int bucket = 0; bucket < buckets; bucket++) {
+	bucketStart[bucket] = sum;
+	for (int block = 0; block < count; block++) {
+	  int index = (block * buckets) + bucket;
+	  int blockCount = counts[index];
+	  counts[index] = sum;
+	  sum += blockCount;
+	}
+      }
+      bucketStart[buckets] = sum;
+      assert(sum == size);
+    }
+  }
+
+  /**
+   * The work done for one index of a ForEachTask.
+   */
+  abstract static class Body {
+    abstract void apply(int index);
+  }
+
+  /**
+   * Applies "body" to every index from "low" (inclusive) to "high"
+   * (exclusive), splitting the range in half until each task has one index.
+   */
+  static final class ForEachTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int low;
+    private final int high;
+    private final Body body;
+
+    ForEachTask(int low, int high, Body body) {
+      this.low = low;
+      this.high = high;
+      this.body = body;
+    }
+
+    @Override
+    protected void compute() {
+      if (high - low == 1) {
+	body.apply(low);
+      } else if (high - low > 1) {
+	int middle = (low + high) >>> 1;
+	invokeAll(new ForEachTask(low, middle, body),
+		  new ForEachTask(middle, high, body));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,216 @@
+package io.seansullivan.algorithms;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+
+/**
+ * Shell sort with a choice of gap sequences. The public entry points are
+ * the shellSort() methods in Sorts.
+ *
+ * Shell sort insertion sorts the elements "gap" apart, for a decreasing
+ * sequence of gaps ending in 1. Halving the gap, as in Shell's original
+ * version, compares only elements at even positions with each other
+ * until the very last pass, so it is O(n^2) in the worst case. Better
+ * sequences mix the positions between passes:
+ *
+ * 1) Ciura (2001): 1, 4, 10, 23, 57, 132, 301, 701, 1750, found by
+ *    experiment to take the fewest comparisons on random input, and
+ *    continued by multiplying by 2.25.
+ * 2) Tokuda (1992): ceil((9^k - 4^k) / (5 * 4^(k-1))), that is 1, 4, 9,
+ *    20, 46, 103, 233, ...; nearly as good, with no table to extend.
+ * 3) Sedgewick (1986): 1, then 4^k + 3 * 2^(k-1) + 1, that is 8, 23, 77,
+ *    281, ...; O(n^(4/3)) in the worst case.
+ *
+ * Each element is inserted by shifting the larger elements "gap" places
+ * up into the "hole", and writing the element once where the hole ends,
+ * rather than swapping it along with three assignments per step.
+ *
+ * Shell sort needs no memory beyond the array, and no recursion, so it is
+ * the in-place choice when a merge buffer can not be allocated; with a
+ * good sequence it keeps up with the O(n log n) sorts to around 10^5
+ * elements.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+final class ShellSort {
+
+  private ShellSort() {}
+
+  // Ciura's gaps, which were found by experiment rather than formula.
+  private static final int[] CIURA_PREFIX = {1, 4, 10, 23, 57, 132, 301, 701, 1750};
+
+  // GAPS[sequence] holds every gap of the sequence below Integer.MAX_VALUE,
+  // in ascending order.
+  private static final int[][] GAPS = new int[Sorts.SHELL_SEDGEWICK_GAPS + 1][];
+
+  static {
+    long[] gaps = new long[Integer.SIZE * 2];
+    int length = 0;
+    for (int gap : CIURA_PREFIX) {
+      gaps[length++] = gap;
+    }
+    for (long gap = (long) (gaps[length - 1] * 2.25); gap < Integer.MAX_VALUE;
+	 gap = (long) (gap * 2.25)) {
+      gaps[length++] = gap;
+    }
+    GAPS[Sorts.SHELL_CIURA_GAPS] = toInts(gaps, length);
+
+    length = 0;
+    for (int k = 1; ; k++) {
+      long gap = (long) Math.ceil((Math.pow(9, k) - Math.pow(4, k))
+				  / (5 * Math.pow(4, k - 1)));
+      if (gap >= Integer.MAX_VALUE) {
+	break;
+      }
+      gaps[length++] = gap;
+    }
+    GAPS[Sorts.SHELL_TOKUDA_GAPS] = toInts(gaps, length);
+
+    length = 0;
+    gaps[length++] = 1;
+    for (int k = 1; ; k++) {
+      long gap = (1L << (2 * k)) + (3L << (k - 1)) + 1;
+      if (gap >= Integer.MAX_VALUE) {
+	break;
+      }
+      gaps[length++] = gap;
+    }
+    GAPS[Sorts.SHELL_SEDGEWICK_GAPS] = toInts(gaps, length);
+  }
+
+  private static int[] toInts(long[] gaps, int length) {
+    int[] ints = new int[length];
+    for (int i = 0; i < length; i++) {
+      ints[i] = (int) gaps[i];
+    }
+    return ints;
+  }
+
+  /**
+   * Returns the gaps of "sequence" which are smaller than "size", in
+   * ascending order. Package-private for tests; the sorts index GAPS in
+   * place, so that they allocate nothing.
+   */
+  static int[] gaps(int sequence, int size) {
+    return Arrays.copyOf(GAPS[sequence], largestGap(GAPS[sequence], size) + 1);
+  }
+
+  /**
+   * Returns the index of the largest of "gaps" smaller than "size", or 0
+   * (the gap of 1) if there is none.
+   */
+  private static int largestGap(int[] gaps, int size) {
+    int g = 0;
+    while ((g + 1 < gaps.length) && (gaps[g + 1] < size)) {
+      g++;
+    }
+    return g;
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) using the gaps
+   * of "sequence".
+   */
+  static void sort(Object[] a, int low, int high, int sequence, Comparator<Object> c) {
+    int[] gaps = GAPS[sequence];
+    for (int g = largestGap(gaps, high - low); g >= 0; g--) {
+      int gap = gaps[g];
+      for (int i = low + gap; i < high; i++) {
+	Object value = a[i];
+	int j = i;
+	while ((j - gap >= low) && c.compare(a[j - gap], value) > 0) {
+	  a[j] = a[j - gap];
+	  j -= gap;
+	}
+	a[j] = value;
+	if (SortProbe.ENABLED && (j < i)) {
+	  SortProbe.moved(((i - j) / gap) + 1);
+	}
+      }
+    }
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) using the gaps
+   * of "sequence".
+   */
+  static void sort(int[] a, int low, int high, int sequence) {
+    int[] gaps = GAPS[sequence];
+    for (int g = largestGap(gaps, high - low); g >= 0; g--) {
+      int gap = gaps[g];
+      for (int i = low + gap; i < high; i++) {
+	int value = a[i];
+	int j = i;
+	while ((j - gap >= low) && (a[j - gap] > value)) {
+	  a[j] = a[j - gap];
+	  j -= gap;
+	}
+	a[j] = value;
+      }
+    }
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) using the gaps
+   * of "sequence".
+   */
+  static void sort(long[] a, int low, int high, int sequence) {
+    int[] gaps = GAPS[sequence];
+    for (int g = largestGap(gaps, high - low); g >= 0; g--) {
+      int gap = gaps[g];
+      for (int i = low + gap; i < high; i++) {
+	long value = a[i];
+	int j = i;
+	while ((j - gap >= low) && (a[j - gap] > value)) {
+	  a[j] = a[j - gap];
+	  j -= gap;
+	}
+	a[j] = value;
+      }
+    }
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) using the gaps
+   * of "sequence", in the order of Float.compare().
+   */
+  static void sort(float[] a, int low, int high, int sequence) {
+    int[] gaps = GAPS[sequence];
+    for (int g = largestGap(gaps, high - low); g >= 0; g--) {
+      int gap = gaps[g];
+      for (int i = low + gap; i < high; i++) {
+	float value = a[i];
+	int j = i;
+	while ((j - gap >= low) && (Float.compare(a[j - gap], value) > 0)) {
+	  a[j] = a[j - gap];
+	  j -= gap;
+	}
+	a[j] = value;
+      }
+    }
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) using the gaps
+   * of "sequence", in the order of Double.compare().
+   */
+  static void sort(double[] a, int low, int high, int sequence) {
+    int[] gaps = GAPS[sequence];
+    for (int g = largestGap(gaps, high - low); g >= 0; g--) {
+      int gap = gaps[g];
+      for (int i = low + gap; i < high; i++) {
+	double value = a[i];
+	int j = i;
+	while ((j - gap >= low) && (Double.compare(a[j - gap], value) > 0)) {
+	  a[j] = a[j - gap];
+	  j -= gap;
+	}
+	a[j] = value;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,70 @@
+package io.seansullivan.algorithms;
+
+
+/**
+ * The choice made by one call of Sorts.sort(): the algorithm which sorted
+ * the input, and the sampled features of the input it was chosen from.
+ *
+ * The features are estimated from a sample of neighbouring pairs of
+ * elements, spread over the input (see SortSelector). Inputs too short to
+ * be worth sampling go straight to insertion sort, and their features are
+ * NaN.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public final class SortDecision {
+
+  private final String algorithm;
+  private final int size;
+  private final double sortedness;
+  private final double duplicates;
+
+  SortDecision(String algorithm, int size, double sortedness, double duplicates) {
+    this.algorithm = algorithm;
+    this.size = size;
+    this.sortedness = sortedness;
+    this.duplicates = duplicates;
+  }
+
+  /**
+   * Returns the name of the Sorts method which sorted the input, such as
+   * "quickSort".
+   */
+  public String getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * Returns the number of elements sorted.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the fraction of sampled neighbouring pairs which were already
+   * in order: near 1.0 for ascending input, near 0.0 for descending input,
+   * and near 0.5 for random input.
+   */
+  public double getSortedness() {
+    return sortedness;
+  }
+
+  /**
+   * Returns the fraction of sampled elements which repeat a value already
+   * in the sample: near 0.0 if the values are distinct, and near 1.0 if
+   * there are only a few distinct values.
+   */
+  public double getDuplicates() {
+    return duplicates;
+  }
+
+  @Override
+  public String toString() {
+    return algorithm + "[size=" + size + ", sortedness=" + sortedness
+	+ ", duplicates=" + duplicates + "]";
+  }
+
+}
@@ -0,0 +1,23 @@
+package io.seansullivan.algorithms;
+
+
+/**
+ * Receives the statistics of each instrumented sort call. Register a
+ * listener with Sorts.setSortListener(). Instrumentation must also be
+ * enabled when the JVM starts, with the system property
+ * "io.seansullivan.algorithms.instrument=true"; otherwise the probes are
+ * compiled out of the sorts and cost nothing.
+ *
+ * The listener is called on the thread which called the sort, after the
+ * sort completes, so it should return quickly. A sort which throws an
+ * exception is not reported.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public interface SortListener {
+
+  void sortCompleted(SortStats stats);
+
+}
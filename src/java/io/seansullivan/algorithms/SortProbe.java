@@ -0,0 +1,160 @@
+package io.seansullivan.algorithms;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Comparator;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Collects the statistics of one instrumented sort call, and reports them
+ * to the registered SortListener.
+ *
+ * The probe wraps the sort's comparator, so comparisons are counted on
+ * whichever threads the sort uses. It is also the "current" probe of the
+ * calling thread while the sort runs, which is where the sorts report
+ * swaps, moves and recursion depth.
+ *
+ * All of the hooks in the sorts are guarded by ENABLED, a static final
+ * constant, so when instrumentation is disabled the JIT compiler removes
+ * them, and the sorts run exactly as uninstrumented code.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+final class SortProbe implements Comparator<Object> {
+
+  static final String ENABLED_PROPERTY = "io.seansullivan.algorithms.instrument";
+
+  static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+  private static volatile SortListener listener;
+
+  private static final ThreadLocal<SortProbe> CURRENT = new ThreadLocal<SortProbe>();
+
+  private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+  private final Comparator<Object> c;
+  private final SortListener target;
+  private final String algorithm;
+  private final int size;
+  private final long startNanos;
+  private final long startBytes;
+  private final LongAdder comparisons = new LongAdder();
+  // Only updated from the calling thread.
+  private long swaps;
+  private long moves;
+  private int depth;
+  private int maxDepth;
+
+  private SortProbe(Comparator<Object> c, SortListener target, String algorithm,
+		    int size) {
+    this.c = c;
+    this.target = target;
+    this.algorithm = algorithm;
+    this.size = size;
+    this.startBytes = allocatedBytes();
+    this.startNanos = System.nanoTime();
+  }
+
+  static void setListener(SortListener newListener) {
+    listener = newListener;
+  }
+
+  /**
+   * Starts instrumenting a sort call, if instrumentation is enabled and a
+   * listener is registered. Returns the comparator for the sort to use:
+   * a new probe wrapping the sort's order, or just the order if not
+   * instrumenting.
+   *
+   * @param comparator The caller's comparator, or null for the natural ordering.
+   */
+  static Comparator<Object> begin(String algorithm, int size, Comparator<?> comparator) {
+    Comparator<Object> c = Sorts.order(comparator);
+    if (!ENABLED) {
+      return c;
+    }
+    SortListener target = listener;
+    if (target == null) {
+      return c;
+    }
+    SortProbe probe = new SortProbe(c, target, algorithm, size);
+    // Replaces the probe of any sort this one runs inside, such as from a comparator.
+    CURRENT.set(probe);
+    return probe;
+  }
+
+  /**
+   * Finishes the sort call started by begin(), which returned "c", and
+   * reports its statistics.
+   */
+  static void end(Comparator<Object> c) {
+    if (ENABLED && (c instanceof SortProbe)) {
+      SortProbe probe = (SortProbe) c;
+      if (CURRENT.get() == probe) {
+	CURRENT.remove();
+      }
+      probe.finish();
+    }
+  }
+
+  // The hooks below are called by the sorts inside "if (ENABLED)".
+
+  static void swapped() {
+    SortProbe probe = CURRENT.get();
+    if (probe != null) {
+      probe.swaps++;
+    }
+  }
+
+  static void moved(int count) {
+    SortProbe probe = CURRENT.get();
+    if (probe != null) {
+      probe.moves += count;
+    }
+  }
+
+  static void enter() {
+    SortProbe probe = CURRENT.get();
+    if (probe != null) {
+      probe.depth++;
+      probe.maxDepth = Math.max(probe.maxDepth, probe.depth);
+    }
+  }
+
+  static void exit() {
+    SortProbe probe = CURRENT.get();
+    if (probe != null) {
+      probe.depth--;
+    }
+  }
+
+  @Override
+  public int compare(Object o1, Object o2) {
+    comparisons.increment();
+    return c.compare(o1, o2);
+  }
+
+  private void finish() {
+    long nanos = System.nanoTime() - startNanos;
+    long bytes = (startBytes < 0) ? -1 : allocatedBytes() - startBytes;
+    target.sortCompleted(new SortStats(algorithm, size, comparisons.sum(), swaps,
+				       moves, maxDepth, bytes, nanos));
+  }
+
+  /**
+   * Returns the bytes allocated so far by the current thread, or -1 if
+   * the JVM can not count them.
+   */
+  private static long allocatedBytes() {
+    if (THREAD_BEAN instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_BEAN;
+      if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+	return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+}
@@ -0,0 +1,305 @@
+package io.seansullivan.algorithms;
+
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * Chooses a sort from a quick look at the input, then runs it. The public
+ * entry points are the sort() methods in Sorts.
+ *
+ * Short inputs go straight to insertion sort. For longer inputs, a sample
+ * of up to SAMPLE_PAIRS neighbouring pairs, one from a pseudo-random place
+ * in each of as many equal stretches of the input, estimates how sorted
+ * the input already is, and how many of its values are repeated (see
+ * SortDecision). Then:
+ *
+ * 1) Presorted objects (ascending or descending) are sorted with TimSort,
+ *    which takes linear time on a few long runs.
+ * 2) Objects with few distinct values are sorted with quick sort, whose
+ *    three-way partitioning puts every value equal to a pivot in its
+ *    final place at once.
+ * 3) Large inputs are sorted in parallel with sample sort, if the common
+ *    ForkJoinPool has more than one thread, unless they have so few
+ *    distinct values that most would land in a few of its buckets.
+ * 4) Large int and float arrays are radix sorted, which beats quick sort
+ *    once the counts are amortized, whatever the order of the keys and
+ *    however many of them are repeated.
+ * 5) Anything else is sorted with TimSort (objects), which is stable and
+ *    still benefits from runs which the sample missed, or quick sort
+ *    (primitives), which gathers the copies of a repeated pivot and skips
+ *    them.
+ *
+ * Every choice is O(n log n) or better in the worst case, so no input
+ * makes the dispatcher quadratic. Sampling costs about 2 * SAMPLE_PAIRS
+ * comparisons, or a few more to sort the sample of objects.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+final class SortSelector {
+
+  private SortSelector() {}
+
+  // Size up to which insertion sort is used, without sampling.
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  // Largest number of neighbouring pairs sampled.
+  private static final int SAMPLE_PAIRS = 64;
+
+  // Fraction of the sampled pairs in order, or out of order, at which
+  // the input is treated as presorted.
+  private static final double PRESORTED_RATIO = 0.9;
+
+  // Fraction of repeated values in the sample at which the input is
+  // treated as having few distinct values.
+  private static final double DUPLICATE_RATIO = 0.5;
+
+  // Size from which radix sort beats quick sort, for int and float arrays.
+  private static final int RADIX_SORT_THRESHOLD = 1 << 16;
+
+  // Size from which the parallel sorts are used, given several threads.
+  private static final int PARALLEL_THRESHOLD = 1 << 20;
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive), returning the
+   * choice made.
+   */
+  static SortDecision sort(Object[] a, int low, int high, Comparator<Object> c) {
+    int size = high - low;
+    if (size <= INSERTION_SORT_THRESHOLD) {
+      Sorts.insertionSort(a, low, high, c);
+      return new SortDecision("insertionSort", size, Double.NaN, Double.NaN);
+    }
+
+    int pairs = samplePairs(size);
+    Object[] sample = new Object[pairs];
+    int inOrder = 0;
+    for (int i = 0; i < pairs; i++) {
+      int position = samplePosition(low, size, i, pairs);
+      sample[i] = a[position];
+      if (c.compare(a[position], a[position + 1]) <= 0) {
+	inOrder++;
+      }
+    }
+    Sorts.iterativeMergeSort(sample, 0, pairs, new Object[pairs], 0, c);
+    int repeats = 0;
+    for (int i = 1; i < pairs; i++) {
+      if (c.compare(sample[i - 1], sample[i]) == 0) {
+	repeats++;
+      }
+    }
+    double sortedness = (double) inOrder / pairs;
+    double duplicates = (double) repeats / pairs;
+
+    String algorithm;
+    if (isPresorted(sortedness)) {
+      algorithm = "timSort";
+      Sorts.timSort(a, low, high, c);
+    } else if (duplicates >= DUPLICATE_RATIO) {
+      algorithm = "quickSort";
+      Sorts.quickSort(a, low, high, c);
+    } else if (isParallel(size)) {
+      algorithm = "parallelSampleSort";
+      Sorts.parallelSampleSort(a, low, high, c, ForkJoinPool.commonPool(),
+			       Sorts.DEFAULT_PARALLEL_THRESHOLD);
+    } else {
+      algorithm = "timSort";
+      Sorts.timSort(a, low, high, c);
+    }
+    return new SortDecision(algorithm, size, sortedness, duplicates);
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive), returning the
+   * choice made.
+   */
+  static SortDecision sort(int[] a, int low, int high) {
+    int size = high - low;
+    long[] keys = null;
+    if (size > INSERTION_SORT_THRESHOLD) {
+      keys = new long[2 * samplePairs(size)];
+      for (int i = 0; i < keys.length; i += 2) {
+	int position = samplePosition(low, size, i / 2, keys.length / 2);
+	keys[i] = a[position];
+	keys[i + 1] = a[position + 1];
+      }
+    }
+    SortDecision decision = choose(size, keys, true, true);
+    switch (decision.getAlgorithm()) {
+      case "insertionSort":
+	Sorts.insertionSort(a, low, high);
+	break;
+      case "parallelSampleSort":
+	Sorts.parallelSampleSort(a, low, high, ForkJoinPool.commonPool(),
+				 Sorts.DEFAULT_PARALLEL_THRESHOLD);
+	break;
+      case "radixSort":
+	Sorts.radixSort(a, low, high);
+	break;
+      default:
+	Sorts.quickSort(a, low, high);
+    }
+    return decision;
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive), returning the
+   * choice made.
+   */
+  static SortDecision sort(long[] a, int low, int high) {
+    int size = high - low;
+    long[] keys = null;
+    if (size > INSERTION_SORT_THRESHOLD) {
+      keys = new long[2 * samplePairs(size)];
+      for (int i = 0; i < keys.length; i += 2) {
+	int position = samplePosition(low, size, i / 2, keys.length / 2);
+	keys[i] = a[position];
+	keys[i + 1] = a[position + 1];
+      }
+    }
+    SortDecision decision = choose(size, keys, false, true);
+    switch (decision.getAlgorithm()) {
+      case "insertionSort":
+	Sorts.insertionSort(a, low, high);
+	break;
+      case "parallelSampleSort":
+	Sorts.parallelSampleSort(a, low, high, ForkJoinPool.commonPool(),
+				 Sorts.DEFAULT_PARALLEL_THRESHOLD);
+	break;
+      default:
+	Sorts.quickSort(a, low, high);
+    }
+    return decision;
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive), returning the
+   * choice made.
+   */
+  static SortDecision sort(float[] a, int low, int high) {
+    int size = high - low;
+    long[] keys = null;
+    if (size > INSERTION_SORT_THRESHOLD) {
+      keys = new long[2 * samplePairs(size)];
+      for (int i = 0; i < keys.length; i += 2) {
+	int position = samplePosition(low, size, i / 2, keys.length / 2);
+	keys[i] = KeySort.sortableBits(a[position]);
+	keys[i + 1] = KeySort.sortableBits(a[position + 1]);
+      }
+    }
+    SortDecision decision = choose(size, keys, true, false);
+    switch (decision.getAlgorithm()) {
+      case "insertionSort":
+	Sorts.insertionSort(a, low, high);
+	break;
+      case "radixSort":
+	Sorts.radixSort(a, low, high);
+	break;
+      default:
+	Sorts.quickSort(a, low, high);
+    }
+    return decision;
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive), returning the
+   * choice made.
+   */
+  static SortDecision sort(double[] a, int low, int high) {
+    int size = high - low;
+    long[] keys = null;
+    if (size > INSERTION_SORT_THRESHOLD) {
+      keys = new long[2 * samplePairs(size)];
+      for (int i = 0; i < keys.length; i += 2) {
+	int position = samplePosition(low, size, i / 2, keys.length / 2);
+	keys[i] = KeySort.sortableBits(a[position]);
+	keys[i + 1] = KeySort.sortableBits(a[position + 1]);
+      }
+    }
+    SortDecision decision = choose(size, keys, false, false);
+    switch (decision.getAlgorithm()) {
+      case "insertionSort":
+	Sorts.insertionSort(a, low, high);
+	break;
+      default:
+	Sorts.quickSort(a, low, high);
+    }
+    return decision;
+  }
+
+  /**
+   * Chooses the sort for a primitive array of "size" elements, given its
+   * sampled neighbouring pairs as order-preserving long "keys" ({first0,
+   * second0, first1, ...}), or null if the array was too short to sample.
+   * "radix" and "parallel" tell whether those sorts exist for the type.
+   */
+  private static SortDecision choose(int size, long[] keys, boolean radix,
+				     boolean parallel) {
+    if (keys == null) {
+      return new SortDecision("insertionSort", size, Double.NaN, Double.NaN);
+    }
+    int pairs = keys.length / 2;
+    long[] sample = new long[pairs];
+    int inOrder = 0;
+    for (int i = 0; i < pairs; i++) {
+      sample[i] = keys[2 * i];
+      if (keys[2 * i] <= keys[(2 * i) + 1]) {
+	inOrder++;
+      }
+    }
+    Sorts.insertionSort(sample);
+    int repeats = 0;
+    for (int i = 1; i < pairs; i++) {
+      if (sample[i - 1] == sample[i]) {
+	repeats++;
+      }
+    }
+    double sortedness = (double) inOrder / pairs;
+    double duplicates = (double) repeats / pairs;
+
+    String algorithm;
+    if (parallel && isParallel(size) && (duplicates < DUPLICATE_RATIO)) {
+      algorithm = "parallelSampleSort";
+    } else if (radix && (size >= RADIX_SORT_THRESHOLD)) {
+      algorithm = "radixSort";
+    } else {
+      algorithm = "quickSort";
+    }
+    return new SortDecision(algorithm, size, sortedness, duplicates);
+  }
+
+  /**
+   * Returns the number of pairs to sample from "size" elements: one pair
+   * for every 16 elements, up to SAMPLE_PAIRS.
+   */
+  private static int samplePairs(int size) {
+    return Math.max(1, Math.min(SAMPLE_PAIRS, size / INSERTION_SORT_THRESHOLD));
+  }
+
+  /**
+   * Returns the index of the first element of pair "i" of "pairs": a
+   * pseudo-random place in stretch "i" of "pairs" equal stretches of the
+   * "size" elements from "low". Evenly spaced samples would all fall on
+   * the same few places in every period of a periodic input, such as a
+   * sawtooth, and see only a few of its values. The same size always
+   * gives the same places, so the choice can be repeated. The second
+   * element of the pair follows the first, so it must stay below the last
+   * index.
+   */
+  private static int samplePosition(int low, int size, int i, int pairs) {
+    int stride = (size - 1) / pairs;
+    int random = Sorts.xorShift((i + 1) * 0x9e3779b9);
+    return low + (i * stride) + Math.floorMod(random, stride);
+  }
+
+  private static boolean isPresorted(double sortedness) {
+    return (sortedness >= PRESORTED_RATIO) || (sortedness <= 1.0 - PRESORTED_RATIO);
+  }
+
+  private static boolean isParallel(int size) {
+    return (size >= PARALLEL_THRESHOLD) && (ForkJoinPool.getCommonPoolParallelism() > 1);
+  }
+
+}
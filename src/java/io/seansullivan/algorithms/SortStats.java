@@ -0,0 +1,97 @@
+package io.seansullivan.algorithms;
+
+
+/**
+ * Statistics of one instrumented sort call, passed to a SortListener.
+ *
+ * Comparisons are counted on every thread. Swaps, moves and recursion
+ * depth are counted only on the thread which called the sort, so for the
+ * parallel sorts they cover just the work done on that thread. Moves are
+ * element writes made by merging and by shifting elements, besides those
+ * made by swaps.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public final class SortStats {
+
+  private final String algorithm;
+  private final int size;
+  private final long comparisons;
+  private final long swaps;
+  private final long moves;
+  private final int maxDepth;
+  private final long allocatedBytes;
+  private final long nanos;
+
+  SortStats(String algorithm, int size, long comparisons, long swaps, long moves,
+	    int maxDepth, long allocatedBytes, long nanos) {
+    this.algorithm = algorithm;
+    this.size = size;
+    this.comparisons = comparisons;
+    this.swaps = swaps;
+    this.moves = moves;
+    this.maxDepth = maxDepth;
+    this.allocatedBytes = allocatedBytes;
+    this.nanos = nanos;
+  }
+
+  /**
+   * Returns the name of the Sorts method, such as "quickSort".
+   */
+  public String getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * Returns the number of elements sorted.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  public long getComparisons() {
+    return comparisons;
+  }
+
+  public long getSwaps() {
+    return swaps;
+  }
+
+  public long getMoves() {
+    return moves;
+  }
+
+  /**
+   * Returns the deepest level of recursion reached, or 0 for the sorts
+   * which do not recurse.
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Returns the bytes allocated by the calling thread during the sort,
+   * including the copy of a list into an array, or -1 if the JVM does not
+   * support counting them.
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Returns the wall time of the sort call, in nanoseconds.
+   */
+  public long getNanos() {
+    return nanos;
+  }
+
+  @Override
+  public String toString() {
+    return algorithm + "[size=" + size + ", comparisons=" + comparisons
+	+ ", swaps=" + swaps + ", moves=" + moves + ", maxDepth=" + maxDepth
+	+ ", allocatedBytes=" + allocatedBytes + ", nanos=" + nanos + "]";
+  }
+
+}
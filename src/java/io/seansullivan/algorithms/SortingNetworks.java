@@ -0,0 +1,110 @@
+package io.seansullivan.algorithms;
+
+import java.util.Arrays;
+
+
+/**
+ * Sorting networks for small blocks of primitives, used by the primitive
+ * quick sorts in Sorts in place of insertion sort for their short ranges.
+ *
+ * A sorting network is a fixed sequence of compare-exchange steps, each
+ * of which puts the smaller of two elements first. Since the sequence
+ * does not depend on the data, each step can be done with min() and
+ * max(), which compile to conditional moves: there are no branches to
+ * mispredict, where insertion sort mispredicts about once per element on
+ * random input.
+ *
+ * The networks are Batcher's odd-even merge sort, generated once for
+ * every size up to MAX_SIZE. The network for a power of two sorts any
+ * smaller block too, after dropping the steps which touch the missing
+ * elements: treating them as larger than every element, those steps
+ * would never move anything.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+final class SortingNetworks {
+
+  private SortingNetworks() {}
+
+  /**
+   * Size of the largest block the networks sort.
+   */
+  static final int MAX_SIZE = 32;
+
+  // NETWORKS[n] holds the compare-exchange steps for "n" elements, as
+  // pairs of indexes {i0, j0, i1, j1, ...} with each i < j.
+  private static final int[][] NETWORKS = new int[MAX_SIZE + 1][];
+
+  static {
+    int[] steps = new int[MAX_SIZE * MAX_SIZE];
+    for (int n = 0; n <= MAX_SIZE; n++) {
+      int length = 0;
+      // Batcher's odd-even merge sort, iterative form, for the next power
+      // of two; steps reaching past "n" are dropped.
+      for (int p = 1; p < n; p *= 2) {
+	for (int k = p; k >= 1; k /= 2) {
+	  for (int j = k % p; j + k < n; j += 2 * k) {
+	    for (int i = 0; (i < k) && (i + j + k < n); i++) {
+	      if ((i + j) / (2 * p) == (i + j + k) / (2 * p)) {
+		steps[length++] = i + j;
+		steps[length++] = i + j + k;
+	      }
+	    }
+	  }
+	}
+      }
+      NETWORKS[n] = Arrays.copyOf(steps, length);
+    }
+  }
+
+  /**
+   * Sorts a[low..high), which holds at most MAX_SIZE elements.
+   */
+  static void sort(int[] a, int low, int high) {
+    int[] network = NETWORKS[high - low];
+    for (int s = 0; s < network.length; s += 2) {
+      int i = low + network[s];
+      int j = low + network[s + 1];
+      int x = a[i];
+      int y = a[j];
+      a[i] = Math.min(x, y);
+      a[j] = Math.max(x, y);
+    }
+  }
+
+  /**
+   * Sorts a[low..high), which holds at most MAX_SIZE elements.
+   */
+  static void sort(long[] a, int low, int high) {
+    int[] network = NETWORKS[high - low];
+    for (int s = 0; s < network.length; s += 2) {
+      int i = low + network[s];
+      int j = low + network[s + 1];
+      long x = a[i];
+      long y = a[j];
+      a[i] = Math.min(x, y);
+      a[j] = Math.max(x, y);
+    }
+  }
+
+  /**
+   * Sorts a[low..high), which holds at most MAX_SIZE elements and no NaNs.
+   * -0.0 and 0.0 are treated as equal. Math.min() and Math.max() are not
+   * used, since they order the zeros with extra branches.
+   */
+  static void sort(float[] a, int low, int high) {
+    int[] network = NETWORKS[high - low];
+    for (int s = 0; s < network.length; s += 2) {
+      int i = low + network[s];
+      int j = low + network[s + 1];
+      float x = a[i];
+      float y = a[j];
+      boolean inOrder = x <= y;
+      a[i] = inOrder ? x : y;
+      a[j] = inOrder ? y : x;
+    }
+  }
+
+}
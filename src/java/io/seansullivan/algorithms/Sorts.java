@@ -4,9 +4,20 @@ import java.lang.Comparable;
 import java.lang.System;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Random;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import com.google.common.base.Preconditions;
 
 
 /**
@@ -14,18 +25,46 @@ import java.util.Random;
  * lists, including:
  *
  * 1) Merge sort
- * 2) Quick sort
+ * 2) Quick sort (introsort)
  * 3) Heap sort
  * 4) Shell sort
  * 5) Insertion sort
  * 6) Selection sort
  * 7) Bubble sort
+ * 8) Parallel merge sort
+ * 9) Iterative (bottom-up) merge sort
+ * 10) LSD radix sort (int, long and float arrays)
+ * 11) Adaptive natural merge sort (TimSort)
+ * 12) Parallel sample sort (also int and long arrays)
+ * 13) Sort by extracted long or double keys (sortByLongKey, sortByDoubleKey,
+ *     argsort)
+ * 14) Counting sort (int arrays, and lists by int key), with a parallel
+ *     version and a run-length form (countRuns)
+ * 15) String sorts which skip shared prefixes: MSD radix sort, multikey
+ *     quick sort and LCP merge sort
+ *
+ * There are also selection methods which avoid a full sort when only part
+ * of the order is needed: select() finds the k-th smallest element in O(n)
+ * time, partialSort() sorts just the k smallest, and topK() keeps the k
+ * smallest of a stream in a bounded heap. When the number needed is not
+ * known up front, lazySorted() returns the elements in order, sorting
+ * only as far as they are read. And merge() lazily merges sources which
+ * are already sorted.
  *
- * Sorts to implement in future:
- * 1) Iterative merge sort
- * 2) Radix sort (String, Integer)
+ * When nothing is known about the input, sort() samples it and picks one
+ * of these sorts, avoiding the O(n^2) ones: see SortSelector for the
+ * rules, and the returned SortDecision for the choice made.
  *
- * The generic type of the list must implement the Comparable interface.
+ * Merge, quick, heap, shell and insertion sort are also implemented for
+ * int, long, float and double arrays (and ranges within them), which
+ * avoids boxing every element. Float and double values are ordered as
+ * by Float.compare and Double.compare, matching the List versions.
+ *
+ * The generic type of the list must implement the Comparable interface,
+ * unless a Comparator is passed. The Comparator versions also sort arrays,
+ * or ranges within them, in place. Sorting an array directly avoids
+ * copying a list into an array and back, so it is the cheapest way to
+ * sort large collections of objects.
  *
  * @author Sean Sullivan (seans3@gmail.com)
  *
@@ -33,9 +72,221 @@ import java.util.Random;
  */
 public class Sorts {
 
+  /**
+   * Size of a sub-array below which insertion sort is used, since it
+   * beats the O(n log n) sorts on short inputs.
+   */
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  /**
+   * Size of a sub-array above which quick sort takes the ninther (median
+   * of three medians) as the pivot, rather than the median of three.
+   */
+  private static final int NINTHER_THRESHOLD = 128;
+
+  /**
+   * Size of a sub-array below which the primitive quick sorts finish with
+   * a sorting network (see SortingNetworks).
+   */
+  private static final int NETWORK_SORT_THRESHOLD = 16;
+
+  /**
+   * Most moves the primitive quick sorts' insertion sort of a partition
+   * which looks sorted makes before giving up on it.
+   */
+  private static final int PARTIAL_INSERTION_SORT_LIMIT = 8;
+
+  /**
+   * Orders Comparable elements by their natural ordering. Used by the
+   * sorts for Comparable lists, and whenever a null Comparator is passed.
+   */
+  private static final Comparator<Object> NATURAL_ORDER = new Comparator<Object>() {
+    @SuppressWarnings("unchecked")
+    public int compare(Object o1, Object o2) {
+      return ((Comparable) o1).compareTo(o2);
+    }
+  };
+
+  /**
+   * Sorts the passed list in ascending order, with whichever sort suits
+   * it best, judging from a sample of the input. O(n log n) in the worst
+   * case, and close to linear on presorted input or input with few
+   * distinct values. Modifies the passed list. The sort is not guaranteed
+   * to be stable; use mergeSort() or timSort() if equal elements must keep
+   * their relative order.
+   *
+   * @param list The list to be sorted.
+   * @param T generic type of list element, which must implement Comparable.
+   * @return The sort chosen, and the sampled features it was chosen from.
+   */
+  public static <T extends Comparable<T>> SortDecision sort(List<T> list) {
+    return sort(list, NATURAL_ORDER);
+  }
+
+  /**
+   * Sorts the passed list with whichever sort suits it best, in the order
+   * defined by the passed comparator. Modifies the passed list. Not
+   * guaranteed to be stable.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   * @return The sort chosen, and the sampled features it was chosen from.
+   */
+  public static <T> SortDecision sort(List<T> list, Comparator<? super T> comparator) {
+    assert(list != null);
+
+    // First, copy the list into an array.
+    Object[] a = list.toArray();
+
+    SortDecision decision = SortSelector.sort(a, 0, a.length, order(comparator));
+
+    // Write the sorted array back into the list.
+    arrayIntoList(a, list);
+    return decision;
+  }
+
+  /**
+   * Sorts the passed array in place with whichever sort suits it best, in
+   * the order defined by the passed comparator. Not guaranteed to be
+   * stable.
+   *
+   * @param a The array to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @return The sort chosen, and the sampled features it was chosen from.
+   */
+  public static <T> SortDecision sort(T[] a, Comparator<? super T> comparator) {
+    return sort(a, 0, a.length, comparator);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) with whichever sort suits them best, in the order
+   * defined by the passed comparator. Not guaranteed to be stable.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @return The sort chosen, and the sampled features it was chosen from.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static <T> SortDecision sort(T[] a, int fromIndex, int toIndex,
+				      Comparator<? super T> comparator) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    return SortSelector.sort(a, fromIndex, toIndex, order(comparator));
+  }
+
+  /**
+   * Sorts the passed int array in ascending order with whichever sort
+   * suits it best, judging from a sample of the input.
+   *
+   * @param a The array to be sorted.
+   * @return The sort chosen, and the sampled features it was chosen from.
+   */
+  public static SortDecision sort(int[] a) {
+    return sort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed int array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) with whichever sort suits them best.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @return The sort chosen, and the sampled features it was chosen from.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static SortDecision sort(int[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    return SortSelector.sort(a, fromIndex, toIndex);
+  }
+
+  /**
+   * Sorts the passed long array in ascending order with whichever sort
+   * suits it best, judging from a sample of the input.
+   *
+   * @param a The array to be sorted.
+   * @return The sort chosen, and the sampled features it was chosen from.
+   */
+  public static SortDecision sort(long[] a) {
+    return sort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed long array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) with whichever sort suits them best.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @return The sort chosen, and the sampled features it was chosen from.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static SortDecision sort(long[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    return SortSelector.sort(a, fromIndex, toIndex);
+  }
+
+  /**
+   * Sorts the passed float array in ascending order with whichever sort
+   * suits it best, judging from a sample of the input.
+   *
+   * @param a The array to be sorted.
+   * @return The sort chosen, and the sampled features it was chosen from.
+   */
+  public static SortDecision sort(float[] a) {
+    return sort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed float array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) with whichever sort suits them best.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @return The sort chosen, and the sampled features it was chosen from.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static SortDecision sort(float[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    return SortSelector.sort(a, fromIndex, toIndex);
+  }
+
+  /**
+   * Sorts the passed double array in ascending order with whichever sort
+   * suits it best, judging from a sample of the input.
+   *
+   * @param a The array to be sorted.
+   * @return The sort chosen, and the sampled features it was chosen from.
+   */
+  public static SortDecision sort(double[] a) {
+    return sort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed double array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) with whichever sort suits them best.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @return The sort chosen, and the sampled features it was chosen from.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static SortDecision sort(double[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    return SortSelector.sort(a, fromIndex, toIndex);
+  }
+
   /**
    * Sorts the passed list using O(n log n) merge sort. Modifies the
-   * passed list. Sorts in ascending order.
+   * passed list. Sorts in ascending order. The sort is stable: equal
+   * elements keep their relative order.
    *
    * The list is first copied into an array, since we use indexes
    * for this algorithm. After the array is sorted, it is written
@@ -44,41 +295,114 @@ public class Sorts {
    * @param list The list to be sorted.
    * @param T generic type of list element, which must implement Comparable.
    */
-  @SuppressWarnings("unchecked")
   public static <T extends Comparable<T>> void mergeSort(List<T> list) {
+    mergeSort(list, NATURAL_ORDER);
+  }
+
+  /**
+   * Sorts the passed list using O(n log n) merge sort, in the order
+   * defined by the passed comparator. Modifies the passed list. The sort
+   * is stable.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   */
+  public static <T> void mergeSort(List<T> list, Comparator<? super T> comparator) {
     assert(list != null);
 
     // First, copy the list into an array.
     Object[] a = list.toArray();
 
     // Call merge sort on entire array.
-    mergeSort(a, 0, a.length - 1);
+    Comparator<Object> c = SortProbe.begin("mergeSort", a.length, comparator);
+    try {
+      mergeSortRange(a, 0, a.length, c);
+    } finally {
+      SortProbe.end(c);
+    }
 
     // Write the sorted array back into the list.
     arrayIntoList(a, list);
   }
 
-  
+  /**
+   * Sorts the passed array in place using O(n log n) merge sort, in the
+   * order defined by the passed comparator. The sort is stable.
+   *
+   * @param a The array to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   */
+  public static <T> void mergeSort(T[] a, Comparator<? super T> comparator) {
+    mergeSort(a, 0, a.length, comparator);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using O(n log n) merge sort, in the order defined
+   * by the passed comparator. The sort is stable.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static <T> void mergeSort(T[] a, int fromIndex, int toIndex,
+				   Comparator<? super T> comparator) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Comparator<Object> c =
+	SortProbe.begin("mergeSort", toIndex - fromIndex, comparator);
+    try {
+      mergeSortRange(a, fromIndex, toIndex, c);
+    } finally {
+      SortProbe.end(c);
+    }
+  }
+
+  /**
+   * Merge sorts "a" from "low" (inclusive) to "high" (exclusive). Each
+   * merge copies out at most half of the range, so a single half-sized
+   * working array is allocated up front and shared by all of the merges.
+   */
+  private static void mergeSortRange(Object[] a, int low, int high,
+				     Comparator<Object> c) {
+    if (high - low > 1) {
+      Object[] work = new Object[(high - low + 1) / 2];
+      mergeSort(a, work, low, high - 1, c);
+    }
+  }
+
+
   /**
    * Recursive method which calls itself on two halves of the
    * array "a". The base case is when "a" is a single element
    * array. After calling itself on the lower and upper halves
    * of the array, this method merges the two sorted sub-arrays.
    */
-  private static void mergeSort(Object[] a, int low, int high) {
+  private static void mergeSort(Object[] a, Object[] work, int low, int high,
+				Comparator<Object> c) {
     assert(a != null);
     assert(high < a.length);
 
     // Base case: low == high means "a" is a one-element array.
     if (low < high) {
+      if (SortProbe.ENABLED) {
+	SortProbe.enter();
+      }
       // Calculate the index to split the array.
       int middle = ((int) ((high - low) / 2)) + low;
       // Recursive call to lower half of "a".
-      mergeSort(a, low, middle);
+      mergeSort(a, work, low, middle, c);
       // Recursive call to upper half of "a".
-      mergeSort(a, middle + 1, high);
+      mergeSort(a, work, middle + 1, high, c);
       // Merge the sorted lower half sub-array with the upper half.
-      merge(a, low, middle, high);
+      merge(a, work, low, middle, high, c);
+      if (SortProbe.ENABLED) {
+	SortProbe.exit();
+      }
     }
   }
 
@@ -87,392 +411,4128 @@ public class Sorts {
    * The indexes "low", "middle", and "high" are passed to denote two already
    * sorted sub-arrays within "a". This method merges these two sorted
    * sub-arrays by iteratively choosing the smallest element from each sub-array.
+   * Ties are taken from the lower sub-array, which keeps the sort stable.
    *
-   * NOTE: The "new" creation of two arrays could be optimized, by creating
-   * a working array once and passing it into this method.
+   * Only the lower sub-array is copied out (into "work"). The upper sub-array
+   * is merged from where it is, since the next write into "a" can never
+   * pass the next unread element of the upper sub-array.
    */
-  @SuppressWarnings("unchecked")
-  private static void merge(Object[] a, int low, int middle, int high) {
+  private static void merge(Object[] a, Object[] work, int low, int middle, int high,
+			    Comparator<Object> c) {
     assert(low <= middle);
     assert(middle < high);
-      
-    // Copy two already-sorted sub-arrays from "a" into "lower" and "upper".
-    // First (lower): array "a" from "low" to "middle".
-    // Second (upper): array "a" from "middle + 1" to "high".
-    // Invariant: arrays "lower" and "upper" are already sorted.
+    assert(work.length >= middle - low + 1);
+
+    // Copy the already-sorted lower sub-array, array "a" from "low" to
+    // "middle", into "work". The upper sub-array is array "a" from
+    // "middle + 1" to "high".
     //
     int lowerSize = middle - low + 1;
-    Object[] lower = new Object[lowerSize];
-    System.arraycopy(a, low, lower, 0, lowerSize);
-
-    int upperSize = high - middle;
-    Object[] upper = new Object[upperSize];
-    System.arraycopy(a, middle + 1, upper, 0, upperSize);
+    System.arraycopy(a, low, work, 0, lowerSize);
+    if (SortProbe.ENABLED) {
+      SortProbe.moved(lowerSize);
+    }
 
-    // Merge arrays "lower" and "upper". Choose the next smallest
-    // value from either "lower" or "upper". Write the values back into "a"
-    // from index "low" until index "high".
+    // Merge "work" and the upper sub-array. Choose the next smallest
+    // value from either, writing the values back into "a" from index
+    // "low". Once the lower values are used up, the remaining upper
+    // values are already in their final position.
     //
     int lowerIdx = 0;
-    int upperIdx = 0;
-    for (int i = low; i <= high; i++) {
-      // Need to check if we've exhausted members from "lower" or "upper".
-      if ((upperIdx >= upper.length) ||
-	  ((lowerIdx < lower.length) &&
-	   ((Comparable) lower[lowerIdx]).compareTo(upper[upperIdx]) < 0)) {
-	a[i] = lower[lowerIdx++];
+    int upperIdx = middle + 1;
+    int i = low;
+    for (; lowerIdx < lowerSize; i++) {
+      // Need to check if we've exhausted members from the upper sub-array.
+      if ((upperIdx > high) ||
+	  c.compare(work[lowerIdx], a[upperIdx]) <= 0) {
+	a[i] = work[lowerIdx++];
       } else {
-	a[i] = upper[upperIdx++];
+	a[i] = a[upperIdx++];
       }
     }
+    if (SortProbe.ENABLED) {
+      SortProbe.moved(i - low);
+    }
   }
 
   /**
-   * Sorts the passed list using O(n log n) quick sort (expected case), and
-   * O(n^2) in the degenerate worst case. Modifies the passed list. Sorts
-   * in ascending order.
+   * Sorts the passed list using an O(n log n) bottom-up (iterative) merge
+   * sort. Modifies the passed list. Sorts in ascending order. The sort
+   * is stable.
    *
-   * The list is first copied into an array, since we use indexes
-   * for this algorithm. After the array is sorted, it is written
-   * back into the passed list.
+   * Unlike mergeSort(), there is no recursion. Short runs are first
+   * sorted with insertion sort, then runs of doubling width are merged
+   * back and forth between the array and a single working array, which
+   * is allocated once for the whole sort.
+   *
+   * @param list The list to be sorted.
+   * @param T generic type of list element, which must implement Comparable.
+   */
+  public static <T extends Comparable<T>> void iterativeMergeSort(List<T> list) {
+    assert(list != null);
+
+    iterativeMergeSort(list, NATURAL_ORDER, new Object[list.size()]);
+  }
+
+  /**
+   * Sorts the passed list using an O(n log n) bottom-up (iterative) merge
+   * sort, using the passed "buffer" as the working array. The caller may
+   * reuse the same buffer across many calls, so that the sort itself
+   * allocates no working space. The contents of the buffer on return are
+   * unspecified.
+   *
+   * @param list The list to be sorted.
+   * @param buffer Working array, at least as long as the list.
+   * @param T generic type of list element, which must implement Comparable.
+   * @throws IllegalArgumentException if the buffer is shorter than the list.
+   */
+  public static <T extends Comparable<T>> void iterativeMergeSort(List<T> list,
+								  Object[] buffer) {
+    iterativeMergeSort(list, NATURAL_ORDER, buffer);
+  }
+
+  /**
+   * Sorts the passed list using an O(n log n) bottom-up (iterative) merge
+   * sort, in the order defined by the passed comparator. The sort is stable.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   */
+  public static <T> void iterativeMergeSort(List<T> list,
+					    Comparator<? super T> comparator) {
+    assert(list != null);
+
+    iterativeMergeSort(list, comparator, new Object[list.size()]);
+  }
+
+  /**
+   * Sorts the passed list using an O(n log n) bottom-up (iterative) merge
+   * sort, in the order defined by the passed comparator, using the passed
+   * "buffer" as the working array.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param buffer Working array, at least as long as the list.
+   * @param T generic type of list element.
+   * @throws IllegalArgumentException if the buffer is shorter than the list.
+   */
+  public static <T> void iterativeMergeSort(List<T> list,
+					    Comparator<? super T> comparator,
+					    Object[] buffer) {
+    assert(list != null);
+    Preconditions.checkNotNull(buffer);
+    Preconditions.checkArgument(buffer.length >= list.size());
+
+    // First, copy the list into an array.
+    Object[] a = list.toArray();
+
+    Comparator<Object> c = SortProbe.begin("iterativeMergeSort", a.length, comparator);
+    try {
+      iterativeMergeSort(a, 0, a.length, buffer, 0, c);
+    } finally {
+      SortProbe.end(c);
+    }
+
+    // Write the sorted array back into the list.
+    arrayIntoList(a, list);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using an O(n log n) bottom-up (iterative) merge
+   * sort, in the order defined by the passed comparator. Uses the passed
+   * "buffer" as the working array, so the sort allocates nothing. The
+   * sort is stable.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param buffer Working array, at least as long as the range.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the buffer is too short.
+   */
+  public static <T> void iterativeMergeSort(T[] a, int fromIndex, int toIndex,
+					    Comparator<? super T> comparator,
+					    Object[] buffer) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Preconditions.checkArgument(buffer.length >= toIndex - fromIndex);
+    Preconditions.checkArgument(buffer != a);
+    Comparator<Object> c =
+	SortProbe.begin("iterativeMergeSort", toIndex - fromIndex, comparator);
+    try {
+      iterativeMergeSort(a, fromIndex, toIndex, buffer, 0, c);
+    } finally {
+      SortProbe.end(c);
+    }
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive), using "work"
+   * from "workLow" as the working array. Each pass merges pairs of runs
+   * from one array into the other, then the two arrays swap roles. If the
+   * result ends up in "work", it is copied back into "a" once at the end.
+   * Package-private so that SampleSort can sort its buckets with it.
+   */
+  static void iterativeMergeSort(Object[] a, int low, int high,
+				 Object[] work, int workLow,
+				 Comparator<Object> c) {
+    assert(a != work);
+    assert(work.length - workLow >= high - low);
+
+    int size = high - low;
+    // Sort short runs in place, since insertion sort beats merging for them.
+    for (int start = low; start < high; start += INSERTION_SORT_THRESHOLD) {
+      int end = Math.min(start + INSERTION_SORT_THRESHOLD, high);
+      insertionSortRange(a, start, end, c);
+    }
+
+    Object[] src = a;
+    int srcLow = low;
+    Object[] dst = work;
+    int dstLow = workLow;
+    for (int width = INSERTION_SORT_THRESHOLD; width < size; width *= 2) {
+      for (int start = 0; start < size; start += 2 * width) {
+	int middle = Math.min(start + width, size);
+	int end = Math.min(start + (2 * width), size);
+	mergeInto(src, srcLow + start, srcLow + middle, srcLow + middle,
+		  srcLow + end, dst, dstLow + start, c);
+      }
+      // Swap "src" and "dst" for the next pass.
+      Object[] temp = src;
+      src = dst;
+      dst = temp;
+      int tempLow = srcLow;
+      srcLow = dstLow;
+      dstLow = tempLow;
+    }
+
+    if (src != a) {
+      System.arraycopy(src, srcLow, a, low, size);
+      if (SortProbe.ENABLED) {
+	SortProbe.moved(size);
+      }
+    }
+  }
+
+  /**
+   * Default size of a sub-array below which parallelMergeSort() stops
+   * forking tasks and sorts (or merges) sequentially.
+   */
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 13;
+
+  /**
+   * Sorts the passed list using a parallel O(n log n) merge sort on the
+   * common ForkJoinPool. Modifies the passed list. Sorts in ascending
+   * order. Like mergeSort(), the sort is stable.
+   *
+   * @param list The list to be sorted.
+   * @param T generic type of list element, which must implement Comparable.
+   */
+  public static <T extends Comparable<T>> void parallelMergeSort(List<T> list) {
+    parallelMergeSort(list, NATURAL_ORDER, ForkJoinPool.commonPool(),
+		      DEFAULT_PARALLEL_THRESHOLD);
+  }
+
+  /**
+   * Sorts the passed list using a parallel O(n log n) merge sort. Both
+   * halves of each sub-array are sorted as separate tasks in the passed
+   * "pool", and the two sorted halves are then merged in parallel as well,
+   * so the final merges are not a sequential bottleneck. Sub-arrays of at
+   * most "threshold" elements are sorted and merged sequentially.
+   *
+   * One working array the size of the list is allocated. Each level of
+   * the recursion merges from one array into the other, so the sorted
+   * halves never have to be copied back.
+   *
+   * @param list The list to be sorted.
+   * @param pool The pool which runs the sort and merge tasks.
+   * @param threshold Sub-array size below which work is done sequentially.
+   * @param T generic type of list element, which must implement Comparable.
+   * @throws IllegalArgumentException if threshold is not positive.
+   */
+  public static <T extends Comparable<T>> void parallelMergeSort(List<T> list,
+								 ForkJoinPool pool,
+								 int threshold) {
+    parallelMergeSort(list, NATURAL_ORDER, pool, threshold);
+  }
+
+  /**
+   * Sorts the passed list using a parallel O(n log n) merge sort on the
+   * common ForkJoinPool, in the order defined by the passed comparator.
+   * The sort is stable.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   */
+  public static <T> void parallelMergeSort(List<T> list,
+					   Comparator<? super T> comparator) {
+    parallelMergeSort(list, comparator, ForkJoinPool.commonPool(),
+		      DEFAULT_PARALLEL_THRESHOLD);
+  }
+
+  /**
+   * Sorts the passed list using a parallel O(n log n) merge sort, in the
+   * order defined by the passed comparator. The sort is stable.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param pool The pool which runs the sort and merge tasks.
+   * @param threshold Sub-array size below which work is done sequentially.
+   * @param T generic type of list element.
+   * @throws IllegalArgumentException if threshold is not positive.
+   */
+  public static <T> void parallelMergeSort(List<T> list,
+					   Comparator<? super T> comparator,
+					   ForkJoinPool pool, int threshold) {
+    assert(list != null);
+    Preconditions.checkNotNull(pool);
+    Preconditions.checkArgument(threshold > 0);
+
+    // First, copy the list into an array.
+    Object[] a = list.toArray();
+
+    Comparator<Object> c = SortProbe.begin("parallelMergeSort", a.length, comparator);
+    try {
+      parallelMergeSortRange(a, 0, a.length, c, pool, threshold);
+    } finally {
+      SortProbe.end(c);
+    }
+
+    // Write the sorted array back into the list.
+    arrayIntoList(a, list);
+  }
+
+  /**
+   * Sorts the passed array in place using a parallel O(n log n) merge sort
+   * on the common ForkJoinPool, in the order defined by the passed
+   * comparator. The sort is stable.
+   *
+   * @param a The array to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   */
+  public static <T> void parallelMergeSort(T[] a, Comparator<? super T> comparator) {
+    parallelMergeSort(a, 0, a.length, comparator, ForkJoinPool.commonPool(),
+		      DEFAULT_PARALLEL_THRESHOLD);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using a parallel O(n log n) merge sort, in the
+   * order defined by the passed comparator. The sort is stable.
    *
-   * NOTE: We can optimize this algorithm by coding a method to ensure
-   * the pivot is close to the median value of the array each time.
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param pool The pool which runs the sort and merge tasks.
+   * @param threshold Sub-array size below which work is done sequentially.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if threshold is not positive.
+   */
+  public static <T> void parallelMergeSort(T[] a, int fromIndex, int toIndex,
+					   Comparator<? super T> comparator,
+					   ForkJoinPool pool, int threshold) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Preconditions.checkNotNull(pool);
+    Preconditions.checkArgument(threshold > 0);
+    Comparator<Object> c =
+	SortProbe.begin("parallelMergeSort", toIndex - fromIndex, comparator);
+    try {
+      parallelMergeSortRange(a, fromIndex, toIndex, c, pool, threshold);
+    } finally {
+      SortProbe.end(c);
+    }
+  }
+
+  private static void parallelMergeSortRange(Object[] a, int low, int high,
+					     Comparator<Object> c,
+					     ForkJoinPool pool, int threshold) {
+    if (high - low > 1) {
+      Object[] work = new Object[high - low];
+      pool.invoke(new MergeSortTask(a, work, low, low, high, c, threshold, false));
+    }
+  }
+
+  /**
+   * Sorts the sub-array from "low" (inclusive) to "high" (exclusive). If
+   * "intoWork" is false the sorted values end up in "a", otherwise they end
+   * up in "work". The two halves are sorted into the opposite array from
+   * this task's target, then merged into the target. Index "i" of "a"
+   * corresponds to index "i - workOffset" of "work".
+   */
+  private static final class MergeSortTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Object[] a;
+    private final Object[] work;
+    private final int workOffset;
+    private final int low;
+    private final int high;
+    private final Comparator<Object> c;
+    private final int threshold;
+    private final boolean intoWork;
+
+    MergeSortTask(Object[] a, Object[] work, int workOffset, int low, int high,
+		  Comparator<Object> c, int threshold, boolean intoWork) {
+      this.a = a;
+      this.work = work;
+      this.workOffset = workOffset;
+      this.low = low;
+      this.high = high;
+      this.c = c;
+      this.threshold = threshold;
+      this.intoWork = intoWork;
+    }
+
+    @Override
+    protected void compute() {
+      int size = high - low;
+      if (size <= threshold) {
+	// No other task touches "work" from "low" to "high" yet, so it
+	// can be used as the working array for the sequential sort.
+	iterativeMergeSort(a, low, high, work, low - workOffset, c);
+	if (intoWork) {
+	  System.arraycopy(a, low, work, low - workOffset, size);
+	}
+	return;
+      }
+      int middle = low + (size / 2);
+      invokeAll(new MergeSortTask(a, work, workOffset, low, middle, c, threshold,
+				  !intoWork),
+		new MergeSortTask(a, work, workOffset, middle, high, c, threshold,
+				  !intoWork));
+      if (intoWork) {
+	new MergeTask(a, low, middle, middle, high, work, low - workOffset,
+		      c, threshold).compute();
+      } else {
+	new MergeTask(work, low - workOffset, middle - workOffset,
+		      middle - workOffset, high - workOffset, a, low,
+		      c, threshold).compute();
+      }
+    }
+  }
+
+  /**
+   * Merges the sorted runs src[low1..high1) and src[low2..high2) into "dst"
+   * starting at "dstLow". The middle element of the larger run is written
+   * directly to its final position, found by binary searching the smaller
+   * run. The values on either side of it are then merged as two
+   * independent tasks.
+   */
+  private static final class MergeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Object[] src;
+    private final int low1;
+    private final int high1;
+    private final int low2;
+    private final int high2;
+    private final Object[] dst;
+    private final int dstLow;
+    private final Comparator<Object> c;
+    private final int threshold;
+
+    MergeTask(Object[] src, int low1, int high1, int low2, int high2,
+	      Object[] dst, int dstLow, Comparator<Object> c, int threshold) {
+      this.src = src;
+      this.low1 = low1;
+      this.high1 = high1;
+      this.low2 = low2;
+      this.high2 = high2;
+      this.dst = dst;
+      this.dstLow = dstLow;
+      this.c = c;
+      this.threshold = threshold;
+    }
+
+    @Override
+    protected void compute() {
+      int size1 = high1 - low1;
+      int size2 = high2 - low2;
+      if (size1 + size2 <= threshold) {
+	mergeInto(src, low1, high1, low2, high2, dst, dstLow, c);
+	return;
+      }
+      // To keep the merge stable, equal values from the lower run must
+      // always end up before equal values from the upper run.
+      int middle1;
+      int middle2;
+      int next1;
+      int next2;
+      if (size1 >= size2) {
+	middle1 = (low1 + high1) >>> 1;
+	middle2 = lowerBound(src, low2, high2, src[middle1], c);
+	next1 = middle1 + 1;
+	next2 = middle2;
+	dst[dstLow + (middle1 - low1) + (middle2 - low2)] = src[middle1];
+      } else {
+	middle2 = (low2 + high2) >>> 1;
+	middle1 = upperBound(src, low1, high1, src[middle2], c);
+	next1 = middle1;
+	next2 = middle2 + 1;
+	dst[dstLow + (middle1 - low1) + (middle2 - low2)] = src[middle2];
+      }
+      int split = dstLow + (middle1 - low1) + (middle2 - low2) + 1;
+      invokeAll(new MergeTask(src, low1, middle1, low2, middle2, dst, dstLow,
+			      c, threshold),
+		new MergeTask(src, next1, high1, next2, high2, dst, split,
+			      c, threshold));
+    }
+  }
+
+  /**
+   * Sequentially merges the sorted runs src[low1..high1) and
+   * src[low2..high2) into "dst" starting at "dstLow". Takes from the first
+   * run on ties, which keeps the merge stable.
+   */
+  private static void mergeInto(Object[] src, int low1, int high1, int low2, int high2,
+				Object[] dst, int dstLow, Comparator<Object> c) {
+    int i = dstLow;
+    while ((low1 < high1) && (low2 < high2)) {
+      if (c.compare(src[low2], src[low1]) < 0) {
+	dst[i++] = src[low2++];
+      } else {
+	dst[i++] = src[low1++];
+      }
+    }
+    System.arraycopy(src, low1, dst, i, high1 - low1);
+    System.arraycopy(src, low2, dst, i + (high1 - low1), high2 - low2);
+    if (SortProbe.ENABLED) {
+      SortProbe.moved(i - dstLow + (high1 - low1) + (high2 - low2));
+    }
+  }
+
+  /**
+   * Returns the index of the first element in the sorted a[low..high) which
+   * is greater than or equal to "key", or "high" if there is none.
+   */
+  private static int lowerBound(Object[] a, int low, int high, Object key,
+				Comparator<Object> c) {
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (c.compare(a[middle], key) < 0) {
+	low = middle + 1;
+      } else {
+	high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the index of the first element in the sorted a[low..high) which
+   * is strictly greater than "key", or "high" if there is none.
+   */
+  private static int upperBound(Object[] a, int low, int high, Object key,
+				Comparator<Object> c) {
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (c.compare(a[middle], key) <= 0) {
+	low = middle + 1;
+      } else {
+	high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Sorts the passed list using a parallel sample sort on the common
+   * ForkJoinPool. Modifies the passed list. Sorts in ascending order. The
+   * sort is stable.
+   *
+   * @param list The list to be sorted.
+   * @param T generic type of list element, which must implement Comparable.
+   */
+  public static <T extends Comparable<T>> void parallelSampleSort(List<T> list) {
+    parallelSampleSort(list, NATURAL_ORDER);
+  }
+
+  /**
+   * Sorts the passed list using a parallel sample sort on the common
+   * ForkJoinPool, in the order defined by the passed comparator. The sort
+   * is stable.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   */
+  public static <T> void parallelSampleSort(List<T> list,
+					    Comparator<? super T> comparator) {
+    assert(list != null);
+
+    // First, copy the list into an array.
+    Object[] a = list.toArray();
+
+    Comparator<Object> c = SortProbe.begin("parallelSampleSort", a.length, comparator);
+    try {
+      SampleSort.sort(a, 0, a.length, c, ForkJoinPool.commonPool(),
+		      DEFAULT_PARALLEL_THRESHOLD);
+    } finally {
+      SortProbe.end(c);
+    }
+
+    // Write the sorted array back into the list.
+    arrayIntoList(a, list);
+  }
+
+  /**
+   * Sorts the passed array in place using a parallel sample sort on the
+   * common ForkJoinPool, in the order defined by the passed comparator.
+   * The sort is stable.
+   *
+   * @param a The array to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   */
+  public static <T> void parallelSampleSort(T[] a, Comparator<? super T> comparator) {
+    parallelSampleSort(a, 0, a.length, comparator, ForkJoinPool.commonPool(),
+		       DEFAULT_PARALLEL_THRESHOLD);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using a parallel sample sort, in the order
+   * defined by the passed comparator. The sort is stable.
+   *
+   * Splitters taken from a random sample of the array divide it into about
+   * four buckets per thread of the "pool". The elements are scattered into
+   * their buckets in parallel, then the buckets are sorted in parallel with
+   * a sequential merge sort. Unlike parallelMergeSort(), every element is
+   * moved a fixed number of times, so the sort is limited by the number of
+   * threads rather than by memory bandwidth for the merges. One working
+   * array the size of the range is allocated.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param pool The pool which runs the scatter and bucket sort tasks.
+   * @param threshold Smallest expected bucket size; smaller ranges are
+   *    sorted sequentially.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if threshold is not positive.
+   */
+  public static <T> void parallelSampleSort(T[] a, int fromIndex, int toIndex,
+					    Comparator<? super T> comparator,
+					    ForkJoinPool pool, int threshold) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Preconditions.checkNotNull(pool);
+    Preconditions.checkArgument(threshold > 0);
+    Comparator<Object> c =
+	SortProbe.begin("parallelSampleSort", toIndex - fromIndex, comparator);
+    try {
+      SampleSort.sort(a, fromIndex, toIndex, c, pool, threshold);
+    } finally {
+      SortProbe.end(c);
+    }
+  }
+
+  /**
+   * Sorts the passed list using introsort, a quick sort which is O(n log n)
+   * even in the worst case. Modifies the passed list. Sorts in ascending
+   * order.
+   *
+   * The list is first copied into an array, since we use indexes
+   * for this algorithm. After the array is sorted, it is written
+   * back into the passed list.
+   *
+   * @param list The list to be sorted.
+   * @param T generic type of list element, which must implement Comparable.
+   */
+  public static <T extends Comparable<T>> void quickSort(List<T> list) {
+    quickSort(list, NATURAL_ORDER);
+  }
+
+  /**
+   * Sorts the passed list using introsort, in the order defined by the
+   * passed comparator. Modifies the passed list.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   */
+  public static <T> void quickSort(List<T> list, Comparator<? super T> comparator) {
+    assert(list != null);
+
+    // First, copy the list into an array.
+    Object[] a = list.toArray();
+
+    // Call quick sort on entire array.
+    Comparator<Object> c = SortProbe.begin("quickSort", a.length, comparator);
+    try {
+      quickSort(a, 0, a.length, depthLimit(a.length), c);
+    } finally {
+      SortProbe.end(c);
+    }
+
+    // Write the sorted array back into the list.
+    arrayIntoList(a, list);
+  }
+
+  /**
+   * Sorts the passed array in place using introsort, in the order defined
+   * by the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   */
+  public static <T> void quickSort(T[] a, Comparator<? super T> comparator) {
+    quickSort(a, 0, a.length, comparator);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using introsort, in the order defined by the
+   * passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static <T> void quickSort(T[] a, int fromIndex, int toIndex,
+				   Comparator<? super T> comparator) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Comparator<Object> c =
+	SortProbe.begin("quickSort", toIndex - fromIndex, comparator);
+    try {
+      quickSort(a, fromIndex, toIndex, depthLimit(toIndex - fromIndex), c);
+    } finally {
+      SortProbe.end(c);
+    }
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive). Chooses a
+   * "pivot" close to the median, then partitions the values into three
+   * groups: less than, equal to, and greater than the "pivot". The values
+   * equal to the "pivot" are in their final position, so many duplicates
+   * make the sort faster rather than slower.
+   *
+   * Only the smaller of the "less" and "greater" groups is sorted
+   * recursively; the larger one is sorted by the next iteration of the
+   * loop. This bounds the stack depth by O(log n). Short ranges are
+   * finished with insertion sort. If "depthLimit" levels of partitioning
+   * have not finished the sort, the pivots are behaving badly, so the
+   * range is heap sorted instead, which guarantees O(n log n).
+   */
+  private static void quickSort(Object[] a, int low, int high, int depthLimit,
+				Comparator<Object> c) {
+    assert(a != null);
+    assert(high <= a.length);
+
+    if (SortProbe.ENABLED) {
+      SortProbe.enter();
+    }
+    while (high - low > INSERTION_SORT_THRESHOLD) {
+      if (depthLimit == 0) {
+	heapSortRange(a, low, high, c);
+	if (SortProbe.ENABLED) {
+	  SortProbe.exit();
+	}
+	return;
+      }
+      depthLimit--;
+
+      Object pivot = a[choosePivot(a, low, high, c)];
+      long bounds = partition(a, low, high, pivot, c);
+      int lessEnd = lessEnd(bounds);
+      int greaterStart = greaterStart(bounds);
+
+      // Recurse on the smaller side, loop on the larger side.
+      if (lessEnd - low < high - greaterStart) {
+	quickSort(a, low, lessEnd, depthLimit, c);
+	low = greaterStart;
+      } else {
+	quickSort(a, greaterStart, high, depthLimit, c);
+	high = lessEnd;
+      }
+    }
+    insertionSortRange(a, low, high, c);
+    if (SortProbe.ENABLED) {
+      SortProbe.exit();
+    }
+  }
+
+  /**
+   * Partitions a[low..high) into three groups: less than, equal to, and
+   * greater than "pivot" (Dutch national flag partition). Returns the end
+   * of the "less" group and the start of the "greater" group packed into a
+   * long, which avoids allocating a pair on every partition; unpack them
+   * with lessEnd() and greaterStart().
+   */
+  private static long partition(Object[] a, int low, int high, Object pivot,
+				Comparator<Object> c) {
+    // Invariant:
+    //   a[low..lessEnd) < pivot
+    //   a[lessEnd..current) == pivot
+    //   a[current..greaterStart) not yet examined
+    //   a[greaterStart..high) > pivot
+    //
+    int lessEnd = low;
+    int current = low;
+    int greaterStart = high;
+    while (current < greaterStart) {
+      int cmp = c.compare(a[current], pivot);
+      if (cmp < 0) {
+	swap(a, lessEnd++, current++);
+      } else if (cmp > 0) {
+	swap(a, current, --greaterStart);
+      } else {
+	current++;
+      }
+    }
+    return ((long) lessEnd << 32) | greaterStart;
+  }
+
+  private static int lessEnd(long bounds) {
+    return (int) (bounds >>> 32);
+  }
+
+  private static int greaterStart(long bounds) {
+    return (int) bounds;
+  }
+
+  /**
+   * Returns the index of the pivot for a[low..high): the median of the
+   * first, middle and last elements, or for large ranges the median of
+   * three such medians (Tukey's ninther). Unlike a fixed position, this
+   * gives an even split on already sorted and reverse sorted input.
+   */
+  private static int choosePivot(Object[] a, int low, int high, Comparator<Object> c) {
+    int size = high - low;
+    int middle = (low + high) >>> 1;
+    if (size > NINTHER_THRESHOLD) {
+      int step = size / 8;
+      int lower = median(a, low, low + step, low + (2 * step), c);
+      int center = median(a, middle - step, middle, middle + step, c);
+      int upper = median(a, high - 1 - (2 * step), high - 1 - step, high - 1, c);
+      return median(a, lower, center, upper, c);
+    }
+    return median(a, low, middle, high - 1, c);
+  }
+
+  /**
+   * Returns whichever of the indexes "i", "j" and "k" holds the median of
+   * their three values.
+   */
+  private static int median(Object[] a, int i, int j, int k, Comparator<Object> c) {
+    if (c.compare(a[i], a[j]) < 0) {
+      return (c.compare(a[j], a[k]) < 0) ? j :
+	  ((c.compare(a[i], a[k]) < 0) ? k : i);
+    } else {
+      return (c.compare(a[k], a[j]) < 0) ? j :
+	  ((c.compare(a[k], a[i]) < 0) ? k : i);
+    }
+  }
+
+  /**
+   * Returns the number of partitioning levels after which quick sort
+   * gives up and heap sorts: twice the depth of a perfectly balanced sort.
+   */
+  private static int depthLimit(int size) {
+    return 2 * (31 - Integer.numberOfLeadingZeros(Math.max(size, 1)));
+  }
+
+  /**
+   * Number of children per node of the heap for heapSort(). A binary heap
+   * needs the fewest comparisons, so it is the default for Comparators.
+   */
+  public static final int HEAP_2_ARY = 2;
+
+  /**
+   * Number of children per node of the heap for heapSort(). A 4-ary heap
+   * is half as deep as a binary heap, so it touches fewer cache lines.
+   */
+  public static final int HEAP_4_ARY = 4;
+
+  /**
+   * Number of children per node of the heap for heapSort(). An 8-ary heap
+   * is a third as deep as a binary heap; the default for primitives,
+   * whose comparisons are cheap compared to the memory traffic.
+   */
+  public static final int HEAP_8_ARY = 8;
+
+  private static void checkHeapArity(int arity) {
+    Preconditions.checkArgument(
+	(arity == HEAP_2_ARY) || (arity == HEAP_4_ARY) || (arity == HEAP_8_ARY),
+	"Unsupported heap arity: %s", arity);
+  }
+
+  /**
+   * Sorts the passed list using O(n log n) heap sort. The items are
+   * sorted in ascending order. This algorithm uses a data structure
+   * called a heap. A heap is a binary tree which maintains a partial
+   * ordering where the parent "dominates" the two children. Elements are
+   * sifted down the heap bottom-up (see HeapSort), which takes about
+   * n log n comparisons rather than 2n log n.
+   *
+   * The list is first copied into an array, since we use indexes
+   * for this algorithm. After the array is sorted, it is written
+   * back into the passed list.
+   *
+   * @param list The list to be sorted.
+   * @param T generic type of list element, which must implement Comparable.
+   */
+  public static <T extends Comparable<T>> void heapSort(List<T> list) {
+    heapSort(list, NATURAL_ORDER);
+  }
+
+  /**
+   * Sorts the passed list using O(n log n) heap sort, in the order defined
+   * by the passed comparator. Modifies the passed list.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   */
+  public static <T> void heapSort(List<T> list, Comparator<? super T> comparator) {
+    assert(list != null);
+
+    // First, copy the list into an array.
+    Object[] a = list.toArray();
+
+    Comparator<Object> c = SortProbe.begin("heapSort", a.length, comparator);
+    try {
+      heapSortRange(a, 0, a.length, c);
+    } finally {
+      SortProbe.end(c);
+    }
+
+    // Write the sorted array back into the list.
+    arrayIntoList(a, list);
+  }
+
+  /**
+   * Sorts the passed array in place using O(n log n) heap sort, in the
+   * order defined by the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   */
+  public static <T> void heapSort(T[] a, Comparator<? super T> comparator) {
+    heapSort(a, 0, a.length, comparator);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using O(n log n) heap sort, in the order defined
+   * by the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static <T> void heapSort(T[] a, int fromIndex, int toIndex,
+				  Comparator<? super T> comparator) {
+    heapSort(a, fromIndex, toIndex, comparator, HEAP_2_ARY);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using O(n log n) heap sort on a heap with "arity"
+   * children per node, in the order defined by the passed comparator.
+   * Wider heaps take more comparisons, but may be faster when comparing is
+   * cheap and the array does not fit in the cache.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param arity Children per node: HEAP_2_ARY, HEAP_4_ARY or HEAP_8_ARY.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the arity is not supported.
+   */
+  public static <T> void heapSort(T[] a, int fromIndex, int toIndex,
+				  Comparator<? super T> comparator, int arity) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkHeapArity(arity);
+    Comparator<Object> c = SortProbe.begin("heapSort", toIndex - fromIndex, comparator);
+    try {
+      HeapSort.sort(a, fromIndex, toIndex, arity, c);
+    } finally {
+      SortProbe.end(c);
+    }
+  }
+
+  /**
+   * Heap sorts "a" from "low" (inclusive) to "high" (exclusive), treating
+   * the range as a heap rooted at a[low]. Also the fallback when quick
+   * sort partitions badly.
+   */
+  private static void heapSortRange(Object[] a, int low, int high,
+				    Comparator<Object> c) {
+    HeapSort.sort(a, low, high, HEAP_2_ARY, c);
+  }
+
+  /**
+   * For all non-leaf nodes, fix heap property. Parents are fixed from the
+   * bottom of the heap up to the root, so that each sub-heap below a
+   * parent already satisfies the heap property when it is bubbled down.
+   * Heap index "i" is stored at a[offset + i].
+   */
+  private static void heapify(Object[] a, int offset, int lastIdx,
+			      Comparator<Object> c) {
+    assert(a != null);
+
+    for (int parentIdx = (lastIdx - 1) / 2; parentIdx >= 0; parentIdx--) {
+      bubbleDown(a, offset, parentIdx, lastIdx, c);
+    }
+  }
+
+  /**
+   * Continually swaps the parent element with the largest child
+   * element until the heap property is restored or the parent element
+   * ends up as a leaf.
+   */
+  private static void bubbleDown(Object[] a, int offset, int parentIdx, int lastIdx,
+				 Comparator<Object> c) {
+    assert(a != null);
+    assert(parentIdx >= 0);
+    assert(parentIdx <= lastIdx);
+
+    boolean swapped = true;
+    // hasLeftChild() determines if the parent has any children.
+    while (swapped && hasLeftChild(parentIdx, lastIdx)) {
+      // Swapping with the largest child is necessary to maintain heap property.
+      int largestChildIdx = largestChild(a, offset, parentIdx, lastIdx, c);
+      if (c.compare(a[offset + largestChildIdx], a[offset + parentIdx]) > 0) {
+	swap(a, offset + parentIdx, offset + largestChildIdx);
+	parentIdx = largestChildIdx;
+      } else {
+	swapped = false;
+      }
+    }
+  }
+
+  /**
+   * Returns the index of the larger of a parents two children. Assumes
+   * at least the left child exists.
+   */
+  private static int largestChild(Object[] a, int offset, int parentIdx, int lastIdx,
+				  Comparator<Object> c) {
+    assert(hasLeftChild(parentIdx, lastIdx));
+
+    int leftChildIdx = leftChild(parentIdx);
+    int largestChildIdx = leftChildIdx;
+    if (hasRightChild(parentIdx, lastIdx)) {
+      int rightChildIdx = rightChild(parentIdx);
+      if (c.compare(a[offset + rightChildIdx], a[offset + leftChildIdx]) > 0) {
+	largestChildIdx = rightChildIdx;
+      }
+    }
+    return largestChildIdx;
+  }
+
+  // Returns index of left child assuming 0-based arrays.
+  private static int leftChild(int parentIdx) {
+    return ((2 * parentIdx) + 1);
+  }
+
+  // Returns index of right child assuming 0-based arrays.
+  private static int rightChild(int parentIdx) {
+    return ((2 * parentIdx) + 2);
+  }
+
+  private static boolean hasLeftChild(int parentIdx, int lastIdx) {
+    return (leftChild(parentIdx) <= lastIdx);
+  }
+
+  private static boolean hasRightChild(int parentIdx, int lastIdx) {
+    return (rightChild(parentIdx) <= lastIdx);
+  }
+
+  /**
+   * Returns the element which would be at index "k" if the passed list
+   * were sorted in ascending order (the k-th smallest, counting from 0),
+   * in O(n) time. The list is not modified. For example, select(list,
+   * list.size() / 2) returns the median.
+   *
+   * @param list The list to select from.
+   * @param k index of the element in sorted order.
+   * @param T generic type of list element, which must implement Comparable.
+   * @throws IndexOutOfBoundsException if k is not an index of the list.
+   */
+  public static <T extends Comparable<T>> T select(List<T> list, int k) {
+    return select(list, k, NATURAL_ORDER);
+  }
+
+  /**
+   * Returns the element which would be at index "k" if the passed list
+   * were sorted in the order defined by the passed comparator, in O(n)
+   * time. The list is not modified.
+   *
+   * @param list The list to select from.
+   * @param k index of the element in sorted order.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   * @throws IndexOutOfBoundsException if k is not an index of the list.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T select(List<T> list, int k, Comparator<? super T> comparator) {
+    assert(list != null);
+    Preconditions.checkElementIndex(k, list.size());
+
+    Object[] a = list.toArray();
+    Comparator<Object> c = SortProbe.begin("select", a.length, comparator);
+    try {
+      selectRange(a, 0, a.length, k, c);
+    } finally {
+      SortProbe.end(c);
+    }
+    return (T) a[k];
+  }
+
+  /**
+   * Rearranges the elements of the passed array from "fromIndex"
+   * (inclusive) to "toIndex" (exclusive) so that a[k] holds the element
+   * which would be there if the range were sorted. The elements before
+   * "k" are not greater than it, and those after it are not less than it,
+   * but neither side is sorted. Takes O(n) time.
+   *
+   * The pivots are chosen as for quickSort(), and only the side holding
+   * "k" is partitioned further (introselect). If the range is not halving
+   * every two partitions, the pivots are behaving badly, so the pivots are
+   * chosen by the median of medians from then on, which guarantees O(n).
+   *
+   * @param a The array to select from.
+   * @param fromIndex index of the first element of the range.
+   * @param toIndex index after the last element of the range.
+   * @param k index of the element to put in its sorted position.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @return the element now at index "k".
+   * @throws IndexOutOfBoundsException if the range is not within the array,
+   *    or k is not within the range.
+   */
+  public static <T> T select(T[] a, int fromIndex, int toIndex, int k,
+			     Comparator<? super T> comparator) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Preconditions.checkElementIndex(k - fromIndex, toIndex - fromIndex);
+    Comparator<Object> c = SortProbe.begin("select", toIndex - fromIndex, comparator);
+    try {
+      selectRange(a, fromIndex, toIndex, k, c);
+    } finally {
+      SortProbe.end(c);
+    }
+    return a[k];
+  }
+
+  /**
+   * Reorders the passed list so that its first "k" elements are the "k"
+   * smallest, in ascending order. The order of the remaining elements is
+   * unspecified. Takes O(n + k log k) time, rather than the O(n log n)
+   * of sorting the whole list.
+   *
+   * @param list The list to be partially sorted.
+   * @param k number of smallest elements to sort to the front.
+   * @param T generic type of list element, which must implement Comparable.
+   * @throws IndexOutOfBoundsException if k is negative or greater than the
+   *    size of the list.
+   */
+  public static <T extends Comparable<T>> void partialSort(List<T> list, int k) {
+    partialSort(list, k, NATURAL_ORDER);
+  }
+
+  /**
+   * Reorders the passed list so that its first "k" elements are the "k"
+   * smallest, in the order defined by the passed comparator. The order of
+   * the remaining elements is unspecified.
+   *
+   * @param list The list to be partially sorted.
+   * @param k number of smallest elements to sort to the front.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   * @throws IndexOutOfBoundsException if k is negative or greater than the
+   *    size of the list.
+   */
+  public static <T> void partialSort(List<T> list, int k,
+				     Comparator<? super T> comparator) {
+    assert(list != null);
+    Preconditions.checkPositionIndex(k, list.size());
+
+    Object[] a = list.toArray();
+    Comparator<Object> c = SortProbe.begin("partialSort", a.length, comparator);
+    try {
+      partialSortRange(a, 0, a.length, k, c);
+    } finally {
+      SortProbe.end(c);
+    }
+    arrayIntoList(a, list);
+  }
+
+  /**
+   * Reorders the elements of the passed array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) so that the first "k" elements of the range
+   * are its "k" smallest, in the order defined by the passed comparator.
+   *
+   * @param a The array to be partially sorted.
+   * @param fromIndex index of the first element of the range.
+   * @param toIndex index after the last element of the range.
+   * @param k number of smallest elements to sort to the front of the range.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array,
+   *    or k is negative or greater than the size of the range.
+   */
+  public static <T> void partialSort(T[] a, int fromIndex, int toIndex, int k,
+				     Comparator<? super T> comparator) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Preconditions.checkPositionIndex(k, toIndex - fromIndex);
+    Comparator<Object> c =
+	SortProbe.begin("partialSort", toIndex - fromIndex, comparator);
+    try {
+      partialSortRange(a, fromIndex, toIndex, k, c);
+    } finally {
+      SortProbe.end(c);
+    }
+  }
+
+  private static void partialSortRange(Object[] a, int low, int high, int k,
+				       Comparator<Object> c) {
+    if (k == 0) {
+      return;
+    }
+    // Move the k smallest to the front, then sort just those.
+    if (k < high - low) {
+      selectRange(a, low, high, low + k - 1, c);
+    }
+    quickSort(a, low, low + k, depthLimit(k), c);
+  }
+
+  /**
+   * Returns the "k" smallest of the passed elements in ascending order,
+   * or all of them if there are fewer than "k". The elements are read
+   * once, and at most "k" are held at a time, so this suits streams too
+   * large to be collected into a list. Pass a reversed comparator to get
+   * the "k" largest.
+   *
+   * @param elements The elements to choose from.
+   * @param k number of elements to return.
+   * @param T generic type of element, which must implement Comparable.
+   * @throws IllegalArgumentException if k is negative.
+   */
+  public static <T extends Comparable<T>> List<T> topK(Iterable<? extends T> elements,
+						       int k) {
+    return topK(elements.iterator(), k, NATURAL_ORDER);
+  }
+
+  /**
+   * Returns the "k" smallest of the passed elements, in the order defined
+   * by the passed comparator.
+   *
+   * @param elements The elements to choose from.
+   * @param k number of elements to return.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of element.
+   * @throws IllegalArgumentException if k is negative.
+   */
+  public static <T> List<T> topK(Iterable<? extends T> elements, int k,
+				 Comparator<? super T> comparator) {
+    return topK(elements.iterator(), k, comparator);
+  }
+
+  /**
+   * Returns the "k" smallest of the elements remaining in the passed
+   * iterator, in the order defined by the passed comparator.
+   *
+   * The "k" smallest elements seen so far are kept in a max-heap of size
+   * "k". Each new element is compared with the root, the largest of them,
+   * and replaces it only if smaller. Takes O(n log k) time at worst, and
+   * O(n) when most elements are larger than the root, as for a random
+   * input with "k" much smaller than "n".
+   *
+   * @param elements The elements to choose from.
+   * @param k number of elements to return.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of element.
+   * @throws IllegalArgumentException if k is negative.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> List<T> topK(Iterator<? extends T> elements, int k,
+				 Comparator<? super T> comparator) {
+    Preconditions.checkNotNull(elements);
+    Preconditions.checkArgument(k >= 0);
+
+    Comparator<Object> c = order(comparator);
+    Object[] heap = new Object[k];
+    int size = 0;
+    while (elements.hasNext() && (size < k)) {
+      heap[size++] = elements.next();
+    }
+    heapify(heap, 0, size - 1, c);
+    while (elements.hasNext()) {
+      Object element = elements.next();
+      if ((k > 0) && (c.compare(element, heap[0]) < 0)) {
+	heap[0] = element;
+	bubbleDown(heap, 0, 0, k - 1, c);
+      }
+    }
+    heapSortRange(heap, 0, size, c);
+
+    List<T> result = new ArrayList<T>(size);
+    for (int i = 0; i < size; i++) {
+      result.add((T) heap[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Rearranges a[low..high) so that a[k] holds the element which would be
+   * there if the range were sorted. Narrows the range to the side of each
+   * partition which holds "k", stopping once "k" falls among the values
+   * equal to the pivot.
+   */
+  private static void selectRange(Object[] a, int low, int high, int k,
+				  Comparator<Object> c) {
+    assert((low <= k) && (k < high));
+
+    boolean medianOfMedians = false;
+    int steps = 0;
+    int previousSize = high - low;
+    while (high - low > INSERTION_SORT_THRESHOLD) {
+      int pivotIdx = medianOfMedians ? medianOfMedians(a, low, high, c)
+				     : choosePivot(a, low, high, c);
+      long bounds = partition(a, low, high, a[pivotIdx], c);
+      if (k < lessEnd(bounds)) {
+	high = lessEnd(bounds);
+      } else if (k >= greaterStart(bounds)) {
+	low = greaterStart(bounds);
+      } else {
+	return;  // a[k] equals the pivot, so it is in place.
+      }
+
+      // Every two partitions should at least halve the range.
+      if ((++steps % 2) == 0) {
+	if (high - low > previousSize / 2) {
+	  medianOfMedians = true;
+	}
+	previousSize = high - low;
+      }
+    }
+    insertionSortRange(a, low, high, c);
+  }
+
+  /**
+   * Returns the index of a pivot for a[low..high) which is guaranteed to
+   * have at least 3/10 of the range on each side of it: the median of the
+   * medians of groups of five. The medians are gathered at the front of
+   * the range, and their median is found with selectRange().
+   */
+  private static int medianOfMedians(Object[] a, int low, int high,
+				     Comparator<Object> c) {
+    int numMedians = 0;
+    for (int groupLow = low; groupLow < high; groupLow += 5) {
+      int groupHigh = Math.min(groupLow + 5, high);
+      insertionSortRange(a, groupLow, groupHigh, c);
+      swap(a, low + numMedians, (groupLow + groupHigh - 1) >>> 1);
+      numMedians++;
+    }
+    int middle = low + (numMedians / 2);
+    selectRange(a, low, low + numMedians, middle, c);
+    return middle;
+  }
+
+  /**
+   * Returns an iterator which lazily merges the passed sorted sources into
+   * one sequence in ascending order, in O(log k) comparisons per element
+   * for "k" sources. Equal elements keep the order of their sources. This
+   * avoids concatenating already sorted data and sorting it again.
+   *
+   * @param sources Iterators over the sorted sources.
+   * @param T generic type of element, which must implement Comparable.
+   */
+  public static <T extends Comparable<T>> MergingIterator<T> merge(
+      List<? extends Iterator<? extends T>> sources) {
+    return new MergingIterator<T>(sources, null);
+  }
+
+  /**
+   * Returns an iterator which lazily merges the passed sources, each sorted
+   * in the order defined by the passed comparator, into one sequence in
+   * that order. Use MergingIterator.spliterator() to merge into a stream.
+   *
+   * @param sources Iterators over the sorted sources.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of element.
+   */
+  public static <T> MergingIterator<T> merge(List<? extends Iterator<? extends T>> sources,
+					     Comparator<? super T> comparator) {
+    return new MergingIterator<T>(sources, comparator);
+  }
+
+  /**
+   * Returns an iterator over the passed elements in ascending order, which
+   * sorts only as far as the elements actually read: returning the first
+   * "k" takes O(n + k log k) expected time, rather than O(n log n) for a
+   * full sort. Use it when only a prefix of the sorted order is likely to
+   * be needed, but its length is not known up front, as when showing the
+   * first page of sorted results. The elements are copied, so the passed
+   * collection is not modified.
+   *
+   * @param elements The elements to return in sorted order.
+   * @param T generic type of element, which must implement Comparable.
+   */
+  public static <T extends Comparable<T>> LazySortedIterator<T> lazySorted(
+      Collection<? extends T> elements) {
+    return lazySorted(elements, null);
+  }
+
+  /**
+   * Returns an iterator over the passed elements in the order defined by
+   * the passed comparator, which sorts only as far as the elements read
+   * (see LazySortedIterator). Use LazySortedIterator.spliterator() for a
+   * stream, which may also be parallel. The order of equal elements is
+   * not defined.
+   *
+   * @param elements The elements to return in sorted order.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of element.
+   */
+  public static <T> LazySortedIterator<T> lazySorted(Collection<? extends T> elements,
+						     Comparator<? super T> comparator) {
+    Preconditions.checkNotNull(elements);
+    return new LazySortedIterator<T>(elements.toArray(), comparator);
+  }
+
+
+  /**
+   * Gap sequence for shellSort(): Ciura's, found by experiment to take the
+   * fewest comparisons. The default.
+   */
+  public static final int SHELL_CIURA_GAPS = 0;
+
+  /**
+   * Gap sequence for shellSort(): Tokuda's, close to Ciura's but given by
+   * a formula.
+   */
+  public static final int SHELL_TOKUDA_GAPS = 1;
+
+  /**
+   * Gap sequence for shellSort(): Sedgewick's, which is O(n^(4/3)) in the
+   * worst case.
+   */
+  public static final int SHELL_SEDGEWICK_GAPS = 2;
+
+  private static void checkShellGaps(int gaps) {
+    Preconditions.checkArgument(
+	(gaps >= SHELL_CIURA_GAPS) && (gaps <= SHELL_SEDGEWICK_GAPS),
+	"Unsupported shell sort gap sequence: %s", gaps);
+  }
+
+  /**
+   * Sorts the passed list using shell sort. Modifies the passed list.
+   * Shell sort is a generalization of insertion sort. This sort starts
+   * by sorting pairs of elements far away from each other, then progressively
+   * reducing this "gap". Analysis of Shell sort is complicated, and depends
+   * on the sequence of gaps. This implementation uses Ciura's gaps (see
+   * ShellSort), which are about O(n^(4/3)) in practice, and shifts each
+   * element into place rather than swapping it. The array versions sort
+   * in place, without allocating, so they are an option where a merge
+   * buffer is too costly; the List versions copy the list, as below.
+   *
+   * Sorts elements in ascending order.
+   *
+   * The list is first copied into an array, since we use indexes
+   * for this algorithm. After the array is sorted, it is written
+   * back into the passed list.
+   *
+   * @param list The list to be sorted.
+   * @param T generic type of list element, which must implement Comparable.
+   */
+  public static <T extends Comparable<T>> void shellSort(List<T> list) {
+    shellSort(list, NATURAL_ORDER);
+  }
+
+  /**
+   * Sorts the passed list using shell sort, in the order defined by the
+   * passed comparator. Modifies the passed list.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   */
+  public static <T> void shellSort(List<T> list, Comparator<? super T> comparator) {
+    assert(list != null);
+
+    // First, copy the list into an array.
+    Object[] a = list.toArray();
+
+    Comparator<Object> c = SortProbe.begin("shellSort", a.length, comparator);
+    try {
+      ShellSort.sort(a, 0, a.length, SHELL_CIURA_GAPS, c);
+    } finally {
+      SortProbe.end(c);
+    }
+
+    // Write the sorted array back into the list.
+    arrayIntoList(a, list);
+  }
+
+  /**
+   * Sorts the passed array in place using shell sort, in the order defined
+   * by the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   */
+  public static <T> void shellSort(T[] a, Comparator<? super T> comparator) {
+    shellSort(a, 0, a.length, comparator);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using shell sort, in the order defined by the
+   * passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static <T> void shellSort(T[] a, int fromIndex, int toIndex,
+				   Comparator<? super T> comparator) {
+    shellSort(a, fromIndex, toIndex, comparator, SHELL_CIURA_GAPS);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using shell sort with the passed gap sequence,
+   * in the order defined by the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param gaps The gap sequence: SHELL_CIURA_GAPS, SHELL_TOKUDA_GAPS or
+   *    SHELL_SEDGEWICK_GAPS.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the gap sequence is not supported.
+   */
+  public static <T> void shellSort(T[] a, int fromIndex, int toIndex,
+				   Comparator<? super T> comparator, int gaps) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkShellGaps(gaps);
+    Comparator<Object> c =
+	SortProbe.begin("shellSort", toIndex - fromIndex, comparator);
+    try {
+      ShellSort.sort(a, fromIndex, toIndex, gaps, c);
+    } finally {
+      SortProbe.end(c);
+    }
+  }
+
+  /**
+   * Sorts the passed list using O(n^2) insertion sort. Modifies the
+   * passed list.
+   *
+   * Sorts elements in ascending order.
+   *
+   * The list is first copied into an array, since we use indexes
+   * for this algorithm. After the array is sorted, it is written
+   * back into the passed list.
+   *
+   * @param list The list to be sorted.
+   * @param T generic type of list element, which must implement Comparable.
+   */
+  public static <T extends Comparable<T>> void insertionSort(List<T> list) {
+    insertionSort(list, NATURAL_ORDER);
+  }
+
+  /**
+   * Sorts the passed list using O(n^2) insertion sort, in the order
+   * defined by the passed comparator. Modifies the passed list.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   */
+  public static <T> void insertionSort(List<T> list, Comparator<? super T> comparator) {
+    assert(list != null);
+
+    // First, copy the list into an array.
+    Object[] a = list.toArray();
+
+    Comparator<Object> c = SortProbe.begin("insertionSort", a.length, comparator);
+    try {
+      insertionSortRange(a, 0, a.length, c);
+    } finally {
+      SortProbe.end(c);
+    }
+
+    // Write the sorted array back into the list.
+    arrayIntoList(a, list);
+  }
+
+  /**
+   * Sorts the passed array in place using O(n^2) insertion sort, in the
+   * order defined by the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   */
+  public static <T> void insertionSort(T[] a, Comparator<? super T> comparator) {
+    insertionSort(a, 0, a.length, comparator);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using O(n^2) insertion sort, in the order defined
+   * by the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static <T> void insertionSort(T[] a, int fromIndex, int toIndex,
+				       Comparator<? super T> comparator) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Comparator<Object> c =
+	SortProbe.begin("insertionSort", toIndex - fromIndex, comparator);
+    try {
+      insertionSortRange(a, fromIndex, toIndex, c);
+    } finally {
+      SortProbe.end(c);
+    }
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive) using insertion
+   * sort. For each element, shift the larger elements below it up by one
+   * position, then drop it into the "hole". Stable.
+   */
+  private static void insertionSortRange(Object[] a, int low, int high,
+					 Comparator<Object> c) {
+    for (int i = low + 1; i < high; i++) {
+      Object value = a[i];
+      int j = i;
+      while ((j > low) && c.compare(a[j - 1], value) > 0) {
+	a[j] = a[j - 1];
+	j--;
+      }
+      a[j] = value;
+      if (SortProbe.ENABLED && (j < i)) {
+	SortProbe.moved(i - j + 1);
+      }
+    }
+  }
+
+
+  /**
+   * Sorts the passed list using O(n^2) selection sort. Modifies the
+   * passed list.
+   *
+   * Sorts elements in ascending order.
+   *
+   * The list is first copied into an array, since we use indexes
+   * for this algorithm. After the array is sorted, it is written
+   * back into the passed list.
+   *
+   * @param list The list to be sorted.
+   * @param T generic type of list element, which must implement Comparable.
+   */
+  public static <T extends Comparable<T>> void selectionSort(List<T> list) {
+    selectionSort(list, NATURAL_ORDER);
+  }
+
+  /**
+   * Sorts the passed list using O(n^2) selection sort, in the order
+   * defined by the passed comparator. Modifies the passed list.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   */
+  public static <T> void selectionSort(List<T> list, Comparator<? super T> comparator) {
+    assert(list != null);
+
+    // First, copy the list into an array.
+    Object[] a = list.toArray();
+
+    Comparator<Object> c = SortProbe.begin("selectionSort", a.length, comparator);
+    try {
+      selectionSortRange(a, 0, a.length, c);
+    } finally {
+      SortProbe.end(c);
+    }
+
+    // Write the sorted array back into the list.
+    arrayIntoList(a, list);
+  }
+
+  /**
+   * Sorts the passed array in place using O(n^2) selection sort, in the
+   * order defined by the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   */
+  public static <T> void selectionSort(T[] a, Comparator<? super T> comparator) {
+    selectionSort(a, 0, a.length, comparator);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using O(n^2) selection sort, in the order defined
+   * by the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static <T> void selectionSort(T[] a, int fromIndex, int toIndex,
+				       Comparator<? super T> comparator) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Comparator<Object> c =
+	SortProbe.begin("selectionSort", toIndex - fromIndex, comparator);
+    try {
+      selectionSortRange(a, fromIndex, toIndex, c);
+    } finally {
+      SortProbe.end(c);
+    }
+  }
+
+  private static void selectionSortRange(Object[] a, int low, int high,
+					 Comparator<Object> c) {
+    // For each position in the array, find the minimum value in the
+    // remaining sub-array and swap it into this position.
+    //
+    for (int i = low; i < high; i++) {
+      int min = i;
+      for (int j = i + 1; j < high; j++) {
+	if (c.compare(a[min], a[j]) > 0) {
+	  min = j;
+	}
+      }
+      swap(a, i, min);
+    }
+  }
+
+
+  /**
+   * Sorts the passed list using O(n^2) bubble sort. Modifies the
+   * passed list.
+   *
+   * Sorts elements in ascending order.
+   *
+   * The list is first copied into an array, since we use indexes
+   * for this algorithm. After the array is sorted, it is written
+   * back into the passed list.
+   *
+   * @param list The List to be sorted.
+   * @param T generic type of List element, which must implement Comparable.
+   */
+  public static <T extends Comparable<T>> void bubbleSort(List<T> list) {
+    bubbleSort(list, NATURAL_ORDER);
+  }
+
+  /**
+   * Sorts the passed list using O(n^2) bubble sort, in the order defined
+   * by the passed comparator. Modifies the passed list.
+   *
+   * @param list The List to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of List element.
+   */
+  public static <T> void bubbleSort(List<T> list, Comparator<? super T> comparator) {
+    assert(list != null);
+
+    // First, copy the list into an array.
+    Object[] a = list.toArray();
+
+    Comparator<Object> c = SortProbe.begin("bubbleSort", a.length, comparator);
+    try {
+      bubbleSortRange(a, 0, a.length, c);
+    } finally {
+      SortProbe.end(c);
+    }
+
+    // Write the sorted array back into the list.
+    arrayIntoList(a, list);
+  }
+
+  /**
+   * Sorts the passed array in place using O(n^2) bubble sort, in the order
+   * defined by the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   */
+  public static <T> void bubbleSort(T[] a, Comparator<? super T> comparator) {
+    bubbleSort(a, 0, a.length, comparator);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using O(n^2) bubble sort, in the order defined by
+   * the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static <T> void bubbleSort(T[] a, int fromIndex, int toIndex,
+				    Comparator<? super T> comparator) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Comparator<Object> c =
+	SortProbe.begin("bubbleSort", toIndex - fromIndex, comparator);
+    try {
+      bubbleSortRange(a, fromIndex, toIndex, c);
+    } finally {
+      SortProbe.end(c);
+    }
+  }
+
+  private static void bubbleSortRange(Object[] a, int low, int high,
+				      Comparator<Object> c) {
+    // Swap adjacent members if they are out of order, "bubbling" the
+    // largest value to the end of the array. At the end of each step of
+    // the outer loop, the current largest value has been "bubbled" to
+    // the end of the array.
+    //
+    for (int i = high; i > low; i--) {
+      for (int j = low + 1; j < i; j++) {
+	if (c.compare(a[j - 1], a[j]) > 0) {
+	  swap(a, j, j - 1);
+	}
+      }
+    }
+  }
+
+  /**
+   * Sorts the passed list using an adaptive, stable natural merge sort
+   * (TimSort). Modifies the passed list. Sorts in ascending order.
+   *
+   * Existing order in the list is used: ascending and strictly descending
+   * runs are found and merged, rather than re-sorted. A list made of a few
+   * runs, such as a sorted list with some elements appended or changed,
+   * is sorted in close to O(n) time. Random lists are sorted in
+   * O(n log n) time.
+   *
+   * @param list The list to be sorted.
+   * @param T generic type of list element, which must implement Comparable.
+   * @throws IllegalArgumentException if the ordering is found to be
+   *    inconsistent.
+   */
+  public static <T extends Comparable<T>> void timSort(List<T> list) {
+    timSort(list, NATURAL_ORDER);
+  }
+
+  /**
+   * Sorts the passed list using an adaptive, stable natural merge sort
+   * (TimSort), in the order defined by the passed comparator. Modifies
+   * the passed list.
+   *
+   * @param list The list to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of list element.
+   * @throws IllegalArgumentException if the comparator is found to break
+   *    its contract.
+   */
+  public static <T> void timSort(List<T> list, Comparator<? super T> comparator) {
+    assert(list != null);
+
+    // First, copy the list into an array.
+    Object[] a = list.toArray();
+
+    Comparator<Object> c = SortProbe.begin("timSort", a.length, comparator);
+    try {
+      TimSort.sort(a, 0, a.length, c);
+    } finally {
+      SortProbe.end(c);
+    }
+
+    // Write the sorted array back into the list.
+    arrayIntoList(a, list);
+  }
+
+  /**
+   * Sorts the passed array in place using an adaptive, stable natural
+   * merge sort (TimSort), in the order defined by the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @throws IllegalArgumentException if the comparator is found to break
+   *    its contract.
+   */
+  public static <T> void timSort(T[] a, Comparator<? super T> comparator) {
+    timSort(a, 0, a.length, comparator);
+  }
+
+  /**
+   * Sorts the elements of the passed array from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) using an adaptive, stable natural merge sort
+   * (TimSort), in the order defined by the passed comparator.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param comparator Defines the order, or null for the natural ordering.
+   * @param T generic type of array element.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the comparator is found to break
+   *    its contract.
+   */
+  public static <T> void timSort(T[] a, int fromIndex, int toIndex,
+				 Comparator<? super T> comparator) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Comparator<Object> c = SortProbe.begin("timSort", toIndex - fromIndex, comparator);
+    try {
+      TimSort.sort(a, fromIndex, toIndex, c);
+    } finally {
+      SortProbe.end(c);
+    }
+  }
+
+  /**
+   * Returns the permutation which sorts the passed keys in ascending
+   * order: the index of the smallest key, then of the next smallest, and
+   * so on. Equal keys keep their relative order. The keys are not
+   * modified. Runs in O(n) time, using radix sort.
+   *
+   * @param keys The keys to be sorted.
+   */
+  public static int[] argsort(long[] keys) {
+    return KeySort.argsort(keys, radixBits(keys.length));
+  }
+
+  /**
+   * Returns the permutation which sorts the passed keys in ascending
+   * order, as defined by Double.compare. Equal keys keep their relative
+   * order. The keys are not modified.
+   *
+   * @param keys The keys to be sorted.
+   */
+  public static int[] argsort(double[] keys) {
+    long[] bits = new long[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      bits[i] = KeySort.sortableBits(keys[i]);
+    }
+    return argsort(bits);
+  }
+
+  /**
+   * Returns the permutation which sorts the passed list by the long key
+   * of each element, without modifying the list: element perm[0] of the
+   * list has the smallest key, and so on. Elements with equal keys keep
+   * their relative order. The key of each element is extracted exactly
+   * once.
+   *
+   * @param list The list whose sorted order is wanted.
+   * @param key Extracts the key of an element.
+   * @param T generic type of list element.
+   */
+  public static <T> int[] argsortByLongKey(List<? extends T> list,
+					   ToLongFunction<? super T> key) {
+    return argsort(longKeys(list, key));
+  }
+
+  /**
+   * Returns the permutation which sorts the passed list by the double key
+   * of each element, as ordered by Double.compare, without modifying the
+   * list. Elements with equal keys keep their relative order. The key of
+   * each element is extracted exactly once.
+   *
+   * @param list The list whose sorted order is wanted.
+   * @param key Extracts the key of an element.
+   * @param T generic type of list element.
+   */
+  public static <T> int[] argsortByDoubleKey(List<? extends T> list,
+					     ToDoubleFunction<? super T> key) {
+    return argsort(doubleKeys(list, key));
+  }
+
+  /**
+   * Sorts the passed list by the long key of each element, in ascending
+   * order. Modifies the passed list. The sort is stable.
+   *
+   * Sorting with a comparator calls it, and the getters it uses, O(n log n)
+   * times, each call chasing pointers to two elements. Instead, the key of
+   * each element is extracted exactly once into a primitive array, the
+   * keys are sorted together with their indexes in O(n) time, and the
+   * resulting permutation is applied to the list.
+   *
+   * @param list The list to be sorted.
+   * @param key Extracts the key of an element.
+   * @param T generic type of list element.
+   */
+  public static <T> void sortByLongKey(List<T> list, ToLongFunction<? super T> key) {
+    assert(list != null);
+    applyPermutation(argsortByLongKey(list, key), list);
+  }
+
+  /**
+   * Sorts the passed list by the double key of each element, in the
+   * ascending order defined by Double.compare. Modifies the passed list.
+   * The sort is stable. The key of each element is extracted exactly once,
+   * as for the long version.
+   *
+   * @param list The list to be sorted.
+   * @param key Extracts the key of an element.
+   * @param T generic type of list element.
+   */
+  public static <T> void sortByDoubleKey(List<T> list, ToDoubleFunction<? super T> key) {
+    assert(list != null);
+    applyPermutation(argsortByDoubleKey(list, key), list);
+  }
+
+  private static <T> long[] longKeys(List<? extends T> list,
+				     ToLongFunction<? super T> key) {
+    Preconditions.checkNotNull(key);
+    long[] keys = new long[list.size()];
+    int i = 0;
+    for (T element : list) {
+      keys[i++] = key.applyAsLong(element);
+    }
+    return keys;
+  }
+
+  private static <T> int[] intKeys(List<? extends T> list,
+				   ToIntFunction<? super T> key) {
+    Preconditions.checkNotNull(key);
+    int[] keys = new int[list.size()];
+    int i = 0;
+    for (T element : list) {
+      keys[i++] = key.applyAsInt(element);
+    }
+    return keys;
+  }
+
+  private static <T> double[] doubleKeys(List<? extends T> list,
+					 ToDoubleFunction<? super T> key) {
+    Preconditions.checkNotNull(key);
+    double[] keys = new double[list.size()];
+    int i = 0;
+    for (T element : list) {
+      keys[i++] = key.applyAsDouble(element);
+    }
+    return keys;
+  }
+
+  /**
+   * Rearranges "list" so that element "i" is the element which was at
+   * index perm[i].
+   */
+  private static <T> void applyPermutation(int[] perm, List<T> list) {
+    Object[] a = list.toArray();
+    Object[] sorted = new Object[a.length];
+    for (int i = 0; i < a.length; i++) {
+      sorted[i] = a[perm[i]];
+    }
+    arrayIntoList(sorted, list);
+  }
+
+  /**
+   * Sorts the passed int array using O(n log n) merge sort. Sorts in
+   * ascending order. The values are never boxed, and a single working
+   * array is allocated for all of the merges.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void mergeSort(int[] a) {
+    mergeSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed int array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n log n) merge sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void mergeSort(int[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    if (toIndex - fromIndex > 1) {
+      // Each merge only copies out its lower half, so half the range is
+      // enough working space.
+      int[] work = new int[(toIndex - fromIndex + 1) / 2];
+      mergeSort(a, work, fromIndex, toIndex - 1);
+    }
+  }
+
+  private static void mergeSort(int[] a, int[] work, int low, int high) {
+    if (low < high) {
+      int middle = ((high - low) / 2) + low;
+      mergeSort(a, work, low, middle);
+      mergeSort(a, work, middle + 1, high);
+      merge(a, work, low, middle, high);
+    }
+  }
+
+  /**
+   * Merges the two sorted sub-arrays a[low..middle] and a[middle+1..high].
+   * Only the lower sub-array is copied into "work"; the upper sub-array is
+   * read in place, since the write index never passes the upper read index.
+   */
+  private static void merge(int[] a, int[] work, int low, int middle, int high) {
+    // Nothing to do if the two halves are already in order.
+    if (a[middle] <= a[middle + 1]) {
+      return;
+    }
+    int lowerSize = middle - low + 1;
+    System.arraycopy(a, low, work, 0, lowerSize);
+
+    int lowerIdx = 0;
+    int upperIdx = middle + 1;
+    int i = low;
+    while ((lowerIdx < lowerSize) && (upperIdx <= high)) {
+      // Take from "lower" on ties to keep the sort stable.
+      if (a[upperIdx] < work[lowerIdx]) {
+	a[i++] = a[upperIdx++];
+      } else {
+	a[i++] = work[lowerIdx++];
+      }
+    }
+    // Any remaining upper elements are already in their final position.
+    while (lowerIdx < lowerSize) {
+      a[i++] = work[lowerIdx++];
+    }
+  }
+
+  /**
+   * Sorts the passed int array using introsort, a quick sort which falls
+   * back to heap sort, so it is O(n log n) even in the worst case. Sorts
+   * in ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void quickSort(int[] a) {
+    quickSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed int array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using introsort, which is O(n log n) in the
+   * worst case.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void quickSort(int[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    quickSortFallbacks(a, fromIndex, toIndex);
+  }
+
+  /**
+   * Sorts a[low..high) as quickSort(int[], int, int) does. Returns the
+   * number of sub-arrays which were heap sorted after too many uneven
+   * partitions, which the tests check is none for the common patterns.
+   */
+  static int quickSortFallbacks(int[] a, int low, int high) {
+    return quickSortRange(a, low, high, depthLimit(high - low), true);
+  }
+
+  /**
+   * Sorts a[low..high) with an introsort tuned for primitives, after
+   * pattern-defeating quick sort (pdqsort): a branchless partition around
+   * a median pivot, recursing only into the smaller side, with sorting
+   * network and heap sort cutoffs. Returns the number of heap sorts.
+   *
+   * An uneven partition, with less than an eighth of the range on one
+   * side, counts against "badAllowed"; when that runs out, the range is
+   * heap sorted. An uneven partition means the input has a pattern which
+   * defeats the pivot sampling, such as a sawtooth whose period divides
+   * the distance between samples, so the samples of both sides are then
+   * swapped with pseudo-random elements, and the pattern can not repeat.
+   * After an even partition which moved nothing, both sides are probably
+   * sorted already, so a bounded insertion sort is tried on them, which
+   * makes sorted input O(n).
+   *
+   * "leftmost" is false when a[low - 1] is known to be no greater than
+   * every element of the range (it is an earlier pivot). If the new pivot
+   * equals it, the pivot is the smallest value in the range, so every
+   * copy of it is gathered at the front and skipped. This keeps inputs
+   * with many duplicates O(n log k) for "k" distinct values, as three-way
+   * partitioning does, without the extra branches on every element.
+   */
+  private static int quickSortRange(int[] a, int low, int high, int badAllowed,
+				    boolean leftmost) {
+    int fallbacks = 0;
+    while (high - low > NETWORK_SORT_THRESHOLD) {
+      swap(a, low, choosePivot(a, low, high));
+      int pivot = a[low];
+      if (!leftmost && (a[low - 1] == pivot)) {
+	low = partitionEqual(a, low, high, pivot);
+	continue;
+      }
+      int pivotIdx = partition(a, low, high);
+      boolean alreadyPartitioned = (pivotIdx < 0);
+      pivotIdx = alreadyPartitioned ? ~pivotIdx : pivotIdx;
+
+      int lowerSize = pivotIdx - low;
+      int upperSize = high - pivotIdx - 1;
+      if (Math.min(lowerSize, upperSize) < (high - low) / 8) {
+	if (--badAllowed == 0) {
+	  heapSort(a, low, high);
+	  return fallbacks + 1;
+	}
+	breakPatterns(a, low, pivotIdx);
+	breakPatterns(a, pivotIdx + 1, high);
+      } else if (alreadyPartitioned && partialInsertionSort(a, low, pivotIdx)
+		 && partialInsertionSort(a, pivotIdx + 1, high)) {
+	return fallbacks;
+      }
+
+      if (lowerSize < upperSize) {
+	fallbacks += quickSortRange(a, low, pivotIdx, badAllowed, leftmost);
+	low = pivotIdx + 1;
+	leftmost = false;
+      } else {
+	fallbacks += quickSortRange(a, pivotIdx + 1, high, badAllowed, false);
+	high = pivotIdx;
+      }
+    }
+    SortingNetworks.sort(a, low, high);
+    return fallbacks;
+  }
+
+  /**
+   * Partitions a[low..high), whose pivot is at a[low], into the values
+   * less than the pivot, then the pivot, then the rest. Returns the index
+   * of the pivot, or its complement (~index, which is negative) if no
+   * value was out of place.
+   *
+   * The values already in place at either end are skipped, so a sorted
+   * range is only read. Between them, each element is swapped into place
+   * unconditionally, and only the end of the "less" group depends on the
+   * comparison, so there are no branches to mispredict (a branchless
+   * Lomuto partition).
+   */
+  private static int partition(int[] a, int low, int high) {
+    int pivot = a[low];
+    int lessEnd = low + 1;
+    while ((lessEnd < high) && (a[lessEnd] < pivot)) {
+      lessEnd++;
+    }
+    while ((high > lessEnd) && (a[high - 1] >= pivot)) {
+      high--;
+    }
+    boolean alreadyPartitioned = (lessEnd == high);
+    for (int i = lessEnd; i < high; i++) {
+      int value = a[i];
+      a[i] = a[lessEnd];
+      a[lessEnd] = value;
+      lessEnd += (value < pivot) ? 1 : 0;
+    }
+    swap(a, low, lessEnd - 1);
+    return alreadyPartitioned ? ~(lessEnd - 1) : lessEnd - 1;
+  }
+
+  /**
+   * Insertion sorts a[low..high), unless that takes more than
+   * PARTIAL_INSERTION_SORT_LIMIT moves, in which case it gives up and
+   * returns false. The range is still a permutation of its values.
+   */
+  private static boolean partialInsertionSort(int[] a, int low, int high) {
+    int moves = 0;
+    for (int i = low + 1; i < high; i++) {
+      int value = a[i];
+      int j = i;
+      while ((j > low) && (value < a[j - 1])) {
+	a[j] = a[j - 1];
+	j--;
+      }
+      a[j] = value;
+      moves += i - j;
+      if (moves > PARTIAL_INSERTION_SORT_LIMIT) {
+	return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Swaps the elements which choosePivot() samples from a[low..high) with
+   * elements at pseudo-random positions, so that a pattern whose period
+   * divides the distance between the samples can not fool it again.
+   */
+  private static void breakPatterns(int[] a, int low, int high) {
+    int size = high - low;
+    if (size <= NETWORK_SORT_THRESHOLD) {
+      return;
+    }
+    int step = (size > NINTHER_THRESHOLD) ? size / 8 : 0;
+    int middle = (low + high) >>> 1;
+    int random = size;
+    for (int k = 0; k < 3; k++) {
+      random = xorShift(random);
+      swap(a, low + (k * step), low + Math.floorMod(random, size));
+      random = xorShift(random);
+      swap(a, middle + ((k - 1) * step), low + Math.floorMod(random, size));
+      random = xorShift(random);
+      swap(a, high - 1 - (k * step), low + Math.floorMod(random, size));
+    }
+  }
+
+  // Returns the next value of Marsaglia's xorshift generator after "x".
+  static int xorShift(int x) {
+    x ^= x << 13;
+    x ^= x >>> 17;
+    return x ^ (x << 5);
+  }
+
+  /**
+   * Moves the values of a[low..high) which equal "pivot", its smallest
+   * value, to the front. Returns the index after them.
+   */
+  private static int partitionEqual(int[] a, int low, int high, int pivot) {
+    int equalEnd = low + 1;
+    for (int i = low + 1; i < high; i++) {
+      int value = a[i];
+      a[i] = a[equalEnd];
+      a[equalEnd] = value;
+      equalEnd += (value == pivot) ? 1 : 0;
+    }
+    return equalEnd;
+  }
+
+  /**
+   * Returns the index of the pivot for a[low..high): the median of the
+   * first, middle and last elements, or for large ranges the median of
+   * three such medians (Tukey's ninther).
+   */
+  private static int choosePivot(int[] a, int low, int high) {
+    int size = high - low;
+    int middle = (low + high) >>> 1;
+    if (size > NINTHER_THRESHOLD) {
+      int step = size / 8;
+      int lower = median(a, low, low + step, low + (2 * step));
+      int center = median(a, middle - step, middle, middle + step);
+      int upper = median(a, high - 1 - (2 * step), high - 1 - step, high - 1);
+      return median(a, lower, center, upper);
+    }
+    return median(a, low, middle, high - 1);
+  }
+
+  /**
+   * Returns whichever of the indexes "i", "j" and "k" holds the median of
+   * their three values.
+   */
+  private static int median(int[] a, int i, int j, int k) {
+    if (a[i] < a[j]) {
+      return a[j] < a[k] ? j : (a[i] < a[k] ? k : i);
+    } else {
+      return a[k] < a[j] ? j : (a[k] < a[i] ? k : i);
+    }
+  }
+
+  /**
+   * Sorts the passed int array using O(n log n) heap sort. Sorts in
+   * ascending order. Does not allocate any memory.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void heapSort(int[] a) {
+    heapSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed int array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n log n) heap sort on an 8-ary heap.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void heapSort(int[] a, int fromIndex, int toIndex) {
+    heapSort(a, fromIndex, toIndex, HEAP_8_ARY);
+  }
+
+  /**
+   * Sorts the elements of the passed int array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n log n) heap sort on a heap with
+   * "arity" children per node. Sifts down bottom-up (see HeapSort).
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param arity Children per node: HEAP_2_ARY, HEAP_4_ARY or HEAP_8_ARY.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the arity is not supported.
+   */
+  public static void heapSort(int[] a, int fromIndex, int toIndex, int arity) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkHeapArity(arity);
+    HeapSort.sort(a, fromIndex, toIndex, arity);
+  }
+
+  /**
+   * Sorts the passed int array using shell sort with Ciura's gaps. Sorts in
+   * ascending order. Does not allocate any memory.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void shellSort(int[] a) {
+    shellSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed int array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using shell sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void shellSort(int[] a, int fromIndex, int toIndex) {
+    shellSort(a, fromIndex, toIndex, SHELL_CIURA_GAPS);
+  }
+
+  /**
+   * Sorts the elements of the passed int array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using shell sort with the passed gap sequence.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param gaps The gap sequence: SHELL_CIURA_GAPS, SHELL_TOKUDA_GAPS or
+   *    SHELL_SEDGEWICK_GAPS.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the gap sequence is not supported.
+   */
+  public static void shellSort(int[] a, int fromIndex, int toIndex, int gaps) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkShellGaps(gaps);
+    ShellSort.sort(a, fromIndex, toIndex, gaps);
+  }
+
+  /**
+   * Sorts the passed int array using O(n^2) insertion sort. Sorts in
+   * ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void insertionSort(int[] a) {
+    insertionSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed int array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n^2) insertion sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void insertionSort(int[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    for (int i = fromIndex + 1; i < toIndex; i++) {
+      int value = a[i];
+      int j = i;
+      while ((j > fromIndex) && a[j - 1] > value) {
+	a[j] = a[j - 1];
+	j--;
+      }
+      a[j] = value;
+    }
+  }
+
+  private static void swap(int[] a, int index1, int index2) {
+    int temp = a[index1];
+    a[index1] = a[index2];
+    a[index2] = temp;
+  }
+
+  /**
+   * Sorts the passed long array using O(n log n) merge sort. Sorts in
+   * ascending order. The values are never boxed, and a single working
+   * array is allocated for all of the merges.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void mergeSort(long[] a) {
+    mergeSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed long array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n log n) merge sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void mergeSort(long[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    if (toIndex - fromIndex > 1) {
+      // Each merge only copies out its lower half, so half the range is
+      // enough working space.
+      long[] work = new long[(toIndex - fromIndex + 1) / 2];
+      mergeSort(a, work, fromIndex, toIndex - 1);
+    }
+  }
+
+  private static void mergeSort(long[] a, long[] work, int low, int high) {
+    if (low < high) {
+      int middle = ((high - low) / 2) + low;
+      mergeSort(a, work, low, middle);
+      mergeSort(a, work, middle + 1, high);
+      merge(a, work, low, middle, high);
+    }
+  }
+
+  /**
+   * Merges the two sorted sub-arrays a[low..middle] and a[middle+1..high].
+   * Only the lower sub-array is copied into "work"; the upper sub-array is
+   * read in place, since the write index never passes the upper read index.
+   */
+  private static void merge(long[] a, long[] work, int low, int middle, int high) {
+    // Nothing to do if the two halves are already in order.
+    if (a[middle] <= a[middle + 1]) {
+      return;
+    }
+    int lowerSize = middle - low + 1;
+    System.arraycopy(a, low, work, 0, lowerSize);
+
+    int lowerIdx = 0;
+    int upperIdx = middle + 1;
+    int i = low;
+    while ((lowerIdx < lowerSize) && (upperIdx <= high)) {
+      // Take from "lower" on ties to keep the sort stable.
+      if (a[upperIdx] < work[lowerIdx]) {
+	a[i++] = a[upperIdx++];
+      } else {
+	a[i++] = work[lowerIdx++];
+      }
+    }
+    // Any remaining upper elements are already in their final position.
+    while (lowerIdx < lowerSize) {
+      a[i++] = work[lowerIdx++];
+    }
+  }
+
+  /**
+   * Sorts the passed long array using introsort, a quick sort which falls
+   * back to heap sort, so it is O(n log n) even in the worst case. Sorts
+   * in ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void quickSort(long[] a) {
+    quickSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed long array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using introsort, which is O(n log n) in the
+   * worst case.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void quickSort(long[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    quickSortFallbacks(a, fromIndex, toIndex);
+  }
+
+  /**
+   * Sorts a[low..high) as quickSort(long[], int, int) does, and returns the
+   * number of heap sorts, as for int arrays.
+   */
+  static int quickSortFallbacks(long[] a, int low, int high) {
+    return quickSortRange(a, low, high, depthLimit(high - low), true);
+  }
+
+  /**
+   * Sorts a[low..high) the same way as quickSortRange(int[], int, int, int,
+   * boolean).
+   */
+  private static int quickSortRange(long[] a, int low, int high, int badAllowed,
+				    boolean leftmost) {
+    int fallbacks = 0;
+    while (high - low > NETWORK_SORT_THRESHOLD) {
+      swap(a, low, choosePivot(a, low, high));
+      long pivot = a[low];
+      if (!leftmost && (a[low - 1] == pivot)) {
+	low = partitionEqual(a, low, high, pivot);
+	continue;
+      }
+      int pivotIdx = partition(a, low, high);
+      boolean alreadyPartitioned = (pivotIdx < 0);
+      pivotIdx = alreadyPartitioned ? ~pivotIdx : pivotIdx;
+
+      int lowerSize = pivotIdx - low;
+      int upperSize = high - pivotIdx - 1;
+      if (Math.min(lowerSize, upperSize) < (high - low) / 8) {
+	if (--badAllowed == 0) {
+	  heapSort(a, low, high);
+	  return fallbacks + 1;
+	}
+	breakPatterns(a, low, pivotIdx);
+	breakPatterns(a, pivotIdx + 1, high);
+      } else if (alreadyPartitioned && partialInsertionSort(a, low, pivotIdx)
+		 && partialInsertionSort(a, pivotIdx + 1, high)) {
+	return fallbacks;
+      }
+
+      if (lowerSize < upperSize) {
+	fallbacks += quickSortRange(a, low, pivotIdx, badAllowed, leftmost);
+	low = pivotIdx + 1;
+	leftmost = false;
+      } else {
+	fallbacks += quickSortRange(a, pivotIdx + 1, high, badAllowed, false);
+	high = pivotIdx;
+      }
+    }
+    SortingNetworks.sort(a, low, high);
+    return fallbacks;
+  }
+
+  /**
+   * Partitions a[low..high) around the pivot at a[low], as for int arrays.
+   * Returns the index of the pivot, or its complement if no value was out
+   * of place.
+   */
+  private static int partition(long[] a, int low, int high) {
+    long pivot = a[low];
+    int lessEnd = low + 1;
+    while ((lessEnd < high) && (a[lessEnd] < pivot)) {
+      lessEnd++;
+    }
+    while ((high > lessEnd) && (a[high - 1] >= pivot)) {
+      high--;
+    }
+    boolean alreadyPartitioned = (lessEnd == high);
+    for (int i = lessEnd; i < high; i++) {
+      long value = a[i];
+      a[i] = a[lessEnd];
+      a[lessEnd] = value;
+      lessEnd += (value < pivot) ? 1 : 0;
+    }
+    swap(a, low, lessEnd - 1);
+    return alreadyPartitioned ? ~(lessEnd - 1) : lessEnd - 1;
+  }
+
+  /**
+   * Insertion sorts a[low..high) unless that takes too many moves, as for
+   * int arrays.
+   */
+  private static boolean partialInsertionSort(long[] a, int low, int high) {
+    int moves = 0;
+    for (int i = low + 1; i < high; i++) {
+      long value = a[i];
+      int j = i;
+      while ((j > low) && (value < a[j - 1])) {
+	a[j] = a[j - 1];
+	j--;
+      }
+      a[j] = value;
+      moves += i - j;
+      if (moves > PARTIAL_INSERTION_SORT_LIMIT) {
+	return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Breaks up patterns in a[low..high) as for int arrays.
+   */
+  private static void breakPatterns(long[] a, int low, int high) {
+    int size = high - low;
+    if (size <= NETWORK_SORT_THRESHOLD) {
+      return;
+    }
+    int step = (size > NINTHER_THRESHOLD) ? size / 8 : 0;
+    int middle = (low + high) >>> 1;
+    int random = size;
+    for (int k = 0; k < 3; k++) {
+      random = xorShift(random);
+      swap(a, low + (k * step), low + Math.floorMod(random, size));
+      random = xorShift(random);
+      swap(a, middle + ((k - 1) * step), low + Math.floorMod(random, size));
+      random = xorShift(random);
+      swap(a, high - 1 - (k * step), low + Math.floorMod(random, size));
+    }
+  }
+
+  /**
+   * Moves the values of a[low..high) which equal "pivot", its smallest
+   * value, to the front. Returns the index after them.
+   */
+  private static int partitionEqual(long[] a, int low, int high, long pivot) {
+    int equalEnd = low + 1;
+    for (int i = low + 1; i < high; i++) {
+      long value = a[i];
+      a[i] = a[equalEnd];
+      a[equalEnd] = value;
+      equalEnd += (value == pivot) ? 1 : 0;
+    }
+    return equalEnd;
+  }
+
+  /**
+   * Returns the index of the pivot for a[low..high): the median of the
+   * first, middle and last elements, or for large ranges the median of
+   * three such medians (Tukey's ninther).
+   */
+  private static int choosePivot(long[] a, int low, int high) {
+    int size = high - low;
+    int middle = (low + high) >>> 1;
+    if (size > NINTHER_THRESHOLD) {
+      int step = size / 8;
+      int lower = median(a, low, low + step, low + (2 * step));
+      int center = median(a, middle - step, middle, middle + step);
+      int upper = median(a, high - 1 - (2 * step), high - 1 - step, high - 1);
+      return median(a, lower, center, upper);
+    }
+    return median(a, low, middle, high - 1);
+  }
+
+  /**
+   * Returns whichever of the indexes "i", "j" and "k" holds the median of
+   * their three values.
+   */
+  private static int median(long[] a, int i, int j, int k) {
+    if (a[i] < a[j]) {
+      return a[j] < a[k] ? j : (a[i] < a[k] ? k : i);
+    } else {
+      return a[k] < a[j] ? j : (a[k] < a[i] ? k : i);
+    }
+  }
+
+  /**
+   * Sorts the passed long array using O(n log n) heap sort. Sorts in
+   * ascending order. Does not allocate any memory.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void heapSort(long[] a) {
+    heapSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed long array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n log n) heap sort on an 8-ary heap.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void heapSort(long[] a, int fromIndex, int toIndex) {
+    heapSort(a, fromIndex, toIndex, HEAP_8_ARY);
+  }
+
+  /**
+   * Sorts the elements of the passed long array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n log n) heap sort on a heap with
+   * "arity" children per node. Sifts down bottom-up (see HeapSort).
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param arity Children per node: HEAP_2_ARY, HEAP_4_ARY or HEAP_8_ARY.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the arity is not supported.
+   */
+  public static void heapSort(long[] a, int fromIndex, int toIndex, int arity) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkHeapArity(arity);
+    HeapSort.sort(a, fromIndex, toIndex, arity);
+  }
+
+  /**
+   * Sorts the passed long array using shell sort with Ciura's gaps. Sorts in
+   * ascending order. Does not allocate any memory.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void shellSort(long[] a) {
+    shellSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed long array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using shell sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void shellSort(long[] a, int fromIndex, int toIndex) {
+    shellSort(a, fromIndex, toIndex, SHELL_CIURA_GAPS);
+  }
+
+  /**
+   * Sorts the elements of the passed long array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using shell sort with the passed gap sequence.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param gaps The gap sequence: SHELL_CIURA_GAPS, SHELL_TOKUDA_GAPS or
+   *    SHELL_SEDGEWICK_GAPS.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the gap sequence is not supported.
+   */
+  public static void shellSort(long[] a, int fromIndex, int toIndex, int gaps) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkShellGaps(gaps);
+    ShellSort.sort(a, fromIndex, toIndex, gaps);
+  }
+
+  /**
+   * Sorts the passed long array using O(n^2) insertion sort. Sorts in
+   * ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void insertionSort(long[] a) {
+    insertionSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed long array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n^2) insertion sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void insertionSort(long[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    for (int i = fromIndex + 1; i < toIndex; i++) {
+      long value = a[i];
+      int j = i;
+      while ((j > fromIndex) && a[j - 1] > value) {
+	a[j] = a[j - 1];
+	j--;
+      }
+      a[j] = value;
+    }
+  }
+
+  private static void swap(long[] a, int index1, int index2) {
+    long temp = a[index1];
+    a[index1] = a[index2];
+    a[index2] = temp;
+  }
+
+  /**
+   * Sorts the passed float array using O(n log n) merge sort. Sorts in
+   * ascending order. The values are never boxed, and a single working
+   * array is allocated for all of the merges.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void mergeSort(float[] a) {
+    mergeSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed float array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n log n) merge sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void mergeSort(float[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    if (toIndex - fromIndex > 1) {
+      // Each merge only copies out its lower half, so half the range is
+      // enough working space.
+      float[] work = new float[(toIndex - fromIndex + 1) / 2];
+      mergeSort(a, work, fromIndex, toIndex - 1);
+    }
+  }
+
+  private static void mergeSort(float[] a, float[] work, int low, int high) {
+    if (low < high) {
+      int middle = ((high - low) / 2) + low;
+      mergeSort(a, work, low, middle);
+      mergeSort(a, work, middle + 1, high);
+      merge(a, work, low, middle, high);
+    }
+  }
+
+  /**
+   * Merges the two sorted sub-arrays a[low..middle] and a[middle+1..high].
+   * Only the lower sub-array is copied into "work"; the upper sub-array is
+   * read in place, since the write index never passes the upper read index.
+   */
+  private static void merge(float[] a, float[] work, int low, int middle, int high) {
+    // Nothing to do if the two halves are already in order.
+    if (Float.compare(a[middle], a[middle + 1]) <= 0) {
+      return;
+    }
+    int lowerSize = middle - low + 1;
+    System.arraycopy(a, low, work, 0, lowerSize);
+
+    int lowerIdx = 0;
+    int upperIdx = middle + 1;
+    int i = low;
+    while ((lowerIdx < lowerSize) && (upperIdx <= high)) {
+      // Take from "lower" on ties to keep the sort stable.
+      if (Float.compare(a[upperIdx], work[lowerIdx]) < 0) {
+	a[i++] = a[upperIdx++];
+      } else {
+	a[i++] = work[lowerIdx++];
+      }
+    }
+    // Any remaining upper elements are already in their final position.
+    while (lowerIdx < lowerSize) {
+      a[i++] = work[lowerIdx++];
+    }
+  }
+
+  /**
+   * Sorts the passed float array using introsort, a quick sort which falls
+   * back to heap sort, so it is O(n log n) even in the worst case. Sorts
+   * in ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void quickSort(float[] a) {
+    quickSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed float array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using introsort, which is O(n log n) in the
+   * worst case.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void quickSort(float[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    quickSortFallbacks(a, fromIndex, toIndex);
+  }
+
+  /**
+   * Sorts a[low..high) as quickSort(float[], int, int) does, and returns the
+   * number of heap sorts, as for int arrays.
+   */
+  static int quickSortFallbacks(float[] a, int low, int high) {
+    // NaNs go last, and -0.0 before 0.0. Handling them up front, and
+    // afterwards, lets the partitioning use plain, branchless comparisons.
+    int end = moveNaNsToEnd(a, low, high);
+    int fallbacks = quickSortRange(a, low, end, depthLimit(end - low), true);
+    orderZeros(a, low, end);
+    return fallbacks;
+  }
+
+  /**
+   * Moves the NaNs in a[low..high) to the end of the range. Returns the
+   * index of the first NaN, or "high" if there are none.
+   */
+  private static int moveNaNsToEnd(float[] a, int low, int high) {
+    for (int i = high - 1; i >= low; i--) {
+      if (a[i] != a[i]) {
+	a[i] = a[--high];
+	a[high] = Float.NaN;
+      }
+    }
+    return high;
+  }
+
+  /**
+   * Puts the negative zeros in the sorted a[low..high) before the positive
+   * zeros. The sort treats them as equal, so they may be mixed together.
+   */
+  private static void orderZeros(float[] a, int low, int high) {
+    // Binary search for the first value which is not negative.
+    int left = low;
+    int right = high;
+    while (left < right) {
+      int middle = (left + right) >>> 1;
+      if (a[middle] < 0.0f) {
+	left = middle + 1;
+      } else {
+	right = middle;
+      }
+    }
+    int negativeZeros = 0;
+    int end = left;
+    for (; (end < high) && (a[end] == 0.0f); end++) {
+      if (Float.floatToRawIntBits(a[end]) < 0) {
+	negativeZeros++;
+      }
+    }
+    for (int i = left; i < end; i++) {
+      a[i] = (i < left + negativeZeros) ? -0.0f : 0.0f;
+    }
+  }
+
+  /**
+   * Sorts a[low..high) the same way as quickSortRange(int[], int, int, int,
+   * boolean).
+   */
+  private static int quickSortRange(float[] a, int low, int high, int badAllowed,
+				    boolean leftmost) {
+    int fallbacks = 0;
+    while (high - low > NETWORK_SORT_THRESHOLD) {
+      swap(a, low, choosePivot(a, low, high));
+      float pivot = a[low];
+      if (!leftmost && (a[low - 1] == pivot)) {
+	low = partitionEqual(a, low, high, pivot);
+	continue;
+      }
+      int pivotIdx = partition(a, low, high);
+      boolean alreadyPartitioned = (pivotIdx < 0);
+      pivotIdx = alreadyPartitioned ? ~pivotIdx : pivotIdx;
+
+      int lowerSize = pivotIdx - low;
+      int upperSize = high - pivotIdx - 1;
+      if (Math.min(lowerSize, upperSize) < (high - low) / 8) {
+	if (--badAllowed == 0) {
+	  heapSort(a, low, high);
+	  return fallbacks + 1;
+	}
+	breakPatterns(a, low, pivotIdx);
+	breakPatterns(a, pivotIdx + 1, high);
+      } else if (alreadyPartitioned && partialInsertionSort(a, low, pivotIdx)
+		 && partialInsertionSort(a, pivotIdx + 1, high)) {
+	return fallbacks;
+      }
+
+      if (lowerSize < upperSize) {
+	fallbacks += quickSortRange(a, low, pivotIdx, badAllowed, leftmost);
+	low = pivotIdx + 1;
+	leftmost = false;
+      } else {
+	fallbacks += quickSortRange(a, pivotIdx + 1, high, badAllowed, false);
+	high = pivotIdx;
+      }
+    }
+    SortingNetworks.sort(a, low, high);
+    return fallbacks;
+  }
+
+  /**
+   * Partitions a[low..high) around the pivot at a[low], as for int arrays.
+   * Returns the index of the pivot, or its complement if no value was out
+   * of place.
+   */
+  private static int partition(float[] a, int low, int high) {
+    float pivot = a[low];
+    int lessEnd = low + 1;
+    while ((lessEnd < high) && (a[lessEnd] < pivot)) {
+      lessEnd++;
+    }
+    while ((high > lessEnd) && (a[high - 1] >= pivot)) {
+      high--;
+    }
+    boolean alreadyPartitioned = (lessEnd == high);
+    for (int i = lessEnd; i < high; i++) {
+      float value = a[i];
+      a[i] = a[lessEnd];
+      a[lessEnd] = value;
+      lessEnd += (value < pivot) ? 1 : 0;
+    }
+    swap(a, low, lessEnd - 1);
+    return alreadyPartitioned ? ~(lessEnd - 1) : lessEnd - 1;
+  }
+
+  /**
+   * Insertion sorts a[low..high) unless that takes too many moves, as for
+   * int arrays.
+   */
+  private static boolean partialInsertionSort(float[] a, int low, int high) {
+    int moves = 0;
+    for (int i = low + 1; i < high; i++) {
+      float value = a[i];
+      int j = i;
+      while ((j > low) && (value < a[j - 1])) {
+	a[j] = a[j - 1];
+	j--;
+      }
+      a[j] = value;
+      moves += i - j;
+      if (moves > PARTIAL_INSERTION_SORT_LIMIT) {
+	return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Breaks up patterns in a[low..high) as for int arrays.
+   */
+  private static void breakPatterns(float[] a, int low, int high) {
+    int size = high - low;
+    if (size <= NETWORK_SORT_THRESHOLD) {
+      return;
+    }
+    int step = (size > NINTHER_THRESHOLD) ? size / 8 : 0;
+    int middle = (low + high) >>> 1;
+    int random = size;
+    for (int k = 0; k < 3; k++) {
+      random = xorShift(random);
+      swap(a, low + (k * step), low + Math.floorMod(random, size));
+      random = xorShift(random);
+      swap(a, middle + ((k - 1) * step), low + Math.floorMod(random, size));
+      random = xorShift(random);
+      swap(a, high - 1 - (k * step), low + Math.floorMod(random, size));
+    }
+  }
+
+  /**
+   * Moves the values of a[low..high) which equal "pivot", its smallest
+   * value, to the front. Returns the index after them.
+   */
+  private static int partitionEqual(float[] a, int low, int high, float pivot) {
+    int equalEnd = low + 1;
+    for (int i = low + 1; i < high; i++) {
+      float value = a[i];
+      a[i] = a[equalEnd];
+      a[equalEnd] = value;
+      equalEnd += (value == pivot) ? 1 : 0;
+    }
+    return equalEnd;
+  }
+
+  /**
+   * Returns the index of the pivot for a[low..high): the median of the
+   * first, middle and last elements, or for large ranges the median of
+   * three such medians (Tukey's ninther).
+   */
+  private static int choosePivot(float[] a, int low, int high) {
+    int size = high - low;
+    int middle = (low + high) >>> 1;
+    if (size > NINTHER_THRESHOLD) {
+      int step = size / 8;
+      int lower = median(a, low, low + step, low + (2 * step));
+      int center = median(a, middle - step, middle, middle + step);
+      int upper = median(a, high - 1 - (2 * step), high - 1 - step, high - 1);
+      return median(a, lower, center, upper);
+    }
+    return median(a, low, middle, high - 1);
+  }
+
+  /**
+   * Returns whichever of the indexes "i", "j" and "k" holds the median of
+   * their three values.
+   */
+  private static int median(float[] a, int i, int j, int k) {
+    if (Float.compare(a[i], a[j]) < 0) {
+      return Float.compare(a[j], a[k]) < 0 ? j :
+	  (Float.compare(a[i], a[k]) < 0 ? k : i);
+    } else {
+      return Float.compare(a[k], a[j]) < 0 ? j :
+	  (Float.compare(a[k], a[i]) < 0 ? k : i);
+    }
+  }
+
+  /**
+   * Sorts the passed float array using O(n log n) heap sort. Sorts in
+   * ascending order. Does not allocate any memory.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void heapSort(float[] a) {
+    heapSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed float array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n log n) heap sort on an 8-ary heap.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void heapSort(float[] a, int fromIndex, int toIndex) {
+    heapSort(a, fromIndex, toIndex, HEAP_8_ARY);
+  }
+
+  /**
+   * Sorts the elements of the passed float array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n log n) heap sort on a heap with
+   * "arity" children per node. Sifts down bottom-up (see HeapSort).
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param arity Children per node: HEAP_2_ARY, HEAP_4_ARY or HEAP_8_ARY.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the arity is not supported.
+   */
+  public static void heapSort(float[] a, int fromIndex, int toIndex, int arity) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkHeapArity(arity);
+    HeapSort.sort(a, fromIndex, toIndex, arity);
+  }
+
+  /**
+   * Sorts the passed float array using shell sort with Ciura's gaps. Sorts in
+   * ascending order. Does not allocate any memory.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void shellSort(float[] a) {
+    shellSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed float array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using shell sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void shellSort(float[] a, int fromIndex, int toIndex) {
+    shellSort(a, fromIndex, toIndex, SHELL_CIURA_GAPS);
+  }
+
+  /**
+   * Sorts the elements of the passed float array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using shell sort with the passed gap sequence.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param gaps The gap sequence: SHELL_CIURA_GAPS, SHELL_TOKUDA_GAPS or
+   *    SHELL_SEDGEWICK_GAPS.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the gap sequence is not supported.
+   */
+  public static void shellSort(float[] a, int fromIndex, int toIndex, int gaps) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkShellGaps(gaps);
+    ShellSort.sort(a, fromIndex, toIndex, gaps);
+  }
+
+  /**
+   * Sorts the passed float array using O(n^2) insertion sort. Sorts in
+   * ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void insertionSort(float[] a) {
+    insertionSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed float array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n^2) insertion sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void insertionSort(float[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    for (int i = fromIndex + 1; i < toIndex; i++) {
+      float value = a[i];
+      int j = i;
+      while ((j > fromIndex) && Float.compare(a[j - 1], value) > 0) {
+	a[j] = a[j - 1];
+	j--;
+      }
+      a[j] = value;
+    }
+  }
+
+  private static void swap(float[] a, int index1, int index2) {
+    float temp = a[index1];
+    a[index1] = a[index2];
+    a[index2] = temp;
+  }
+
+  /**
+   * Sorts the passed double array using O(n log n) merge sort. Sorts in
+   * ascending order. The values are never boxed, and a single working
+   * array is allocated for all of the merges.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void mergeSort(double[] a) {
+    mergeSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed double array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n log n) merge sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void mergeSort(double[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    if (toIndex - fromIndex > 1) {
+      // Each merge only copies out its lower half, so half the range is
+      // enough working space.
+      double[] work = new double[(toIndex - fromIndex + 1) / 2];
+      mergeSort(a, work, fromIndex, toIndex - 1);
+    }
+  }
+
+  private static void mergeSort(double[] a, double[] work, int low, int high) {
+    if (low < high) {
+      int middle = ((high - low) / 2) + low;
+      mergeSort(a, work, low, middle);
+      mergeSort(a, work, middle + 1, high);
+      merge(a, work, low, middle, high);
+    }
+  }
+
+  /**
+   * Merges the two sorted sub-arrays a[low..middle] and a[middle+1..high].
+   * Only the lower sub-array is copied into "work"; the upper sub-array is
+   * read in place, since the write index never passes the upper read index.
+   */
+  private static void merge(double[] a, double[] work, int low, int middle, int high) {
+    // Nothing to do if the two halves are already in order.
+    if (Double.compare(a[middle], a[middle + 1]) <= 0) {
+      return;
+    }
+    int lowerSize = middle - low + 1;
+    System.arraycopy(a, low, work, 0, lowerSize);
+
+    int lowerIdx = 0;
+    int upperIdx = middle + 1;
+    int i = low;
+    while ((lowerIdx < lowerSize) && (upperIdx <= high)) {
+      // Take from "lower" on ties to keep the sort stable.
+      if (Double.compare(a[upperIdx], work[lowerIdx]) < 0) {
+	a[i++] = a[upperIdx++];
+      } else {
+	a[i++] = work[lowerIdx++];
+      }
+    }
+    // Any remaining upper elements are already in their final position.
+    while (lowerIdx < lowerSize) {
+      a[i++] = work[lowerIdx++];
+    }
+  }
+
+  /**
+   * Sorts the passed double array using introsort, a quick sort which falls
+   * back to heap sort, so it is O(n log n) even in the worst case. Sorts
+   * in ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void quickSort(double[] a) {
+    quickSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed double array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using introsort, which is O(n log n) in the
+   * worst case.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void quickSort(double[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    quickSortRange(a, fromIndex, toIndex, depthLimit(toIndex - fromIndex));
+  }
+
+  /**
+   * Sorts a[low..high) the same way as quickSort(Object[], int, int, int):
+   * three-way partitioning around a median pivot, recursing only into
+   * the smaller side, with insertion sort and heap sort cutoffs.
+   */
+  private static void quickSortRange(double[] a, int low, int high, int depthLimit) {
+    while (high - low > INSERTION_SORT_THRESHOLD) {
+      if (depthLimit == 0) {
+	heapSort(a, low, high);
+	return;
+      }
+      depthLimit--;
+
+      double pivot = a[choosePivot(a, low, high)];
+      int lessEnd = low;
+      int current = low;
+      int greaterStart = high;
+      while (current < greaterStart) {
+	double value = a[current];
+	if (Double.compare(value, pivot) < 0) {
+	  a[current++] = a[lessEnd];
+	  a[lessEnd++] = value;
+	} else if (Double.compare(value, pivot) > 0) {
+	  a[current] = a[--greaterStart];
+	  a[greaterStart] = value;
+	} else {
+	  current++;
+	}
+      }
+
+      if (lessEnd - low < high - greaterStart) {
+	quickSortRange(a, low, lessEnd, depthLimit);
+	low = greaterStart;
+      } else {
+	quickSortRange(a, greaterStart, high, depthLimit);
+	high = lessEnd;
+      }
+    }
+    insertionSort(a, low, high);
+  }
+
+  /**
+   * Returns the index of the pivot for a[low..high): the median of the
+   * first, middle and last elements, or for large ranges the median of
+   * three such medians (Tukey's ninther).
+   */
+  private static int choosePivot(double[] a, int low, int high) {
+    int size = high - low;
+    int middle = (low + high) >>> 1;
+    if (size > NINTHER_THRESHOLD) {
+      int step = size / 8;
+      int lower = median(a, low, low + step, low + (2 * step));
+      int center = median(a, middle - step, middle, middle + step);
+      int upper = median(a, high - 1 - (2 * step), high - 1 - step, high - 1);
+      return median(a, lower, center, upper);
+    }
+    return median(a, low, middle, high - 1);
+  }
+
+  /**
+   * Returns whichever of the indexes "i", "j" and "k" holds the median of
+   * their three values.
+   */
+  private static int median(double[] a, int i, int j, int k) {
+    if (Double.compare(a[i], a[j]) < 0) {
+      return Double.compare(a[j], a[k]) < 0 ? j :
+	  (Double.compare(a[i], a[k]) < 0 ? k : i);
+    } else {
+      return Double.compare(a[k], a[j]) < 0 ? j :
+	  (Double.compare(a[k], a[i]) < 0 ? k : i);
+    }
+  }
+
+  /**
+   * Sorts the passed double array using O(n log n) heap sort. Sorts in
+   * ascending order. Does not allocate any memory.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void heapSort(double[] a) {
+    heapSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed double array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n log n) heap sort on an 8-ary heap.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void heapSort(double[] a, int fromIndex, int toIndex) {
+    heapSort(a, fromIndex, toIndex, HEAP_8_ARY);
+  }
+
+  /**
+   * Sorts the elements of the passed double array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n log n) heap sort on a heap with
+   * "arity" children per node. Sifts down bottom-up (see HeapSort).
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param arity Children per node: HEAP_2_ARY, HEAP_4_ARY or HEAP_8_ARY.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the arity is not supported.
+   */
+  public static void heapSort(double[] a, int fromIndex, int toIndex, int arity) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkHeapArity(arity);
+    HeapSort.sort(a, fromIndex, toIndex, arity);
+  }
+
+  /**
+   * Sorts the passed double array using shell sort with Ciura's gaps. Sorts in
+   * ascending order. Does not allocate any memory.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void shellSort(double[] a) {
+    shellSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed double array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using shell sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void shellSort(double[] a, int fromIndex, int toIndex) {
+    shellSort(a, fromIndex, toIndex, SHELL_CIURA_GAPS);
+  }
+
+  /**
+   * Sorts the elements of the passed double array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using shell sort with the passed gap sequence.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param gaps The gap sequence: SHELL_CIURA_GAPS, SHELL_TOKUDA_GAPS or
+   *    SHELL_SEDGEWICK_GAPS.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the gap sequence is not supported.
+   */
+  public static void shellSort(double[] a, int fromIndex, int toIndex, int gaps) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkShellGaps(gaps);
+    ShellSort.sort(a, fromIndex, toIndex, gaps);
+  }
+
+  /**
+   * Sorts the passed double array using O(n^2) insertion sort. Sorts in
+   * ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void insertionSort(double[] a) {
+    insertionSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed double array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n^2) insertion sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void insertionSort(double[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    for (int i = fromIndex + 1; i < toIndex; i++) {
+      double value = a[i];
+      int j = i;
+      while ((j > fromIndex) && Double.compare(a[j - 1], value) > 0) {
+	a[j] = a[j - 1];
+	j--;
+      }
+      a[j] = value;
+    }
+  }
+
+  private static void swap(double[] a, int index1, int index2) {
+    double temp = a[index1];
+    a[index1] = a[index2];
+    a[index2] = temp;
+  }
+
+  /**
+   * Number of bits per digit for radixSort(). 8-bit digits need more
+   * passes, but their 256 counts stay in cache for small inputs.
+   */
+  public static final int RADIX_8_BITS = 8;
+
+  /**
+   * Number of bits per digit for radixSort(). 11-bit digits sort an int in
+   * three passes instead of four, which pays off for large inputs.
+   */
+  public static final int RADIX_11_BITS = 11;
+
+  /**
+   * Size of input at which radixSort() switches from 8-bit to 11-bit digits.
+   */
+  private static final int RADIX_11_BITS_THRESHOLD = 1 << 16;
+
+  private static int radixBits(int size) {
+    return (size >= RADIX_11_BITS_THRESHOLD) ? RADIX_11_BITS : RADIX_8_BITS;
+  }
+
+  private static void checkRadixBits(int bits) {
+    Preconditions.checkArgument((bits == RADIX_8_BITS) || (bits == RADIX_11_BITS),
+				"Unsupported radix digit size: %s", bits);
+  }
+
+  /**
+   * Sorts the passed int array using O(n) LSD radix sort. Sorts in
+   * ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void radixSort(int[] a) {
+    radixSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed int array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n) LSD radix sort. Allocates a working
+   * array the size of the range, and picks the digit size from the number
+   * of elements.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void radixSort(int[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    int size = toIndex - fromIndex;
+    radixSort(a, fromIndex, toIndex, new int[size], radixBits(size));
+  }
+
+  /**
+   * Sorts the elements of the passed int array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n) LSD radix sort, with "buffer" as
+   * the working array. The caller may reuse the same buffer across calls.
+   * The contents of the buffer on return are unspecified.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param buffer Working array, at least as long as the range.
+   * @param bits Number of bits per digit: RADIX_8_BITS or RADIX_11_BITS.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the buffer is too short, or the
+   *    number of bits is not supported.
+   */
+  public static void radixSort(int[] a, int fromIndex, int toIndex,
+			       int[] buffer, int bits) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Preconditions.checkArgument(buffer.length >= toIndex - fromIndex);
+    Preconditions.checkArgument(buffer != a);
+    checkRadixBits(bits);
+    RadixSort.sort(a, fromIndex, toIndex, buffer, bits);
+  }
+
+  /**
+   * Sorts the passed long array using O(n) LSD radix sort. Sorts in
+   * ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void radixSort(long[] a) {
+    radixSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed long array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n) LSD radix sort. Allocates a working
+   * array the size of the range, and picks the digit size from the number
+   * of elements.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void radixSort(long[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    int size = toIndex - fromIndex;
+    radixSort(a, fromIndex, toIndex, new long[size], radixBits(size));
+  }
+
+  /**
+   * Sorts the elements of the passed long array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n) LSD radix sort, with "buffer" as
+   * the working array. The caller may reuse the same buffer across calls.
+   * The contents of the buffer on return are unspecified.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param buffer Working array, at least as long as the range.
+   * @param bits Number of bits per digit: RADIX_8_BITS or RADIX_11_BITS.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the buffer is too short, or the
+   *    number of bits is not supported.
+   */
+  public static void radixSort(long[] a, int fromIndex, int toIndex,
+			       long[] buffer, int bits) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Preconditions.checkArgument(buffer.length >= toIndex - fromIndex);
+    Preconditions.checkArgument(buffer != a);
+    checkRadixBits(bits);
+    RadixSort.sort(a, fromIndex, toIndex, buffer, bits);
+  }
+
+  /**
+   * Sorts the passed float array using O(n) LSD radix sort. Sorts in
+   * ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void radixSort(float[] a) {
+    radixSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed float array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n) LSD radix sort. Allocates a working
+   * array the size of the range, and picks the digit size from the number
+   * of elements.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void radixSort(float[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    int size = toIndex - fromIndex;
+    radixSort(a, fromIndex, toIndex, new float[size], radixBits(size));
+  }
+
+  /**
+   * Sorts the elements of the passed float array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using O(n) LSD radix sort, with "buffer" as
+   * the working array. The caller may reuse the same buffer across calls.
+   * The contents of the buffer on return are unspecified.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param buffer Working array, at least as long as the range.
+   * @param bits Number of bits per digit: RADIX_8_BITS or RADIX_11_BITS.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if the buffer is too short, or the
+   *    number of bits is not supported.
+   */
+  public static void radixSort(float[] a, int fromIndex, int toIndex,
+			       float[] buffer, int bits) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Preconditions.checkArgument(buffer.length >= toIndex - fromIndex);
+    Preconditions.checkArgument(buffer != a);
+    checkRadixBits(bits);
+    RadixSort.sort(a, fromIndex, toIndex, buffer, bits);
+  }
+
+  /**
+   * Sorts the passed list of Strings using MSD radix sort, in the order of
+   * String.compareTo(). Modifies the passed list. The sort is stable.
+   *
+   * @param list The list to be sorted.
+   */
+  public static void radixSort(List<String> list) {
+    assert(list != null);
+    String[] a = list.toArray(new String[list.size()]);
+    StringSort.radixSort(a, 0, a.length);
+    arrayIntoList(a, list);
+  }
+
+  /**
+   * Sorts the passed String array using MSD radix sort, in the order of
+   * String.compareTo().
+   *
+   * @param a The array to be sorted.
+   */
+  public static void radixSort(String[] a) {
+    radixSort(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the elements of the passed String array from "fromIndex"
+   * (inclusive) to "toIndex" (exclusive) using MSD radix sort, in the order
+   * of String.compareTo(). The strings are distributed by one byte of
+   * their chars at a time, from the first, so the prefix shared by two
+   * strings is read once per string rather than once per comparison.
+   * Small buckets are insertion sorted from the depth they were split at.
+   * Allocates a working array the size of the range. The sort is stable.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void radixSort(String[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    StringSort.radixSort(a, fromIndex, toIndex);
+  }
+
+  /**
+   * Sorts the passed list of Strings using multikey quick sort, in the
+   * order of String.compareTo(). Modifies the passed list.
    *
    * @param list The list to be sorted.
-   * @param T generic type of list element, which must implement Comparable.
    */
-  @SuppressWarnings("unchecked")
-  public static <T extends Comparable<T>> void quickSort(List<T> list) {
+  public static void multikeyQuickSort(List<String> list) {
     assert(list != null);
-
-    // First, copy the list into an array.
-    Object[] a = list.toArray();
-
-    // Call quick sort on entire array.
-    quickSort(a, 0, a.length - 1);
-
-    // Write the sorted array back into the list.
+    String[] a = list.toArray(new String[list.size()]);
+    StringSort.multikeyQuickSort(a, 0, a.length);
     arrayIntoList(a, list);
   }
 
   /**
-   * Recursive method which chooses a "pivot", then places all
-   * all values less than the "pivot" at the left of the array
-   * (not necessarily ordered). We finally place the "pivot"
-   * in between the lesser values and the greater (or equal) values.
-   * This places the "pivot" in it's final position. Finally, recurse
-   * on the lesser values to the left of the "pivot", and the greater
-   * or equal values to the right of the "pivot".
+   * Sorts the passed String array using multikey quick sort, in the order
+   * of String.compareTo().
    *
-   * NOTE: Choosing a "pivot" which is about the median value
-   * would guarantee O(n log n) running time.
+   * @param a The array to be sorted.
    */
-  @SuppressWarnings("unchecked")
-  private static void quickSort(Object[] a, int low, int high) {
-    assert(a != null);
-    assert(high < a.length);
-
-    // Base case: low == high means a one element sized array.
-    if (low < high) {
-
-      int pivot = high;  // Choose pivot at the end of the array.
-      int wall = low;
-
-      // Move all items less than the pivot to the left of the
-      // "wall", while all the items larger than the pivot remain
-      // to the right of the "wall".
-      //
-      for (int current = low; current <= high; current++) {
-	if (((Comparable) a[current]).compareTo(a[pivot]) < 0) {
-	  swap(a, current, wall);
-	  wall++;
-	}
-      }
-
-      // Finally, place the pivot in between the lesser values
-      // and the greater values at the "wall", which is it's
-      // final position.
-      //
-      swap(a, pivot, wall);
-
-      // Recurse on the values less than the pivot.
-      quickSort(a, low, wall - 1);
-      // Recurse on the values greater than the pivot.      
-      quickSort(a, wall + 1, high);
-    }
+  public static void multikeyQuickSort(String[] a) {
+    multikeyQuickSort(a, 0, a.length);
   }
 
   /**
-   * Sorts the passed list using O(n log n) heap sort. The items are
-   * sorted in ascending order. This algorithm uses a data structure
-   * called a heap. A heap is a binary tree which maintains a partial
-   * ordering where the parent "dominates" the two children.
+   * Sorts the elements of the passed String array from "fromIndex"
+   * (inclusive) to "toIndex" (exclusive) using multikey (three-way radix)
+   * quick sort, in the order of String.compareTo(). Partitions on one char
+   * at a time, so the chars of a shared prefix are each compared O(log n)
+   * times rather than in every comparison. Sorts in place, but is not
+   * stable.
    *
-   * The list is first copied into an array, since we use indexes
-   * for this algorithm. After the array is sorted, it is written
-   * back into the passed list.
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void multikeyQuickSort(String[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    StringSort.multikeyQuickSort(a, fromIndex, toIndex);
+  }
+
+  /**
+   * Sorts the passed list of Strings using LCP merge sort, in the order of
+   * String.compareTo(). Modifies the passed list. The sort is stable.
    *
    * @param list The list to be sorted.
-   * @param T generic type of list element, which must implement Comparable.
    */
-  @SuppressWarnings("unchecked")
-  public static <T extends Comparable<T>> void heapSort(List<T> list) {
+  public static void lcpMergeSort(List<String> list) {
     assert(list != null);
-
-    // First, copy the list into an array.
-    Object[] a = list.toArray();
-
-    // First, create the heap.
-    heapify(a);
-    
-    // Iteratively grab the max element from the top of the heap,
-    // then ensure the heap property.
-    //
-    for (int i = a.length - 1; i > 0; i--) {
-      swap(a, 0, i);
-      bubbleDown(a, 0, (i - 1));
-    }    
-    
-    // Write the sorted array back into the list.
+    String[] a = list.toArray(new String[list.size()]);
+    StringSort.lcpMergeSort(a, 0, a.length);
     arrayIntoList(a, list);
   }
 
   /**
-   * For all non-leaf nodes, fix heap property.
+   * Sorts the passed String array using LCP merge sort, in the order of
+   * String.compareTo().
+   *
+   * @param a The array to be sorted.
    */
-  @SuppressWarnings("unchecked")
-  private static void heapify(Object[] a) {
-    assert(a != null);
-
-    int parentIdx = 0;
-    int lastIdx = a.length - 1;
-    while (hasLeftChild(parentIdx, lastIdx)) {
-      int largestChildIdx = largestChild(a, parentIdx, lastIdx);
-      if (((Comparable) a[largestChildIdx]).compareTo(a[parentIdx]) > 0) {
-	swap(a, parentIdx, largestChildIdx);
-      }
-      parentIdx++;
-    }
+  public static void lcpMergeSort(String[] a) {
+    lcpMergeSort(a, 0, a.length);
   }
 
   /**
-   * Continually swaps the parent element with the largest child
-   * element until the heap property is restored or the parent element
-   * ends up as a leaf.
+   * Sorts the elements of the passed String array from "fromIndex"
+   * (inclusive) to "toIndex" (exclusive) using a merge sort which tracks
+   * the longest common prefix (LCP) of neighbouring strings, in the order
+   * of String.compareTo(). Merging compares two strings only after the
+   * prefix they are known to share, and often not at all. The sort is
+   * stable, and O(n log n) plus the length of the prefixes which tell the
+   * strings apart.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
    */
-  @SuppressWarnings("unchecked")
-  private static void bubbleDown(Object[] a, int parentIdx, int lastIdx) {
-    assert(a != null);
-    assert(parentIdx >= 0);
-    assert(parentIdx <= lastIdx);
-
-    boolean swapped = true;
-    // hasLeftChild() determines if the parent has any children.
-    while (swapped && hasLeftChild(parentIdx, lastIdx)) {
-      // Swapping with the largest child is necessary to maintain heap property.
-      int largestChildIdx = largestChild(a, parentIdx, lastIdx);
-      if (((Comparable) a[largestChildIdx]).compareTo(a[parentIdx]) > 0) {
-	swap(a, parentIdx, largestChildIdx);
-	parentIdx = largestChildIdx;	
-      } else {
-	swapped = false;
-      }
-    }
+  public static void lcpMergeSort(String[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    StringSort.lcpMergeSort(a, fromIndex, toIndex);
   }
 
   /**
-   * Returns the index of the larger of a parents two children. Assumes
-   * at least the left child exists.
+   * Sorts the passed int array using a parallel sample sort on the common
+   * ForkJoinPool. Sorts in ascending order.
+   *
+   * @param a The array to be sorted.
    */
-  @SuppressWarnings("unchecked")
-  private static int largestChild(Object[] a, int parentIdx, int lastIdx) {
-    assert(hasLeftChild(parentIdx, lastIdx));
-
-    int leftChildIdx = leftChild(parentIdx);
-    int largestChildIdx = leftChildIdx;
-    if (hasRightChild(parentIdx, lastIdx)) {
-      int rightChildIdx = rightChild(parentIdx);
-      if (((Comparable) a[rightChildIdx]).compareTo(a[leftChildIdx]) > 0) {
-	largestChildIdx = rightChildIdx;
-      }
-    }
-    return largestChildIdx;
+  public static void parallelSampleSort(int[] a) {
+    parallelSampleSort(a, 0, a.length, ForkJoinPool.commonPool(),
+		       DEFAULT_PARALLEL_THRESHOLD);
   }
 
-  // Returns index of left child assuming 0-based arrays.
-  private static int leftChild(int parentIdx) {
-    return ((2 * parentIdx) + 1);
+  /**
+   * Sorts the passed int array from "fromIndex" (inclusive) to "toIndex"
+   * (exclusive) using a parallel sample sort. The buckets are sorted in
+   * parallel with quick sort. Buckets of values equal to a splitter are
+   * already sorted, which keeps duplicate values from unbalancing the load.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param pool The pool which runs the scatter and bucket sort tasks.
+   * @param threshold Smallest expected bucket size; smaller ranges are
+   *    sorted sequentially.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if threshold is not positive.
+   */
+  public static void parallelSampleSort(int[] a, int fromIndex, int toIndex,
+					ForkJoinPool pool, int threshold) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Preconditions.checkNotNull(pool);
+    Preconditions.checkArgument(threshold > 0);
+    SampleSort.sort(a, fromIndex, toIndex, pool, threshold);
   }
 
-  // Returns index of right child assuming 0-based arrays.
-  private static int rightChild(int parentIdx) {
-    return ((2 * parentIdx) + 2);
+  /**
+   * Sorts the passed long array using a parallel sample sort on the common
+   * ForkJoinPool. Sorts in ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void parallelSampleSort(long[] a) {
+    parallelSampleSort(a, 0, a.length, ForkJoinPool.commonPool(),
+		       DEFAULT_PARALLEL_THRESHOLD);
   }
 
-  private static boolean hasLeftChild(int parentIdx, int lastIdx) {
-    return (leftChild(parentIdx) <= lastIdx);
+  /**
+   * Sorts the passed long array from "fromIndex" (inclusive) to "toIndex"
+   * (exclusive) using a parallel sample sort.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param pool The pool which runs the scatter and bucket sort tasks.
+   * @param threshold Smallest expected bucket size; smaller ranges are
+   *    sorted sequentially.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if threshold is not positive.
+   */
+  public static void parallelSampleSort(long[] a, int fromIndex, int toIndex,
+					ForkJoinPool pool, int threshold) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Preconditions.checkNotNull(pool);
+    Preconditions.checkArgument(threshold > 0);
+    SampleSort.sort(a, fromIndex, toIndex, pool, threshold);
   }
 
-  private static boolean hasRightChild(int parentIdx, int lastIdx) {
-    return (rightChild(parentIdx) <= lastIdx);
+  /**
+   * Sorts the passed int array using O(n + k) counting sort, for "k" the
+   * range of its values. Sorts in ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void countingSort(int[] a) {
+    countingSort(a, 0, a.length);
   }
 
-
   /**
-   * Sorts the passed list using shell sort. Modifies the passed list.
-   * Shell sort is a generalization of insertion sort. This sort starts
-   * by sorting pairs of elements far away from each other, then progressively
-   * reducing this "gap". Analysis of Shell sort is complicated, and depends
-   * on the "gap". This implementation halves the "gap" at each iteration, and
-   * the worst-case asymptotic runtime is O(n^2).
-   *
-   * Sorts elements in ascending order.
-   *
-   * The list is first copied into an array, since we use indexes
-   * for this algorithm. After the array is sorted, it is written
-   * back into the passed list.
+   * Sorts the elements of the passed int array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive) using counting sort. The range of the values
+   * is found with an extra read of the input. If the range is larger than
+   * the input, counting would cost more than sorting, so the range is
+   * radix sorted instead.
    *
-   * @param list The list to be sorted.
-   * @param T generic type of list element, which must implement Comparable.
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
    */
-  @SuppressWarnings("unchecked")
-  public static <T extends Comparable<T>> void shellSort(List<T> list) {
-    assert(list != null);
-
-    // First, copy the list into an array.
-    Object[] a = list.toArray();
-
-    // Calculate the gap which defines the sublists. When the gap is
-    // 1, then shell sort is the same as insertion sort.
-    //
-    int gap = (int) Math.floor(a.length / 2);
-    while (gap >= 1) {
-      for (int end = gap; end < a.length; end++) {
-	int j = end;
-	int i = j - gap;
-	while ((i >= 0) && ((Comparable) a[i]).compareTo(a[j]) > 0) {
-	  swap(a, i, j);
-	  j = i;
-	  i = j - gap;
-	}
-      }
-      gap = (int) Math.floor(gap / 2);  // Reduce the gap, until it is 1.
-    }
-
-    // Write the sorted array back into the list.
-    arrayIntoList(a, list);    
+  public static void countingSort(int[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    CountingSort.sort(a, fromIndex, toIndex);
   }
 
   /**
-   * Sorts the passed list using O(n^2) insertion sort. Modifies the
-   * passed list.
-   *
-   * Sorts elements in ascending order.
-   *
-   * The list is first copied into an array, since we use indexes
-   * for this algorithm. After the array is sorted, it is written
-   * back into the passed list.
+   * Sorts the elements of the passed int array from "fromIndex" (inclusive)
+   * to "toIndex" (exclusive), all of which are known to be in [min, max],
+   * using counting sort. Takes O(n + k) time and O(k) space, for "k" the
+   * size of the range, so the range should be no larger than the input.
    *
-   * @param list The list to be sorted.
-   * @param T generic type of list element, which must implement Comparable.
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param min The smallest value allowed in the range.
+   * @param max The largest value allowed in the range.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if max is less than min, or a value is
+   *    outside [min, max]. The array is not modified.
    */
-  @SuppressWarnings("unchecked")
-  public static <T extends Comparable<T>> void insertionSort(List<T> list) {
-    assert(list != null);
-
-    // First, copy the list into an array.
-    Object[] a = list.toArray();
+  public static void countingSort(int[] a, int fromIndex, int toIndex, int min, int max) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkCountingRange(min, max);
+    CountingSort.sort(a, fromIndex, toIndex, min, max);
+  }
 
-    // For each element in the array, swap it into the lower position in the
-    // array, until it is in the correct position.
-    // 
-    for (int i = 1; i < a.length; i++) {
-      int j = i;
-      while (j > 0 && ((Comparable) a[j - 1]).compareTo(a[j]) > 0) {
-	swap(a, j, j - 1);
-	j--;
-      }
-    }
+  /**
+   * Sorts the passed int array using a parallel counting sort on the
+   * common ForkJoinPool. Sorts in ascending order.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void parallelCountingSort(int[] a) {
+    parallelCountingSort(a, 0, a.length, ForkJoinPool.commonPool(),
+			 DEFAULT_PARALLEL_THRESHOLD);
+  }
 
-    // Write the sorted array back into the list.
-    arrayIntoList(a, list);    
+  /**
+   * Sorts the passed int array from "fromIndex" (inclusive) to "toIndex"
+   * (exclusive) using a parallel counting sort. The range of the values is
+   * found in parallel first; if it is larger than the input, the range is
+   * sorted with parallelSampleSort() instead.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param pool The pool which runs the counting and writing tasks.
+   * @param threshold Smallest block of the input given to one task;
+   *    smaller ranges are sorted sequentially.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if threshold is not positive.
+   */
+  public static void parallelCountingSort(int[] a, int fromIndex, int toIndex,
+					  ForkJoinPool pool, int threshold) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Preconditions.checkNotNull(pool);
+    Preconditions.checkArgument(threshold > 0);
+    CountingSort.sort(a, fromIndex, toIndex, pool, threshold);
   }
 
+  /**
+   * Sorts the passed int array from "fromIndex" (inclusive) to "toIndex"
+   * (exclusive), all of whose values are known to be in [min, max], using a
+   * parallel counting sort. Each block of the input is counted into a
+   * histogram of its own, so the threads share nothing until the
+   * histograms are summed, and then each block of the output is written
+   * by its own task.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first element to be sorted.
+   * @param toIndex index after the last element to be sorted.
+   * @param min The smallest value allowed in the range.
+   * @param max The largest value allowed in the range.
+   * @param pool The pool which runs the counting and writing tasks.
+   * @param threshold Smallest block of the input given to one task;
+   *    smaller ranges are sorted sequentially.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if max is less than min, a value is
+   *    outside [min, max] (the array is not modified), or threshold is not
+   *    positive.
+   */
+  public static void parallelCountingSort(int[] a, int fromIndex, int toIndex,
+					  int min, int max, ForkJoinPool pool,
+					  int threshold) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkCountingRange(min, max);
+    Preconditions.checkNotNull(pool);
+    Preconditions.checkArgument(threshold > 0);
+    CountingSort.sort(a, fromIndex, toIndex, min, max, pool, threshold);
+  }
 
   /**
-   * Sorts the passed list using O(n^2) selection sort. Modifies the
-   * passed list.
+   * Returns the runs of equal values in the sorted order of the passed int
+   * array from "fromIndex" (inclusive) to "toIndex" (exclusive): each
+   * distinct value with its number of occurrences. The values are counted
+   * as by countingSort(), but the duplicates are never written out. The
+   * array is not modified.
    *
-   * Sorts elements in ascending order.
+   * @param a The array whose values are counted.
+   * @param fromIndex index of the first element to be counted.
+   * @param toIndex index after the last element to be counted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static RunLengths countRuns(int[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    return CountingSort.runs(a, fromIndex, toIndex);
+  }
+
+  /**
+   * Returns the runs of equal values in the sorted order of the passed int
+   * array from "fromIndex" (inclusive) to "toIndex" (exclusive), all of
+   * whose values are known to be in [min, max]. The array is not modified.
    *
-   * The list is first copied into an array, since we use indexes
-   * for this algorithm. After the array is sorted, it is written
-   * back into the passed list.
+   * @param a The array whose values are counted.
+   * @param fromIndex index of the first element to be counted.
+   * @param toIndex index after the last element to be counted.
+   * @param min The smallest value allowed in the range.
+   * @param max The largest value allowed in the range.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if max is less than min, or a value is
+   *    outside [min, max].
+   */
+  public static RunLengths countRuns(int[] a, int fromIndex, int toIndex,
+				     int min, int max) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    checkCountingRange(min, max);
+    return CountingSort.runs(a, fromIndex, toIndex, min, max);
+  }
+
+  /**
+   * Sorts the passed list by the int key of each element, in ascending
+   * order, using counting sort. Modifies the passed list. The sort is
+   * stable. The key of each element is extracted exactly once, and the
+   * range of the keys is found from them; keys spread over a range larger
+   * than the list are radix sorted instead, as by sortByLongKey().
    *
    * @param list The list to be sorted.
-   * @param T generic type of list element, which must implement Comparable.
+   * @param key Extracts the key of an element.
+   * @param T generic type of list element.
    */
-  @SuppressWarnings("unchecked")
-  public static <T extends Comparable<T>> void selectionSort(List<T> list) {
+  public static <T> void countingSort(List<T> list, ToIntFunction<? super T> key) {
     assert(list != null);
-
-    // First, copy the list into an array.
-    Object[] a = list.toArray();
-
-    // For each position in the array, find the minimum value in the
-    // remaining sub-array and swap it into this position.
-    //
-    for (int i = 0; i < a.length; i++) {
-      int min = i;
-      for (int j = i + 1; j < a.length; j++) {
-	if (((Comparable) a[min]).compareTo(a[j]) > 0) {
-	  min = j;
-	}
-      }
-      swap(a, i, min);
-    }
-
-    // Write the sorted array back into the list.
-    arrayIntoList(a, list);
+    applyPermutation(CountingSort.argsort(intKeys(list, key)), list);
   }
 
-
   /**
-   * Sorts the passed list using O(n^2) bubble sort. Modifies the
-   * passed list.
-   *
-   * Sorts elements in ascending order.
-   *
-   * The list is first copied into an array, since we use indexes
-   * for this algorithm. After the array is sorted, it is written
-   * back into the passed list.
+   * Sorts the passed list by the int key of each element, all of which
+   * are known to be in [min, max], using counting sort. Modifies the
+   * passed list. The sort is stable.
    *
-   * @param list The List to be sorted.
-   * @param T generic type of List element, which must implement Comparable.
+   * @param list The list to be sorted.
+   * @param key Extracts the key of an element.
+   * @param min The smallest key allowed.
+   * @param max The largest key allowed.
+   * @param T generic type of list element.
+   * @throws IllegalArgumentException if max is less than min, or a key is
+   *    outside [min, max]. The list is not modified.
    */
-  @SuppressWarnings("unchecked")
-  public static <T extends Comparable<T>> void bubbleSort(List<T> list) {
+  public static <T> void countingSort(List<T> list, ToIntFunction<? super T> key,
+				      int min, int max) {
     assert(list != null);
+    checkCountingRange(min, max);
+    applyPermutation(CountingSort.argsort(intKeys(list, key), min, max), list);
+  }
 
-    // First, copy the list into an array.
-    Object[] a = list.toArray();
-
-    // Swap adjacent members if they are out of order, "bubbling" the
-    // largest value to the end of the array. At the end of each step of
-    // the outer loop, the current largest value has been "bubbled" to
-    // the end of the array.
-    //
-    for (int i = a.length; i > 0; i--) {
-      for (int j = 1; j < i; j++) {
-	if (((Comparable) a[j - 1]).compareTo(a[j]) > 0) {
-	  swap(a, j, j - 1);
-	}
-      }
-    }
-
-    // Write the sorted array back into the list.
-    arrayIntoList(a, list);
+  private static void checkCountingRange(int min, int max) {
+    Preconditions.checkArgument(min <= max, "min %s is greater than max %s", min, max);
+    Preconditions.checkArgument((long) max - min < Integer.MAX_VALUE,
+				"Range [%s, %s] is too large to count", min, max);
   }
 
   /**
@@ -488,17 +4548,27 @@ public class Sorts {
       Object temp = a[index1];
       a[index1] = a[index2];
       a[index2] = temp;
+      if (SortProbe.ENABLED) {
+	SortProbe.swapped();
+      }
     }
   }
 
   /**
    * Helper method which writes the elements of sorted array "a"
-   * into "list".
+   * into "list". Lists with fast random access, like ArrayList, are
+   * written with indexed set() calls rather than through a ListIterator.
    */
   @SuppressWarnings("unchecked")
   private static <T> void arrayIntoList(Object[] a, List<T> list) {
     assert(a.length == list.size());
 
+    if (list instanceof RandomAccess) {
+      for (int i = 0; i < a.length; i++) {
+	list.set(i, (T) a[i]);
+      }
+      return;
+    }
     ListIterator<T> iterator = list.listIterator();
     for (int i = 0; i < a.length; i++) {
       iterator.next();
@@ -506,6 +4576,41 @@ public class Sorts {
     }
   }
 
+  /**
+   * Registers the listener which receives the statistics of each sort
+   * call: comparisons, swaps, moves, recursion depth, allocated bytes and
+   * wall time. Only the sorts of generic lists and arrays are
+   * instrumented, and only if the JVM was started with the system property
+   * "io.seansullivan.algorithms.instrument=true". Without it, the probes
+   * are compiled out of the sorts, and cost nothing.
+   *
+   * @param listener The listener, or null to stop reporting.
+   * @throws IllegalStateException if instrumentation is not enabled.
+   */
+  public static void setSortListener(SortListener listener) {
+    Preconditions.checkState(SortProbe.ENABLED,
+			     "Start the JVM with -D%s=true to instrument the sorts",
+			     SortProbe.ENABLED_PROPERTY);
+    SortProbe.setListener(listener);
+  }
+
+  /**
+   * Returns true if the sorts can be instrumented with a SortListener.
+   */
+  public static boolean isInstrumentationEnabled() {
+    return SortProbe.ENABLED;
+  }
+
+  /**
+   * Returns the passed comparator as a Comparator of Objects, so it can be
+   * used on the Object arrays the sorts work on, or the natural ordering
+   * if the comparator is null. Package-private for the other sort classes.
+   */
+  @SuppressWarnings("unchecked")
+  static Comparator<Object> order(Comparator<?> comparator) {
+    return (comparator == null) ? NATURAL_ORDER : (Comparator<Object>) comparator;
+  }
+
 
   public static List<Integer> createTestList(int size) {
     Random rand = new Random();
@@ -550,6 +4655,24 @@ public class Sorts {
     }
     System.out.println();
 
+    // Test iterative merge sort.
+    System.out.println("Iterative Merge Sort");
+    for (int listSize : testListSizes) {
+      testList = createTestList(listSize);
+      iterativeMergeSort(testList);
+      assert(validateSorted(testList));
+    }
+    System.out.println();
+
+    // Test parallel merge sort.
+    System.out.println("Parallel Merge Sort");
+    for (int listSize : testListSizes) {
+      testList = createTestList(listSize);
+      parallelMergeSort(testList);
+      assert(validateSorted(testList));
+    }
+    System.out.println();
+
     // Test quick sort.
     System.out.println("Quick Sort");
     for (int listSize : testListSizes) {
@@ -572,7 +4695,7 @@ public class Sorts {
     System.out.println("Shell Sort");
     for (int listSize : testListSizes) {
       testList = createTestList(listSize);
-      insertionSort(testList);
+      shellSort(testList);
       assert(validateSorted(testList));
     }
     System.out.println();
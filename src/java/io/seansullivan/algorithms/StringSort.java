@@ -0,0 +1,354 @@
+package io.seansullivan.algorithms;
+
+import java.lang.System;
+
+
+/**
+ * Sorts specialized for Strings, which avoid comparing the prefix shared
+ * by two strings over and over. The public entry points are the
+ * radixSort(), multikeyQuickSort() and lcpMergeSort() methods for String
+ * arrays in Sorts. All of them order the strings as String.compareTo()
+ * does, by their UTF-16 chars.
+ *
+ * A comparison sort calls compareTo() O(n log n) times, and each call
+ * scans the prefix the two strings share before it finds a difference.
+ * For keys like URLs or paths, which share long prefixes, that scan is
+ * most of the work. The sorts here look at each char of that prefix only
+ * a few times:
+ *
+ * 1) MSD radix sort distributes the strings into buckets by one byte of
+ *    their chars at a time (high byte, then low byte), from the first
+ *    char, and sorts each bucket by the bytes after. A bucket with no more
+ *    bytes holds equal strings, so it needs no more sorting. Buckets of
+ *    INSERTION_SORT_THRESHOLD strings or fewer are insertion sorted,
+ *    comparing only from the bucket's depth on. Stable.
+ * 2) Multikey quick sort (Bentley and Sedgewick) partitions three ways on
+ *    the char at the current depth: less than, equal to, and greater than
+ *    the pivot char. Only the equal part moves on to the next char. Sorts
+ *    in place, without the radix sort's working array, but not stable.
+ * 3) LCP merge sort is a stable merge sort which keeps the length of the
+ *    longest common prefix (LCP) of each string with the one before it.
+ *    Comparing two strings while merging starts after the prefix both are
+ *    known to share with the last string written, and often the LCPs
+ *    alone decide the order, without looking at a char.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+final class StringSort {
+
+  private StringSort() {}
+
+  /**
+   * Size of a bucket or sub-array at or below which insertion sort is used.
+   */
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  // Values of a byte of a char, plus one for the end of the string.
+  private static final int RADIX = 256;
+
+  /**
+   * MSD radix sorts "a" from "low" (inclusive) to "high" (exclusive).
+   */
+  static void radixSort(String[] a, int low, int high) {
+    if (high - low < 2) {
+      return;
+    }
+    radixSort(a, low, high, 0, new String[high - low]);
+  }
+
+  /**
+   * Sorts a[low..high), all of which share their first "depth" bytes, by
+   * the bytes after. "aux" is the working array, from index 0.
+   */
+  private static void radixSort(String[] a, int low, int high, int depth, String[] aux) {
+    while (high - low > INSERTION_SORT_THRESHOLD) {
+      // counts[b + 1] is the number of strings with byte "b" at "depth".
+      int[] counts = new int[RADIX + 2];
+      for (int i = low; i < high; i++) {
+	counts[byteAt(a[i], depth) + 1]++;
+      }
+      int first = byteAt(a[low], depth);
+      if (counts[first + 1] == high - low) {
+	// One bucket: nothing moves. If the strings all ended, they are
+	// equal; otherwise skip past the whole prefix they share, rather
+	// than counting it a byte at a time.
+	if (first == 0) {
+	  return;
+	}
+	depth = Math.max(depth + 1, 2 * sharedPrefix(a, low, high, depth >> 1));
+	continue;
+      }
+
+      for (int b = 0; b <= RADIX; b++) {
+	counts[b + 1] += counts[b];
+      }
+      for (int i = low; i < high; i++) {
+	aux[counts[byteAt(a[i], depth)]++] = a[i];
+      }
+      System.arraycopy(aux, 0, a, low, high - low);
+
+      // Now bucket "b" is a[low + counts[b - 1]..low + counts[b]). Bucket
+      // 0 holds the strings which ended, and is already sorted.
+      for (int b = 1; b <= RADIX; b++) {
+	radixSort(a, low + counts[b - 1], low + counts[b], depth + 1, aux);
+      }
+      return;
+    }
+    insertionSort(a, low, high, depth >> 1);
+  }
+
+  /**
+   * Returns the length of the prefix shared by all of a[low..high), which
+   * share their first "from" chars.
+   */
+  private static int sharedPrefix(String[] a, int low, int high, int from) {
+    String first = a[low];
+    int shared = first.length();
+    for (int i = low + 1; (i < high) && (shared > from); i++) {
+      String s = a[i];
+      int length = Math.min(shared, s.length());
+      int k = from;
+      while ((k < length) && (first.charAt(k) == s.charAt(k))) {
+	k++;
+      }
+      shared = k;
+    }
+    return shared;
+  }
+
+  /**
+   * Returns byte "depth" of the UTF-16 chars of "s" plus one, high byte
+   * first, or 0 past the end of "s".
+   */
+  private static int byteAt(String s, int depth) {
+    int index = depth >> 1;
+    if (index >= s.length()) {
+      return 0;
+    }
+    char c = s.charAt(index);
+    return (((depth & 1) == 0) ? (c >>> 8) : (c & 0xff)) + 1;
+  }
+
+  /**
+   * Multikey quick sorts "a" from "low" (inclusive) to "high" (exclusive).
+   */
+  static void multikeyQuickSort(String[] a, int low, int high) {
+    multikeyQuickSort(a, low, high, 0);
+  }
+
+  /**
+   * Sorts a[low..high), all of which share their first "depth" chars, by
+   * the chars after. Recurses into the two smaller of the three parts and
+   * loops on the largest, so the stack stays O(log n) deep however long
+   * the shared prefixes are.
+   */
+  private static void multikeyQuickSort(String[] a, int low, int high, int depth) {
+    while (high - low > INSERTION_SORT_THRESHOLD) {
+      int pivot = medianOfThree(charAt(a[low], depth),
+				charAt(a[(low + high) >>> 1], depth),
+				charAt(a[high - 1], depth));
+      // a[low..less) < pivot, a[less..i) == pivot, a[greater..high) > pivot.
+      int less = low;
+      int greater = high;
+      int i = low;
+      while (i < greater) {
+	int c = charAt(a[i], depth);
+	if (c < pivot) {
+	  swap(a, less++, i++);
+	} else if (c > pivot) {
+	  swap(a, i, --greater);
+	} else {
+	  i++;
+	}
+      }
+
+      // Strings which ended at "depth" are equal, so are already sorted.
+      int lessSize = less - low;
+      int equalSize = (pivot == 0) ? 0 : greater - less;
+      int greaterSize = high - greater;
+      if ((lessSize >= equalSize) && (lessSize >= greaterSize)) {
+	if (equalSize > 0) {
+	  multikeyQuickSort(a, less, greater, depth + 1);
+	}
+	multikeyQuickSort(a, greater, high, depth);
+	high = less;
+      } else if (greaterSize >= equalSize) {
+	multikeyQuickSort(a, low, less, depth);
+	if (equalSize > 0) {
+	  multikeyQuickSort(a, less, greater, depth + 1);
+	}
+	low = greater;
+      } else if ((lessSize == 0) && (greaterSize == 0)) {
+	// Every string has the pivot char: skip the whole shared prefix.
+	depth = sharedPrefix(a, low, high, depth + 1);
+      } else {
+	multikeyQuickSort(a, low, less, depth);
+	multikeyQuickSort(a, greater, high, depth);
+	low = less;
+	high = greater;
+	depth++;
+      }
+    }
+    insertionSort(a, low, high, depth);
+  }
+
+  /**
+   * Returns char "depth" of "s" plus one, or 0 past the end of "s".
+   */
+  private static int charAt(String s, int depth) {
+    return (depth < s.length()) ? s.charAt(depth) + 1 : 0;
+  }
+
+  private static int medianOfThree(int x, int y, int z) {
+    return Math.max(Math.min(x, y), Math.min(Math.max(x, y), z));
+  }
+
+  private static void swap(String[] a, int index1, int index2) {
+    String temp = a[index1];
+    a[index1] = a[index2];
+    a[index2] = temp;
+  }
+
+  /**
+   * Stably sorts "a" from "low" (inclusive) to "high" (exclusive) using
+   * merge sort, with the LCPs of neighbouring strings.
+   */
+  static void lcpMergeSort(String[] a, int low, int high) {
+    int size = high - low;
+    if (size < 2) {
+      return;
+    }
+    lcpMergeSort(a, low, high, low, new int[size], new String[size], new int[size]);
+  }
+
+  /**
+   * Stably sorts a[low..high), and sets lcp[i - offset] to the LCP of
+   * a[i - 1] and a[i], for every "i" in (low, high). "aux" and "auxLcp"
+   * are the working arrays, indexed the same way.
+   */
+  private static void lcpMergeSort(String[] a, int low, int high, int offset, int[] lcp,
+				   String[] aux, int[] auxLcp) {
+    if (high - low <= INSERTION_SORT_THRESHOLD) {
+      insertionSort(a, low, high, 0);
+      for (int i = low + 1; i < high; i++) {
+	lcp[i - offset] = lcp(a[i - 1], a[i], 0);
+      }
+      return;
+    }
+    int middle = (low + high) >>> 1;
+    lcpMergeSort(a, low, middle, offset, lcp, aux, auxLcp);
+    lcpMergeSort(a, middle, high, offset, lcp, aux, auxLcp);
+
+    // Skip the merge if the halves are already in order.
+    int shared = lcp(a[middle - 1], a[middle], 0);
+    if (lessOrEqual(a[middle - 1], a[middle], shared)) {
+      lcp[middle - offset] = shared;
+      return;
+    }
+    System.arraycopy(a, low, aux, low - offset, high - low);
+    System.arraycopy(lcp, low - offset, auxLcp, low - offset, high - low);
+    merge(aux, auxLcp, low - offset, middle - offset, high - offset, a, lcp, low, offset);
+  }
+
+  /**
+   * Merges the sorted runs src[low..middle) and src[middle..high), whose
+   * LCP arrays are in srcLcp, into dst from "dstLow", setting their LCPs in
+   * dstLcp (at dst index - offset).
+   *
+   * Each head of a run is tracked with its LCP with the last string
+   * written: "h1" and "h2". If they differ, the head with the longer LCP is
+   * smaller, since the other one differs from the last string earlier,
+   * and by being larger. Only if they are equal do the heads need to be
+   * compared, starting after that shared prefix.
+   */
+  private static void merge(String[] src, int[] srcLcp, int low, int middle, int high,
+			    String[] dst, int[] dstLcp, int dstLow, int offset) {
+    int i = low;
+    int j = middle;
+    int out = dstLow;
+    int h1 = 0;
+    int h2 = 0;
+    while ((i < middle) && (j < high)) {
+      boolean takeFirst;
+      if (h1 > h2) {
+	takeFirst = true;
+      } else if (h1 < h2) {
+	takeFirst = false;
+      } else {
+	int shared = lcp(src[i], src[j], h1);
+	takeFirst = lessOrEqual(src[i], src[j], shared);
+	// The LCP of the head not taken with the one taken.
+	if (takeFirst) {
+	  h2 = shared;
+	} else {
+	  h1 = shared;
+	}
+      }
+      if (takeFirst) {
+	dstLcp[out - offset] = h1;
+	dst[out++] = src[i++];
+	if (i < middle) {
+	  h1 = srcLcp[i];
+	}
+      } else {
+	dstLcp[out - offset] = h2;
+	dst[out++] = src[j++];
+	if (j < high) {
+	  h2 = srcLcp[j];
+	}
+      }
+    }
+
+    // Copy the rest of the unfinished run, whose head has LCP "h".
+    int rest = (i < middle) ? i : j;
+    int restEnd = (i < middle) ? middle : high;
+    int h = (i < middle) ? h1 : h2;
+    if (rest < restEnd) {
+      System.arraycopy(src, rest, dst, out, restEnd - rest);
+      System.arraycopy(srcLcp, rest, dstLcp, out - offset, restEnd - rest);
+      dstLcp[out - offset] = h;
+    }
+  }
+
+  /**
+   * Returns the length of the longest common prefix of "s" and "t", which
+   * are known to share their first "from" chars.
+   */
+  private static int lcp(String s, String t, int from) {
+    int length = Math.min(s.length(), t.length());
+    int i = from;
+    while ((i < length) && (s.charAt(i) == t.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Returns true if "s" <= "t", given that their LCP is "shared".
+   */
+  private static boolean lessOrEqual(String s, String t, int shared) {
+    if (shared == s.length()) {
+      return true;
+    }
+    return (shared < t.length()) && (s.charAt(shared) < t.charAt(shared));
+  }
+
+  /**
+   * Stably insertion sorts a[low..high), all of which share their first
+   * "depth" chars, comparing only the chars after.
+   */
+  private static void insertionSort(String[] a, int low, int high, int depth) {
+    for (int i = low + 1; i < high; i++) {
+      String value = a[i];
+      int j = i;
+      while ((j > low) && !lessOrEqual(a[j - 1], value, lcp(a[j - 1], value, depth))) {
+	a[j] = a[j - 1];
+	j--;
+      }
+      a[j] = value;
+    }
+  }
+
+}
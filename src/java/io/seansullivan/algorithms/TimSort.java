@@ -0,0 +1,582 @@
+package io.seansullivan.algorithms;
+
+import java.lang.System;
+import java.util.Comparator;
+
+
+/**
+ * Adaptive, stable natural merge sort in the style of Tim Peters' TimSort.
+ * The public entry points are the timSort() methods in Sorts.
+ *
+ * The input is scanned for "runs": maximal ascending sequences, or
+ * strictly descending sequences, which are reversed in place (strictly, so
+ * that reversing never reorders equal elements). Runs shorter than
+ * "minRun" are extended with binary insertion sort. Each run is pushed on a
+ * stack, and adjacent runs are merged while the stack lengths break the
+ * invariants below, which keeps the merges balanced:
+ *
+ *   runLen[i - 2] > runLen[i - 1] + runLen[i]
+ *   runLen[i - 1] > runLen[i]
+ *
+ * Before each merge, the elements of the first run which are already
+ * in place, and those of the second run which are already in place, are
+ * skipped. The shorter run is copied to a temporary array and merged back.
+ * When one run keeps winning, the merge switches to "galloping" mode,
+ * which finds how many elements to copy at once with an exponential then
+ * binary search.
+ *
+ * An input made of a few runs is sorted with O(n) comparisons, and a
+ * random input with O(n log n) comparisons, as for merge sort.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+final class TimSort {
+
+  /**
+   * Inputs shorter than this are sorted with binary insertion sort alone.
+   * Also the upper bound on "minRun".
+   */
+  private static final int MIN_MERGE = 32;
+
+  /**
+   * Number of consecutive wins by one run before a merge starts galloping.
+   */
+  private static final int MIN_GALLOP = 7;
+
+  // Enough runs for any int sized input, given the stack invariants.
+  private static final int MAX_RUNS = 49;
+
+  private static final int INITIAL_TMP_LENGTH = 256;
+
+  private final Object[] a;
+  private final Comparator<Object> c;
+
+  // Adapts to the input: lower while galloping pays off, higher when not.
+  private int minGallop = MIN_GALLOP;
+
+  private Object[] tmp;
+
+  // Stack of pending runs: run i starts at runBase[i], of length runLen[i].
+  private final int[] runBase = new int[MAX_RUNS];
+  private final int[] runLen = new int[MAX_RUNS];
+  private int stackSize = 0;
+
+  private TimSort(Object[] a, Comparator<Object> c, int size) {
+    this.a = a;
+    this.c = c;
+    tmp = new Object[Math.min(INITIAL_TMP_LENGTH, (size >>> 1) + 1)];
+  }
+
+  /**
+   * Sorts "a" from "low" (inclusive) to "high" (exclusive).
+   *
+   * @throws IllegalArgumentException if the comparator is found to break
+   *    its contract.
+   */
+  static void sort(Object[] a, int low, int high, Comparator<Object> c) {
+    int remaining = high - low;
+    if (remaining < 2) {
+      return;
+    }
+    if (remaining < MIN_MERGE) {
+      int runLength = countRunAndMakeAscending(a, low, high, c);
+      binaryInsertionSort(a, low, high, low + runLength, c);
+      return;
+    }
+
+    TimSort sorter = new TimSort(a, c, remaining);
+    int minRun = minRunLength(remaining);
+    do {
+      int runLength = countRunAndMakeAscending(a, low, high, c);
+      // Extend a short run to "minRun" (or the rest of the input).
+      if (runLength < minRun) {
+	int force = Math.min(remaining, minRun);
+	binaryInsertionSort(a, low, low + force, low + runLength, c);
+	runLength = force;
+      }
+      sorter.pushRun(low, runLength);
+      sorter.mergeCollapse();
+
+      low += runLength;
+      remaining -= runLength;
+    } while (remaining != 0);
+
+    sorter.mergeForceCollapse();
+    assert(sorter.stackSize == 1);
+  }
+
+  /**
+   * Sorts "a" from "low" to "high" with insertion sort, using a binary
+   * search to find where each element goes. The elements from "low" to
+   * "start" must already be sorted. Equal elements are inserted after
+   * each other, so the sort is stable.
+   */
+  private static void binaryInsertionSort(Object[] a, int low, int high,
+					  int start, Comparator<Object> c) {
+    assert(low < start && start <= high);
+    for (; start < high; start++) {
+      Object pivot = a[start];
+      int left = low;
+      int right = start;
+      while (left < right) {
+	int middle = (left + right) >>> 1;
+	if (c.compare(pivot, a[middle]) < 0) {
+	  right = middle;
+	} else {
+	  left = middle + 1;
+	}
+      }
+      System.arraycopy(a, left, a, left + 1, start - left);
+      a[left] = pivot;
+      if (SortProbe.ENABLED) {
+	SortProbe.moved(start - left + 1);
+      }
+    }
+  }
+
+  /**
+   * Returns the length of the run which begins at "low". If the run is
+   * strictly descending, it is reversed so that it ascends.
+   */
+  private static int countRunAndMakeAscending(Object[] a, int low, int high,
+					      Comparator<Object> c) {
+    int runHigh = low + 1;
+    if (runHigh == high) {
+      return 1;
+    }
+    if (c.compare(a[runHigh++], a[low]) < 0) {
+      while ((runHigh < high) && (c.compare(a[runHigh], a[runHigh - 1]) < 0)) {
+	runHigh++;
+      }
+      reverse(a, low, runHigh);
+    } else {
+      while ((runHigh < high) && (c.compare(a[runHigh], a[runHigh - 1]) >= 0)) {
+	runHigh++;
+      }
+    }
+    return runHigh - low;
+  }
+
+  private static void reverse(Object[] a, int low, int high) {
+    for (high--; low < high; low++, high--) {
+      Object temp = a[low];
+      a[low] = a[high];
+      a[high] = temp;
+      if (SortProbe.ENABLED) {
+	SortProbe.swapped();
+      }
+    }
+  }
+
+  /**
+   * Returns the minimum run length for an input of "n" elements: "n" itself
+   * if it is less than MIN_MERGE, otherwise a length between MIN_MERGE / 2
+   * and MIN_MERGE such that n / minRun is, or is just below, a power of two.
+   * Then the final merges are between runs of similar length.
+   */
+  private static int minRunLength(int n) {
+    int lowBits = 0;
+    while (n >= MIN_MERGE) {
+      lowBits |= (n & 1);
+      n >>= 1;
+    }
+    return n + lowBits;
+  }
+
+  private void pushRun(int base, int length) {
+    runBase[stackSize] = base;
+    runLen[stackSize] = length;
+    stackSize++;
+  }
+
+  /**
+   * Merges adjacent runs until the stack invariants hold again.
+   */
+  private void mergeCollapse() {
+    while (stackSize > 1) {
+      int n = stackSize - 2;
+      if (((n > 0) && (runLen[n - 1] <= runLen[n] + runLen[n + 1]))
+	  || ((n > 1) && (runLen[n - 2] <= runLen[n] + runLen[n - 1]))) {
+	// Merge the middle run with the shorter of its neighbours.
+	if (runLen[n - 1] < runLen[n + 1]) {
+	  n--;
+	}
+      } else if (runLen[n] > runLen[n + 1]) {
+	break;  // Invariants hold.
+      }
+      mergeAt(n);
+    }
+  }
+
+  /**
+   * Merges all the runs on the stack, once the whole input has been read.
+   */
+  private void mergeForceCollapse() {
+    while (stackSize > 1) {
+      int n = stackSize - 2;
+      if ((n > 0) && (runLen[n - 1] < runLen[n + 1])) {
+	n--;
+      }
+      mergeAt(n);
+    }
+  }
+
+  /**
+   * Merges the runs at stack positions "i" and "i + 1".
+   */
+  private void mergeAt(int i) {
+    int base1 = runBase[i];
+    int len1 = runLen[i];
+    int base2 = runBase[i + 1];
+    int len2 = runLen[i + 1];
+    assert(base1 + len1 == base2);
+
+    runLen[i] = len1 + len2;
+    if (i == stackSize - 3) {
+      runBase[i + 1] = runBase[i + 2];
+      runLen[i + 1] = runLen[i + 2];
+    }
+    stackSize--;
+
+    // Elements of run 1 which are not greater than the first of run 2 are
+    // already in place.
+    int k = gallopRight(a[base2], a, base1, len1, 0, c);
+    base1 += k;
+    len1 -= k;
+    if (len1 == 0) {
+      return;
+    }
+    // Elements of run 2 which are not less than the last of run 1 are
+    // already in place.
+    len2 = gallopLeft(a[base1 + len1 - 1], a, base2, len2, len2 - 1, c);
+    if (len2 == 0) {
+      return;
+    }
+
+    if (SortProbe.ENABLED) {
+      // The shorter run is copied out, then every element is written back.
+      SortProbe.moved(Math.min(len1, len2) + len1 + len2);
+    }
+    if (len1 <= len2) {
+      mergeLow(base1, len1, base2, len2);
+    } else {
+      mergeHigh(base1, len1, base2, len2);
+    }
+  }
+
+  /**
+   * Returns the index within a[base..base+length) where "key" would be
+   * inserted before any equal elements. The search starts at "hint" and
+   * gallops outwards, so it is fast when the answer is near "hint".
+   */
+  private static int gallopLeft(Object key, Object[] a, int base, int length,
+				int hint, Comparator<Object> c) {
+    int lastOffset = 0;
+    int offset = 1;
+    if (c.compare(key, a[base + hint]) > 0) {
+      // Gallop right until a[base+hint+lastOffset] < key <= a[base+hint+offset].
+      int maxOffset = length - hint;
+      while ((offset < maxOffset) && (c.compare(key, a[base + hint + offset]) > 0)) {
+	lastOffset = offset;
+	offset = (offset << 1) + 1;
+	if (offset <= 0) {
+	  offset = maxOffset;  // Overflow.
+	}
+      }
+      offset = Math.min(offset, maxOffset);
+      lastOffset += hint;
+      offset += hint;
+    } else {
+      // Gallop left until a[base+hint-offset] < key <= a[base+hint-lastOffset].
+      int maxOffset = hint + 1;
+      while ((offset < maxOffset) && (c.compare(key, a[base + hint - offset]) <= 0)) {
+	lastOffset = offset;
+	offset = (offset << 1) + 1;
+	if (offset <= 0) {
+	  offset = maxOffset;
+	}
+      }
+      offset = Math.min(offset, maxOffset);
+      int temp = lastOffset;
+      lastOffset = hint - offset;
+      offset = hint - temp;
+    }
+
+    // Binary search, knowing a[base+lastOffset] < key <= a[base+offset].
+    lastOffset++;
+    while (lastOffset < offset) {
+      int middle = lastOffset + ((offset - lastOffset) >>> 1);
+      if (c.compare(key, a[base + middle]) > 0) {
+	lastOffset = middle + 1;
+      } else {
+	offset = middle;
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * Like gallopLeft(), but returns the index after any elements equal to
+   * "key".
+   */
+  private static int gallopRight(Object key, Object[] a, int base, int length,
+				 int hint, Comparator<Object> c) {
+    int lastOffset = 0;
+    int offset = 1;
+    if (c.compare(key, a[base + hint]) < 0) {
+      // Gallop left until a[base+hint-offset] <= key < a[base+hint-lastOffset].
+      int maxOffset = hint + 1;
+      while ((offset < maxOffset) && (c.compare(key, a[base + hint - offset]) < 0)) {
+	lastOffset = offset;
+	offset = (offset << 1) + 1;
+	if (offset <= 0) {
+	  offset = maxOffset;
+	}
+      }
+      offset = Math.min(offset, maxOffset);
+      int temp = lastOffset;
+      lastOffset = hint - offset;
+      offset = hint - temp;
+    } else {
+      // Gallop right until a[base+hint+lastOffset] <= key < a[base+hint+offset].
+      int maxOffset = length - hint;
+      while ((offset < maxOffset) && (c.compare(key, a[base + hint + offset]) >= 0)) {
+	lastOffset = offset;
+	offset = (offset << 1) + 1;
+	if (offset <= 0) {
+	  offset = maxOffset;
+	}
+      }
+      offset = Math.min(offset, maxOffset);
+      lastOffset += hint;
+      offset += hint;
+    }
+
+    // Binary search, knowing a[base+lastOffset] <= key < a[base+offset].
+    lastOffset++;
+    while (lastOffset < offset) {
+      int middle = lastOffset + ((offset - lastOffset) >>> 1);
+      if (c.compare(key, a[base + middle]) < 0) {
+	offset = middle;
+      } else {
+	lastOffset = middle + 1;
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * Merges two adjacent runs, copying the first (shorter) run to "tmp" and
+   * merging from the front. The first element of run 2 must be less than
+   * the first of run 1, and the last of run 1 greater than every element
+   * of run 2, as arranged by mergeAt().
+   */
+  private void mergeLow(int base1, int len1, int base2, int len2) {
+    Object[] tmp = ensureCapacity(len1);
+    System.arraycopy(a, base1, tmp, 0, len1);
+    int cursor1 = 0;
+    int cursor2 = base2;
+    int dest = base1;
+
+    a[dest++] = a[cursor2++];
+    if (--len2 == 0) {
+      System.arraycopy(tmp, cursor1, a, dest, len1);
+      return;
+    }
+    if (len1 == 1) {
+      System.arraycopy(a, cursor2, a, dest, len2);
+      a[dest + len2] = tmp[cursor1];
+      return;
+    }
+
+    int minGallop = this.minGallop;
+    outer:
+    while (true) {
+      int count1 = 0;  // Number of times in a row that run 1 won.
+      int count2 = 0;  // Number of times in a row that run 2 won.
+
+      // Merge one element at a time, until one run starts winning.
+      do {
+	if (c.compare(a[cursor2], tmp[cursor1]) < 0) {
+	  a[dest++] = a[cursor2++];
+	  count2++;
+	  count1 = 0;
+	  if (--len2 == 0) {
+	    break outer;
+	  }
+	} else {
+	  a[dest++] = tmp[cursor1++];
+	  count1++;
+	  count2 = 0;
+	  if (--len1 == 1) {
+	    break outer;
+	  }
+	}
+      } while ((count1 | count2) < minGallop);
+
+      // Gallop, until neither run is winning by long stretches.
+      do {
+	count1 = gallopRight(a[cursor2], tmp, cursor1, len1, 0, c);
+	if (count1 != 0) {
+	  System.arraycopy(tmp, cursor1, a, dest, count1);
+	  dest += count1;
+	  cursor1 += count1;
+	  len1 -= count1;
+	  if (len1 <= 1) {
+	    break outer;
+	  }
+	}
+	a[dest++] = a[cursor2++];
+	if (--len2 == 0) {
+	  break outer;
+	}
+
+	count2 = gallopLeft(tmp[cursor1], a, cursor2, len2, 0, c);
+	if (count2 != 0) {
+	  System.arraycopy(a, cursor2, a, dest, count2);
+	  dest += count2;
+	  cursor2 += count2;
+	  len2 -= count2;
+	  if (len2 == 0) {
+	    break outer;
+	  }
+	}
+	a[dest++] = tmp[cursor1++];
+	if (--len1 == 1) {
+	  break outer;
+	}
+	minGallop--;
+      } while ((count1 >= MIN_GALLOP) || (count2 >= MIN_GALLOP));
+      // Penalize leaving galloping mode.
+      minGallop = Math.max(minGallop, 0) + 2;
+    }
+    this.minGallop = Math.max(minGallop, 1);
+
+    if (len1 == 1) {
+      System.arraycopy(a, cursor2, a, dest, len2);
+      a[dest + len2] = tmp[cursor1];  // The last element of run 1 goes last.
+    } else if (len1 == 0) {
+      throw new IllegalArgumentException("Comparator violates its general contract");
+    } else {
+      assert(len2 == 0);
+      System.arraycopy(tmp, cursor1, a, dest, len1);
+    }
+  }
+
+  /**
+   * Like mergeLow(), but copies the second (shorter) run to "tmp" and
+   * merges from the back.
+   */
+  private void mergeHigh(int base1, int len1, int base2, int len2) {
+    Object[] tmp = ensureCapacity(len2);
+    System.arraycopy(a, base2, tmp, 0, len2);
+    int cursor1 = base1 + len1 - 1;
+    int cursor2 = len2 - 1;
+    int dest = base2 + len2 - 1;
+
+    a[dest--] = a[cursor1--];
+    if (--len1 == 0) {
+      System.arraycopy(tmp, 0, a, dest - (len2 - 1), len2);
+      return;
+    }
+    if (len2 == 1) {
+      dest -= len1;
+      cursor1 -= len1;
+      System.arraycopy(a, cursor1 + 1, a, dest + 1, len1);
+      a[dest] = tmp[cursor2];
+      return;
+    }
+
+    int minGallop = this.minGallop;
+    outer:
+    while (true) {
+      int count1 = 0;
+      int count2 = 0;
+
+      do {
+	if (c.compare(tmp[cursor2], a[cursor1]) < 0) {
+	  a[dest--] = a[cursor1--];
+	  count1++;
+	  count2 = 0;
+	  if (--len1 == 0) {
+	    break outer;
+	  }
+	} else {
+	  a[dest--] = tmp[cursor2--];
+	  count2++;
+	  count1 = 0;
+	  if (--len2 == 1) {
+	    break outer;
+	  }
+	}
+      } while ((count1 | count2) < minGallop);
+
+      do {
+	count1 = len1 - gallopRight(tmp[cursor2], a, base1, len1, len1 - 1, c);
+	if (count1 != 0) {
+	  dest -= count1;
+	  cursor1 -= count1;
+	  len1 -= count1;
+	  System.arraycopy(a, cursor1 + 1, a, dest + 1, count1);
+	  if (len1 == 0) {
+	    break outer;
+	  }
+	}
+	a[dest--] = tmp[cursor2--];
+	if (--len2 == 1) {
+	  break outer;
+	}
+
+	count2 = len2 - gallopLeft(a[cursor1], tmp, 0, len2, len2 - 1, c);
+	if (count2 != 0) {
+	  dest -= count2;
+	  cursor2 -= count2;
+	  len2 -= count2;
+	  System.arraycopy(tmp, cursor2 + 1, a, dest + 1, count2);
+	  if (len2 <= 1) {
+	    break outer;
+	  }
+	}
+	a[dest--] = a[cursor1--];
+	if (--len1 == 0) {
+	  break outer;
+	}
+	minGallop--;
+      } while ((count1 >= MIN_GALLOP) || (count2 >= MIN_GALLOP));
+      minGallop = Math.max(minGallop, 0) + 2;
+    }
+    this.minGallop = Math.max(minGallop, 1);
+
+    if (len2 == 1) {
+      dest -= len1;
+      cursor1 -= len1;
+      System.arraycopy(a, cursor1 + 1, a, dest + 1, len1);
+      a[dest] = tmp[cursor2];  // The first element of run 2 goes first.
+    } else if (len2 == 0) {
+      throw new IllegalArgumentException("Comparator violates its general contract");
+    } else {
+      assert(len1 == 0);
+      System.arraycopy(tmp, 0, a, dest - (len2 - 1), len2);
+    }
+  }
+
+  /**
+   * Returns "tmp", grown if needed to hold at least "minCapacity" elements.
+   */
+  private Object[] ensureCapacity(int minCapacity) {
+    if (tmp.length < minCapacity) {
+      // Grow to a power of two, so that there are few regrowths, but never
+      // beyond half the array, the most that a merge can need.
+      int newLength = Integer.highestOneBit(minCapacity);
+      if (newLength < minCapacity) {
+	newLength <<= 1;
+      }
+      newLength = Math.max(minCapacity, Math.min(newLength, a.length >>> 1));
+      tmp = new Object[newLength];
+    }
+    return tmp;
+  }
+
+}
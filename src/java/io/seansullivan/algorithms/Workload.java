@@ -0,0 +1,363 @@
+package io.seansullivan.algorithms;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * Generates reproducible inputs for testing and benchmarking the sorts,
+ * including the shapes which break naive sorts: presorted, reversed and
+ * organ-pipe inputs defeat a quick sort with a fixed pivot, and few
+ * distinct values defeat a two-way partition.
+ *
+ * A workload is a distribution and a seed; the same workload always
+ * generates the same keys. The keys are non-negative longs, less than
+ * 2^31 for inputs of up to 2^31 elements, so they also fit in an int.
+ * They can be generated as int or long arrays, as Strings, or as fixed
+ * width binary records, and streamed to a file for the external sorts.
+ * Streaming never holds the whole input in memory, so it handles inputs
+ * larger than the heap.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public final class Workload {
+
+  /**
+   * Shapes of input.
+   */
+  public enum Distribution {
+    // Uniformly random keys in [0, 2^31 - 1).
+    RANDOM,
+    // The distinct keys 0, 1, 2, ...
+    SORTED,
+    // The distinct keys size - 1, size - 2, ..., 0.
+    REVERSED,
+    // Ascending up to the middle, then descending.
+    ORGAN_PIPE,
+    // "teeth" ascending runs of equal length.
+    SAWTOOTH,
+    // Uniformly random keys in [0, distinctKeys).
+    FEW_UNIQUE,
+    // Random keys in [0, distinctKeys), key "k" having probability
+    // proportional to 1 / (k + 1)^exponent.
+    ZIPF,
+    // The SORTED keys, after "swaps" random pairs have been swapped.
+    NEARLY_SORTED
+  }
+
+  public static final int DEFAULT_TEETH = 16;
+  public static final int DEFAULT_FEW_UNIQUE_KEYS = 16;
+  public static final int DEFAULT_ZIPF_KEYS = 1 << 16;
+  public static final double DEFAULT_ZIPF_EXPONENT = 1.0;
+  public static final int DEFAULT_SWAP_PERCENT = 1;
+
+  /**
+   * Length of the big-endian key at the start of every generated record.
+   */
+  public static final int RECORD_KEY_LENGTH = 8;
+
+  // Zero padding for the Strings, which have as many digits as 2^31.
+  private static final String ZEROS = "0000000000";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Distribution distribution;
+  private final long seed;
+  private final int teeth;
+  private final int distinctKeys;
+  private final double exponent;
+  // Number of swaps for NEARLY_SORTED, or -1 for DEFAULT_SWAP_PERCENT of
+  // the size.
+  private final long swaps;
+
+  private Workload(Distribution distribution, long seed, int teeth, int distinctKeys,
+		   double exponent, long swaps) {
+    this.distribution = distribution;
+    this.seed = seed;
+    this.teeth = teeth;
+    this.distinctKeys = distinctKeys;
+    this.exponent = exponent;
+    this.swaps = swaps;
+  }
+
+  /**
+   * Returns the workload for "distribution" with the default parameters:
+   * DEFAULT_TEETH teeth, DEFAULT_FEW_UNIQUE_KEYS or DEFAULT_ZIPF_KEYS
+   * distinct keys, and DEFAULT_SWAP_PERCENT of the elements swapped.
+   */
+  public static Workload of(Distribution distribution, long seed) {
+    Preconditions.checkNotNull(distribution);
+    int distinctKeys = (distribution == Distribution.ZIPF) ? DEFAULT_ZIPF_KEYS
+							   : DEFAULT_FEW_UNIQUE_KEYS;
+    return new Workload(distribution, seed, DEFAULT_TEETH, distinctKeys,
+			DEFAULT_ZIPF_EXPONENT, -1);
+  }
+
+  /**
+   * Returns a SAWTOOTH workload of "teeth" ascending runs.
+   */
+  public static Workload sawtooth(int teeth) {
+    Preconditions.checkArgument(teeth > 0);
+    return new Workload(Distribution.SAWTOOTH, 0, teeth, DEFAULT_FEW_UNIQUE_KEYS,
+			DEFAULT_ZIPF_EXPONENT, -1);
+  }
+
+  /**
+   * Returns a FEW_UNIQUE workload of "distinctKeys" values.
+   */
+  public static Workload fewUnique(long seed, int distinctKeys) {
+    Preconditions.checkArgument(distinctKeys > 0);
+    return new Workload(Distribution.FEW_UNIQUE, seed, DEFAULT_TEETH, distinctKeys,
+			DEFAULT_ZIPF_EXPONENT, -1);
+  }
+
+  /**
+   * Returns a ZIPF workload of "distinctKeys" values, skewed by "exponent":
+   * 0 is uniform, and at 1 the most frequent key is about twice as common
+   * as the next.
+   */
+  public static Workload zipf(long seed, int distinctKeys, double exponent) {
+    Preconditions.checkArgument(distinctKeys > 0);
+    Preconditions.checkArgument(exponent >= 0);
+    return new Workload(Distribution.ZIPF, seed, DEFAULT_TEETH, distinctKeys,
+			exponent, -1);
+  }
+
+  /**
+   * Returns a NEARLY_SORTED workload with "swaps" random pairs swapped.
+   */
+  public static Workload nearlySorted(long seed, long swaps) {
+    Preconditions.checkArgument(swaps >= 0);
+    return new Workload(Distribution.NEARLY_SORTED, seed, DEFAULT_TEETH,
+			DEFAULT_FEW_UNIQUE_KEYS, DEFAULT_ZIPF_EXPONENT, swaps);
+  }
+
+  public Distribution getDistribution() {
+    return distribution;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Returns an iterator over the "size" keys of this workload, generated
+   * as they are read.
+   */
+  public PrimitiveIterator.OfLong keys(final long size) {
+    Preconditions.checkArgument(size >= 0);
+    final Random rand = new Random(seed);
+    final long toothLength = Math.max(1, (size + teeth - 1) / teeth);
+    final double[] cumulative =
+	(distribution == Distribution.ZIPF) ? zipfCumulative(distinctKeys, exponent) : null;
+    final Map<Long, Long> swapped =
+	(distribution == Distribution.NEARLY_SORTED) ? swappedKeys(size, rand) : null;
+
+    return new PrimitiveIterator.OfLong() {
+      private long index = 0;
+
+      public boolean hasNext() {
+	return index < size;
+      }
+
+      public long nextLong() {
+	if (index >= size) {
+	  throw new NoSuchElementException();
+	}
+	long i = index++;
+	switch (distribution) {
+	  case RANDOM:
+	    return rand.nextInt(Integer.MAX_VALUE);
+	  case SORTED:
+	    return i;
+	  case REVERSED:
+	    return size - 1 - i;
+	  case ORGAN_PIPE:
+	    return Math.min(i, size - 1 - i);
+	  case SAWTOOTH:
+	    return i % toothLength;
+	  case FEW_UNIQUE:
+	    return rand.nextInt(distinctKeys);
+	  case ZIPF:
+	    int found = Arrays.binarySearch(cumulative, rand.nextDouble());
+	    return Math.min((found >= 0) ? found : -found - 1, cumulative.length - 1);
+	  default:
+	    Long key = swapped.get(i);
+	    return (key != null) ? key : i;
+	}
+      }
+    };
+  }
+
+  /**
+   * Returns the cumulative probabilities of the keys below "distinctKeys"
+   * under Zipf's law, for picking keys by binary search.
+   */
+  private static double[] zipfCumulative(int distinctKeys, double exponent) {
+    double[] cumulative = new double[distinctKeys];
+    double sum = 0;
+    for (int k = 0; k < distinctKeys; k++) {
+      sum += 1.0 / Math.pow(k + 1, exponent);
+      cumulative[k] = sum;
+    }
+    for (int k = 0; k < distinctKeys; k++) {
+      cumulative[k] /= sum;
+    }
+    return cumulative;
+  }
+
+  /**
+   * Returns the keys which NEARLY_SORTED moves, by position. Only the
+   * swapped positions are held, so "size" may exceed the heap.
+   */
+  private Map<Long, Long> swappedKeys(long size, Random rand) {
+    long count = (swaps >= 0) ? swaps : (size / 100) * DEFAULT_SWAP_PERCENT;
+    Map<Long, Long> swapped = new HashMap<Long, Long>();
+    for (long s = 0; (s < count) && (size > 1); s++) {
+      long i = (long) (rand.nextDouble() * size);
+      long j = (long) (rand.nextDouble() * size);
+      Long keyI = swapped.get(i);
+      Long keyJ = swapped.get(j);
+      swapped.put(i, (keyJ != null) ? keyJ : j);
+      swapped.put(j, (keyI != null) ? keyI : i);
+    }
+    return swapped;
+  }
+
+  public long[] longs(int size) {
+    long[] a = new long[size];
+    PrimitiveIterator.OfLong keys = keys(size);
+    for (int i = 0; i < size; i++) {
+      a[i] = keys.nextLong();
+    }
+    return a;
+  }
+
+  public int[] ints(int size) {
+    int[] a = new int[size];
+    PrimitiveIterator.OfLong keys = keys(size);
+    for (int i = 0; i < size; i++) {
+      a[i] = (int) keys.nextLong();
+    }
+    return a;
+  }
+
+  /**
+   * Returns the keys as zero padded decimal Strings, whose natural order
+   * is the order of the keys.
+   */
+  public List<String> strings(int size) {
+    List<String> list = new ArrayList<String>(size);
+    PrimitiveIterator.OfLong keys = keys(size);
+    for (int i = 0; i < size; i++) {
+      list.add(pad(keys.nextLong()));
+    }
+    return list;
+  }
+
+  /**
+   * Returns "size" records of "recordSize" bytes in a heap buffer, in the
+   * format of writeRecords().
+   */
+  public ByteBuffer records(int size, int recordSize) {
+    checkRecordSize(recordSize);
+    Preconditions.checkArgument((long) size * recordSize <= Integer.MAX_VALUE);
+    ByteBuffer buffer = ByteBuffer.allocate(size * recordSize);
+    byte[] record = new byte[recordSize];
+    PrimitiveIterator.OfLong keys = keys(size);
+    for (int i = 0; i < size; i++) {
+      fillRecord(record, keys.nextLong(), i);
+      buffer.put(record);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Writes "size" keys to "file" as the lines of strings(), each ending
+   * with '\n', in UTF-8.
+   */
+  public void writeLines(File file, long size) throws IOException {
+    Writer writer = new BufferedWriter(
+	new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8),
+	BUFFER_SIZE);
+    try {
+      PrimitiveIterator.OfLong keys = keys(size);
+      while (keys.hasNext()) {
+	writer.write(pad(keys.nextLong()));
+	writer.write('\n');
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Writes "size" records of "recordSize" bytes to "file". Each record
+   * starts with its key, RECORD_KEY_LENGTH bytes in big-endian order, so
+   * that comparing the key bytes as unsigned values orders the keys (as
+   * ExternalSort and RecordSorter do). If there is room, the record's
+   * position in the file follows, also as 8 big-endian bytes, so that
+   * stability can be checked. Any remaining bytes are zero.
+   */
+  public void writeRecords(File file, long size, int recordSize) throws IOException {
+    checkRecordSize(recordSize);
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+    try {
+      byte[] record = new byte[recordSize];
+      PrimitiveIterator.OfLong keys = keys(size);
+      for (long i = 0; keys.hasNext(); i++) {
+	fillRecord(record, keys.nextLong(), i);
+	out.write(record);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void checkRecordSize(int recordSize) {
+    Preconditions.checkArgument(recordSize >= RECORD_KEY_LENGTH,
+				"Record too short for the key: %s", recordSize);
+  }
+
+  private static void fillRecord(byte[] record, long key, long position) {
+    putLong(record, 0, key);
+    if (record.length >= 2 * RECORD_KEY_LENGTH) {
+      putLong(record, RECORD_KEY_LENGTH, position);
+    }
+  }
+
+  private static void putLong(byte[] record, int offset, long value) {
+    for (int i = 7; i >= 0; i--) {
+      record[offset + i] = (byte) value;
+      value >>>= 8;
+    }
+  }
+
+  private static String pad(long key) {
+    String digits = Long.toString(key);
+    return (digits.length() < ZEROS.length())
+	? ZEROS.substring(digits.length()) + digits : digits;
+  }
+
+}
@@ -20,7 +20,8 @@ import com.google.common.collect.SetMultimap;
  * connecting vertices within the graph.  Parallel edges are
  * not allowed. The two concrete subclasses from this
  * abstract class are UndirectedAdjacencyList and
- * DirectedAdjacencyList.
+ * DirectedAdjacencyList. CsrGraph holds an immutable
+ * snapshot of either in a fraction of the memory.
  *
  * @author Sean Sullivan (seans3@gmail.com)
  *
@@ -0,0 +1,343 @@
+package io.seansullivan.graph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * An immutable snapshot of an AdjacencyList in compressed sparse row
+ * (CSR) form, for graphs too large to hold as objects.
+ *
+ * The vertices are numbered densely from 0, in ascending order of their
+ * ids, and ids[] maps each number back to its Vertex id. The arcs leaving
+ * vertex v are arcs offsets[v] to offsets[v + 1] - 1, and arc "a" goes to
+ * vertex targets[a] with weight weights[a]. An undirected edge is stored
+ * as an arc each way (one for a loop), so the arcs of a vertex are all of
+ * its incident edges. The arcs of each vertex are sorted by target.
+ *
+ * This takes 8 bytes per arc and 8 per vertex, where AdjacencyList holds
+ * an Edge, two Vertex objects and the entries of a HashMultimap and a
+ * HashSet for every edge. Visiting the neighbors of a vertex reads one
+ * contiguous run of an int array, rather than looking the vertex up in
+ * a hash table and chasing pointers through the entries it finds.
+ *
+ * Vertices are passed to and returned from the methods as their numbers;
+ * indexOf() and getId() convert to and from Vertex ids. As in
+ * AdjacencyList, parallel edges are not allowed; since its list of edges
+ * does not enforce that, the constructors do.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public final class CsrGraph {
+
+  /**
+   * Largest number of arcs which fit in the arrays.
+   */
+  private static final int MAX_ARCS = Integer.MAX_VALUE - 8;
+
+  private final boolean directed;
+  private final int numEdges;
+  private final float totalEdgeCost;
+  private final int[] ids;
+  private final int[] offsets;
+  private final int[] targets;
+  private final float[] weights;
+
+  /**
+   * Builds a snapshot of the passed directed graph. Later changes to the
+   * adjacency list are not seen by the snapshot.
+   *
+   * @throws IllegalArgumentException if the graph has parallel edges, or
+   *    too many arcs.
+   */
+  public CsrGraph(DirectedAdjacencyList adjList) {
+    this(adjList, true);
+  }
+
+  /**
+   * Builds a snapshot of the passed undirected graph. Later changes to the
+   * adjacency list are not seen by the snapshot.
+   *
+   * @throws IllegalArgumentException if the graph has parallel edges, or
+   *    too many arcs.
+   */
+  public CsrGraph(UndirectedAdjacencyList adjList) {
+    this(adjList, false);
+  }
+
+  private CsrGraph(AdjacencyList adjList, boolean directed) {
+    Preconditions.checkNotNull(adjList);
+    this.directed = directed;
+    this.ids = denseIds(adjList.getVertices());
+    int numVertices = ids.length;
+
+    // Read each edge once, as the numbers of its vertices and its weight,
+    // counting the arcs which leave and enter each vertex.
+    List<Edge> edges = adjList.getEdges();
+    this.numEdges = edges.size();
+    int[] first = new int[numEdges];
+    int[] second = new int[numEdges];
+    int[] outCounts = new int[numVertices + 1];
+    int[] inCounts = new int[numVertices + 1];
+    float cost = 0.0f;
+    long numArcs = 0;
+    int i = 0;
+    for (Edge edge : edges) {
+      int from = indexOf(edge.getFirst().getId());
+      int to = indexOf(edge.getSecond().getId());
+      first[i] = from;
+      second[i] = to;
+      cost += edge.getWeight();
+      outCounts[from + 1]++;
+      inCounts[to + 1]++;
+      numArcs++;
+      if (!directed && (from != to)) {
+	outCounts[to + 1]++;
+	inCounts[from + 1]++;
+	numArcs++;
+      }
+      i++;
+    }
+    Preconditions.checkArgument(numArcs <= MAX_ARCS, "Too many arcs: %s", numArcs);
+    this.totalEdgeCost = cost;
+    for (int v = 0; v < numVertices; v++) {
+      outCounts[v + 1] += outCounts[v];
+      inCounts[v + 1] += inCounts[v];
+    }
+
+    // Two stable counting sorts: the arcs are grouped by target, and then
+    // dealt out to the rows of their sources in order of target, which
+    // leaves each row sorted, and any parallel edge next to its twin.
+    int[] sources = new int[(int) numArcs];
+    float[] byTarget = new float[(int) numArcs];
+    int[] next = Arrays.copyOf(inCounts, numVertices);
+    i = 0;
+    for (Edge edge : edges) {
+      int from = first[i];
+      int to = second[i];
+      float weight = edge.getWeight();
+      sources[next[to]] = from;
+      byTarget[next[to]++] = weight;
+      if (!directed && (from != to)) {
+	sources[next[from]] = to;
+	byTarget[next[from]++] = weight;
+      }
+      i++;
+    }
+    this.offsets = outCounts;
+    this.targets = new int[(int) numArcs];
+    this.weights = new float[(int) numArcs];
+    next = Arrays.copyOf(outCounts, numVertices);
+    for (int to = 0; to < numVertices; to++) {
+      for (int arc = inCounts[to]; arc < inCounts[to + 1]; arc++) {
+	int from = sources[arc];
+	int index = next[from]++;
+	Preconditions.checkArgument((index == offsets[from]) || (targets[index - 1] != to),
+				    "Parallel edges from vertex %s to %s", ids[from], ids[to]);
+	targets[index] = to;
+	weights[index] = byTarget[arc];
+      }
+    }
+  }
+
+  /**
+   * Returns the ids of the vertices, sorted.
+   */
+  private static int[] denseIds(Set<Vertex> vertices) {
+    int[] ids = new int[vertices.size()];
+    int i = 0;
+    for (Vertex v : vertices) {
+      ids[i++] = v.getId();
+    }
+    Arrays.sort(ids);
+    return ids;
+  }
+
+  public boolean isDirected() {
+    return directed;
+  }
+
+  /**
+   * @return the number of vertices, including those with no edges.
+   */
+  public int getNumVertices() {
+    return ids.length;
+  }
+
+  /**
+   * @return the number of edges. An undirected edge counts once.
+   */
+  public int getNumEdges() {
+    return numEdges;
+  }
+
+  /**
+   * @return the number of arcs: the number of edges if directed, or twice
+   *    that, less the loops, if undirected.
+   */
+  public int getNumArcs() {
+    return targets.length;
+  }
+
+  /**
+   * @return the sum of the weights of the edges, added in the order of
+   *    AdjacencyList.getEdges(), as AdjacencyList.getTotalEdgeCost() does.
+   */
+  public float getTotalEdgeCost() {
+    return totalEdgeCost;
+  }
+
+  /**
+   * @return the Vertex id of vertex "vertex".
+   * @throws IndexOutOfBoundsException if vertex is not a vertex number.
+   */
+  public int getId(int vertex) {
+    Preconditions.checkElementIndex(vertex, ids.length);
+    return ids[vertex];
+  }
+
+  /**
+   * @return the number of the vertex with Vertex id "id", or -1 if there
+   *    is no such vertex.
+   */
+  public int indexOf(int id) {
+    int vertex = Arrays.binarySearch(ids, id);
+    return (vertex >= 0) ? vertex : -1;
+  }
+
+  /**
+   * @return the number of arcs leaving vertex "vertex": the number of
+   *    edges incident to it, if undirected.
+   * @throws IndexOutOfBoundsException if vertex is not a vertex number.
+   */
+  public int degree(int vertex) {
+    Preconditions.checkElementIndex(vertex, ids.length);
+    return offsets[vertex + 1] - offsets[vertex];
+  }
+
+  /**
+   * @return the number of edges incident to this vertex, as in
+   *    AdjacencyList.degree().
+   * @throws IllegalArgumentException if the vertex is not in the graph.
+   */
+  public int degree(Vertex v) {
+    Preconditions.checkNotNull(v);
+    int vertex = indexOf(v.getId());
+    Preconditions.checkArgument(vertex >= 0);
+    return degree(vertex);
+  }
+
+  /**
+   * @return the first arc leaving vertex "vertex". Its arcs run up to, but
+   *    not including, getEndArc(vertex).
+   * @throws IndexOutOfBoundsException if vertex is not a vertex number.
+   */
+  public int getFirstArc(int vertex) {
+    Preconditions.checkElementIndex(vertex, ids.length);
+    return offsets[vertex];
+  }
+
+  /**
+   * @return the arc after the last arc leaving vertex "vertex".
+   * @throws IndexOutOfBoundsException if vertex is not a vertex number.
+   */
+  public int getEndArc(int vertex) {
+    Preconditions.checkElementIndex(vertex, ids.length);
+    return offsets[vertex + 1];
+  }
+
+  /**
+   * @return the number of the vertex which arc "arc" goes to.
+   * @throws IndexOutOfBoundsException if arc is not an arc number.
+   */
+  public int getTarget(int arc) {
+    Preconditions.checkElementIndex(arc, targets.length);
+    return targets[arc];
+  }
+
+  /**
+   * @return the weight of the edge of arc "arc".
+   * @throws IndexOutOfBoundsException if arc is not an arc number.
+   */
+  public float getWeight(int arc) {
+    Preconditions.checkElementIndex(arc, weights.length);
+    return weights[arc];
+  }
+
+  /**
+   * Finds the arc from vertex "from" to vertex "to" by binary search of
+   * the arcs of "from", which are sorted by target.
+   *
+   * @return the arc from "from" to "to", or -1 if there is none.
+   * @throws IndexOutOfBoundsException if from or to is not a vertex number.
+   */
+  public int findArc(int from, int to) {
+    Preconditions.checkElementIndex(from, ids.length);
+    Preconditions.checkElementIndex(to, ids.length);
+    int arc = Arrays.binarySearch(targets, offsets[from], offsets[from + 1], to);
+    return (arc >= 0) ? arc : -1;
+  }
+
+  /**
+   * @return the numbers of the vertices explored by a breadth-first search
+   *    from vertex 0 (the vertex with the smallest id).
+   * @throws IllegalStateException if there are no vertices.
+   */
+  public int[] breadthFirstSearch() {
+    Preconditions.checkState(ids.length > 0);
+    return breadthFirstSearch(0);
+  }
+
+  /**
+   * Search all vertices reachable from vertex "source", probing all the
+   * arcs of a vertex before moving on to the next vertex. The queue is an
+   * array holding every vertex explored, which is also the result.
+   *
+   * @return the numbers of the vertices explored, in the order they were
+   *    found, starting with "source".
+   * @throws IndexOutOfBoundsException if source is not a vertex number.
+   */
+  public int[] breadthFirstSearch(int source) {
+    Preconditions.checkElementIndex(source, ids.length);
+    boolean[] explored = new boolean[ids.length];
+    int[] queue = new int[ids.length];
+    int head = 0;
+    int tail = 0;
+    explored[source] = true;
+    queue[tail++] = source;
+    while (head < tail) {
+      int current = queue[head++];
+      for (int arc = offsets[current]; arc < offsets[current + 1]; arc++) {
+	int adjacent = targets[arc];
+	if (!explored[adjacent]) {
+	  explored[adjacent] = true;
+	  queue[tail++] = adjacent;
+	}
+      }
+    }
+    return Arrays.copyOf(queue, tail);
+  }
+
+  /**
+   * @return true if every vertex is reachable from vertex 0, which for an
+   *    undirected graph means that it is connected.
+   */
+  public boolean isConnected() {
+    return breadthFirstSearch().length == ids.length;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("Vertices: ").append(getNumVertices()).append("\n");
+    sb.append("Edges: ").append(getNumEdges()).append("\n");
+    sb.append("Arcs: ").append(getNumArcs()).append("\n");
+    return sb.toString();
+  }
+
+}
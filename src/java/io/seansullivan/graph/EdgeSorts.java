@@ -0,0 +1,333 @@
+package io.seansullivan.graph;
+
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.base.Preconditions;
+
+import io.seansullivan.algorithms.Sorts;
+
+
+/**
+ * Sorts edges by weight with a least significant digit (LSD) radix sort
+ * on the bits of the float weights, instead of comparing them through
+ * Edge.compareTo() O(n log n) times.
+ *
+ * The weight of each edge is read once into an int key whose unsigned
+ * order is the order of the weights: the sign bit of a positive weight is
+ * set, and all the bits of a negative weight are flipped (IEEE-754 floats
+ * are sign and magnitude, so this reverses the negative ones). The keys
+ * are then sorted 8 bits at a time, moving the edges along with them, and
+ * a pass is skipped if every key has the same digit; integer weights
+ * leave the low bits of the mantissa zero, so they take fewer passes.
+ *
+ * Each pass is a stable counting pass, so edges of equal weight keep
+ * their relative order, as they would with Collections.sort(). -0.0 is
+ * sorted as equal to 0.0, as Edge.compareTo() has it, and NaN weights
+ * come last.
+ *
+ * The parallel versions divide the input into blocks, one per task. Each
+ * block counts its digits into a histogram of its own, and from the
+ * histograms every block is given its own place to write each digit, so
+ * the tasks scatter their edges at the same time without sharing
+ * anything, and the sort stays stable.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public final class EdgeSorts {
+
+  private EdgeSorts() {}
+
+  private static final int BITS = 8;
+  private static final int RADIX = 1 << BITS;
+  private static final int MASK = RADIX - 1;
+  private static final int PASSES = Integer.SIZE / BITS;
+
+  /**
+   * Sorts the passed list of edges by weight, in ascending order. Modifies
+   * the passed list. The sort is stable.
+   *
+   * @param edges The list to be sorted.
+   * @param E type of edge.
+   */
+  public static <E extends Edge> void sortByWeight(List<E> edges) {
+    Preconditions.checkNotNull(edges);
+    Object[] a = edges.toArray();
+    sort(a, 0, a.length, null, 1);
+    arrayIntoList(a, edges);
+  }
+
+  /**
+   * Sorts the passed array of edges by weight, in ascending order. The
+   * sort is stable.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void sortByWeight(Edge[] a) {
+    sortByWeight(a, 0, a.length);
+  }
+
+  /**
+   * Sorts the passed array of edges from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) by weight, in ascending order. The sort is
+   * stable.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first edge to be sorted.
+   * @param toIndex index after the last edge to be sorted.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   */
+  public static void sortByWeight(Edge[] a, int fromIndex, int toIndex) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    sort(a, fromIndex, toIndex, null, 1);
+  }
+
+  /**
+   * Sorts the passed list of edges by weight, in ascending order, using a
+   * parallel radix sort on the common ForkJoinPool. Modifies the passed
+   * list. The sort is stable.
+   *
+   * @param edges The list to be sorted.
+   * @param E type of edge.
+   */
+  public static <E extends Edge> void parallelSortByWeight(List<E> edges) {
+    Preconditions.checkNotNull(edges);
+    Object[] a = edges.toArray();
+    sort(a, 0, a.length, ForkJoinPool.commonPool(), Sorts.DEFAULT_PARALLEL_THRESHOLD);
+    arrayIntoList(a, edges);
+  }
+
+  /**
+   * Sorts the passed array of edges by weight, in ascending order, using a
+   * parallel radix sort on the common ForkJoinPool. The sort is stable.
+   *
+   * @param a The array to be sorted.
+   */
+  public static void parallelSortByWeight(Edge[] a) {
+    parallelSortByWeight(a, 0, a.length, ForkJoinPool.commonPool(),
+			 Sorts.DEFAULT_PARALLEL_THRESHOLD);
+  }
+
+  /**
+   * Sorts the passed array of edges from "fromIndex" (inclusive) to
+   * "toIndex" (exclusive) by weight, in ascending order, using a parallel
+   * radix sort. The sort is stable.
+   *
+   * @param a The array to be sorted.
+   * @param fromIndex index of the first edge to be sorted.
+   * @param toIndex index after the last edge to be sorted.
+   * @param pool The pool which runs the counting and scattering tasks.
+   * @param threshold Smallest block of the input given to one task;
+   *    smaller ranges are sorted sequentially.
+   * @throws IndexOutOfBoundsException if the range is not within the array.
+   * @throws IllegalArgumentException if threshold is not positive.
+   */
+  public static void parallelSortByWeight(Edge[] a, int fromIndex, int toIndex,
+					  ForkJoinPool pool, int threshold) {
+    Preconditions.checkPositionIndexes(fromIndex, toIndex, a.length);
+    Preconditions.checkNotNull(pool);
+    Preconditions.checkArgument(threshold > 0);
+    sort(a, fromIndex, toIndex, pool, threshold);
+  }
+
+  /**
+   * Returns the bits of "weight" transformed so that comparing them as
+   * unsigned ints orders the weights as Edge.compareTo() does, with NaN
+   * last. Adding 0.0f turns -0.0 into 0.0.
+   */
+  static int sortableBits(float weight) {
+    int bits = Float.floatToIntBits(weight + 0.0f);
+    return bits ^ ((bits >> 31) | Integer.MIN_VALUE);
+  }
+
+  /**
+   * Sorts the edges in "a" from "low" (inclusive) to "high" (exclusive) by
+   * weight, in blocks of at least "threshold" edges run on "pool". A null
+   * pool runs a single block on the calling thread.
+   */
+  private static void sort(final Object[] a, int low, int high, ForkJoinPool pool,
+			   int threshold) {
+    final int size = high - low;
+    if (size < 2) {
+      return;
+    }
+    int parallelism = (pool == null) ? 1 : pool.getParallelism();
+    final Blocks blocks = new Blocks(size, parallelism, threshold);
+
+    // The keys, and the edges they belong to, are moved back and forth
+    // between the arrays from index 0. A whole array is sorted in place of
+    // a copy, which saves one array of references for the largest inputs.
+    final int[][] keys = {new int[size], new int[size]};
+    final Object[][] edges = {a, new Object[size]};
+    if (size < a.length) {
+      edges[0] = new Object[size];
+      System.arraycopy(a, low, edges[0], 0, size);
+    }
+
+    // Each block reads its keys, and counts their digits for every pass.
+    final int[][] histograms = new int[blocks.count][];
+    forEachBlock(pool, blocks.count, new Body() {
+      void apply(int block) {
+	int[] counts = new int[PASSES * RADIX];
+	for (int i = blocks.start(block); i < blocks.end(block); i++) {
+	  int key = sortableBits(((Edge) edges[0][i]).getWeight());
+	  keys[0][i] = key;
+	  for (int pass = 0; pass < PASSES; pass++) {
+	    counts[(pass * RADIX) + ((key >>> (pass * BITS)) & MASK)]++;
+	  }
+	}
+	histograms[block] = counts;
+      }
+    });
+
+    int src = 0;
+    boolean counted = true;  // Whether "histograms" describe keys[src].
+    for (int pass = 0; pass < PASSES; pass++) {
+      final int shift = pass * BITS;
+      final int offset = pass * RADIX;
+      // No pass has touched this pass's counts yet, and their sum over the
+      // blocks does not depend on the order of the keys.
+      int firstDigit = (keys[src][0] >>> shift) & MASK;
+      int sameDigit = 0;
+      for (int[] counts : histograms) {
+	sameDigit += counts[offset + firstDigit];
+      }
+      if (sameDigit == size) {
+	continue;  // Every key has the same digit.
+      }
+
+      final int[] srcKeys = keys[src];
+      final Object[] srcEdges = edges[src];
+      final int[] dstKeys = keys[1 - src];
+      final Object[] dstEdges = edges[1 - src];
+      if (!counted) {
+	forEachBlock(pool, blocks.count, new Body() {
+	  void apply(int block) {
+	    int[] counts = histograms[block];
+	    for (int digit = offset; digit < offset + RADIX; digit++) {
+	      counts[digit] = 0;
+	    }
+	    for (int i = blocks.start(block); i < blocks.end(block); i++) {
+	      counts[offset + ((srcKeys[i] >>> shift) & MASK)]++;
+	    }
+	  }
+	});
+      }
+
+      // The keys with a digit go after every key with a smaller digit,
+      // and after the keys with the same digit in earlier blocks.
+      int start = 0;
+      for (int digit = offset; digit < offset + RADIX; digit++) {
+	for (int[] counts : histograms) {
+	  int count = counts[digit];
+	  counts[digit] = start;
+	  start += count;
+	}
+      }
+      forEachBlock(pool, blocks.count, new Body() {
+	void apply(int block) {
+	  int[] starts = histograms[block];
+	  for (int i = blocks.start(block); i < blocks.end(block); i++) {
+	    int key = srcKeys[i];
+	    int index = starts[offset + ((key >>> shift) & MASK)]++;
+	    dstKeys[index] = key;
+	    dstEdges[index] = srcEdges[i];
+	  }
+	}
+      });
+      src = 1 - src;
+      // The histograms now hold end indexes, and the blocks other
+      // keys, so the remaining passes must count again.
+      counted = false;
+    }
+
+    if (edges[src] != a) {
+      System.arraycopy(edges[src], 0, a, low, size);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E> void arrayIntoList(Object[] a, List<E> list) {
+    ListIterator<E> i = list.listIterator();
+    for (Object element : a) {
+      i.next();
+      i.set((E) element);
+    }
+  }
+
+  /**
+   * Runs body.apply() for every block, on "pool" if there is more than
+   * one block.
+   */
+  private static void forEachBlock(ForkJoinPool pool, int count, Body body) {
+    if ((pool == null) || (count == 1)) {
+      for (int block = 0; block < count; block++) {
+	body.apply(block);
+      }
+    } else {
+      pool.invoke(new ForEachTask(0, count, body));
+    }
+  }
+
+  /**
+   * Divides the input into blocks, one per task.
+   */
+  private static final class Blocks {
+    final int size;
+    final int count;
+
+    Blocks(int size, int parallelism, int threshold) {
+      this.size = size;
+      this.count = Math.max(1, Math.min(parallelism, size / threshold));
+    }
+
+    int start(int block) {
+      return (int) (((long) size * block) / count);
+    }
+
+    int end(int block) {
+      return start(block + 1);
+    }
+  }
+
+  /**
+   * The work done for one block.
+   */
+  private abstract static class Body {
+    abstract void apply(int block);
+  }
+
+  /**
+   * Applies a Body to the blocks from "low" (inclusive) to "high"
+   * (exclusive), splitting them in half between tasks.
+   */
+  private static final class ForEachTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int low;
+    private final int high;
+    private final Body body;
+
+    ForEachTask(int low, int high, Body body) {
+      this.low = low;
+      this.high = high;
+      this.body = body;
+    }
+
+    @Override
+    protected void compute() {
+      if (high - low == 1) {
+	body.apply(low);
+      } else if (high - low > 1) {
+	int middle = (low + high) >>> 1;
+	invokeAll(new ForEachTask(low, middle, body),
+		  new ForEachTask(middle, high, body));
+      }
+    }
+  }
+
+}
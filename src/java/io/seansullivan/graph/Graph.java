@@ -9,7 +9,6 @@ import java.lang.Comparable;
 import java.lang.System;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
@@ -52,29 +51,26 @@ public class Graph {
     Set<Edge> mst = new HashSet<Edge>();  // Set of lowest cost edges.
     Set<Integer> treeVertices = new HashSet<Integer>();
     treeVertices.add(1);  // Add first vertex    
+    // Sort the edges by weight once, rather than sorting the candidates on
+    // every iteration: the first crossing edge is then the lowest cost one.
+    List<Edge> byWeight = new ArrayList<Edge>(edges);
+    EdgeSorts.sortByWeight(byWeight);
     while (treeVertices.size() < numVertices) {
       // Find lowest cost edge that connect tree vertices to non-tree vertices.
-      List<Edge> candidates = new ArrayList<Edge>();
-      for (Edge e : edges) {
+      Edge lowestCost = null;
+      for (Edge e : byWeight) {
 	Integer v1 = e.getFirst().getId();
 	Integer v2 = e.getSecond().getId();
-	if (treeVertices.contains(v1)) {
-	  if (!treeVertices.contains(v2)) {
-	    candidates.add(e);
-	  }
-	} else if (treeVertices.contains(v2)) {
-	  if (!treeVertices.contains(v1)) {
-	    candidates.add(e);
-	  }
+	if (treeVertices.contains(v1) != treeVertices.contains(v2)) {
+	  lowestCost = e;
+	  break;
 	}
       }
       
-      if (candidates.size() == 0) {
+      if (lowestCost == null) {
 	throw new RuntimeException("No Candidates!");
       }
 
-      Collections.sort(candidates);
-      Edge lowestCost = candidates.get(0);
       mst.add(lowestCost);
       treeVertices.add(lowestCost.getFirst().getId());
       treeVertices.add(lowestCost.getSecond().getId());
@@ -0,0 +1,587 @@
+package io.seansullivan.algorithms;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import io.seansullivan.algorithms.Workload.Distribution;
+
+
+/**
+ * Benchmarks every sort in Sorts across input sizes, input distributions
+ * and element types. Run with "ant bench".
+ *
+ * For each combination, the sort is run for "warmup" untimed iterations and
+ * then "iterations" measured iterations, each lasting about "time"
+ * milliseconds. Every operation sorts a fresh copy of the same input; only
+ * the sort itself is timed. The report shows operations per second (mean
+ * and standard deviation across iterations), and the bytes allocated per
+ * operation by the benchmark thread. Allocations made by the worker threads
+ * of the parallel sorts are not included.
+ *
+ * The "sort" cases run Sorts.sort(), which picks one of the other sorts
+ * from a sample of the input, so its choice can be checked against the
+ * sorts it chooses from on every distribution. The counting sorts fall
+ * back to radix or sample sort when the keys spread over a range larger
+ * than the input, as the RANDOM keys do, and the ZIPF keys of small inputs.
+ *
+ * Arguments are "name=value" pairs, which narrow the full run:
+ *
+ *   sizes=100,10000          input sizes (default 10^2 to 10^7)
+ *   types=int[],List<String> element types (default all)
+ *   algorithms=quickSort     sorts, by method name (default all)
+ *   distributions=SORTED     input distributions of Workload (default all)
+ *   warmup=3 iterations=5 time=500
+ *   quadratic=10000          largest size for the O(n^2) sorts
+ *   csv=true                 print comma separated values
+ *
+ * For example: ant bench -Dbench.args="sizes=1000000 types=int[] csv=true"
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ *
+ * Copyright (C) 2016 Sean Sullivan
+ */
+public class SortsBenchmark {
+
+  private static final int[] DEFAULT_SIZES =
+      {100, 1000, 10000, 100000, 1000000, 10000000};
+  private static final long SEED = 20160101L;
+
+  /**
+   * Builds the data to be sorted from the generated keys.
+   *
+   * @param D type of the data passed to the sort (a list or an array).
+   */
+  abstract static class ElementType<D> {
+    final String name;
+
+    ElementType(String name) {
+      this.name = name;
+    }
+
+    abstract D create(long[] keys);
+
+    abstract D copy(D data);
+
+    abstract boolean isSorted(D data);
+  }
+
+  /**
+   * One sort method applied to one element type.
+   */
+  abstract static class SortCase<D> {
+    final ElementType<D> type;
+    final String name;
+    final boolean quadratic;
+
+    SortCase(ElementType<D> type, String name, boolean quadratic) {
+      this.type = type;
+      this.name = name;
+      this.quadratic = quadratic;
+    }
+
+    abstract void sort(D data);
+  }
+
+  static final ElementType<List<Integer>> INTEGER_LIST =
+      new ElementType<List<Integer>>("List<Integer>") {
+	List<Integer> create(long[] keys) {
+	  List<Integer> list = new ArrayList<Integer>(keys.length);
+	  for (long key : keys) {
+	    list.add((int) key);
+	  }
+	  return list;
+	}
+	List<Integer> copy(List<Integer> list) {
+	  return new ArrayList<Integer>(list);
+	}
+	boolean isSorted(List<Integer> list) {
+	  return Sorts.validateSorted(list);
+	}
+      };
+
+  static final ElementType<List<String>> STRING_LIST =
+      new ElementType<List<String>>("List<String>") {
+	List<String> create(long[] keys) {
+	  // Zero padded, so that the Strings are in the order of the keys.
+	  List<String> list = new ArrayList<String>(keys.length);
+	  for (long key : keys) {
+	    list.add(String.format("%010d", key));
+	  }
+	  return list;
+	}
+	List<String> copy(List<String> list) {
+	  return new ArrayList<String>(list);
+	}
+	boolean isSorted(List<String> list) {
+	  return Sorts.validateSorted(list);
+	}
+      };
+
+  static final ElementType<int[]> INT_ARRAY = new ElementType<int[]>("int[]") {
+    int[] create(long[] keys) {
+      int[] a = new int[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+	a[i] = (int) keys[i];
+      }
+      return a;
+    }
+    int[] copy(int[] a) {
+      return a.clone();
+    }
+    boolean isSorted(int[] a) {
+      for (int i = 1; i < a.length; i++) {
+	if (a[i - 1] > a[i]) {
+	  return false;
+	}
+      }
+      return true;
+    }
+  };
+
+  static final ElementType<long[]> LONG_ARRAY = new ElementType<long[]>("long[]") {
+    long[] create(long[] keys) {
+      // Spread the keys over the high bits too, to exercise every radix pass.
+      long[] a = new long[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+	a[i] = (keys[i] << 32) | keys[i];
+      }
+      return a;
+    }
+    long[] copy(long[] a) {
+      return a.clone();
+    }
+    boolean isSorted(long[] a) {
+      for (int i = 1; i < a.length; i++) {
+	if (a[i - 1] > a[i]) {
+	  return false;
+	}
+      }
+      return true;
+    }
+  };
+
+  static final ElementType<float[]> FLOAT_ARRAY = new ElementType<float[]>("float[]") {
+    float[] create(long[] keys) {
+      float[] a = new float[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+	a[i] = keys[i] / 1024.0f;
+      }
+      return a;
+    }
+    float[] copy(float[] a) {
+      return a.clone();
+    }
+    boolean isSorted(float[] a) {
+      for (int i = 1; i < a.length; i++) {
+	if (Float.compare(a[i - 1], a[i]) > 0) {
+	  return false;
+	}
+      }
+      return true;
+    }
+  };
+
+  static final ElementType<double[]> DOUBLE_ARRAY = new ElementType<double[]>("double[]") {
+    double[] create(long[] keys) {
+      double[] a = new double[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+	a[i] = keys[i] / 1024.0;
+      }
+      return a;
+    }
+    double[] copy(double[] a) {
+      return a.clone();
+    }
+    boolean isSorted(double[] a) {
+      for (int i = 1; i < a.length; i++) {
+	if (Double.compare(a[i - 1], a[i]) > 0) {
+	  return false;
+	}
+      }
+      return true;
+    }
+  };
+
+  /**
+   * Returns the cases for every sort of Comparable lists.
+   */
+  static <T extends Comparable<T>> List<SortCase<?>> listCases(ElementType<List<T>> type) {
+    List<SortCase<?>> cases = new ArrayList<SortCase<?>>();
+    cases.add(new SortCase<List<T>>(type, "sort", false) {
+      void sort(List<T> list) { Sorts.sort(list); }
+    });
+    cases.add(new SortCase<List<T>>(type, "mergeSort", false) {
+      void sort(List<T> list) { Sorts.mergeSort(list); }
+    });
+    cases.add(new SortCase<List<T>>(type, "iterativeMergeSort", false) {
+      void sort(List<T> list) { Sorts.iterativeMergeSort(list); }
+    });
+    cases.add(new SortCase<List<T>>(type, "parallelMergeSort", false) {
+      void sort(List<T> list) { Sorts.parallelMergeSort(list); }
+    });
+    cases.add(new SortCase<List<T>>(type, "parallelSampleSort", false) {
+      void sort(List<T> list) { Sorts.parallelSampleSort(list); }
+    });
+    cases.add(new SortCase<List<T>>(type, "timSort", false) {
+      void sort(List<T> list) { Sorts.timSort(list); }
+    });
+    cases.add(new SortCase<List<T>>(type, "quickSort", false) {
+      void sort(List<T> list) { Sorts.quickSort(list); }
+    });
+    cases.add(new SortCase<List<T>>(type, "heapSort", false) {
+      void sort(List<T> list) { Sorts.heapSort(list); }
+    });
+    cases.add(new SortCase<List<T>>(type, "shellSort", false) {
+      void sort(List<T> list) { Sorts.shellSort(list); }
+    });
+    cases.add(new SortCase<List<T>>(type, "insertionSort", true) {
+      void sort(List<T> list) { Sorts.insertionSort(list); }
+    });
+    cases.add(new SortCase<List<T>>(type, "selectionSort", true) {
+      void sort(List<T> list) { Sorts.selectionSort(list); }
+    });
+    cases.add(new SortCase<List<T>>(type, "bubbleSort", true) {
+      void sort(List<T> list) { Sorts.bubbleSort(list); }
+    });
+    cases.add(new SortCase<List<T>>(type, "Collections.sort", false) {
+      void sort(List<T> list) { Collections.sort(list); }
+    });
+    return cases;
+  }
+
+  /**
+   * Returns every benchmark case; the JDK sorts are included as baselines.
+   */
+  static List<SortCase<?>> allCases() {
+    List<SortCase<?>> cases = new ArrayList<SortCase<?>>();
+    cases.addAll(listCases(INTEGER_LIST));
+    cases.add(new SortCase<List<Integer>>(INTEGER_LIST, "sortByLongKey", false) {
+      void sort(List<Integer> list) {
+	Sorts.sortByLongKey(list, new ToLongFunction<Integer>() {
+	  public long applyAsLong(Integer i) { return i; }
+	});
+      }
+    });
+    cases.add(new SortCase<List<Integer>>(INTEGER_LIST, "countingSort", false) {
+      void sort(List<Integer> list) {
+	Sorts.countingSort(list, new ToIntFunction<Integer>() {
+	  public int applyAsInt(Integer i) { return i; }
+	});
+      }
+    });
+    cases.addAll(listCases(STRING_LIST));
+    cases.add(new SortCase<List<String>>(STRING_LIST, "radixSort", false) {
+      void sort(List<String> list) { Sorts.radixSort(list); }
+    });
+    cases.add(new SortCase<List<String>>(STRING_LIST, "multikeyQuickSort", false) {
+      void sort(List<String> list) { Sorts.multikeyQuickSort(list); }
+    });
+    cases.add(new SortCase<List<String>>(STRING_LIST, "lcpMergeSort", false) {
+      void sort(List<String> list) { Sorts.lcpMergeSort(list); }
+    });
+
+    cases.add(new SortCase<int[]>(INT_ARRAY, "sort", false) {
+      void sort(int[] a) { Sorts.sort(a); }
+    });
+    cases.add(new SortCase<int[]>(INT_ARRAY, "mergeSort", false) {
+      void sort(int[] a) { Sorts.mergeSort(a); }
+    });
+    cases.add(new SortCase<int[]>(INT_ARRAY, "quickSort", false) {
+      void sort(int[] a) { Sorts.quickSort(a); }
+    });
+    cases.add(new SortCase<int[]>(INT_ARRAY, "heapSort", false) {
+      void sort(int[] a) { Sorts.heapSort(a); }
+    });
+    cases.add(new SortCase<int[]>(INT_ARRAY, "shellSort", false) {
+      void sort(int[] a) { Sorts.shellSort(a); }
+    });
+    cases.add(new SortCase<int[]>(INT_ARRAY, "insertionSort", true) {
+      void sort(int[] a) { Sorts.insertionSort(a); }
+    });
+    cases.add(new SortCase<int[]>(INT_ARRAY, "parallelSampleSort", false) {
+      void sort(int[] a) { Sorts.parallelSampleSort(a); }
+    });
+    cases.add(new SortCase<int[]>(INT_ARRAY, "radixSort", false) {
+      void sort(int[] a) { Sorts.radixSort(a); }
+    });
+    cases.add(new SortCase<int[]>(INT_ARRAY, "countingSort", false) {
+      void sort(int[] a) { Sorts.countingSort(a); }
+    });
+    cases.add(new SortCase<int[]>(INT_ARRAY, "parallelCountingSort", false) {
+      void sort(int[] a) { Sorts.parallelCountingSort(a); }
+    });
+    cases.add(new SortCase<int[]>(INT_ARRAY, "Arrays.sort", false) {
+      void sort(int[] a) { Arrays.sort(a); }
+    });
+
+    cases.add(new SortCase<long[]>(LONG_ARRAY, "sort", false) {
+      void sort(long[] a) { Sorts.sort(a); }
+    });
+    cases.add(new SortCase<long[]>(LONG_ARRAY, "mergeSort", false) {
+      void sort(long[] a) { Sorts.mergeSort(a); }
+    });
+    cases.add(new SortCase<long[]>(LONG_ARRAY, "quickSort", false) {
+      void sort(long[] a) { Sorts.quickSort(a); }
+    });
+    cases.add(new SortCase<long[]>(LONG_ARRAY, "heapSort", false) {
+      void sort(long[] a) { Sorts.heapSort(a); }
+    });
+    cases.add(new SortCase<long[]>(LONG_ARRAY, "shellSort", false) {
+      void sort(long[] a) { Sorts.shellSort(a); }
+    });
+    cases.add(new SortCase<long[]>(LONG_ARRAY, "insertionSort", true) {
+      void sort(long[] a) { Sorts.insertionSort(a); }
+    });
+    cases.add(new SortCase<long[]>(LONG_ARRAY, "parallelSampleSort", false) {
+      void sort(long[] a) { Sorts.parallelSampleSort(a); }
+    });
+    cases.add(new SortCase<long[]>(LONG_ARRAY, "radixSort", false) {
+      void sort(long[] a) { Sorts.radixSort(a); }
+    });
+    cases.add(new SortCase<long[]>(LONG_ARRAY, "Arrays.sort", false) {
+      void sort(long[] a) { Arrays.sort(a); }
+    });
+
+    cases.add(new SortCase<float[]>(FLOAT_ARRAY, "sort", false) {
+      void sort(float[] a) { Sorts.sort(a); }
+    });
+    cases.add(new SortCase<float[]>(FLOAT_ARRAY, "mergeSort", false) {
+      void sort(float[] a) { Sorts.mergeSort(a); }
+    });
+    cases.add(new SortCase<float[]>(FLOAT_ARRAY, "quickSort", false) {
+      void sort(float[] a) { Sorts.quickSort(a); }
+    });
+    cases.add(new SortCase<float[]>(FLOAT_ARRAY, "heapSort", false) {
+      void sort(float[] a) { Sorts.heapSort(a); }
+    });
+    cases.add(new SortCase<float[]>(FLOAT_ARRAY, "shellSort", false) {
+      void sort(float[] a) { Sorts.shellSort(a); }
+    });
+    cases.add(new SortCase<float[]>(FLOAT_ARRAY, "insertionSort", true) {
+      void sort(float[] a) { Sorts.insertionSort(a); }
+    });
+    cases.add(new SortCase<float[]>(FLOAT_ARRAY, "radixSort", false) {
+      void sort(float[] a) { Sorts.radixSort(a); }
+    });
+    cases.add(new SortCase<float[]>(FLOAT_ARRAY, "Arrays.sort", false) {
+      void sort(float[] a) { Arrays.sort(a); }
+    });
+
+    cases.add(new SortCase<double[]>(DOUBLE_ARRAY, "sort", false) {
+      void sort(double[] a) { Sorts.sort(a); }
+    });
+    cases.add(new SortCase<double[]>(DOUBLE_ARRAY, "mergeSort", false) {
+      void sort(double[] a) { Sorts.mergeSort(a); }
+    });
+    cases.add(new SortCase<double[]>(DOUBLE_ARRAY, "quickSort", false) {
+      void sort(double[] a) { Sorts.quickSort(a); }
+    });
+    cases.add(new SortCase<double[]>(DOUBLE_ARRAY, "heapSort", false) {
+      void sort(double[] a) { Sorts.heapSort(a); }
+    });
+    cases.add(new SortCase<double[]>(DOUBLE_ARRAY, "shellSort", false) {
+      void sort(double[] a) { Sorts.shellSort(a); }
+    });
+    cases.add(new SortCase<double[]>(DOUBLE_ARRAY, "insertionSort", true) {
+      void sort(double[] a) { Sorts.insertionSort(a); }
+    });
+    cases.add(new SortCase<double[]>(DOUBLE_ARRAY, "Arrays.sort", false) {
+      void sort(double[] a) { Arrays.sort(a); }
+    });
+    return cases;
+  }
+
+  /**
+   * Measured result of one benchmark case.
+   */
+  static final class Result {
+    final double opsPerSecond;
+    final double error;
+    // Negative if thread allocation counting is not supported.
+    final double bytesPerOp;
+
+    Result(double opsPerSecond, double error, double bytesPerOp) {
+      this.opsPerSecond = opsPerSecond;
+      this.error = error;
+      this.bytesPerOp = bytesPerOp;
+    }
+  }
+
+  private final int warmup;
+  private final int iterations;
+  private final long iterationNanos;
+  private final com.sun.management.ThreadMXBean threadBean;
+  // Updated from every sorted input, so the sorts can not be optimized away.
+  private int sink;
+
+  SortsBenchmark(int warmup, int iterations, long iterationMillis) {
+    this.warmup = warmup;
+    this.iterations = iterations;
+    this.iterationNanos = iterationMillis * 1000000L;
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if ((bean instanceof com.sun.management.ThreadMXBean)
+	&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+      threadBean = (com.sun.management.ThreadMXBean) bean;
+      threadBean.setThreadAllocatedMemoryEnabled(true);
+    } else {
+      threadBean = null;
+    }
+  }
+
+  /**
+   * Runs the warmup and measured iterations of "sortCase" on copies of
+   * "input", after checking that the sort really sorts it.
+   */
+  <D> Result run(SortCase<D> sortCase, D input) {
+    D check = sortCase.type.copy(input);
+    sortCase.sort(check);
+    if (!sortCase.type.isSorted(check)) {
+      throw new IllegalStateException(sortCase.name + " did not sort its "
+				      + sortCase.type.name + " input");
+    }
+
+    for (int i = 0; i < warmup; i++) {
+      iteration(sortCase, input);
+    }
+    double[] opsPerSecond = new double[iterations];
+    long totalOps = 0;
+    long totalBytes = 0;
+    for (int i = 0; i < iterations; i++) {
+      long[] measured = iteration(sortCase, input);
+      opsPerSecond[i] = measured[0] * 1e9 / measured[1];
+      totalOps += measured[0];
+      totalBytes += measured[2];
+    }
+
+    double mean = 0;
+    for (double ops : opsPerSecond) {
+      mean += ops;
+    }
+    mean /= iterations;
+    double variance = 0;
+    for (double ops : opsPerSecond) {
+      variance += (ops - mean) * (ops - mean);
+    }
+    double error = (iterations > 1) ? Math.sqrt(variance / (iterations - 1)) : 0;
+    double bytesPerOp = (threadBean != null) ? (double) totalBytes / totalOps : -1;
+    return new Result(mean, error, bytesPerOp);
+  }
+
+  /**
+   * Sorts fresh copies of "input" until "iterationNanos" of sorting time
+   * has passed. Returns the number of operations, the nanoseconds spent
+   * sorting, and the bytes allocated while sorting.
+   */
+  private <D> long[] iteration(SortCase<D> sortCase, D input) {
+    long ops = 0;
+    long nanos = 0;
+    long bytes = 0;
+    long threadId = Thread.currentThread().getId();
+    while (nanos < iterationNanos) {
+      D data = sortCase.type.copy(input);
+      long startBytes = (threadBean != null) ? threadBean.getThreadAllocatedBytes(threadId) : 0;
+      long start = System.nanoTime();
+      sortCase.sort(data);
+      nanos += System.nanoTime() - start;
+      if (threadBean != null) {
+	bytes += threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+      }
+      sink += System.identityHashCode(data);
+      ops++;
+    }
+    return new long[] {ops, nanos, bytes};
+  }
+
+  public static void main(String[] args) {
+    int[] sizes = DEFAULT_SIZES;
+    Set<String> types = null;
+    Set<String> algorithms = null;
+    Set<String> distributions = null;
+    int warmup = 3;
+    int iterations = 5;
+    long time = 500;
+    int quadraticLimit = 10000;
+    boolean csv = false;
+
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (equals < 0) {
+	throw new IllegalArgumentException("Expected name=value: " + arg);
+      }
+      String name = arg.substring(0, equals);
+      String value = arg.substring(equals + 1);
+      if (name.equals("sizes")) {
+	String[] parts = value.split(",");
+	sizes = new int[parts.length];
+	for (int i = 0; i < parts.length; i++) {
+	  sizes[i] = Integer.parseInt(parts[i]);
+	}
+      } else if (name.equals("types")) {
+	types = new HashSet<String>(Arrays.asList(value.split(",")));
+      } else if (name.equals("algorithms")) {
+	algorithms = new HashSet<String>(Arrays.asList(value.split(",")));
+      } else if (name.equals("distributions")) {
+	distributions = new HashSet<String>(Arrays.asList(value.split(",")));
+      } else if (name.equals("warmup")) {
+	warmup = Integer.parseInt(value);
+      } else if (name.equals("iterations")) {
+	iterations = Integer.parseInt(value);
+      } else if (name.equals("time")) {
+	time = Long.parseLong(value);
+      } else if (name.equals("quadratic")) {
+	quadraticLimit = Integer.parseInt(value);
+      } else if (name.equals("csv")) {
+	csv = Boolean.parseBoolean(value);
+      } else {
+	throw new IllegalArgumentException("Unknown argument: " + name);
+      }
+    }
+
+    SortsBenchmark benchmark = new SortsBenchmark(warmup, iterations, time);
+    String format = csv ? "%s,%s,%s,%d,%.1f,%.1f,%.1f%n"
+			: "%-14s %-20s %-14s %10d %16.1f %14.1f %14.1f%n";
+    if (csv) {
+      System.out.println("type,algorithm,distribution,size,ops/s,error,B/op");
+    } else {
+      System.out.printf("%-14s %-20s %-14s %10s %16s %14s %14s%n", "Type", "Algorithm",
+			"Distribution", "Size", "ops/s", "error", "B/op");
+    }
+    for (SortCase<?> sortCase : allCases()) {
+      if (((types != null) && !types.contains(sortCase.type.name))
+	  || ((algorithms != null) && !algorithms.contains(sortCase.name))) {
+	continue;
+      }
+      for (Distribution distribution : Distribution.values()) {
+	if ((distributions != null) && !distributions.contains(distribution.name())) {
+	  continue;
+	}
+	for (int size : sizes) {
+	  if (sortCase.quadratic && (size > quadraticLimit)) {
+	    continue;
+	  }
+	  Result result = run(benchmark, sortCase,
+			      Workload.of(distribution, SEED).longs(size));
+	  System.out.printf(format, sortCase.type.name, sortCase.name,
+			    distribution, size, result.opsPerSecond,
+			    result.error, result.bytesPerOp);
+	}
+      }
+    }
+    if (benchmark.sink == 42) {
+      System.out.println();  // Never printed in practice.
+    }
+  }
+
+  private static <D> Result run(SortsBenchmark benchmark, SortCase<D> sortCase,
+				long[] keys) {
+    return benchmark.run(sortCase, sortCase.type.create(keys));
+  }
+
+}
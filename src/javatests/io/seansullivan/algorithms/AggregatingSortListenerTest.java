@@ -0,0 +1,195 @@
+package io.seansullivan.algorithms;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests for the sort instrumentation, reported to an AggregatingSortListener.
+ * The build runs these tests, and only these, with instrumentation
+ * enabled; elsewhere they are skipped.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ */
+public class AggregatingSortListenerTest {
+
+  private static final long SEED = 20160101L;
+  private static final int SIZE = 1000;
+
+  private Random rand;
+  private AggregatingSortListener listener;
+
+  @Before
+  public void setUp() throws Exception {
+    // Skipped, rather than failed, when run without the build's property.
+    Assume.assumeTrue(Sorts.isInstrumentationEnabled());
+    rand = new Random(SEED);
+    listener = new AggregatingSortListener();
+    Sorts.setSortListener(listener);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Sorts.setSortListener(null);
+  }
+
+  private List<Integer> randomList(int size) {
+    List<Integer> list = new ArrayList<Integer>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(rand.nextInt(size));
+    }
+    return list;
+  }
+
+  private static List<Integer> reversedList(int size) {
+    List<Integer> list = new ArrayList<Integer>(size);
+    for (int i = size - 1; i >= 0; i--) {
+      list.add(i);
+    }
+    return list;
+  }
+
+  @Test
+  public void quickSortReportsStats() throws Exception {
+    Sorts.quickSort(randomList(SIZE));
+
+    Map<String, Long> metrics = listener.toMetrics();
+    assertThat(listener.getCalls("quickSort"), is(1L));
+    assertThat(metrics.get("quickSort.size"), is((long) SIZE));
+    assertTrue(metrics.get("quickSort.comparisons") > SIZE);
+    assertTrue(metrics.get("quickSort.swaps") > 0);
+    assertTrue(metrics.get("quickSort.depth.max") > 0);
+    assertTrue(metrics.get("quickSort.nanos") > 0);
+  }
+
+  @Test
+  public void bubbleSortCountsEverySwap() throws Exception {
+    // Reversed input: every pair of elements is an inversion.
+    Sorts.bubbleSort(reversedList(SIZE));
+
+    Map<String, Long> metrics = listener.toMetrics();
+    long inversions = ((long) SIZE * (SIZE - 1)) / 2;
+    assertThat(metrics.get("bubbleSort.swaps"), is(inversions));
+    assertTrue(metrics.get("bubbleSort.comparisons") >= inversions);
+    assertThat(metrics.get("bubbleSort.depth.max"), is(0L));
+  }
+
+  @Test
+  public void insertionSortCountsMoves() throws Exception {
+    List<Integer> sorted = reversedList(SIZE);
+    Collections.reverse(sorted);
+    Sorts.insertionSort(sorted);
+    assertThat(listener.toMetrics().get("insertionSort.moves"), is(0L));
+    assertThat(listener.toMetrics().get("insertionSort.comparisons"), is((long) SIZE - 1));
+
+    listener.reset();
+    Sorts.insertionSort(reversedList(SIZE));
+    // Element "i" shifts "i" elements up, then is written into place.
+    long moves = (((long) SIZE * (SIZE + 1)) / 2) - 1;
+    assertThat(listener.toMetrics().get("insertionSort.moves"), is(moves));
+  }
+
+  @Test
+  public void parallelSortCountsAllComparisons() throws Exception {
+    final AtomicLong comparisons = new AtomicLong();
+    Comparator<Integer> counting = new Comparator<Integer>() {
+      public int compare(Integer i1, Integer i2) {
+	comparisons.incrementAndGet();
+	return i1.compareTo(i2);
+      }
+    };
+    Integer[] a = randomList(SIZE * 10).toArray(new Integer[0]);
+    Sorts.parallelMergeSort(a, 0, a.length, counting, new ForkJoinPool(4), 64);
+
+    assertThat(listener.toMetrics().get("parallelMergeSort.comparisons"),
+	       is(comparisons.get()));
+  }
+
+  @Test
+  public void aggregatesSeveralCalls() throws Exception {
+    final List<SortStats> reported = new ArrayList<SortStats>();
+    Sorts.setSortListener(new SortListener() {
+      public void sortCompleted(SortStats stats) {
+	listener.sortCompleted(stats);
+	reported.add(stats);
+      }
+    });
+    for (int i = 0; i < 3; i++) {
+      Sorts.mergeSort(randomList(SIZE));
+    }
+    Sorts.timSort(randomList(SIZE / 2));
+
+    assertThat(reported.size(), is(4));
+    assertThat(listener.getCalls("mergeSort"), is(3L));
+    assertThat(listener.getCalls("timSort"), is(1L));
+    assertThat(listener.getCalls("heapSort"), is(0L));
+
+    Map<String, Long> metrics = listener.toMetrics();
+    long comparisons = 0;
+    long maxComparisons = 0;
+    for (SortStats stats : reported.subList(0, 3)) {
+      assertThat(stats.getAlgorithm(), is("mergeSort"));
+      comparisons += stats.getComparisons();
+      maxComparisons = Math.max(maxComparisons, stats.getComparisons());
+    }
+    assertThat(metrics.get("mergeSort.calls"), is(3L));
+    assertThat(metrics.get("mergeSort.size"), is(3L * SIZE));
+    assertThat(metrics.get("mergeSort.comparisons"), is(comparisons));
+    assertThat(metrics.get("mergeSort.comparisons.max"), is(maxComparisons));
+    assertThat(metrics.get("timSort.size.max"), is((long) SIZE / 2));
+  }
+
+  @Test
+  public void badArgumentsReportNothing() throws Exception {
+    Integer[] a = randomList(SIZE).toArray(new Integer[0]);
+    try {
+      Sorts.parallelMergeSort(a, 0, a.length, null, ForkJoinPool.commonPool(), 0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      Sorts.quickSort(a, 10, 5, null);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    assertTrue(listener.toMetrics().isEmpty());
+  }
+
+  @Test
+  public void failedSortIsStillReported() throws Exception {
+    Comparator<Integer> failing = new Comparator<Integer>() {
+      public int compare(Integer i1, Integer i2) {
+	throw new IllegalStateException();
+      }
+    };
+    try {
+      Sorts.mergeSort(randomList(SIZE), failing);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    assertThat(listener.getCalls("mergeSort"), is(1L));
+  }
+
+  @Test
+  public void nothingReportedWithoutListener() throws Exception {
+    Sorts.setSortListener(null);
+    Sorts.heapSort(randomList(SIZE));
+    Sorts.setSortListener(listener);
+    assertTrue(listener.toMetrics().isEmpty());
+  }
+
+}
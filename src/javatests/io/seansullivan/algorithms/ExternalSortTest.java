@@ -0,0 +1,145 @@
+package io.seansullivan.algorithms;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests for ExternalSort.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ */
+public class ExternalSortTest {
+
+  private static final long SEED = 20160101L;
+  private static final int NUM_RECORDS = 5000;
+  private static final int NUM_KEYS = 100;
+  // Key (int) followed by the record's position in the input (int).
+  private static final int RECORD_SIZE = 8;
+  // Small enough to force many runs, and a multi-pass merge.
+  private static final long SMALL_BUDGET = 4 * 1024;
+  private static final int SMALL_FAN_IN = 3;
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Random rand;
+  private File tempDir;
+
+  @Before
+  public void setUp() throws IOException {
+    rand = new Random(SEED);
+    tempDir = folder.newFolder("runs");
+  }
+
+  @Test
+  public void testSortLines() throws IOException {
+    List<String> lines = new ArrayList<String>();
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      lines.add(Integer.toString(rand.nextInt(), 36) + "-\u00e9");
+    }
+    File input = folder.newFile("input.txt");
+    File output = folder.newFile("output.txt");
+    Files.write(input.toPath(), lines, StandardCharsets.UTF_8);
+
+    new ExternalSort(SMALL_BUDGET, SMALL_FAN_IN, tempDir).sortLines(input, output);
+
+    Collections.sort(lines);
+    assertThat(Files.readAllLines(output.toPath(), StandardCharsets.UTF_8), is(lines));
+    // Every temporary run has been deleted.
+    assertThat(tempDir.list().length, is(0));
+  }
+
+  @Test
+  public void testSortLinesInMemory() throws IOException {
+    List<String> lines = new ArrayList<String>();
+    for (int i = 0; i < 100; i++) {
+      lines.add(Integer.toString(rand.nextInt(NUM_KEYS)));
+    }
+    File input = folder.newFile("input.txt");
+    File output = folder.newFile("output.txt");
+    Files.write(input.toPath(), lines, StandardCharsets.UTF_8);
+
+    new ExternalSort().sortLines(input, output);
+
+    Collections.sort(lines);
+    assertThat(Files.readAllLines(output.toPath(), StandardCharsets.UTF_8), is(lines));
+  }
+
+  @Test
+  public void testSortEmptyFile() throws IOException {
+    File input = folder.newFile("input.txt");
+    File output = folder.newFile("output.txt");
+
+    new ExternalSort(SMALL_BUDGET, SMALL_FAN_IN, tempDir).sortLines(input, output);
+
+    assertThat(output.length(), is(0L));
+  }
+
+  @Test
+  public void testSortRecordsIsStable() throws IOException {
+    ByteBuffer records = ByteBuffer.allocate(NUM_RECORDS * RECORD_SIZE);
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      records.putInt(rand.nextInt(NUM_KEYS)).putInt(i);
+    }
+    File input = folder.newFile("input.bin");
+    File output = folder.newFile("output.bin");
+    Files.write(input.toPath(), records.array());
+
+    new ExternalSort(SMALL_BUDGET, SMALL_FAN_IN, tempDir)
+	.sortRecords(input, output, RECORD_SIZE, 0, 4);
+
+    ByteBuffer sorted = ByteBuffer.wrap(Files.readAllBytes(output.toPath()));
+    assertThat(sorted.remaining(), is(NUM_RECORDS * RECORD_SIZE));
+    int prevKey = -1;
+    int prevSeq = -1;
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      int key = sorted.getInt();
+      int seq = sorted.getInt();
+      assertTrue(key >= prevKey);
+      if (key == prevKey) {
+	assertTrue(seq > prevSeq);
+      }
+      prevKey = key;
+      prevSeq = seq;
+    }
+    assertThat(tempDir.list().length, is(0));
+  }
+
+  @Test
+  public void testSortRecordsTruncated() throws IOException {
+    File input = folder.newFile("input.bin");
+    File output = folder.newFile("output.bin");
+    Files.write(input.toPath(), new byte[RECORD_SIZE + 1]);
+
+    thrown.expect(IOException.class);
+    new ExternalSort(SMALL_BUDGET, SMALL_FAN_IN, tempDir)
+	.sortRecords(input, output, RECORD_SIZE, 0, 4);
+  }
+
+  @Test
+  public void testBadFanIn() {
+    thrown.expect(IllegalArgumentException.class);
+    new ExternalSort(SMALL_BUDGET, 1, tempDir);
+  }
+
+}
@@ -0,0 +1,168 @@
+package io.seansullivan.algorithms;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+
+/**
+ * Tests for LazySortedIterator.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ */
+public class LazySortedIteratorTest {
+
+  private static final long SEED = 20160101L;
+  private static final int[] TEST_SIZES = {0, 1, 2, 3, 10, 17, 100, 1000};
+  private static final int LARGE_TEST_SIZE = 100000;
+  private static final int NUM_KEYS = 10;
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  private Random rand;
+
+  @Before
+  public void setUp() throws Exception {
+    rand = new Random(SEED);
+  }
+
+  private List<Integer> randomList(int size, int bound) {
+    List<Integer> list = new ArrayList<Integer>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(rand.nextInt(bound));
+    }
+    return list;
+  }
+
+  private static <T> List<T> drain(LazySortedIterator<T> iterator, int limit) {
+    List<T> list = new ArrayList<T>();
+    while (iterator.hasNext() && (list.size() < limit)) {
+      list.add(iterator.next());
+    }
+    return list;
+  }
+
+  @Test
+  public void lazySortedReturnsSortedOrder() throws Exception {
+    for (int size : TEST_SIZES) {
+      for (int bound : new int[] {1, NUM_KEYS, Integer.MAX_VALUE}) {
+	List<Integer> list = randomList(size, bound);
+	List<Integer> expected = new ArrayList<Integer>(list);
+	Collections.sort(expected);
+	List<Integer> original = new ArrayList<Integer>(list);
+
+	assertEquals(expected, drain(Sorts.lazySorted(list), Integer.MAX_VALUE));
+	assertEquals(original, list);  // Not modified.
+      }
+    }
+
+    // Presorted and reversed input, with a comparator.
+    List<Integer> ascending = new ArrayList<Integer>();
+    for (int i = 0; i < 1000; i++) {
+      ascending.add(i);
+    }
+    List<Integer> descending = new ArrayList<Integer>(ascending);
+    Collections.reverse(descending);
+    Comparator<Integer> reversed = Collections.reverseOrder();
+    assertEquals(descending, drain(Sorts.lazySorted(ascending, reversed), 1000));
+    assertEquals(ascending, drain(Sorts.lazySorted(descending), 1000));
+  }
+
+  @Test
+  public void lazySortedIsLinearForAFewElements() throws Exception {
+    final int[] comparisons = new int[1];
+    Comparator<Integer> counting = new Comparator<Integer>() {
+      public int compare(Integer i1, Integer i2) {
+	comparisons[0]++;
+	return i1.compareTo(i2);
+      }
+    };
+    List<Integer> list = randomList(LARGE_TEST_SIZE, Integer.MAX_VALUE);
+    List<Integer> expected = new ArrayList<Integer>(list);
+    Collections.sort(expected);
+
+    LazySortedIterator<Integer> iterator = Sorts.lazySorted(list, counting);
+    assertEquals(expected.subList(0, 100), drain(iterator, 100));
+    // The partitions shrink geometrically: about 2n for the first page,
+    // where a full sort takes about n log2 n = 17n.
+    assertThat(comparisons[0] < 4 * LARGE_TEST_SIZE, is(true));
+
+    // The rest still comes out in order.
+    assertEquals(expected.subList(100, LARGE_TEST_SIZE),
+		 drain(iterator, LARGE_TEST_SIZE));
+  }
+
+  @Test
+  public void parallelSpliteratorReturnsSortedOrder() throws Exception {
+    for (int bound : new int[] {1, NUM_KEYS, Integer.MAX_VALUE}) {
+      List<Integer> list = randomList(LARGE_TEST_SIZE, bound);
+      List<Integer> expected = new ArrayList<Integer>(list);
+      Collections.sort(expected);
+
+      Spliterator<Integer> spliterator = Sorts.lazySorted(list).spliterator();
+      assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+      assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+      assertNull(spliterator.getComparator());
+      assertThat(spliterator.estimateSize(), is((long) LARGE_TEST_SIZE));
+
+      // Collected in a pool of its own, so that the stream really splits.
+      final Spliterator<Integer> parallel = spliterator;
+      ForkJoinPool pool = new ForkJoinPool(4);
+      try {
+	List<Integer> sorted = pool.submit(new Callable<List<Integer>>() {
+	  public List<Integer> call() {
+	    return StreamSupport.stream(parallel, true).collect(Collectors.toList());
+	  }
+	}).get();
+	assertEquals(expected, sorted);
+      } finally {
+	pool.shutdown();
+      }
+    }
+  }
+
+  @Test
+  public void splitHalvesAreEachSortedAndInOrder() throws Exception {
+    List<Integer> list = randomList(1000, Integer.MAX_VALUE);
+    List<Integer> expected = new ArrayList<Integer>(list);
+    Collections.sort(expected);
+
+    LazySortedIterator<Integer> iterator = Sorts.lazySorted(list);
+    List<Integer> first = drain(iterator, 10);
+    Spliterator<Integer> suffix = iterator.spliterator();
+    Spliterator<Integer> prefix = suffix.trySplit();
+    assertNotNull(prefix);
+    List<Integer> all = new ArrayList<Integer>(first);
+    all.addAll(StreamSupport.stream(prefix, false).collect(Collectors.toList()));
+    assertThat(all.size() > 10, is(true));
+    all.addAll(StreamSupport.stream(suffix, false).collect(Collectors.toList()));
+    assertEquals(expected, all);
+  }
+
+  @Test
+  public void nextAfterEndThrowsException() throws Exception {
+    LazySortedIterator<Integer> iterator =
+	Sorts.lazySorted(Collections.<Integer>emptyList());
+    assertFalse(iterator.hasNext());
+    thrown.expect(NoSuchElementException.class);
+    iterator.next();
+  }
+
+}
@@ -0,0 +1,173 @@
+package io.seansullivan.algorithms;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+
+/**
+ * Tests for MergingIterator.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ */
+public class MergingIteratorTest {
+
+  private static final long SEED = 20160101L;
+  private static final int[] NUM_SOURCES = {0, 1, 2, 3, 7, 16};
+  private static final int MAX_SOURCE_SIZE = 200;
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  private Random rand;
+
+  @Before
+  public void setUp() throws Exception {
+    rand = new Random(SEED);
+  }
+
+  private List<List<Integer>> sortedSources(int numSources) {
+    List<List<Integer>> sources = new ArrayList<List<Integer>>();
+    for (int i = 0; i < numSources; i++) {
+      List<Integer> source = new ArrayList<Integer>();
+      int size = rand.nextInt(MAX_SOURCE_SIZE);
+      for (int j = 0; j < size; j++) {
+	source.add(rand.nextInt(MAX_SOURCE_SIZE));
+      }
+      Collections.sort(source);
+      sources.add(source);
+    }
+    return sources;
+  }
+
+  private static <T> List<Iterator<T>> iterators(List<List<T>> sources) {
+    List<Iterator<T>> iterators = new ArrayList<Iterator<T>>();
+    for (List<T> source : sources) {
+      iterators.add(source.iterator());
+    }
+    return iterators;
+  }
+
+  private static <T> List<T> drain(Iterator<T> iterator) {
+    List<T> list = new ArrayList<T>();
+    while (iterator.hasNext()) {
+      list.add(iterator.next());
+    }
+    return list;
+  }
+
+  @Test
+  public void mergeProducesSortedConcatenation() throws Exception {
+    for (int numSources : NUM_SOURCES) {
+      List<List<Integer>> sources = sortedSources(numSources);
+      List<Integer> expected = new ArrayList<Integer>();
+      for (List<Integer> source : sources) {
+	expected.addAll(source);
+      }
+      Collections.sort(expected);
+
+      assertEquals(expected, drain(Sorts.merge(iterators(sources))));
+    }
+  }
+
+  @Test
+  public void mergeIsStable() throws Exception {
+    // Elements are {key, source}; only the key is compared.
+    Comparator<int[]> byKey = new Comparator<int[]>() {
+      public int compare(int[] e1, int[] e2) {
+	return Integer.compare(e1[0], e2[0]);
+      }
+    };
+    List<List<int[]>> sources = new ArrayList<List<int[]>>();
+    for (int i = 0; i < 5; i++) {
+      List<int[]> source = new ArrayList<int[]>();
+      for (int key = 0; key < 10; key++) {
+	source.add(new int[] {key, i});
+      }
+      sources.add(source);
+    }
+    List<int[]> merged = drain(Sorts.merge(iterators(sources), byKey));
+    assertThat(merged.size(), is(50));
+    for (int i = 1; i < merged.size(); i++) {
+      int[] prev = merged.get(i - 1);
+      int[] current = merged.get(i);
+      assertTrue(prev[0] <= current[0]);
+      if (prev[0] == current[0]) {
+	assertTrue(prev[1] < current[1]);
+      }
+    }
+  }
+
+  @Test
+  public void mergeIsLazy() throws Exception {
+    // Infinite sources: multiples of 2, and of 3.
+    List<Iterator<Integer>> sources = new ArrayList<Iterator<Integer>>();
+    for (final int step : new int[] {2, 3}) {
+      sources.add(new Iterator<Integer>() {
+	private int next = 0;
+
+	public boolean hasNext() {
+	  return true;
+	}
+
+	public Integer next() {
+	  int result = next;
+	  next += step;
+	  return result;
+	}
+
+	public void remove() {
+	  throw new UnsupportedOperationException();
+	}
+      });
+    }
+    MergingIterator<Integer> merged = Sorts.merge(sources);
+    int[] expected = {0, 0, 2, 3, 4, 6, 6, 8, 9, 10};
+    for (int value : expected) {
+      assertThat(merged.next(), is(value));
+    }
+  }
+
+  @Test
+  public void spliteratorReportsComparator() throws Exception {
+    List<List<Integer>> sources = sortedSources(4);
+    Comparator<Integer> reversed = Collections.reverseOrder();
+    List<Integer> expected = new ArrayList<Integer>();
+    for (List<Integer> source : sources) {
+      Collections.reverse(source);
+      expected.addAll(source);
+    }
+    Collections.sort(expected, reversed);
+
+    Spliterator<Integer> spliterator =
+	Sorts.merge(iterators(sources), reversed).spliterator();
+    assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+    assertThat(spliterator.getComparator(), is((Object) reversed));
+    assertEquals(expected,
+		 StreamSupport.stream(spliterator, false).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void nextAfterEndThrowsException() throws Exception {
+    MergingIterator<Integer> merged = Sorts.merge(iterators(sortedSources(0)));
+    assertFalse(merged.hasNext());
+    thrown.expect(NoSuchElementException.class);
+    merged.next();
+  }
+
+}
@@ -0,0 +1,220 @@
+package io.seansullivan.algorithms;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests for RecordSorter.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ */
+public class RecordSorterTest {
+
+  private static final long SEED = 20160101L;
+  private static final int[] TEST_SIZES = {0, 1, 2, 3, 10, 100, 1000, 20000};
+  // 16 byte key followed by a 48 byte payload.
+  private static final int RECORD_SIZE = 64;
+  private static final int KEY_LENGTH = 16;
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Random rand;
+
+  @Before
+  public void setUp() throws Exception {
+    rand = new Random(SEED);
+  }
+
+  /**
+   * Returns "size" random records. If "prefixBytes" is positive, every key
+   * starts with the same bytes, and the next byte has only a few values,
+   * so that the sorts must look deep into the keys.
+   */
+  private List<byte[]> randomRecords(int size, int prefixBytes) {
+    List<byte[]> records = new ArrayList<byte[]>(size);
+    for (int i = 0; i < size; i++) {
+      byte[] record = new byte[RECORD_SIZE];
+      rand.nextBytes(record);
+      for (int j = 0; j < prefixBytes; j++) {
+	record[j] = (byte) 0xAB;
+      }
+      if (prefixBytes > 0) {
+	record[prefixBytes] = (byte) rand.nextInt(4);
+      }
+      records.add(record);
+    }
+    return records;
+  }
+
+  private static ByteBuffer toBuffer(List<byte[]> records, ByteBuffer buffer) {
+    for (byte[] record : records) {
+      buffer.put(record);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static List<byte[]> fromBuffer(ByteBuffer buffer, int size) {
+    List<byte[]> records = new ArrayList<byte[]>(size);
+    for (int i = 0; i < size; i++) {
+      byte[] record = new byte[RECORD_SIZE];
+      buffer.position(i * RECORD_SIZE);
+      buffer.get(record);
+      records.add(record);
+    }
+    return records;
+  }
+
+  private static Comparator<byte[]> unsignedOrder(final int offset, final int length) {
+    return new Comparator<byte[]>() {
+      public int compare(byte[] r1, byte[] r2) {
+	for (int i = offset; i < offset + length; i++) {
+	  int cmp = (r1[i] & 0xff) - (r2[i] & 0xff);
+	  if (cmp != 0) {
+	    return cmp;
+	  }
+	}
+	return 0;
+      }
+    };
+  }
+
+  /**
+   * Asserts that "sorted" is ordered by key, and holds the same records as
+   * "original": each record must have been moved whole.
+   */
+  private static void assertSortedPermutation(List<byte[]> original, List<byte[]> sorted,
+					      int keyOffset, int keyLength) {
+    Comparator<byte[]> byKey = unsignedOrder(keyOffset, keyLength);
+    for (int i = 1; i < sorted.size(); i++) {
+      assertTrue(byKey.compare(sorted.get(i - 1), sorted.get(i)) <= 0);
+    }
+    Comparator<byte[]> byRecord = unsignedOrder(0, RECORD_SIZE);
+    List<byte[]> expected = new ArrayList<byte[]>(original);
+    List<byte[]> actual = new ArrayList<byte[]>(sorted);
+    Collections.sort(expected, byRecord);
+    Collections.sort(actual, byRecord);
+    for (int i = 0; i < expected.size(); i++) {
+      assertArrayEquals(expected.get(i), actual.get(i));
+    }
+  }
+
+  @Test
+  public void radixSortSortsDirectBuffer() throws Exception {
+    RecordSorter sorter = new RecordSorter(RECORD_SIZE, 0, KEY_LENGTH);
+    for (int size : TEST_SIZES) {
+      for (int prefixBytes : new int[] {0, 9}) {
+	List<byte[]> records = randomRecords(size, prefixBytes);
+	ByteBuffer buffer = toBuffer(records, ByteBuffer.allocateDirect(size * RECORD_SIZE));
+	sorter.radixSort(buffer);
+	assertSortedPermutation(records, fromBuffer(buffer, size), 0, KEY_LENGTH);
+      }
+    }
+  }
+
+  @Test
+  public void quickSortSortsDirectBuffer() throws Exception {
+    RecordSorter sorter = new RecordSorter(RECORD_SIZE, 0, KEY_LENGTH);
+    for (int size : TEST_SIZES) {
+      for (int prefixBytes : new int[] {0, 9}) {
+	List<byte[]> records = randomRecords(size, prefixBytes);
+	ByteBuffer buffer = toBuffer(records, ByteBuffer.allocateDirect(size * RECORD_SIZE));
+	sorter.quickSort(buffer);
+	assertSortedPermutation(records, fromBuffer(buffer, size), 0, KEY_LENGTH);
+      }
+    }
+  }
+
+  @Test
+  public void sortsUnalignedKeyInRange() throws Exception {
+    // An odd-sized key at an odd offset, in a little-endian heap buffer.
+    int keyOffset = 5;
+    int keyLength = 11;
+    RecordSorter sorter = new RecordSorter(RECORD_SIZE, keyOffset, keyLength);
+    int size = 1000;
+    int from = 100;
+    int to = 900;
+    for (boolean radix : new boolean[] {true, false}) {
+      List<byte[]> records = randomRecords(size, 0);
+      for (byte[] record : records) {
+	record[keyOffset] = (byte) rand.nextInt(3);  // Many equal first bytes.
+      }
+      ByteBuffer buffer = toBuffer(records, ByteBuffer.allocate(size * RECORD_SIZE));
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (radix) {
+	sorter.radixSort(buffer, from, to);
+      } else {
+	sorter.quickSort(buffer, from, to);
+      }
+      assertThat(buffer.order(), is(ByteOrder.LITTLE_ENDIAN));
+      List<byte[]> sorted = fromBuffer(buffer, size);
+      assertSortedPermutation(records.subList(from, to), sorted.subList(from, to),
+			      keyOffset, keyLength);
+      // Records outside the range are untouched.
+      for (int i = 0; i < size; i++) {
+	if ((i < from) || (i >= to)) {
+	  assertTrue(Arrays.equals(records.get(i), sorted.get(i)));
+	}
+      }
+    }
+  }
+
+  @Test
+  public void sortsMappedFile() throws Exception {
+    int size = 10000;
+    List<byte[]> records = randomRecords(size, 0);
+    File file = folder.newFile();
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      FileChannel channel = raf.getChannel();
+      MappedByteBuffer mapped =
+	  channel.map(FileChannel.MapMode.READ_WRITE, 0, size * RECORD_SIZE);
+      toBuffer(records, mapped);
+      new RecordSorter(RECORD_SIZE, 0, KEY_LENGTH).radixSort(mapped);
+      mapped.force();
+      assertSortedPermutation(records, fromBuffer(mapped, size), 0, KEY_LENGTH);
+    } finally {
+      raf.close();
+    }
+  }
+
+  @Test
+  public void readOnlyBufferThrowsException() throws Exception {
+    ByteBuffer buffer = toBuffer(randomRecords(10, 0),
+				 ByteBuffer.allocate(10 * RECORD_SIZE));
+    thrown.expect(ReadOnlyBufferException.class);
+    new RecordSorter(RECORD_SIZE, 0, KEY_LENGTH).quickSort(buffer.asReadOnlyBuffer());
+  }
+
+  @Test
+  public void keyOutsideRecordThrowsException() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    new RecordSorter(RECORD_SIZE, RECORD_SIZE - 4, 8);
+  }
+
+}
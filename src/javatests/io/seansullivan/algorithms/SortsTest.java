@@ -0,0 +1,1464 @@
+package io.seansullivan.algorithms;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+
+/**
+ * Tests for Sorts.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ */
+public class SortsTest {
+
+  private static final long SEED = 20160101L;
+  private static final int[] TEST_SIZES = {0, 1, 2, 3, 10, 100, 1000};
+  private static final int RANGE_FROM = 3;
+  private static final int RANGE_TO = 77;
+  private static final int PARALLEL_TEST_SIZE = 20000;
+  private static final int SMALL_THRESHOLD = 16;
+  private static final int NUM_KEYS = 10;
+  private static final int LARGE_TEST_SIZE = 200000;
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  private Random rand;
+
+  /**
+   * Element which is compared only by "key", so that stability can be
+   * checked using "seq", its position in the original list.
+   */
+  private static class Keyed implements Comparable<Keyed> {
+    final int key;
+    final int seq;
+
+    Keyed(int key, int seq) {
+      this.key = key;
+      this.seq = seq;
+    }
+
+    public int compareTo(Keyed other) {
+      return Integer.compare(key, other.key);
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    rand = new Random(SEED);
+  }
+
+  private List<Integer> randomList(int size) {
+    List<Integer> list = new ArrayList<Integer>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(rand.nextInt(size + 1) - (size / 2));
+    }
+    return list;
+  }
+
+  private List<Keyed> randomKeyedList(int size) {
+    List<Keyed> list = new ArrayList<Keyed>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(new Keyed(rand.nextInt(NUM_KEYS), i));
+    }
+    return list;
+  }
+
+  private static void assertSortedAndStable(List<Keyed> list) {
+    for (int i = 1; i < list.size(); i++) {
+      Keyed prev = list.get(i - 1);
+      Keyed current = list.get(i);
+      assertTrue(prev.key <= current.key);
+      if (prev.key == current.key) {
+	assertTrue(prev.seq < current.seq);
+      }
+    }
+  }
+
+  private int[] randomInts(int size) {
+    int[] a = new int[size];
+    for (int i = 0; i < size; i++) {
+      a[i] = rand.nextInt();
+    }
+    return a;
+  }
+
+  private long[] randomLongs(int size) {
+    long[] a = new long[size];
+    for (int i = 0; i < size; i++) {
+      a[i] = rand.nextLong();
+    }
+    return a;
+  }
+
+  private float[] randomFloats(int size) {
+    float[] a = new float[size];
+    for (int i = 0; i < size; i++) {
+      a[i] = (rand.nextFloat() - 0.5f) * size;
+    }
+    return a;
+  }
+
+  private double[] randomDoubles(int size) {
+    double[] a = new double[size];
+    for (int i = 0; i < size; i++) {
+      a[i] = rand.nextGaussian();
+    }
+    return a;
+  }
+
+  @Test
+  public void listSortsProduceSortedPermutation() throws Exception {
+    for (int size : TEST_SIZES) {
+      List<Integer> original = randomList(size);
+      List<Integer> expected = new ArrayList<Integer>(original);
+      Collections.sort(expected);
+
+      List<Integer> list = new ArrayList<Integer>(original);
+      Sorts.mergeSort(list);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.quickSort(list);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.heapSort(list);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.shellSort(list);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.insertionSort(list);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.iterativeMergeSort(list);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.selectionSort(list);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.bubbleSort(list);
+      assertEquals(expected, list);
+    }
+  }
+
+  @Test
+  public void intArraySortsMatchArraysSort() throws Exception {
+    for (int size : TEST_SIZES) {
+      int[] original = randomInts(size);
+      int[] expected = original.clone();
+      Arrays.sort(expected);
+
+      int[] a = original.clone();
+      Sorts.mergeSort(a);
+      assertArrayEquals(expected, a);
+      a = original.clone();
+      Sorts.quickSort(a);
+      assertArrayEquals(expected, a);
+      a = original.clone();
+      Sorts.heapSort(a);
+      assertArrayEquals(expected, a);
+      a = original.clone();
+      Sorts.shellSort(a);
+      assertArrayEquals(expected, a);
+      a = original.clone();
+      Sorts.insertionSort(a);
+      assertArrayEquals(expected, a);
+    }
+  }
+
+  @Test
+  public void longArraySortsMatchArraysSort() throws Exception {
+    for (int size : TEST_SIZES) {
+      long[] original = randomLongs(size);
+      long[] expected = original.clone();
+      Arrays.sort(expected);
+
+      long[] a = original.clone();
+      Sorts.mergeSort(a);
+      assertArrayEquals(expected, a);
+      a = original.clone();
+      Sorts.quickSort(a);
+      assertArrayEquals(expected, a);
+      a = original.clone();
+      Sorts.heapSort(a);
+      assertArrayEquals(expected, a);
+      a = original.clone();
+      Sorts.shellSort(a);
+      assertArrayEquals(expected, a);
+      a = original.clone();
+      Sorts.insertionSort(a);
+      assertArrayEquals(expected, a);
+    }
+  }
+
+  @Test
+  public void floatArraySortsMatchArraysSort() throws Exception {
+    for (int size : TEST_SIZES) {
+      float[] original = randomFloats(size);
+      if (size > 3) {
+	// Special values must be ordered as by Float.compare().
+	original[0] = Float.NaN;
+	original[1] = -0.0f;
+	original[2] = 0.0f;
+	original[3] = Float.NEGATIVE_INFINITY;
+      }
+      float[] expected = original.clone();
+      Arrays.sort(expected);
+
+      float[] a = original.clone();
+      Sorts.mergeSort(a);
+      assertArrayEquals(expected, a, 0.0f);
+      a = original.clone();
+      Sorts.quickSort(a);
+      assertArrayEquals(expected, a, 0.0f);
+      a = original.clone();
+      Sorts.heapSort(a);
+      assertArrayEquals(expected, a, 0.0f);
+      a = original.clone();
+      Sorts.shellSort(a);
+      assertArrayEquals(expected, a, 0.0f);
+      a = original.clone();
+      Sorts.insertionSort(a);
+      assertArrayEquals(expected, a, 0.0f);
+    }
+  }
+
+  @Test
+  public void doubleArraySortsMatchArraysSort() throws Exception {
+    for (int size : TEST_SIZES) {
+      double[] original = randomDoubles(size);
+      if (size > 3) {
+	original[0] = Double.NaN;
+	original[1] = -0.0d;
+	original[2] = 0.0d;
+	original[3] = Double.POSITIVE_INFINITY;
+      }
+      double[] expected = original.clone();
+      Arrays.sort(expected);
+
+      double[] a = original.clone();
+      Sorts.mergeSort(a);
+      assertArrayEquals(expected, a, 0.0d);
+      a = original.clone();
+      Sorts.quickSort(a);
+      assertArrayEquals(expected, a, 0.0d);
+      a = original.clone();
+      Sorts.heapSort(a);
+      assertArrayEquals(expected, a, 0.0d);
+      a = original.clone();
+      Sorts.shellSort(a);
+      assertArrayEquals(expected, a, 0.0d);
+      a = original.clone();
+      Sorts.insertionSort(a);
+      assertArrayEquals(expected, a, 0.0d);
+    }
+  }
+
+  @Test
+  public void rangeSortsOnlyModifyTheRange() throws Exception {
+    int[] original = randomInts(100);
+    int[] expected = original.clone();
+    Arrays.sort(expected, RANGE_FROM, RANGE_TO);
+
+    int[] a = original.clone();
+    Sorts.mergeSort(a, RANGE_FROM, RANGE_TO);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.quickSort(a, RANGE_FROM, RANGE_TO);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.heapSort(a, RANGE_FROM, RANGE_TO);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.shellSort(a, RANGE_FROM, RANGE_TO);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.insertionSort(a, RANGE_FROM, RANGE_TO);
+    assertArrayEquals(expected, a);
+  }
+
+  @Test
+  public void badRangeThrowsException() throws Exception {
+    thrown.expect(IndexOutOfBoundsException.class);
+    Sorts.mergeSort(new int[10], 5, 11);
+  }
+
+  private static int[] floatBits(float[] a) {
+    int[] bits = new int[a.length];
+    for (int i = 0; i < a.length; i++) {
+      bits[i] = Float.floatToIntBits(a[i]);
+    }
+    return bits;
+  }
+
+  @Test
+  public void primitiveQuickSortsHandleDuplicatesAndPatterns() throws Exception {
+    for (int size : new int[] {17, 33, 100, 1000, LARGE_TEST_SIZE}) {
+      for (int distinct : new int[] {1, 2, NUM_KEYS, size}) {
+	int[] ints = new int[size];
+	for (int i = 0; i < size; i++) {
+	  ints[i] = rand.nextInt(distinct) - (distinct / 2);
+	}
+	for (int pattern = 0; pattern < 3; pattern++) {
+	  if (pattern == 1) {
+	    Arrays.sort(ints);
+	  } else if (pattern == 2) {
+	    for (int i = 0; i < size / 2; i++) {
+	      swap(ints, i, size - 1 - i);
+	    }
+	  }
+	  long[] longs = new long[size];
+	  float[] floats = new float[size];
+	  for (int i = 0; i < size; i++) {
+	    longs[i] = ((long) ints[i] << 32) | (ints[i] & 0xf);
+	    // Sprinkle NaNs and zeros of both signs among the values.
+	    floats[i] = ((ints[i] % 7) == 0) ? Float.NaN
+		: ((ints[i] % 5) == 0) ? ((i % 2 == 0) ? -0.0f : 0.0f)
+		: ints[i] / 3.0f;
+	  }
+
+	  int[] expectedInts = ints.clone();
+	  Arrays.sort(expectedInts);
+	  int[] a = ints.clone();
+	  Sorts.quickSort(a);
+	  assertArrayEquals(expectedInts, a);
+
+	  long[] expectedLongs = longs.clone();
+	  Arrays.sort(expectedLongs);
+	  long[] b = longs.clone();
+	  Sorts.quickSort(b);
+	  assertArrayEquals(expectedLongs, b);
+
+	  float[] expectedFloats = floats.clone();
+	  Arrays.sort(expectedFloats);
+	  float[] c = floats.clone();
+	  Sorts.quickSort(c);
+	  assertArrayEquals(floatBits(expectedFloats), floatBits(c));
+	}
+      }
+    }
+  }
+
+  private static void swap(int[] a, int i, int j) {
+    int temp = a[i];
+    a[i] = a[j];
+    a[j] = temp;
+  }
+
+  @Test
+  public void primitiveQuickSortsHandleEveryWorkload() throws Exception {
+    for (Workload.Distribution distribution : Workload.Distribution.values()) {
+      long[] longs = Workload.of(distribution, SEED).longs(LARGE_TEST_SIZE);
+      int[] ints = new int[longs.length];
+      float[] floats = new float[longs.length];
+      for (int i = 0; i < longs.length; i++) {
+	ints[i] = (int) longs[i];
+	floats[i] = longs[i];
+      }
+
+      long[] expectedLongs = longs.clone();
+      Arrays.sort(expectedLongs);
+      Sorts.quickSort(longs);
+      assertArrayEquals(distribution.toString(), expectedLongs, longs);
+
+      int[] expectedInts = ints.clone();
+      Arrays.sort(expectedInts);
+      Sorts.quickSort(ints);
+      assertArrayEquals(distribution.toString(), expectedInts, ints);
+
+      float[] expectedFloats = floats.clone();
+      Arrays.sort(expectedFloats);
+      Sorts.quickSort(floats);
+      assertArrayEquals(distribution.toString(), floatBits(expectedFloats),
+	  floatBits(floats));
+    }
+  }
+
+  @Test
+  public void primitiveQuickSortsKeepPatternsBalanced() throws Exception {
+    // Patterns which fooled the pivot sampling used to end in heap sort.
+    List<Workload> workloads = new ArrayList<Workload>();
+    workloads.add(Workload.of(Workload.Distribution.SORTED, SEED));
+    workloads.add(Workload.of(Workload.Distribution.REVERSED, SEED));
+    workloads.add(Workload.of(Workload.Distribution.ORGAN_PIPE, SEED));
+    for (int teeth : new int[] {2, 3, 8, Workload.DEFAULT_TEETH, 64, 1000}) {
+      workloads.add(Workload.sawtooth(teeth));
+    }
+    for (Workload workload : workloads) {
+      String message = workload.getDistribution().toString();
+      long[] longs = workload.longs(LARGE_TEST_SIZE);
+      int[] ints = new int[longs.length];
+      float[] floats = new float[longs.length];
+      for (int i = 0; i < longs.length; i++) {
+	ints[i] = (int) longs[i];
+	floats[i] = longs[i];
+      }
+      long[] expected = longs.clone();
+      Arrays.sort(expected);
+
+      assertThat(message, Sorts.quickSortFallbacks(longs, 0, longs.length), is(0));
+      assertArrayEquals(message, expected, longs);
+      assertThat(message, Sorts.quickSortFallbacks(ints, 0, ints.length), is(0));
+      assertThat(message, Sorts.quickSortFallbacks(floats, 0, floats.length), is(0));
+      for (int i = 0; i < expected.length; i++) {
+	assertThat(message, ints[i], is((int) expected[i]));
+	assertThat(message, floats[i], is((float) expected[i]));
+      }
+    }
+  }
+
+  @Test
+  public void mergeSortIsStable() throws Exception {
+    List<Keyed> list = randomKeyedList(1000);
+    Sorts.mergeSort(list);
+    assertSortedAndStable(list);
+  }
+
+  @Test
+  public void parallelMergeSortProducesSortedPermutation() throws Exception {
+    List<Integer> original = randomList(PARALLEL_TEST_SIZE);
+    List<Integer> expected = new ArrayList<Integer>(original);
+    Collections.sort(expected);
+
+    List<Integer> list = new ArrayList<Integer>(original);
+    Sorts.parallelMergeSort(list);
+    assertEquals(expected, list);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      list = new ArrayList<Integer>(original);
+      Sorts.parallelMergeSort(list, pool, SMALL_THRESHOLD);
+      assertEquals(expected, list);
+      for (int size : TEST_SIZES) {
+	list = randomList(size);
+	expected = new ArrayList<Integer>(list);
+	Collections.sort(expected);
+	Sorts.parallelMergeSort(list, pool, 1);
+	assertEquals(expected, list);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void parallelMergeSortIsStable() throws Exception {
+    List<Keyed> list = randomKeyedList(PARALLEL_TEST_SIZE);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      Sorts.parallelMergeSort(list, pool, SMALL_THRESHOLD);
+    } finally {
+      pool.shutdown();
+    }
+    assertSortedAndStable(list);
+  }
+
+  @Test
+  public void parallelMergeSortRejectsBadThreshold() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    Sorts.parallelMergeSort(randomList(10), ForkJoinPool.commonPool(), 0);
+  }
+
+  @Test
+  public void iterativeMergeSortIsStable() throws Exception {
+    List<Keyed> list = randomKeyedList(1000);
+    Sorts.iterativeMergeSort(list);
+    assertSortedAndStable(list);
+  }
+
+  @Test
+  public void iterativeMergeSortReusesBuffer() throws Exception {
+    Object[] buffer = new Object[PARALLEL_TEST_SIZE];
+    for (int size : TEST_SIZES) {
+      List<Integer> list = randomList(size);
+      List<Integer> expected = new ArrayList<Integer>(list);
+      Collections.sort(expected);
+      Sorts.iterativeMergeSort(list, buffer);
+      assertEquals(expected, list);
+    }
+  }
+
+  @Test
+  public void iterativeMergeSortRejectsShortBuffer() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    Sorts.iterativeMergeSort(randomList(10), new Object[9]);
+  }
+
+  @Test
+  public void radixSortsMatchArraysSort() throws Exception {
+    for (int size : TEST_SIZES) {
+      int[] ints = randomInts(size);
+      int[] expectedInts = ints.clone();
+      Arrays.sort(expectedInts);
+      Sorts.radixSort(ints);
+      assertArrayEquals(expectedInts, ints);
+
+      long[] longs = randomLongs(size);
+      long[] expectedLongs = longs.clone();
+      Arrays.sort(expectedLongs);
+      Sorts.radixSort(longs);
+      assertArrayEquals(expectedLongs, longs);
+
+      float[] floats = randomFloats(size);
+      if (size > 3) {
+	floats[0] = Float.NaN;
+	floats[1] = -0.0f;
+	floats[2] = 0.0f;
+	floats[3] = Float.NEGATIVE_INFINITY;
+      }
+      float[] expectedFloats = floats.clone();
+      Arrays.sort(expectedFloats);
+      Sorts.radixSort(floats);
+      assertArrayEquals(expectedFloats, floats, 0.0f);
+    }
+  }
+
+  @Test
+  public void radixSortWithBothDigitSizes() throws Exception {
+    int[] intBuffer = new int[PARALLEL_TEST_SIZE];
+    long[] longBuffer = new long[PARALLEL_TEST_SIZE];
+    for (int bits : new int[] {Sorts.RADIX_8_BITS, Sorts.RADIX_11_BITS}) {
+      int[] ints = randomInts(PARALLEL_TEST_SIZE);
+      int[] expectedInts = ints.clone();
+      Arrays.sort(expectedInts, RANGE_FROM, RANGE_TO);
+      Sorts.radixSort(ints, RANGE_FROM, RANGE_TO, intBuffer, bits);
+      assertArrayEquals(expectedInts, ints);
+
+      long[] longs = randomLongs(PARALLEL_TEST_SIZE);
+      long[] expectedLongs = longs.clone();
+      Arrays.sort(expectedLongs);
+      Sorts.radixSort(longs, 0, longs.length, longBuffer, bits);
+      assertArrayEquals(expectedLongs, longs);
+    }
+  }
+
+  @Test
+  public void radixSortSkipsPassesWithSameDigit() throws Exception {
+    // Only the lowest digit differs, and then no digit differs.
+    int[] a = new int[1000];
+    for (int i = 0; i < a.length; i++) {
+      a[i] = -(rand.nextInt(256));
+    }
+    int[] expected = a.clone();
+    Arrays.sort(expected);
+    Sorts.radixSort(a);
+    assertArrayEquals(expected, a);
+    Arrays.fill(a, 42);
+    Sorts.radixSort(a);
+    assertThat(a[0], is(42));
+    assertThat(a[a.length - 1], is(42));
+  }
+
+  @Test
+  public void radixSortRejectsUnsupportedDigitSize() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    Sorts.radixSort(new int[10], 0, 10, new int[10], 16);
+  }
+
+  @Test
+  public void heapSortWithEveryArity() throws Exception {
+    for (int arity : new int[] {Sorts.HEAP_2_ARY, Sorts.HEAP_4_ARY, Sorts.HEAP_8_ARY}) {
+      for (int size : TEST_SIZES) {
+	int[] ints = randomInts(size);
+	int[] expectedInts = ints.clone();
+	Arrays.sort(expectedInts);
+	Sorts.heapSort(ints, 0, size, arity);
+	assertArrayEquals(expectedInts, ints);
+
+	long[] longs = randomLongs(size);
+	long[] expectedLongs = longs.clone();
+	Arrays.sort(expectedLongs);
+	Sorts.heapSort(longs, 0, size, arity);
+	assertArrayEquals(expectedLongs, longs);
+
+	double[] doubles = randomDoubles(size);
+	if (size > 3) {
+	  doubles[0] = Double.NaN;
+	  doubles[1] = -0.0d;
+	  doubles[2] = 0.0d;
+	}
+	double[] expectedDoubles = doubles.clone();
+	Arrays.sort(expectedDoubles);
+	Sorts.heapSort(doubles, 0, size, arity);
+	assertArrayEquals(expectedDoubles, doubles, 0.0d);
+
+	Integer[] objects = randomList(size).toArray(new Integer[0]);
+	Integer[] expectedObjects = objects.clone();
+	Arrays.sort(expectedObjects);
+	Sorts.heapSort(objects, 0, size, null, arity);
+	assertArrayEquals(expectedObjects, objects);
+      }
+      float[] floats = randomFloats(100);
+      float[] expectedFloats = floats.clone();
+      Arrays.sort(expectedFloats, RANGE_FROM, RANGE_TO);
+      Sorts.heapSort(floats, RANGE_FROM, RANGE_TO, arity);
+      assertArrayEquals(expectedFloats, floats, 0.0f);
+    }
+  }
+
+  @Test
+  public void heapSortTakesAboutNLogNComparisons() throws Exception {
+    final int[] comparisons = new int[1];
+    Comparator<Integer> counting = new Comparator<Integer>() {
+      public int compare(Integer i1, Integer i2) {
+	comparisons[0]++;
+	return i1.compareTo(i2);
+      }
+    };
+    List<Integer> list = randomList(LARGE_TEST_SIZE);
+    Sorts.heapSort(list, counting);
+    assertTrue(Sorts.validateSorted(list));
+    // A top-down binary heap sort takes about 2n log n.
+    double nLogN = LARGE_TEST_SIZE * (Math.log(LARGE_TEST_SIZE) / Math.log(2));
+    assertThat(comparisons[0] < 1.25 * nLogN, is(true));
+  }
+
+  @Test
+  public void heapSortRejectsUnsupportedArity() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    Sorts.heapSort(new int[10], 0, 10, 3);
+  }
+
+  @Test
+  public void shellSortWithEveryGapSequence() throws Exception {
+    int[] sequences = {Sorts.SHELL_CIURA_GAPS, Sorts.SHELL_TOKUDA_GAPS,
+		       Sorts.SHELL_SEDGEWICK_GAPS};
+    for (int gaps : sequences) {
+      for (int size : new int[] {0, 1, 2, 3, 10, 100, 1000, PARALLEL_TEST_SIZE}) {
+	int[] ints = randomInts(size);
+	int[] expectedInts = ints.clone();
+	Arrays.sort(expectedInts);
+	Sorts.shellSort(ints, 0, size, gaps);
+	assertArrayEquals(expectedInts, ints);
+
+	long[] longs = randomLongs(size);
+	long[] expectedLongs = longs.clone();
+	Arrays.sort(expectedLongs);
+	Sorts.shellSort(longs, 0, size, gaps);
+	assertArrayEquals(expectedLongs, longs);
+
+	double[] doubles = randomDoubles(size);
+	if (size > 3) {
+	  doubles[0] = Double.NaN;
+	  doubles[1] = -0.0d;
+	  doubles[2] = 0.0d;
+	}
+	double[] expectedDoubles = doubles.clone();
+	Arrays.sort(expectedDoubles);
+	Sorts.shellSort(doubles, 0, size, gaps);
+	assertArrayEquals(expectedDoubles, doubles, 0.0d);
+
+	Integer[] objects = randomList(size).toArray(new Integer[0]);
+	Integer[] expectedObjects = objects.clone();
+	Arrays.sort(expectedObjects);
+	Sorts.shellSort(objects, 0, size, null, gaps);
+	assertArrayEquals(expectedObjects, objects);
+      }
+      float[] floats = randomFloats(100);
+      float[] expectedFloats = floats.clone();
+      Arrays.sort(expectedFloats, RANGE_FROM, RANGE_TO);
+      Sorts.shellSort(floats, RANGE_FROM, RANGE_TO, gaps);
+      assertArrayEquals(expectedFloats, floats, 0.0f);
+    }
+  }
+
+  @Test
+  public void shellSortGapSequencesStartAsPublished() throws Exception {
+    assertArrayEquals(new int[] {1, 4, 10, 23, 57, 132, 301, 701, 1750, 3937},
+		      ShellSort.gaps(Sorts.SHELL_CIURA_GAPS, 5000));
+    assertArrayEquals(new int[] {1, 4, 9, 20, 46, 103, 233, 525, 1182, 2660},
+		      ShellSort.gaps(Sorts.SHELL_TOKUDA_GAPS, 5000));
+    assertArrayEquals(new int[] {1, 8, 23, 77, 281, 1073, 4193},
+		      ShellSort.gaps(Sorts.SHELL_SEDGEWICK_GAPS, 5000));
+    assertArrayEquals(new int[] {1}, ShellSort.gaps(Sorts.SHELL_CIURA_GAPS, 0));
+  }
+
+  @Test
+  public void shellSortRejectsUnsupportedGaps() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    Sorts.shellSort(new int[10], 0, 10, 3);
+  }
+
+  @Test
+  public void sortMatchesArraysSort() throws Exception {
+    for (int size : new int[] {0, 1, 10, 17, 1000, LARGE_TEST_SIZE}) {
+      List<Integer> list = randomList(size);
+      List<Integer> expectedList = new ArrayList<Integer>(list);
+      Collections.sort(expectedList);
+      Sorts.sort(list);
+      assertThat(list, is(expectedList));
+
+      int[] ints = randomInts(size);
+      int[] expectedInts = ints.clone();
+      Arrays.sort(expectedInts);
+      Sorts.sort(ints);
+      assertArrayEquals(expectedInts, ints);
+
+      long[] longs = randomLongs(size);
+      long[] expectedLongs = longs.clone();
+      Arrays.sort(expectedLongs);
+      Sorts.sort(longs);
+      assertArrayEquals(expectedLongs, longs);
+
+      float[] floats = randomFloats(size);
+      float[] expectedFloats = floats.clone();
+      Arrays.sort(expectedFloats);
+      Sorts.sort(floats);
+      assertArrayEquals(expectedFloats, floats, 0.0f);
+
+      double[] doubles = randomDoubles(size);
+      double[] expectedDoubles = doubles.clone();
+      Arrays.sort(expectedDoubles);
+      Sorts.sort(doubles);
+      assertArrayEquals(expectedDoubles, doubles, 0.0d);
+    }
+  }
+
+  @Test
+  public void sortChoosesAlgorithmFromSample() throws Exception {
+    SortDecision decision = Sorts.sort(randomList(SMALL_THRESHOLD));
+    assertThat(decision.getAlgorithm(), is("insertionSort"));
+    assertTrue(Double.isNaN(decision.getSortedness()));
+
+    // Presorted objects are merged as runs.
+    List<Integer> descending = new ArrayList<Integer>(LARGE_TEST_SIZE);
+    for (int i = LARGE_TEST_SIZE; i > 0; i--) {
+      descending.add(i);
+    }
+    decision = Sorts.sort(descending);
+    assertThat(decision.getAlgorithm(), is("timSort"));
+    assertThat(decision.getSortedness(), is(0.0));
+    assertThat(decision.getSize(), is(LARGE_TEST_SIZE));
+    assertTrue(Sorts.validateSorted(descending));
+
+    // Few distinct values are partitioned three ways.
+    List<Keyed> fewUnique = randomKeyedList(LARGE_TEST_SIZE);
+    decision = Sorts.sort(fewUnique);
+    assertThat(decision.getAlgorithm(), is("quickSort"));
+    assertTrue(decision.getDuplicates() > 0.5);
+    assertTrue(Sorts.validateSorted(fewUnique));
+
+    // Large arrays of distinct ints are radix sorted, small ones are not.
+    int[] a = randomInts(LARGE_TEST_SIZE);
+    decision = Sorts.sort(a, 0, 1000);
+    assertThat(decision.getAlgorithm(), is("quickSort"));
+    decision = Sorts.sort(a);
+    assertThat(decision.getAlgorithm(), is("radixSort"));
+    assertThat(decision.getDuplicates(), is(0.0));
+
+    // So are large arrays of few distinct ints.
+    for (int i = 0; i < a.length; i++) {
+      a[i] = rand.nextInt(NUM_KEYS);
+    }
+    decision = Sorts.sort(a);
+    assertThat(decision.getAlgorithm(), is("radixSort"));
+    assertTrue(decision.getDuplicates() > 0.5);
+  }
+
+  @Test
+  public void sortSamplesDoNotAlignWithPeriodicInput() throws Exception {
+    // Evenly spaced samples would see the same four places in every
+    // tooth, and so mistake a sawtooth of distinct values for a few
+    // values repeated.
+    for (int teeth : new int[] {4, Workload.DEFAULT_TEETH, 64}) {
+      int[] a = Workload.sawtooth(teeth).ints(LARGE_TEST_SIZE);
+      int[] expected = a.clone();
+      Arrays.sort(expected);
+      SortDecision decision = Sorts.sort(a);
+      assertThat(decision.getAlgorithm(), is("radixSort"));
+      assertTrue(decision.toString(), decision.getDuplicates() < 0.5);
+      assertTrue(decision.toString(), decision.getSortedness() > 0.9);
+      assertArrayEquals(expected, a);
+    }
+  }
+
+  @Test
+  public void quickSortHandlesPresortedAndDuplicateInput() throws Exception {
+    List<Integer> ascending = new ArrayList<Integer>(LARGE_TEST_SIZE);
+    List<Integer> descending = new ArrayList<Integer>(LARGE_TEST_SIZE);
+    List<Integer> fewUnique = new ArrayList<Integer>(LARGE_TEST_SIZE);
+    int[] organPipe = new int[LARGE_TEST_SIZE];
+    for (int i = 0; i < LARGE_TEST_SIZE; i++) {
+      ascending.add(i);
+      descending.add(LARGE_TEST_SIZE - i);
+      fewUnique.add(rand.nextInt(NUM_KEYS));
+      organPipe[i] = Math.min(i, LARGE_TEST_SIZE - i);
+    }
+    for (List<Integer> list : Arrays.asList(ascending, descending, fewUnique)) {
+      List<Integer> expected = new ArrayList<Integer>(list);
+      Collections.sort(expected);
+      Sorts.quickSort(list);
+      assertEquals(expected, list);
+    }
+    int[] expected = organPipe.clone();
+    Arrays.sort(expected);
+    Sorts.quickSort(organPipe);
+    assertArrayEquals(expected, organPipe);
+    int[] allEqual = new int[LARGE_TEST_SIZE];
+    Sorts.quickSort(allEqual);
+    assertArrayEquals(new int[LARGE_TEST_SIZE], allEqual);
+  }
+
+  @Test
+  public void comparatorListSortsUseComparatorOrder() throws Exception {
+    Comparator<Integer> reverse = Collections.reverseOrder();
+    for (int size : TEST_SIZES) {
+      List<Integer> original = randomList(size);
+      List<Integer> expected = new ArrayList<Integer>(original);
+      Collections.sort(expected, reverse);
+
+      List<Integer> list = new ArrayList<Integer>(original);
+      Sorts.mergeSort(list, reverse);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.iterativeMergeSort(list, reverse);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.parallelMergeSort(list, reverse);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.quickSort(list, reverse);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.heapSort(list, reverse);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.shellSort(list, reverse);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.insertionSort(list, reverse);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.selectionSort(list, reverse);
+      assertEquals(expected, list);
+      list = new ArrayList<Integer>(original);
+      Sorts.bubbleSort(list, reverse);
+      assertEquals(expected, list);
+    }
+  }
+
+  @Test
+  public void nullComparatorUsesNaturalOrder() throws Exception {
+    List<Integer> list = new LinkedList<Integer>(randomList(1000));
+    List<Integer> expected = new ArrayList<Integer>(list);
+    Collections.sort(expected);
+    Sorts.quickSort(list, null);
+    assertEquals(expected, list);
+  }
+
+  @Test
+  public void objectArrayRangeSortsInPlace() throws Exception {
+    Integer[] original = randomList(100).toArray(new Integer[0]);
+    Integer[] expected = original.clone();
+    Arrays.sort(expected, RANGE_FROM, RANGE_TO);
+    Comparator<Integer> natural = null;
+
+    Integer[] a = original.clone();
+    Sorts.mergeSort(a, RANGE_FROM, RANGE_TO, natural);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.iterativeMergeSort(a, RANGE_FROM, RANGE_TO, natural, new Object[RANGE_TO]);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.parallelMergeSort(a, RANGE_FROM, RANGE_TO, natural,
+			    ForkJoinPool.commonPool(), 2);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.quickSort(a, RANGE_FROM, RANGE_TO, natural);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.heapSort(a, RANGE_FROM, RANGE_TO, natural);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.shellSort(a, RANGE_FROM, RANGE_TO, natural);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.insertionSort(a, RANGE_FROM, RANGE_TO, natural);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.selectionSort(a, RANGE_FROM, RANGE_TO, natural);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.bubbleSort(a, RANGE_FROM, RANGE_TO, natural);
+    assertArrayEquals(expected, a);
+  }
+
+  @Test
+  public void comparatorSortsRecordsByField() throws Exception {
+    Keyed[] a = randomKeyedList(1000).toArray(new Keyed[0]);
+    Sorts.mergeSort(a, new Comparator<Keyed>() {
+      public int compare(Keyed k1, Keyed k2) {
+	return Integer.compare(k1.key, k2.key);
+      }
+    });
+    assertSortedAndStable(Arrays.asList(a));
+  }
+
+  @Test
+  public void timSortProducesSortedPermutation() throws Exception {
+    List<List<Integer>> inputs = new ArrayList<List<Integer>>();
+    for (int size : TEST_SIZES) {
+      inputs.add(randomList(size));
+    }
+    // Inputs with existing order: sorted with appended elements, organ
+    // pipe, and alternating ascending and descending runs.
+    List<Integer> appended = randomList(PARALLEL_TEST_SIZE);
+    Collections.sort(appended);
+    appended.addAll(randomList(100));
+    inputs.add(appended);
+    List<Integer> organPipe = new ArrayList<Integer>();
+    for (int i = 0; i < PARALLEL_TEST_SIZE; i++) {
+      organPipe.add(Math.min(i, PARALLEL_TEST_SIZE - i));
+    }
+    inputs.add(organPipe);
+    List<Integer> sawtooth = new ArrayList<Integer>();
+    for (int i = 0; i < PARALLEL_TEST_SIZE; i++) {
+      int run = i / 100;
+      sawtooth.add(((run % 2) == 0) ? (i % 100) : (100 - (i % 100)));
+    }
+    inputs.add(sawtooth);
+
+    for (List<Integer> original : inputs) {
+      List<Integer> expected = new ArrayList<Integer>(original);
+      Collections.sort(expected);
+      List<Integer> list = new ArrayList<Integer>(original);
+      Sorts.timSort(list);
+      assertEquals(expected, list);
+    }
+  }
+
+  @Test
+  public void timSortIsStable() throws Exception {
+    List<Keyed> list = randomKeyedList(PARALLEL_TEST_SIZE);
+    Sorts.timSort(list);
+    assertSortedAndStable(list);
+
+    // Descending runs with equal keys must not be reordered by reversing.
+    list = new ArrayList<Keyed>();
+    for (int i = 0; i < PARALLEL_TEST_SIZE; i++) {
+      list.add(new Keyed(NUM_KEYS - ((i * NUM_KEYS) / PARALLEL_TEST_SIZE), i));
+    }
+    Sorts.timSort(list);
+    assertSortedAndStable(list);
+  }
+
+  @Test
+  public void timSortIsLinearOnNearlySortedInput() throws Exception {
+    final int[] comparisons = new int[1];
+    Comparator<Integer> counting = new Comparator<Integer>() {
+      public int compare(Integer i1, Integer i2) {
+	comparisons[0]++;
+	return i1.compareTo(i2);
+      }
+    };
+    List<Integer> list = new ArrayList<Integer>();
+    for (int i = 0; i < LARGE_TEST_SIZE; i++) {
+      list.add(i);
+    }
+    list.addAll(randomList(NUM_KEYS));
+    Sorts.timSort(list, counting);
+    assertTrue(Sorts.validateSorted(list));
+    assertThat(comparisons[0] < 2 * LARGE_TEST_SIZE, is(true));
+
+    // A strictly descending list is a single run, which is reversed.
+    comparisons[0] = 0;
+    list.clear();
+    for (int i = LARGE_TEST_SIZE; i > 0; i--) {
+      list.add(i);
+    }
+    Sorts.timSort(list, counting);
+    assertTrue(Sorts.validateSorted(list));
+    assertThat(comparisons[0] < 2 * LARGE_TEST_SIZE, is(true));
+  }
+
+  @Test
+  public void timSortRangeSortsInPlace() throws Exception {
+    Integer[] original = randomList(100).toArray(new Integer[0]);
+    Integer[] expected = original.clone();
+    Arrays.sort(expected, RANGE_FROM, RANGE_TO);
+    Integer[] a = original.clone();
+    Sorts.timSort(a, RANGE_FROM, RANGE_TO, null);
+    assertArrayEquals(expected, a);
+  }
+
+  @Test
+  public void parallelSampleSortProducesSortedPermutation() throws Exception {
+    List<Integer> original = randomList(PARALLEL_TEST_SIZE);
+    List<Integer> expected = new ArrayList<Integer>(original);
+    Collections.sort(expected);
+    List<Integer> list = new ArrayList<Integer>(original);
+    Sorts.parallelSampleSort(list);
+    assertEquals(expected, list);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      Integer[] a = original.toArray(new Integer[0]);
+      Sorts.parallelSampleSort(a, 0, a.length, null, pool, SMALL_THRESHOLD);
+      assertEquals(expected, Arrays.asList(a));
+
+      int[] ints = randomInts(PARALLEL_TEST_SIZE);
+      int[] expectedInts = ints.clone();
+      Arrays.sort(expectedInts);
+      Sorts.parallelSampleSort(ints, 0, ints.length, pool, SMALL_THRESHOLD);
+      assertArrayEquals(expectedInts, ints);
+
+      long[] longs = randomLongs(PARALLEL_TEST_SIZE);
+      long[] expectedLongs = longs.clone();
+      Arrays.sort(expectedLongs);
+      Sorts.parallelSampleSort(longs, 0, longs.length, pool, SMALL_THRESHOLD);
+      assertArrayEquals(expectedLongs, longs);
+
+      // Few distinct values: most elements go to the equality buckets.
+      for (int i = 0; i < ints.length; i++) {
+	ints[i] = rand.nextInt(NUM_KEYS);
+      }
+      expectedInts = ints.clone();
+      Arrays.sort(expectedInts);
+      Sorts.parallelSampleSort(ints, 0, ints.length, pool, SMALL_THRESHOLD);
+      assertArrayEquals(expectedInts, ints);
+
+      for (int size : TEST_SIZES) {
+	int from = Math.min(RANGE_FROM, size);
+	ints = randomInts(size);
+	expectedInts = ints.clone();
+	Arrays.sort(expectedInts, from, size);
+	Sorts.parallelSampleSort(ints, from, size, pool, 1);
+	assertArrayEquals(expectedInts, ints);
+      }
+    } finally {
+      pool.shutdown();
+    }
+    int[] ints = randomInts(PARALLEL_TEST_SIZE);
+    int[] expectedInts = ints.clone();
+    Arrays.sort(expectedInts);
+    Sorts.parallelSampleSort(ints);
+    assertArrayEquals(expectedInts, ints);
+  }
+
+  @Test
+  public void parallelSampleSortIsStable() throws Exception {
+    Keyed[] a = randomKeyedList(PARALLEL_TEST_SIZE).toArray(new Keyed[0]);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      Sorts.parallelSampleSort(a, 0, a.length, null, pool, SMALL_THRESHOLD);
+    } finally {
+      pool.shutdown();
+    }
+    assertSortedAndStable(Arrays.asList(a));
+  }
+
+  @Test
+  public void parallelSampleSortRejectsBadThreshold() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    Sorts.parallelSampleSort(new int[10], 0, 10, ForkJoinPool.commonPool(), 0);
+  }
+
+  @Test
+  public void selectFindsKthSmallest() throws Exception {
+    for (int size : TEST_SIZES) {
+      if (size == 0) {
+	continue;
+      }
+      List<Integer> list = randomList(size);
+      List<Integer> original = new ArrayList<Integer>(list);
+      List<Integer> sorted = new ArrayList<Integer>(list);
+      Collections.sort(sorted);
+      for (int k : new int[] {0, size / 2, size - 1}) {
+	assertThat(Sorts.select(list, k), is(sorted.get(k)));
+      }
+      assertEquals(original, list);
+    }
+  }
+
+  @Test
+  public void selectPartitionsArrayAroundK() throws Exception {
+    Integer[] a = randomList(LARGE_TEST_SIZE).toArray(new Integer[0]);
+    Integer[] sorted = a.clone();
+    Arrays.sort(sorted);
+    int k = LARGE_TEST_SIZE / 3;
+    assertThat(Sorts.select(a, 0, a.length, k, null), is(sorted[k]));
+    for (int i = 0; i < a.length; i++) {
+      assertTrue((i < k) ? (a[i] <= a[k]) : (a[i] >= a[k]));
+    }
+  }
+
+  @Test
+  public void selectIsLinearOnAdversarialInput() throws Exception {
+    // Organ pipe and sorted inputs with few distinct values, on which
+    // poor pivots would make selection quadratic.
+    final int[] comparisons = new int[1];
+    Comparator<Integer> counting = new Comparator<Integer>() {
+      public int compare(Integer i1, Integer i2) {
+	comparisons[0]++;
+	return i1.compareTo(i2);
+      }
+    };
+    List<Integer> organPipe = new ArrayList<Integer>();
+    for (int i = 0; i < LARGE_TEST_SIZE; i++) {
+      organPipe.add(Math.min(i, LARGE_TEST_SIZE - i));
+    }
+    List<Integer> sorted = new ArrayList<Integer>(organPipe);
+    Collections.sort(sorted);
+    for (int k : new int[] {0, LARGE_TEST_SIZE / 2, LARGE_TEST_SIZE - 1}) {
+      comparisons[0] = 0;
+      assertThat(Sorts.select(organPipe, k, counting), is(sorted.get(k)));
+      assertThat(comparisons[0] < 20 * LARGE_TEST_SIZE, is(true));
+    }
+  }
+
+  @Test
+  public void partialSortSortsSmallestK() throws Exception {
+    List<Integer> list = randomList(1000);
+    List<Integer> sorted = new ArrayList<Integer>(list);
+    Collections.sort(sorted);
+    for (int k : new int[] {0, 1, 100, 1000}) {
+      List<Integer> partial = new ArrayList<Integer>(list);
+      Sorts.partialSort(partial, k);
+      assertEquals(sorted.subList(0, k), partial.subList(0, k));
+      List<Integer> rest = new ArrayList<Integer>(partial.subList(k, partial.size()));
+      Collections.sort(rest);
+      assertEquals(sorted.subList(k, sorted.size()), rest);
+    }
+  }
+
+  @Test
+  public void topKKeepsSmallestFromStream() throws Exception {
+    List<Integer> list = randomList(LARGE_TEST_SIZE);
+    List<Integer> sorted = new ArrayList<Integer>(list);
+    Collections.sort(sorted);
+    assertEquals(sorted.subList(0, 100), Sorts.topK(list, 100));
+    assertEquals(sorted.subList(0, 0), Sorts.topK(list, 0));
+
+    // Largest, with a reversed comparator.
+    List<Integer> largest = Sorts.topK(list.iterator(), 10,
+				       Collections.<Integer>reverseOrder());
+    Collections.reverse(sorted);
+    assertEquals(sorted.subList(0, 10), largest);
+
+    // Fewer elements than k.
+    List<Integer> small = randomList(5);
+    List<Integer> expected = new ArrayList<Integer>(small);
+    Collections.sort(expected);
+    assertEquals(expected, Sorts.topK(small, 10));
+  }
+
+  @Test
+  public void selectRejectsBadIndex() throws Exception {
+    thrown.expect(IndexOutOfBoundsException.class);
+    Sorts.select(randomList(10), 10);
+  }
+
+  private static void assertSortingPermutation(long[] keys, int[] perm) {
+    assertThat(perm.length, is(keys.length));
+    boolean[] seen = new boolean[keys.length];
+    for (int i = 0; i < perm.length; i++) {
+      assertFalse(seen[perm[i]]);
+      seen[perm[i]] = true;
+      if (i > 0) {
+	long prev = keys[perm[i - 1]];
+	assertTrue(prev <= keys[perm[i]]);
+	if (prev == keys[perm[i]]) {
+	  assertTrue(perm[i - 1] < perm[i]);  // Stable.
+	}
+      }
+    }
+  }
+
+  @Test
+  public void argsortReturnsStableSortingPermutation() throws Exception {
+    for (int size : TEST_SIZES) {
+      // Full range keys are sorted with a separate permutation array.
+      long[] keys = randomLongs(size);
+      assertSortingPermutation(keys, Sorts.argsort(keys));
+
+      // Narrow keys are packed with their index into one long.
+      for (int i = 0; i < size; i++) {
+	keys[i] = Long.MAX_VALUE - rand.nextInt(NUM_KEYS);
+      }
+      long[] copy = keys.clone();
+      assertSortingPermutation(keys, Sorts.argsort(keys));
+      assertArrayEquals(copy, keys);
+    }
+  }
+
+  @Test
+  public void sortByLongKeyIsStable() throws Exception {
+    ToLongFunction<Keyed> byKey = new ToLongFunction<Keyed>() {
+      public long applyAsLong(Keyed keyed) {
+	return keyed.key;
+      }
+    };
+    List<Keyed> list = randomKeyedList(PARALLEL_TEST_SIZE);
+    Sorts.sortByLongKey(list, byKey);
+    assertSortedAndStable(list);
+
+    List<Keyed> linked = new LinkedList<Keyed>(randomKeyedList(1000));
+    Sorts.sortByLongKey(linked, byKey);
+    assertSortedAndStable(linked);
+  }
+
+  @Test
+  public void sortByDoubleKeyMatchesDoubleCompare() throws Exception {
+    List<Double> list = new ArrayList<Double>();
+    for (int i = 0; i < 1000; i++) {
+      list.add(rand.nextGaussian() * 1e6);
+    }
+    list.addAll(Arrays.asList(Double.NaN, -0.0, 0.0, Double.NEGATIVE_INFINITY,
+			      Double.POSITIVE_INFINITY, -Double.MIN_VALUE,
+			      Double.MAX_VALUE, -0.0));
+    Collections.shuffle(list, rand);
+    List<Double> expected = new ArrayList<Double>(list);
+    Collections.sort(expected);
+
+    Sorts.sortByDoubleKey(list, new ToDoubleFunction<Double>() {
+      public double applyAsDouble(Double d) {
+	return d;
+      }
+    });
+    assertEquals(expected, list);
+  }
+
+  @Test
+  public void countingSortsMatchArraysSort() throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (int size : new int[] {0, 1, 2, 3, 10, 100, 1000, PARALLEL_TEST_SIZE}) {
+	// Narrow ranges are counted, wide ones fall back to other sorts.
+	for (int range : new int[] {1, NUM_KEYS, 1000, Integer.MAX_VALUE}) {
+	  int[] original = new int[size];
+	  for (int i = 0; i < size; i++) {
+	    original[i] = rand.nextInt(range) - (range / 2);
+	  }
+	  int[] expected = original.clone();
+	  Arrays.sort(expected);
+
+	  int[] a = original.clone();
+	  Sorts.countingSort(a);
+	  assertArrayEquals(expected, a);
+
+	  a = original.clone();
+	  Sorts.parallelCountingSort(a, 0, size, pool, SMALL_THRESHOLD);
+	  assertArrayEquals(expected, a);
+
+	  if (range <= 1000) {
+	    int min = -(range / 2) - 1;
+	    int max = min + range + 1;
+	    a = original.clone();
+	    Sorts.countingSort(a, 0, size, min, max);
+	    assertArrayEquals(expected, a);
+
+	    a = original.clone();
+	    Sorts.parallelCountingSort(a, 0, size, min, max, pool, SMALL_THRESHOLD);
+	    assertArrayEquals(expected, a);
+	  }
+	}
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    int[] extremes = {Integer.MAX_VALUE, 0, Integer.MIN_VALUE, Integer.MAX_VALUE};
+    Sorts.countingSort(extremes);
+    assertArrayEquals(new int[] {Integer.MIN_VALUE, 0, Integer.MAX_VALUE,
+				 Integer.MAX_VALUE}, extremes);
+  }
+
+  @Test
+  public void countingSortRejectsValueOutOfRange() throws Exception {
+    int[] a = {5, 3, 7, 2};
+    try {
+      Sorts.countingSort(a, 0, a.length, 3, 7);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertArrayEquals(new int[] {5, 3, 7, 2}, a);
+    }
+    // A value far below "min" must not wrap around into the range.
+    a[3] = Integer.MIN_VALUE;
+    thrown.expect(IllegalArgumentException.class);
+    Sorts.countingSort(a, 0, a.length, 1 << 30, (1 << 30) + 10);
+  }
+
+  @Test
+  public void countingSortByKeyIsStable() throws Exception {
+    ToIntFunction<Keyed> byKey = new ToIntFunction<Keyed>() {
+      public int applyAsInt(Keyed keyed) {
+	return keyed.key;
+      }
+    };
+    List<Keyed> list = randomKeyedList(PARALLEL_TEST_SIZE);
+    Sorts.countingSort(list, byKey);
+    assertSortedAndStable(list);
+
+    List<Keyed> linked = new LinkedList<Keyed>(randomKeyedList(1000));
+    Sorts.countingSort(linked, byKey, 0, NUM_KEYS - 1);
+    assertSortedAndStable(linked);
+
+    // Keys spread wider than the list are radix sorted, still stably.
+    List<Keyed> wide = new ArrayList<Keyed>();
+    for (int i = 0; i < 1000; i++) {
+      wide.add(new Keyed(rand.nextInt(NUM_KEYS) * 1000000, i));
+    }
+    Sorts.countingSort(wide, byKey);
+    assertSortedAndStable(wide);
+  }
+
+  @Test
+  public void countRunsMatchesSortedOrder() throws Exception {
+    for (int range : new int[] {NUM_KEYS, Integer.MAX_VALUE}) {
+      int[] a = new int[1000];
+      for (int i = 0; i < a.length; i++) {
+	a[i] = rand.nextInt(range);
+      }
+      int[] original = a.clone();
+      int[] expected = a.clone();
+      Arrays.sort(expected);
+
+      RunLengths runs = Sorts.countRuns(a, 0, a.length);
+      assertArrayEquals(original, a);
+      assertThat(runs.getSize(), is(a.length));
+      int index = 0;
+      for (int run = 0; run < runs.getNumRuns(); run++) {
+	if (run > 0) {
+	  assertTrue(runs.getValue(run - 1) < runs.getValue(run));
+	}
+	for (int i = 0; i < runs.getCount(run); i++) {
+	  assertThat(expected[index++], is(runs.getValue(run)));
+	}
+      }
+      assertThat(index, is(a.length));
+
+      int[] written = new int[a.length + 1];
+      runs.writeTo(written, 1);
+      assertArrayEquals(expected, Arrays.copyOfRange(written, 1, written.length));
+    }
+
+    RunLengths runs = Sorts.countRuns(new int[] {4, 2, 4, 4}, 0, 4, 0, 10);
+    assertThat(runs.toString(), is("[2x1, 4x3]"));
+  }
+
+  private String[] randomStrings(int size) {
+    String[] prefixes = {"", "a", "http://example.com/", "http://example.com/path/",
+			 "\u00e9\u4e2d", "\uffff"};
+    String[] a = new String[size];
+    for (int i = 0; i < size; i++) {
+      StringBuilder sb = new StringBuilder(prefixes[rand.nextInt(prefixes.length)]);
+      int length = rand.nextInt(6);
+      for (int j = 0; j < length; j++) {
+	// Mostly ASCII, with some chars whose high byte is not zero.
+	sb.append((char) ((rand.nextInt(4) == 0) ? rand.nextInt(0x10000)
+			  : 'a' + rand.nextInt(4)));
+      }
+      a[i] = sb.toString();
+    }
+    return a;
+  }
+
+  @Test
+  public void stringSortsMatchArraysSort() throws Exception {
+    for (int size : new int[] {0, 1, 2, 3, 10, 100, 1000, PARALLEL_TEST_SIZE}) {
+      String[] original = randomStrings(size);
+      String[] expected = original.clone();
+      Arrays.sort(expected);
+
+      String[] a = original.clone();
+      Sorts.radixSort(a);
+      assertArrayEquals(expected, a);
+
+      a = original.clone();
+      Sorts.multikeyQuickSort(a);
+      assertArrayEquals(expected, a);
+
+      a = original.clone();
+      Sorts.lcpMergeSort(a);
+      assertArrayEquals(expected, a);
+    }
+
+    // Ranges, and lists.
+    String[] original = randomStrings(100);
+    String[] expected = original.clone();
+    Arrays.sort(expected, RANGE_FROM, RANGE_TO);
+    String[] a = original.clone();
+    Sorts.radixSort(a, RANGE_FROM, RANGE_TO);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.multikeyQuickSort(a, RANGE_FROM, RANGE_TO);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.lcpMergeSort(a, RANGE_FROM, RANGE_TO);
+    assertArrayEquals(expected, a);
+
+    List<String> sorted = new ArrayList<String>(Arrays.asList(original));
+    Collections.sort(sorted);
+    List<String> list = new LinkedList<String>(Arrays.asList(original));
+    Sorts.radixSort(list);
+    assertEquals(sorted, list);
+    list = new ArrayList<String>(Arrays.asList(original));
+    Sorts.multikeyQuickSort(list);
+    assertEquals(sorted, list);
+    list = new ArrayList<String>(Arrays.asList(original));
+    Sorts.lcpMergeSort(list);
+    assertEquals(sorted, list);
+  }
+
+  @Test
+  public void stringSortsHandleLongSharedPrefixes() throws Exception {
+    // Deep enough that recursing once per char would overflow the stack.
+    char[] chars = new char[100000];
+    Arrays.fill(chars, 'x');
+    String prefix = new String(chars);
+    String[] original = new String[1000];
+    for (int i = 0; i < original.length; i++) {
+      original[i] = prefix + rand.nextInt(NUM_KEYS);
+    }
+    String[] expected = original.clone();
+    Arrays.sort(expected);
+
+    String[] a = original.clone();
+    Sorts.radixSort(a);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.multikeyQuickSort(a);
+    assertArrayEquals(expected, a);
+    a = original.clone();
+    Sorts.lcpMergeSort(a);
+    assertArrayEquals(expected, a);
+  }
+
+  @Test
+  public void stableStringSortsKeepEqualStringsInOrder() throws Exception {
+    String[] original = randomStrings(PARALLEL_TEST_SIZE);
+    for (int i = 0; i < original.length; i++) {
+      original[i] = new String(original[i]);  // Distinct, even if equal.
+    }
+    String[] expected = original.clone();
+    Arrays.sort(expected);  // Stable.
+
+    String[] a = original.clone();
+    Sorts.radixSort(a);
+    for (int i = 0; i < a.length; i++) {
+      assertSame(expected[i], a[i]);
+    }
+    a = original.clone();
+    Sorts.lcpMergeSort(a);
+    for (int i = 0; i < a.length; i++) {
+      assertSame(expected[i], a[i]);
+    }
+  }
+
+}
@@ -0,0 +1,146 @@
+package io.seansullivan.algorithms;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import io.seansullivan.algorithms.Workload.Distribution;
+
+
+/**
+ * Tests for Workload.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ */
+public class WorkloadTest {
+
+  private static final long SEED = 20160101L;
+  private static final int SIZE = 10000;
+  private static final int RECORD_SIZE = 24;
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static int descents(long[] a) {
+    int descents = 0;
+    for (int i = 1; i < a.length; i++) {
+      if (a[i - 1] > a[i]) {
+	descents++;
+      }
+    }
+    return descents;
+  }
+
+  @Test
+  public void sameSeedGeneratesSameKeys() throws Exception {
+    for (Distribution distribution : Distribution.values()) {
+      long[] keys = Workload.of(distribution, SEED).longs(SIZE);
+      assertArrayEquals(keys, Workload.of(distribution, SEED).longs(SIZE));
+      for (long key : keys) {
+	assertTrue((key >= 0) && (key <= Integer.MAX_VALUE));
+      }
+    }
+    assertThat(Workload.of(Distribution.RANDOM, SEED).longs(SIZE),
+	       not(Workload.of(Distribution.RANDOM, SEED + 1).longs(SIZE)));
+  }
+
+  @Test
+  public void distributionsHaveTheirShape() throws Exception {
+    long[] sorted = Workload.of(Distribution.SORTED, SEED).longs(SIZE);
+    assertThat(descents(sorted), is(0));
+    long[] reversed = Workload.of(Distribution.REVERSED, SEED).longs(SIZE);
+    assertThat(descents(reversed), is(SIZE - 1));
+    long[] organPipe = Workload.of(Distribution.ORGAN_PIPE, SEED).longs(SIZE);
+    assertThat(descents(organPipe), is(SIZE / 2 - 1));
+    assertThat(descents(Workload.sawtooth(10).longs(SIZE)), is(9));
+
+    Set<Long> distinct = new HashSet<Long>();
+    for (long key : Workload.fewUnique(SEED, 5).longs(SIZE)) {
+      distinct.add(key);
+    }
+    assertThat(distinct.size(), is(5));
+
+    // Each swap moves at most two keys out of place.
+    long[] nearlySorted = Workload.nearlySorted(SEED, 10).longs(SIZE);
+    int moved = 0;
+    for (int i = 0; i < SIZE; i++) {
+      if (nearlySorted[i] != i) {
+	moved++;
+      }
+    }
+    assertTrue((moved > 0) && (moved <= 20));
+  }
+
+  @Test
+  public void zipfFavorsSmallKeys() throws Exception {
+    int[] counts = new int[100];
+    for (int key : Workload.zipf(SEED, counts.length, 1.0).ints(SIZE * 10)) {
+      counts[key]++;
+    }
+    // Key 0 is twice as common as key 1, and ten times as common as key 9.
+    assertThat(Math.round((double) counts[0] / counts[1]), is(2L));
+    assertThat(Math.round((double) counts[0] / counts[9]), is(10L));
+    assertTrue(counts[99] > 0);
+  }
+
+  @Test
+  public void stringsSortLikeKeys() throws Exception {
+    Workload workload = Workload.of(Distribution.RANDOM, SEED);
+    List<String> strings = workload.strings(SIZE);
+    long[] keys = workload.longs(SIZE);
+    for (int i = 0; i < SIZE; i++) {
+      assertThat(Long.parseLong(strings.get(i)), is(keys[i]));
+    }
+    List<String> sorted = new ArrayList<String>(strings);
+    Collections.sort(sorted);
+    Sorts.radixSort(keys);
+    for (int i = 0; i < SIZE; i++) {
+      assertThat(Long.parseLong(sorted.get(i)), is(keys[i]));
+    }
+  }
+
+  @Test
+  public void streamedFilesMatchInMemoryData() throws Exception {
+    Workload workload = Workload.of(Distribution.NEARLY_SORTED, SEED);
+    File lines = folder.newFile("lines.txt");
+    workload.writeLines(lines, SIZE);
+    assertThat(Files.readAllLines(lines.toPath(), StandardCharsets.UTF_8),
+	       is(workload.strings(SIZE)));
+
+    File records = folder.newFile("records.bin");
+    workload.writeRecords(records, SIZE, RECORD_SIZE);
+    ByteBuffer expected = workload.records(SIZE, RECORD_SIZE);
+    assertThat(ByteBuffer.wrap(Files.readAllBytes(records.toPath())), is(expected));
+
+    // The key, then the position, in big-endian order.
+    long[] keys = workload.longs(SIZE);
+    for (int i = 0; i < SIZE; i++) {
+      assertThat(expected.getLong(i * RECORD_SIZE), is(keys[i]));
+      assertThat(expected.getLong(i * RECORD_SIZE + 8), is((long) i));
+    }
+  }
+
+  @Test
+  public void recordShorterThanKeyThrowsException() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    Workload.of(Distribution.RANDOM, SEED).records(10, Workload.RECORD_KEY_LENGTH - 1);
+  }
+
+}
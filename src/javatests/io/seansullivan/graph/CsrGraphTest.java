@@ -0,0 +1,214 @@
+package io.seansullivan.graph;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+
+/**
+ * Tests for the CsrGraph snapshot of an AdjacencyList.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ */
+public class CsrGraphTest {
+
+  private static final long SEED = 20160101L;
+  private static final int NUM_VERTICES = 6;
+  private static final int NUM_EDGES = 8;
+  private static final int RANDOM_NUM_VERTICES = 500;
+  private static final int RANDOM_NUM_EDGES = 2000;
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  private Vertex[] vertex;
+  private UndirectedAdjacencyList adjList;
+  private CsrGraph graph;
+
+  /**
+   * The graph of UndirectedAdjacencyListTest, with vertex ids ten times
+   * larger, so that they are not the vertex numbers, and weights.
+   */
+  @Before
+  public void setUp() throws Exception {
+    vertex = new Vertex[NUM_VERTICES + 1];
+    for (int i = 1; i <= NUM_VERTICES; i++) {
+      vertex[i] = new Vertex(10 * i);
+    }
+    adjList = new UndirectedAdjacencyList();
+    adjList.addEdge(new UndirectedEdge(vertex[1], vertex[2], 1.5f));
+    adjList.addEdge(new UndirectedEdge(vertex[1], vertex[3], 2.5f));
+    adjList.addEdge(new UndirectedEdge(vertex[2], vertex[3], 3.5f));
+    adjList.addEdge(new UndirectedEdge(vertex[4], vertex[2], 4.5f));
+    adjList.addEdge(new UndirectedEdge(vertex[2], vertex[5], 5.5f));
+    adjList.addEdge(new UndirectedEdge(vertex[3], vertex[5], 6.5f));
+    adjList.addEdge(new UndirectedEdge(vertex[6], vertex[4], 7.5f));
+    adjList.addEdge(new UndirectedEdge(vertex[5], vertex[6], 8.5f));
+    graph = new CsrGraph(adjList);
+  }
+
+  @Test
+  public void sizesMatchAdjacencyList() throws Exception {
+    assertFalse(graph.isDirected());
+    assertEquals(NUM_VERTICES, graph.getNumVertices());
+    assertEquals(NUM_EDGES, graph.getNumEdges());
+    assertEquals(2 * NUM_EDGES, graph.getNumArcs());
+    assertEquals(adjList.getTotalEdgeCost(), graph.getTotalEdgeCost(), 0.0f);
+  }
+
+  @Test
+  public void verticesAreNumberedInOrderOfId() throws Exception {
+    for (int i = 1; i <= NUM_VERTICES; i++) {
+      assertEquals(i - 1, graph.indexOf(vertex[i].getId()));
+      assertEquals(vertex[i].getId(), graph.getId(i - 1));
+    }
+    assertEquals(-1, graph.indexOf(15));
+    assertEquals(-1, graph.indexOf(0));
+    thrown.expect(IndexOutOfBoundsException.class);
+    graph.getId(NUM_VERTICES);
+  }
+
+  @Test
+  public void vertexDegreeMeasuresEdgesIncident() throws Exception {
+    for (int i = 1; i <= NUM_VERTICES; i++) {
+      assertEquals(adjList.degree(vertex[i]), graph.degree(vertex[i]));
+    }
+    assertEquals(2, graph.degree(0));
+    assertEquals(4, graph.degree(1));
+    thrown.expect(IllegalArgumentException.class);
+    graph.degree(new Vertex(15));
+  }
+
+  @Test
+  public void arcsAreSortedByTargetWithTheirWeights() throws Exception {
+    // Vertex 2 (number 1) is joined to 1, 3, 4 and 5.
+    int v = graph.indexOf(vertex[2].getId());
+    int arc = graph.getFirstArc(v);
+    assertEquals(arc + 4, graph.getEndArc(v));
+    int[] expectedTargets = {0, 2, 3, 4};
+    float[] expectedWeights = {1.5f, 3.5f, 4.5f, 5.5f};
+    for (int k = 0; k < 4; k++) {
+      assertEquals(expectedTargets[k], graph.getTarget(arc + k));
+      assertEquals(expectedWeights[k], graph.getWeight(arc + k), 0.0f);
+    }
+
+    // Both arcs of an undirected edge carry its weight.
+    assertEquals(7.5f, graph.getWeight(graph.findArc(3, 5)), 0.0f);
+    assertEquals(7.5f, graph.getWeight(graph.findArc(5, 3)), 0.0f);
+    assertEquals(-1, graph.findArc(0, 5));
+  }
+
+  @Test
+  public void breadthFirstSeachExploresAllReachableVertices() throws Exception {
+    assertTrue(graph.isConnected());
+    int[] order = graph.breadthFirstSearch();
+    assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5}, order);
+    assertArrayEquals(new int[] {5, 3, 4, 1, 2, 0}, graph.breadthFirstSearch(5));
+
+    UndirectedAdjacencyList adjList2 = new UndirectedAdjacencyList();
+    adjList2.addEdge(new UndirectedEdge(vertex[1], vertex[2]));
+    adjList2.addEdge(new UndirectedEdge(vertex[1], vertex[3]));
+    adjList2.addEdge(new UndirectedEdge(vertex[4], vertex[6]));
+    adjList2.addEdge(new UndirectedEdge(vertex[5], vertex[6]));
+    CsrGraph graph2 = new CsrGraph(adjList2);
+    assertFalse(graph2.isConnected());
+    assertArrayEquals(new int[] {0, 1, 2}, graph2.breadthFirstSearch());
+  }
+
+  @Test
+  public void directedGraphStoresOneArcPerEdge() throws Exception {
+    DirectedAdjacencyList directed = new DirectedAdjacencyList();
+    directed.addDirectedEdge(new DirectedEdge(vertex[1], vertex[2], 1.0f));
+    directed.addDirectedEdge(new DirectedEdge(vertex[2], vertex[3], 2.0f));
+    directed.addDirectedEdge(new DirectedEdge(vertex[3], vertex[3], 3.0f));
+    CsrGraph graph2 = new CsrGraph(directed);
+    assertTrue(graph2.isDirected());
+    assertEquals(3, graph2.getNumArcs());
+    assertEquals(6.0f, graph2.getTotalEdgeCost(), 0.0f);
+    assertEquals(1, graph2.degree(0));
+    assertEquals(1, graph2.degree(2));  // The loop.
+    assertEquals(-1, graph2.findArc(1, 0));
+    assertEquals(2.0f, graph2.getWeight(graph2.findArc(1, 2)), 0.0f);
+    assertTrue(graph2.isConnected());
+    assertArrayEquals(new int[] {1, 2}, graph2.breadthFirstSearch(1));
+  }
+
+  @Test
+  public void parallelEdgesThrowException() throws Exception {
+    // AdjacencyList keeps both in its list of edges, but one in its
+    // adjacency map, so the snapshot could not match both.
+    adjList.addEdge(new UndirectedEdge(vertex[5], vertex[3], 9.5f));
+    assertEquals(NUM_EDGES + 1, adjList.getNumEdges());
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Parallel edges");
+    new CsrGraph(adjList);
+  }
+
+  @Test
+  public void parallelDirectedEdgesThrowException() throws Exception {
+    DirectedAdjacencyList directed = new DirectedAdjacencyList();
+    directed.addDirectedEdge(new DirectedEdge(vertex[1], vertex[2]));
+    directed.addDirectedEdge(new DirectedEdge(vertex[2], vertex[1]));
+    directed.addDirectedEdge(new DirectedEdge(vertex[3], vertex[3]));
+    assertEquals(3, new CsrGraph(directed).getNumArcs());  // Opposite arcs.
+    directed.addDirectedEdge(new DirectedEdge(vertex[3], vertex[3], 2.0f));
+    thrown.expect(IllegalArgumentException.class);
+    new CsrGraph(directed);
+  }
+
+  @Test
+  public void isolatedVerticesAreNumbered() throws Exception {
+    adjList.addVertex(new Vertex(5));
+    graph = new CsrGraph(adjList);
+    assertEquals(NUM_VERTICES + 1, graph.getNumVertices());
+    assertEquals(0, graph.indexOf(5));
+    assertEquals(0, graph.degree(0));
+    assertFalse(graph.isConnected());
+  }
+
+  @Test
+  public void randomGraphMatchesAdjacencyList() throws Exception {
+    Random rand = new Random(SEED);
+    UndirectedAdjacencyList random = new UndirectedAdjacencyList();
+    Set<UndirectedEdge> added = new HashSet<UndirectedEdge>();
+    while (added.size() < RANDOM_NUM_EDGES) {
+      UndirectedEdge edge = new UndirectedEdge(
+	  new Vertex(rand.nextInt(RANDOM_NUM_VERTICES) * 3),
+	  new Vertex(rand.nextInt(RANDOM_NUM_VERTICES) * 3), rand.nextFloat());
+      if (added.add(edge)) {
+	random.addEdge(edge);
+      }
+    }
+    CsrGraph snapshot = new CsrGraph(random);
+    assertEquals(random.getVertices().size(), snapshot.getNumVertices());
+    assertEquals(random.getTotalEdgeCost(), snapshot.getTotalEdgeCost(), 0.0f);
+    for (Vertex v : random.getVertices()) {
+      assertEquals(random.degree(v), snapshot.degree(v));
+    }
+    for (Edge edge : random.getEdges()) {
+      int from = snapshot.indexOf(edge.getFirst().getId());
+      int to = snapshot.indexOf(edge.getSecond().getId());
+      assertThat(snapshot.getWeight(snapshot.findArc(from, to)), is(edge.getWeight()));
+      assertThat(snapshot.getWeight(snapshot.findArc(to, from)), is(edge.getWeight()));
+    }
+
+    Set<Integer> reachable = new HashSet<Integer>();
+    for (int vertex : snapshot.breadthFirstSearch()) {
+      reachable.add(snapshot.getId(vertex));
+    }
+    Set<Integer> expected = new HashSet<Integer>();
+    for (Vertex v : random.breadthFirstSearch(new Vertex(snapshot.getId(0)))) {
+      expected.add(v.getId());
+    }
+    assertEquals(expected, reachable);
+  }
+
+}
@@ -0,0 +1,161 @@
+package io.seansullivan.graph;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+
+/**
+ * Tests for EdgeSorts.
+ *
+ * @author Sean Sullivan (seans3@gmail.com)
+ */
+public class EdgeSortsTest {
+
+  private static final long SEED = 20160101L;
+  private static final int[] TEST_SIZES = {0, 1, 2, 3, 10, 17, 100, 1000};
+  private static final int LARGE_TEST_SIZE = 100000;
+  private static final int NUM_VERTICES = 100;
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  private Random rand;
+
+  @Before
+  public void setUp() throws Exception {
+    rand = new Random(SEED);
+  }
+
+  /**
+   * Returns edges between random vertices. Every fourth weight is an
+   * integer, with many duplicates; the others are any float, including
+   * negative ones.
+   */
+  private Edge[] randomEdges(int size) {
+    Edge[] edges = new Edge[size];
+    for (int i = 0; i < size; i++) {
+      float weight = (i % 4 == 0) ? rand.nextInt(10)
+	  : Float.intBitsToFloat(rand.nextInt());
+      if (Float.isNaN(weight)) {
+	weight = -1.5f;
+      }
+      edges[i] = new UndirectedEdge(new Vertex(rand.nextInt(NUM_VERTICES)),
+				    new Vertex(rand.nextInt(NUM_VERTICES)), weight);
+    }
+    return edges;
+  }
+
+  /**
+   * The expected order: Collections.sort() is a stable merge sort, and
+   * compares edges with Edge.compareTo(). Compared by identity, since
+   * equal edges may have different weights.
+   */
+  private static void assertSortedLike(List<Edge> expected, Edge[] actual) {
+    assertThat(actual.length, is(expected.size()));
+    for (int i = 0; i < actual.length; i++) {
+      assertSame(expected.get(i), actual[i]);
+    }
+  }
+
+  @Test
+  public void sortByWeightMatchesStableSort() throws Exception {
+    for (int size : TEST_SIZES) {
+      Edge[] a = randomEdges(size);
+      List<Edge> expected = new ArrayList<Edge>(Arrays.asList(a));
+      Collections.sort(expected);
+
+      EdgeSorts.sortByWeight(a);
+      assertSortedLike(expected, a);
+
+      List<Edge> list = new ArrayList<Edge>(Arrays.asList(randomEdges(size)));
+      expected = new ArrayList<Edge>(list);
+      Collections.sort(expected);
+      EdgeSorts.sortByWeight(list);
+      assertSortedLike(expected, list.toArray(new Edge[size]));
+    }
+  }
+
+  @Test
+  public void sortByWeightSortsRangeOnly() throws Exception {
+    Edge[] a = randomEdges(100);
+    Edge[] original = a.clone();
+    List<Edge> expected = new ArrayList<Edge>(Arrays.asList(a).subList(10, 90));
+    Collections.sort(expected);
+
+    EdgeSorts.sortByWeight(a, 10, 90);
+    assertSortedLike(expected, Arrays.copyOfRange(a, 10, 90));
+    for (int i = 0; i < 10; i++) {
+      assertSame(original[i], a[i]);
+      assertSame(original[90 + i], a[90 + i]);
+    }
+  }
+
+  @Test
+  public void sortByWeightOrdersSpecialWeights() throws Exception {
+    Vertex v1 = new Vertex(1);
+    Vertex v2 = new Vertex(2);
+    Edge nan = new DirectedEdge(v1, v2, Float.NaN);
+    Edge positiveZero = new DirectedEdge(v1, v2, 0.0f);
+    Edge negativeZero = new DirectedEdge(v1, v2, -0.0f);
+    Edge max = new DirectedEdge(v1, v2, Float.POSITIVE_INFINITY);
+    Edge min = new DirectedEdge(v1, v2, Float.NEGATIVE_INFINITY);
+    Edge negative = new DirectedEdge(v1, v2, -2.5f);
+    Edge small = new DirectedEdge(v1, v2, Float.MIN_VALUE);
+    Edge[] a = {nan, positiveZero, max, negativeZero, small, negative, min};
+
+    EdgeSorts.sortByWeight(a);
+    // The zeros are equal, so they keep their order.
+    Edge[] expected = {min, negative, positiveZero, negativeZero, small, max, nan};
+    assertArrayEquals(expected, a);
+  }
+
+  @Test
+  public void parallelSortByWeightMatchesStableSort() throws Exception {
+    Edge[] a = randomEdges(LARGE_TEST_SIZE);
+    List<Edge> expected = new ArrayList<Edge>(Arrays.asList(a));
+    Collections.sort(expected);
+
+    Edge[] b = a.clone();
+    EdgeSorts.parallelSortByWeight(b);
+    assertSortedLike(expected, b);
+
+    // Small blocks, in a pool of its own, so that the input really splits.
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      b = a.clone();
+      EdgeSorts.parallelSortByWeight(b, 0, b.length, pool, 1000);
+      assertSortedLike(expected, b);
+
+      b = a.clone();
+      List<Edge> range = new ArrayList<Edge>(Arrays.asList(a).subList(5, 50000));
+      Collections.sort(range);
+      EdgeSorts.parallelSortByWeight(b, 5, 50000, pool, 100);
+      assertSortedLike(range, Arrays.copyOfRange(b, 5, 50000));
+    } finally {
+      pool.shutdown();
+    }
+
+    List<Edge> list = new ArrayList<Edge>(Arrays.asList(a));
+    EdgeSorts.parallelSortByWeight(list);
+    assertSortedLike(expected, list.toArray(new Edge[list.size()]));
+  }
+
+  @Test
+  public void parallelSortByWeightBadThresholdThrowsException() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    EdgeSorts.parallelSortByWeight(randomEdges(10), 0, 10, ForkJoinPool.commonPool(), 0);
+  }
+
+}